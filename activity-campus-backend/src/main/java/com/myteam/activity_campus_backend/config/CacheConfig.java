@@ -0,0 +1,41 @@
+package com.myteam.activity_campus_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 本地缓存配置（Caffeine，有容量上限和过期时间）
+ * @date 2026/10/17 15:02
+ */
+@Configuration
+//缓存切面放在事务切面外层，写操作提交之后才清除缓存，避免并发读把旧值重新放回缓存
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+    //用户：按用户id缓存
+    public static final String USERS = "users";
+    //地点：按详细地址缓存
+    public static final String LOCATIONS = "locations";
+    //活动详情：按活动id缓存，已带出发布者和地点
+    public static final String ACTIVITY_DETAILS = "activityDetails";
+
+    @Value("${cache.caffeine.spec:maximumSize=2000,expireAfterWrite=10m,recordStats}")
+    private String caffeineSpec;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheSpecification(caffeineSpec);
+        //查不到的结果不缓存，避免新数据被空值挡住
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCacheNames(List.of(USERS, LOCATIONS, ACTIVITY_DETAILS));
+        return cacheManager;
+    }
+}
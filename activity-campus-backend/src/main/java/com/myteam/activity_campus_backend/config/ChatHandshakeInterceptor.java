@@ -0,0 +1,63 @@
+package com.myteam.activity_campus_backend.config;
+
+import com.myteam.activity_campus_backend.util.JWTTokenUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * @author sjy15
+ * @description: WebSocket握手认证（浏览器握手不能带请求头，令牌可放在token参数里）
+ * @date 2026/10/17 19:32
+ */
+@Component
+public class ChatHandshakeInterceptor implements HandshakeInterceptor {
+    public static final String ACTIVITY_ID = "activityId";
+    public static final String USER_ID = "currentUserId";
+
+    @Autowired
+    private JWTTokenUtil jwtTokenUtil;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Map<String, String> params = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().toSingleValueMap();
+        String token = jwtTokenUtil.extractTokenFromHeader(request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+        if (token == null) {
+            token = params.get("token");
+        }
+        Integer activityId;
+        try {
+            activityId = Integer.valueOf(params.get(ACTIVITY_ID));
+        } catch (NumberFormatException e) {
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return false;
+        }
+        JWTTokenUtil.VerifiedToken verified;
+        try {
+            verified = token == null ? null : jwtTokenUtil.verify(token);
+        } catch (RuntimeException e) {
+            verified = null;
+        }
+        if (verified == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(ACTIVITY_ID, activityId);
+        attributes.put(USER_ID, verified.getUserId());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
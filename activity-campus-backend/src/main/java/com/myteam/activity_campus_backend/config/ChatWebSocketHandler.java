@@ -0,0 +1,170 @@
+package com.myteam.activity_campus_backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.myteam.activity_campus_backend.dto.ChatErrorDTO;
+import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.service.ChatRoomRegistry;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import com.myteam.activity_campus_backend.service.PresenceTracker;
+import com.myteam.activity_campus_backend.service.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author sjy15
+ * @description: 活动聊天室WebSocket处理：连接后加入房间，收到的文本作为聊天消息发送；连接期间的pong和消息作为在线心跳
+ * @date 2026/10/17 19:35
+ */
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+    private static final Logger log = LoggerFactory.getLogger(ChatWebSocketHandler.class);
+    //单个连接发送超时和缓冲上限，慢客户端超出后断开，不拖慢其他连接
+    private static final int SEND_TIME_LIMIT_MILLIS = 10000;
+    private static final int BUFFER_SIZE_LIMIT = 512 * 1024;
+    private static final String SUBSCRIBER = "chatSubscriber";
+    private static final long QUEUE_FULL_RETRY_MILLIS = 1000;
+
+    //同一用户在同一房间的连接数（多标签页、多设备），最后一个连接断开才下线；key为活动id和用户id拼成的long
+    private final Map<Long, Integer> connections = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ChatRoomRegistry chatRoomRegistry;
+    @Autowired
+    private MessageServer messageServer;
+    @Autowired
+    private PresenceTracker presenceTracker;
+    @Autowired
+    private RateLimiter rateLimiter;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        Integer activityId = (Integer) session.getAttributes().get(ChatHandshakeInterceptor.ACTIVITY_ID);
+        WebSocketSubscriber subscriber = new WebSocketSubscriber(
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MILLIS, BUFFER_SIZE_LIMIT));
+        session.getAttributes().put(SUBSCRIBER, subscriber);
+        chatRoomRegistry.subscribe(activityId, subscriber);
+        connections.merge(key(activityId, (Integer) session.getAttributes().get(ChatHandshakeInterceptor.USER_ID)), 1, Integer::sum);
+        heartbeat(session);
+    }
+
+    //服务端定时ping，客户端回的pong说明连接仍然可用
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeat(session);
+    }
+
+    private void heartbeat(WebSocketSession session) {
+        Integer activityId = (Integer) session.getAttributes().get(ChatHandshakeInterceptor.ACTIVITY_ID);
+        Integer userId = (Integer) session.getAttributes().get(ChatHandshakeInterceptor.USER_ID);
+        presenceTracker.heartbeat(activityId, userId);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Integer activityId = (Integer) session.getAttributes().get(ChatHandshakeInterceptor.ACTIVITY_ID);
+        Integer userId = (Integer) session.getAttributes().get(ChatHandshakeInterceptor.USER_ID);
+        presenceTracker.heartbeat(activityId, userId);
+        //WebSocket消息不经过HTTP过滤器，单独按"WS /ws/chat"规则限流；超限的消息不发送，给发送者回一条错误通知
+        RateLimiter.Rule rule = rateLimiter.match("WS", session.getUri() == null ? "" : session.getUri().getPath());
+        long waitMillis = rule == null ? 0 : rateLimiter.acquire(rule, userId, System.currentTimeMillis());
+        if (waitMillis > 0) {
+            sendError(session, "发送过于频繁，请稍后再试", waitMillis);
+            return;
+        }
+        String result;
+        try {
+            result = messageServer.sendMessage(new MessageSendDTO(message.getPayload(), userId, activityId));
+        } catch (MessageWriteBuffer.QueueFullException e) {
+            //和HTTP接口一样建议1秒后重试
+            sendError(session, e.getMessage(), QUEUE_FULL_RETRY_MILLIS);
+            return;
+        } catch (RuntimeException e) {
+            log.error("WebSocket消息发送失败: userId={}, activityId={}, error={}", userId, activityId, e.getMessage());
+            sendError(session, "发送失败", null);
+            return;
+        }
+        if (!"发送成功".equals(result)) {
+            sendError(session, result, null);
+        }
+    }
+
+    //只给发送者的这个连接回错误通知，经过订阅者的并发安全装饰，和推送不冲突
+    private void sendError(WebSocketSession session, String reason, Long retryAfterMillis) {
+        log.debug("WebSocket消息发送失败: userId={}, activityId={}, reason={}",
+                session.getAttributes().get(ChatHandshakeInterceptor.USER_ID),
+                session.getAttributes().get(ChatHandshakeInterceptor.ACTIVITY_ID), reason);
+        Object subscriber = session.getAttributes().get(SUBSCRIBER);
+        if (!(subscriber instanceof ChatRoomRegistry.Subscriber)) {
+            return;
+        }
+        try {
+            ((ChatRoomRegistry.Subscriber) subscriber).send("error",
+                    objectMapper.writeValueAsString(new ChatErrorDTO(reason, retryAfterMillis)));
+        } catch (IOException e) {
+            //连接已经断开，afterConnectionClosed会清理
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Integer activityId = (Integer) session.getAttributes().get(ChatHandshakeInterceptor.ACTIVITY_ID);
+        Object subscriber = session.getAttributes().get(SUBSCRIBER);
+        if (subscriber instanceof ChatRoomRegistry.Subscriber) {
+            chatRoomRegistry.unsubscribe(activityId, (ChatRoomRegistry.Subscriber) subscriber);
+        }
+        Integer userId = (Integer) session.getAttributes().get(ChatHandshakeInterceptor.USER_ID);
+        //计数减到0时删除，在同一个桶锁里判断，和并发的新连接不会错开
+        boolean[] last = new boolean[1];
+        connections.compute(key(activityId, userId), (k, count) -> {
+            if (count == null || count <= 1) {
+                last[0] = true;
+                return null;
+            }
+            return count - 1;
+        });
+        //同一用户还有其他连接时保持在线
+        if (last[0]) {
+            presenceTracker.leave(activityId, userId);
+        }
+    }
+
+    private static long key(int activityId, int userId) {
+        return ((long) activityId << 32) | (userId & 0xffffffffL);
+    }
+
+    private static class WebSocketSubscriber implements ChatRoomRegistry.Subscriber {
+        private final WebSocketSession session;
+        WebSocketSubscriber(WebSocketSession session) {
+            this.session = session;
+        }
+        @Override
+        public void send(String event, String json) throws IOException {
+            //WebSocket帧里靠JSON的type字段区分推送类型
+            session.sendMessage(new TextMessage(json));
+        }
+        @Override
+        public void ping() throws IOException {
+            session.sendMessage(new PingMessage());
+        }
+        @Override
+        public void close() {
+            try {
+                session.close();
+            } catch (IOException ignored) {
+                //连接已经断开
+            }
+        }
+    }
+}
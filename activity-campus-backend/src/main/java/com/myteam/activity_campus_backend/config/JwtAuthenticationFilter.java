@@ -19,6 +19,8 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * @author sjy15
@@ -50,9 +52,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/doc.html",
             "/favicon.ico",
             "/error",
-            "/error/**"
+            "/error/**",
+            "/ws/**"
     );
 
+    // 排除路径预编译成一个正则："/**"结尾的按前缀匹配，其余按路径本身或其子路径匹配
+    private static final Pattern EXCLUDE_PATTERN = Pattern.compile(EXCLUDE_PATHS.stream()
+            .map(path -> path.endsWith("/**")
+                    ? Pattern.quote(path.substring(0, path.length() - 3)) + ".*"
+                    : Pattern.quote(path) + "(/.*)?")
+            .collect(Collectors.joining("|")));
+    // 错误响应序列化复用同一个实例（ObjectMapper线程安全）
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    // 所有认证用户的权限相同，复用同一个列表
+    private static final List<GrantedAuthority> USER_AUTHORITIES =
+            Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -60,83 +75,49 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String requestURI = request.getRequestURI();
 
-        log.info("=== 🔍 JWT过滤器开始处理请求 ===");
-        log.info("📝 请求信息: {}",requestURI);
-        log.info("🌐 请求来源: {}", request.getHeader("Origin"));
-        log.info("📋 User-Agent: {}", request.getHeader("User-Agent"));
-
         // 检查排除路径
         if (isExcludePath(requestURI)) {
-            log.info("✅ 路径被排除，直接放行: {}", requestURI);
+            log.debug("✅ 路径被排除，直接放行: {}", requestURI);
             chain.doFilter(request, response);
             return;
-        }else{
-            log.info("🔐 需要认证的路径: {}", requestURI);
         }
 
-        // 1. 提取和验证Token
+        // 1. 提取Token
         String token = jwtTokenUtil.extractToken(request);
-        log.info("🔑 提取到的Token: {}", token != null ? "存在" : "NULL");
-
-        if (token != null) {
-            log.info("🔍 Token前缀检查: {}", token.startsWith("Bearer ") ? "正确" : "缺少Bearer前缀");
-            log.info("📏 Token长度: {}", token.length());
-        }
-
         if (token == null) {
-            log.warn("❌ Token为空，返回401");
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            log.debug("❌ Token为空，返回401: {}", requestURI);
             sendJsonError(request,response, 401, "Token无效或已过期");
             return;
         }
-        // 2. 验证Token有效性
-        boolean isValid = jwtTokenUtil.validateToken(token);
-        log.info("🔐 Token验证结果: {}", isValid ? "有效" : "无效");
 
-        if (!isValid) {
-            log.warn("❌ Token验证失败，返回401");
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            sendJsonError(request,response, 401, "Token无效或已过期");
-            return;
-        }
-
-        // 3. 解析用户信息并设置权限
+        // 2. 验证Token并解析用户ID（只解析、验签一次，之后命中缓存）
+        Integer userId;
         try {
-            Integer userId = jwtTokenUtil.getUserIdFromToken(token);
-
-            log.info("👤 从Token解析的用户ID: {}", userId);
-            if (userId == null) {
-                log.error("❌ 无法从Token解析用户ID");
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                sendJsonError(request,response, 401, "令牌解析失败：用户ID为空");
+            JWTTokenUtil.VerifiedToken verified = jwtTokenUtil.verify(token);
+            if (verified == null) {
+                log.debug("❌ Token验证失败，返回401: {}", requestURI);
+                sendJsonError(request,response, 401, "Token无效或已过期");
                 return;
             }
-            // ⭐️ 关键修复：设置用户ID到请求属性
-            request.setAttribute("currentUserId", userId);
-            log.info("✅ 用户ID已设置到请求属性: currentUserId = {}", userId);
-
-            // ⭐️ 关键：创建包含权限的认证对象
-            List<GrantedAuthority> authorities = Arrays.asList(
-                    new SimpleGrantedAuthority("ROLE_USER") // 分配必要权限
-            );
-
-            log.info("🎯 分配的权限: {}", authorities);
-
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(userId, null, authorities);
-
-            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-
-            log.info("✅ 认证成功！用户ID: {} 已设置到SecurityContext", userId);
-            log.info("🔐 SecurityContext认证状态: {}",
-                    SecurityContextHolder.getContext().getAuthentication().isAuthenticated());
+            userId = verified.getUserId();
         } catch (Exception e) {
-            log.error("❌ Token解析异常: {}", e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            log.warn("❌ Token解析异常: {}", e.getMessage());
             sendJsonError(request,response, 401, "令牌解析失败: " + e.getMessage());
             return;
         }
+        if (userId == null) {
+            log.warn("❌ 无法从Token解析用户ID");
+            sendJsonError(request,response, 401, "令牌解析失败：用户ID为空");
+            return;
+        }
+
+        // 3. 设置用户ID到请求属性，并创建包含权限的认证对象
+        request.setAttribute("currentUserId", userId);
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(userId, null, USER_AUTHORITIES);
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        log.debug("✅ 认证成功！用户ID: {}", userId);
 
         chain.doFilter(request, response);
     }
@@ -153,32 +134,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         errorResponse.put("timestamp", System.currentTimeMillis());
         errorResponse.put("path", request.getRequestURI());
 
-        ObjectMapper mapper = new ObjectMapper();
-        String json = mapper.writeValueAsString(errorResponse);
-
-        log.warn("🚫 返回错误响应: {}", json);
-        response.getWriter().write(json);
+        response.getWriter().write(OBJECT_MAPPER.writeValueAsString(errorResponse));
     }
 
 
     /**
-     * 改进的路径匹配逻辑
+     * 路径匹配：一次正则匹配代替逐条比较
      */
     private boolean isExcludePath(String requestURI) {
-        for (String path : EXCLUDE_PATHS) {
-            if (path.endsWith("/**")) {
-                String basePath = path.substring(0, path.length() - 3);
-                if (requestURI.startsWith(basePath)) {
-                    log.debug("✅ 路径匹配: {} -> {}", path, requestURI);
-                    return true;
-                }
-            } else if (requestURI.equals(path) || requestURI.startsWith(path + "/")) {
-                log.debug("✅ 精确匹配: {} -> {}", path, requestURI);
-                return true;
-            }
-        }
-        log.debug("❌ 路径需认证: {}", requestURI);
-        return false;
+        return EXCLUDE_PATTERN.matcher(requestURI).matches();
     }
     /**
      * 添加请求头调试方法
@@ -0,0 +1,78 @@
+package com.myteam.activity_campus_backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.myteam.activity_campus_backend.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author sjy15
+ * @description: 写接口限流过滤器：按当前用户和接口计数，超限返回429和Retry-After
+ * @date 2026/10/18 17:50
+ */
+@Configuration
+public class RateLimitConfig {
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter rateLimiter) {
+        FilterRegistrationBean<RateLimitFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(new RateLimitFilter(rateLimiter));
+        registrationBean.addUrlPatterns("/api/*");
+        // 排在Spring Security之后，JwtAuthenticationFilter已经设置好currentUserId
+        registrationBean.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registrationBean;
+    }
+
+    public static class RateLimitFilter extends OncePerRequestFilter {
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+        private final RateLimiter rateLimiter;
+
+        public RateLimitFilter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws IOException, ServletException {
+            Object currentUserId = request.getAttribute("currentUserId");
+            if (currentUserId instanceof Integer) {
+                RateLimiter.Rule rule = rateLimiter.match(request.getMethod(), request.getRequestURI());
+                if (rule != null) {
+                    long waitMillis = rateLimiter.acquire(rule, (Integer) currentUserId, System.currentTimeMillis());
+                    if (waitMillis > 0) {
+                        sendTooManyRequests(request, response, waitMillis);
+                        return;
+                    }
+                }
+            }
+            filterChain.doFilter(request, response);
+        }
+
+        private void sendTooManyRequests(HttpServletRequest request, HttpServletResponse response, long waitMillis) throws IOException {
+            long retryAfter = (waitMillis + 999) / 1000;
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.setContentType("application/json;charset=UTF-8");
+
+            Map<String, Object> errorResponse = new LinkedHashMap<>();
+            errorResponse.put("code", HttpStatus.TOO_MANY_REQUESTS.value());
+            errorResponse.put("message", "请求过于频繁，请" + retryAfter + "秒后重试");
+            errorResponse.put("timestamp", System.currentTimeMillis());
+            errorResponse.put("path", request.getRequestURI());
+
+            response.getWriter().write(OBJECT_MAPPER.writeValueAsString(errorResponse));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.myteam.activity_campus_backend.config;
 
+import jakarta.servlet.DispatcherType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,10 @@ public class SecurityConfig {
                 )
 
                 .authorizeHttpRequests(authz -> authz
+                        // SSE等异步请求结束时的再次分发，认证已在首次请求时完成
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                        // WebSocket握手在ChatHandshakeInterceptor中校验令牌
+                        .requestMatchers("/ws/**").permitAll()
                         // 放行H2控制台相关路径
                         .requestMatchers("/h2-console/**").permitAll()
                         // 放行API路径
@@ -7,10 +7,15 @@ import com.myteam.activity_campus_backend.entity.User;
 import com.myteam.activity_campus_backend.repository.UserRepository;
 import com.myteam.activity_campus_backend.service.ActivityServer;
 import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 /**
@@ -28,6 +33,9 @@ public class ActivityController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MessageServer messageServer;
+
     /**
      * 创建活动
      * @param httpRequest HTTP请求对象（用于获取当前用户ID）
@@ -66,6 +74,49 @@ public class ActivityController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 游标分页查询活动列表（按开始时间、活动ID升序）
+     * @param keyword 搜索关键词，可为空
+     * @param cursor 上一页返回的nextCursor，第一页不传
+     * @param size 每页条数，默认20，最大50
+     * @return 当前页活动和下一页游标
+     */
+    @GetMapping("/list/page")
+    public ResponseEntity<CursorListActivityResponse> getActivityPage(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        ActivityPageRequest pageRequest = new ActivityPageRequest(keyword, cursor, size);
+        try {
+            CursorListActivityResponse response = activityServer.ActivityPageResponse(pageRequest);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new CursorListActivityResponse(false, null, null, false, e.getMessage()));
+        }
+    }
+
+    /**
+     * 查询附近未结束的活动（按距离升序）
+     * @param lat 纬度
+     * @param lng 经度
+     * @param radius 半径（米），默认1000，最大20000
+     * @param size 最多返回条数，默认20，最大50
+     * @return 附近活动及距离
+     */
+    @GetMapping("/nearby")
+    public ResponseEntity<NearbyActivityResponse> getNearbyActivities(
+            @RequestParam Double lat,
+            @RequestParam Double lng,
+            @RequestParam(required = false) Double radius,
+            @RequestParam(required = false) Integer size) {
+        NearbyActivityResponse response = activityServer.NearbyActivityResponse(lat, lng, radius, size);
+        if (!response.isResult()) {
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 查询活动详情
      * @param activityId 活动ID
@@ -162,8 +213,15 @@ public class ActivityController {
             MessageSendDTO messageDTO = new MessageSendDTO(content,
                     Integer.valueOf(userNum),
                     Integer.valueOf(activityId.toString()));
-            String result = new MessageServer().sendMessage(messageDTO);
-            return ResponseEntity.ok(result);
+            try {
+                String result = messageServer.sendMessage(messageDTO);
+                return ResponseEntity.ok(result);
+            } catch (MessageWriteBuffer.QueueFullException e) {
+                //消息写缓冲已满：返回503，客户端稍后重试
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(e.getMessage());
+            }
         }else{
             String errorMsg = "用户ID类型错误，期望Integer，实际类型: " +
                     (currentUserId != null ? currentUserId.getClass().getSimpleName() : "null");
@@ -181,7 +239,103 @@ public class ActivityController {
     public ResponseEntity<ListMessageHistory> getActivityChatHistory(@PathVariable Integer activityId) {
         MessageHistoryRequest historyRequest = new MessageHistoryRequest();
         historyRequest.setReceiveId(Integer.valueOf(activityId.toString()));
-        ListMessageHistory response = new MessageServer().messageHistory(historyRequest);
+        ListMessageHistory response = messageServer.messageHistory(historyRequest);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * 游标分页获取活动聊天记录（按发送时间、消息ID排序，返回的消息升序）
+     * @param activityId 活动ID
+     * @param before 上一页返回的beforeCursor，取更早的消息
+     * @param after 上一页返回的afterCursor，取更新的消息
+     * @param size 每页条数，默认30，最大100
+     * @return 当前页消息和前后游标；before/after都不传时返回最新一页
+     */
+    @GetMapping("/chat/history/{activityId}/page")
+    public ResponseEntity<CursorMessageHistoryResponse> getActivityChatHistoryPage(
+            @PathVariable Integer activityId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        MessagePageRequest pageRequest = new MessagePageRequest(activityId, before, after, size);
+        try {
+            CursorMessageHistoryResponse response = messageServer.messageHistoryPage(pageRequest);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new CursorMessageHistoryResponse(false, null, null, null, false, e.getMessage()));
+        }
+    }
+
+    /**
+     * 活动聊天室增量同步：客户端重连时只取since之后的新消息和撤回，不用重新拉取整个房间
+     * @param activityId 活动ID
+     * @param since 本地已收到的最大序号（推送消息的seq或上次返回的nextSince），不传表示从头开始
+     * @param size 最多返回的消息条数，默认200，最大500
+     * @return 新消息、撤回墓碑和下次同步用的nextSince；hasMore为true时用nextSince继续取
+     */
+    @GetMapping("/chat/delta/{activityId}")
+    public ResponseEntity<ChatDeltaResponse> getActivityChatDelta(
+            @PathVariable Integer activityId,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer size) {
+        try {
+            return ResponseEntity.ok(messageServer.chatDelta(activityId, since, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ChatDeltaResponse(false, null, null, null, false, e.getMessage()));
+        }
+    }
+
+    /**
+     * 聊天室在线心跳（WebSocket连接自动维持，SSE客户端建议每30秒调用一次，超过60秒没有心跳视为离线）
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param activityId 活动ID
+     * @return 当前在线人数和在线用户
+     */
+    @PostMapping("/chat/presence/{activityId}")
+    public ResponseEntity<PresenceResponse> heartbeatActivityChat(HttpServletRequest httpRequest, @PathVariable Integer activityId) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new PresenceResponse(false, activityId, 0, null, "未登录"));
+        }
+        return ResponseEntity.ok(messageServer.heartbeat(activityId, (Integer) currentUserId));
+    }
+
+    /**
+     * 离开聊天室（立即从在线名单移除）
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param activityId 活动ID
+     */
+    @DeleteMapping("/chat/presence/{activityId}")
+    public ResponseEntity<String> leaveActivityChat(HttpServletRequest httpRequest, @PathVariable Integer activityId) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("未登录");
+        }
+        messageServer.leave(activityId, (Integer) currentUserId);
+        return ResponseEntity.ok("已离开");
+    }
+
+    /**
+     * 查询聊天室在线人数和在线用户（只读内存，不查数据库）
+     * @param activityId 活动ID
+     * @return 在线人数和在线用户ID（升序）
+     */
+    @GetMapping("/chat/presence/{activityId}")
+    public ResponseEntity<PresenceResponse> getActivityChatPresence(@PathVariable Integer activityId) {
+        return ResponseEntity.ok(messageServer.presence(activityId));
+    }
+
+    /**
+     * 订阅活动聊天室实时消息（SSE，WebSocket不可用时使用；WebSocket地址为 /ws/chat?activityId=&token=）
+     * EventSource不能设置请求头，令牌可以用查询参数?token=传
+     * @param activityId 活动ID
+     * @return 事件流，每条新消息一个message事件
+     */
+    @GetMapping(value = "/chat/stream/{activityId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamActivityChat(@PathVariable Integer activityId) {
+        return messageServer.subscribe(activityId);
+    }
+}
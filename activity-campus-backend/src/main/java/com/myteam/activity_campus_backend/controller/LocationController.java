@@ -1,14 +1,17 @@
 package com.myteam.activity_campus_backend.controller;
 
 import com.myteam.activity_campus_backend.dto.request.LocationRequest;
+import com.myteam.activity_campus_backend.dto.response.FreeSlotListResponse;
+import com.myteam.activity_campus_backend.dto.response.SlotAvailableResponse;
 import com.myteam.activity_campus_backend.service.LocationServer;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 /**
  * @author sjy15
@@ -36,4 +39,32 @@ public class LocationController {
             return ResponseEntity.badRequest().body("区域位置信息保存失败：" + e.getMessage());
         }
     }
+
+    /**
+     * 查询场地某个时间段是否空闲
+     * @param locationId 地点ID
+     * @param startTime 开始时间（含），ISO格式
+     * @param endTime 结束时间（不含），ISO格式
+     * @return 是否空闲
+     */
+    @GetMapping("/{locationId}/available")
+    public ResponseEntity<SlotAvailableResponse> checkSlot(
+            @PathVariable Integer locationId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        return ResponseEntity.ok(locationServer.checkSlot(locationId, startTime, endTime));
+    }
+
+    /**
+     * 查询场地某一天的空闲时段
+     * @param locationId 地点ID
+     * @param date 日期，不传默认今天
+     * @return 当天按时间升序的空闲时段
+     */
+    @GetMapping("/{locationId}/free-slots")
+    public ResponseEntity<FreeSlotListResponse> getFreeSlots(
+            @PathVariable Integer locationId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(locationServer.freeSlotsOfDay(locationId, date == null ? LocalDate.now() : date));
+    }
 }
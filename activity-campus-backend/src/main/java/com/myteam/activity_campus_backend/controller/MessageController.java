@@ -1,11 +1,16 @@
 package com.myteam.activity_campus_backend.controller;
 
 import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.dto.response.CursorMessageHistoryResponse;
+import com.myteam.activity_campus_backend.dto.response.InboxResponse;
 import com.myteam.activity_campus_backend.dto.response.ListMessageHistory;
+import com.myteam.activity_campus_backend.dto.response.UnreadSummaryResponse;
 import com.myteam.activity_campus_backend.dto.request.MessageHistoryRequest;
 import com.myteam.activity_campus_backend.dto.request.RecallMessageRequest;
 import com.myteam.activity_campus_backend.service.MessageServer;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -37,14 +42,42 @@ public class MessageController {
     }
 
     /**
-     * 发送消息接口
-     * @param messageSendDTO 发送消息请求参数（包含发送者ID、接收者ID、消息内容等）
+     * 按消息ID撤回活动聊天室消息（只能撤回自己发送的消息）
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param messageId 消息ID（历史消息和推送消息中的messageId）
+     * @return 撤回结果：成功200，消息不存在404，不是本人发送403
+     */
+    @PostMapping("/recall/{messageId}")
+    public ResponseEntity<String> recallMessageById(HttpServletRequest httpRequest, @PathVariable Integer messageId) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("撤回失败：未登录");
+        }
+        return recallResult(messageServer.recallMessageById(messageId, (Integer) currentUserId));
+    }
+
+    /**
+     * 撤回结果转HTTP状态：消息不存在404，不是本人发送403
+     */
+    private ResponseEntity<String> recallResult(String result) {
+        if ("消息不存在".equals(result)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
+        }
+        if ("无权撤回他人的消息".equals(result)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 发送私信接口（活动聊天室消息走/api/activity/chat/send）
+     * @param messageSendDTO 发送消息请求参数（包含发送者ID、接收者用户ID、消息内容等）
      * @return 发送结果响应
      */
     @PostMapping("/send")
     public ResponseEntity<String> sendMessage(@RequestBody MessageSendDTO messageSendDTO) {
         try {
-            String result = messageServer.sendMessage(messageSendDTO);
+            String result = messageServer.sendDirectMessage(messageSendDTO);
             return ResponseEntity.ok(result); // 成功返回结果
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("发送失败：" + e.getMessage());
@@ -62,10 +95,122 @@ public class MessageController {
         // 修正命名重复：用historyRequest明确语义，避免与其他参数冲突
         MessageHistoryRequest historyRequest = new MessageHistoryRequest();
         historyRequest.setReceiveId(Integer.valueOf(receiverId));
-        ListMessageHistory messageHistory = messageServer.messageHistory(historyRequest);
+        ListMessageHistory messageHistory = messageServer.directMessageHistory(historyRequest);
         return ResponseEntity.ok(messageHistory);
     }
 
+    /**
+     * 私信收件箱：每个会话一条，含对方、最后一条私信和未读数，按最后一条私信时间倒序
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param cursor 上一页返回的nextCursor，第一页不传
+     * @param size 每页会话数，默认30，最大100
+     * @return 当前页会话和下一页游标
+     */
+    @GetMapping("/inbox")
+    public ResponseEntity<InboxResponse> getInbox(
+            HttpServletRequest httpRequest,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new InboxResponse(false, null, null, false, "未登录"));
+        }
+        try {
+            return ResponseEntity.ok(messageServer.inbox((Integer) currentUserId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new InboxResponse(false, null, null, false, e.getMessage()));
+        }
+    }
+
+    /**
+     * 和某个用户的私信会话（游标分页，消息按发送时间升序）
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param peerId 对方用户ID
+     * @param before 上一页返回的beforeCursor，取更早的消息；不传时返回最新一页
+     * @param size 每页条数，默认30，最大100
+     * @return 当前页私信和游标
+     */
+    @GetMapping("/direct/{peerId}")
+    public ResponseEntity<CursorMessageHistoryResponse> getDirectConversation(
+            HttpServletRequest httpRequest,
+            @PathVariable Integer peerId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer size) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new CursorMessageHistoryResponse(false, null, null, null, false, "未登录"));
+        }
+        try {
+            return ResponseEntity.ok(messageServer.directConversationPage((Integer) currentUserId, peerId, before, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new CursorMessageHistoryResponse(false, null, null, null, false, e.getMessage()));
+        }
+    }
+
+    /**
+     * 按消息ID撤回私信（只能撤回自己发送的私信）
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param messageId 私信ID
+     * @return 撤回结果：成功200，消息不存在404，不是本人发送403
+     */
+    @PostMapping("/direct/recall/{messageId}")
+    public ResponseEntity<String> recallDirectMessageById(HttpServletRequest httpRequest, @PathVariable Integer messageId) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("撤回失败：未登录");
+        }
+        return recallResult(messageServer.recallDirectMessageById(messageId, (Integer) currentUserId));
+    }
+
+    /**
+     * 当前用户全部会话的未读数（活动聊天室和私信），一次返回所有角标
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @return 未读总数和每个有未读的会话
+     */
+    @GetMapping("/unread")
+    public ResponseEntity<UnreadSummaryResponse> getUnread(HttpServletRequest httpRequest) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new UnreadSummaryResponse(false, 0, null, "未登录"));
+        }
+        return ResponseEntity.ok(messageServer.unread((Integer) currentUserId));
+    }
+
+    /**
+     * 标记活动聊天室已读（未读数清零）
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param activityId 活动ID
+     */
+    @PostMapping("/read/activity/{activityId}")
+    public ResponseEntity<String> markActivityRead(HttpServletRequest httpRequest, @PathVariable Integer activityId) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("未登录");
+        }
+        messageServer.markActivityRead((Integer) currentUserId, activityId);
+        return ResponseEntity.ok("已读");
+    }
+
+    /**
+     * 标记和某个用户的私信已读（未读数清零）
+     * @param httpRequest HTTP请求对象（用于获取当前用户ID）
+     * @param peerId 对方用户ID
+     */
+    @PostMapping("/read/direct/{peerId}")
+    public ResponseEntity<String> markDirectRead(HttpServletRequest httpRequest, @PathVariable Integer peerId) {
+        Object currentUserId = httpRequest.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("未登录");
+        }
+        messageServer.markDirectRead((Integer) currentUserId, peerId);
+        return ResponseEntity.ok("已读");
+    }
+
     // （补充）查看活动消息历史（与个人消息区分，保持接口语义清晰）
     @GetMapping("/activity/history/{activityId}")
     public ResponseEntity<ListMessageHistory> getActivityMessageHistory(
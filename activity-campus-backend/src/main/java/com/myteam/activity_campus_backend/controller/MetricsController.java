@@ -0,0 +1,148 @@
+package com.myteam.activity_campus_backend.controller;
+
+import com.myteam.activity_campus_backend.service.MetricsServer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * @author sjy15
+ * @description: 运行指标控制器
+ * @date 2026/10/17 15:24
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+    @Autowired
+    private MetricsServer metricsServer;
+
+    /**
+     * 查询缓存命中统计
+     * @return 缓存名 -> 命中次数、未命中次数、命中率、淘汰次数、当前条数
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCacheStats() {
+        return ResponseEntity.ok(metricsServer.cacheStats());
+    }
+
+    /**
+     * 查询密码计算线程池指标
+     * @return 线程数、活跃线程、队列深度、完成/拒绝次数、平均/最大计算耗时、平均排队耗时
+     */
+    @GetMapping("/password-hash")
+    public ResponseEntity<Map<String, Object>> getPasswordHashStats() {
+        return ResponseEntity.ok(metricsServer.passwordHashStats());
+    }
+
+    /**
+     * 查询聊天室在线连接
+     * @return 在线房间数、连接数
+     */
+    @GetMapping("/chat")
+    public ResponseEntity<Map<String, Object>> getChatStats() {
+        return ResponseEntity.ok(metricsServer.chatStats());
+    }
+
+    /**
+     * 查询消息写缓冲
+     * @return 积压条数、入库/拒绝/丢弃条数、批次数、平均批大小、写库耗时
+     */
+    @GetMapping("/message-write")
+    public ResponseEntity<Map<String, Object>> getMessageWriteStats() {
+        return ResponseEntity.ok(metricsServer.messageWriteStats());
+    }
+
+    /**
+     * 查询聊天室最近消息缓存
+     * @return 缓存房间数、消息条数、估算内存字节数、命中率、房间加载/淘汰次数
+     */
+    @GetMapping("/recent-messages")
+    public ResponseEntity<Map<String, Object>> getRecentMessageStats() {
+        return ResponseEntity.ok(metricsServer.recentMessageStats());
+    }
+
+    /**
+     * 查询私信分表
+     * @return 现有月表、保留月数、已删除的月表数
+     */
+    @GetMapping("/direct-messages")
+    public ResponseEntity<Map<String, Object>> getDirectMessageStats() {
+        return ResponseEntity.ok(metricsServer.directMessageStats());
+    }
+
+    /**
+     * 查询实时位置存储
+     * @return 内存中的用户数、有效位置数、快照和历史写库行数
+     */
+    @GetMapping("/live-location")
+    public ResponseEntity<Map<String, Object>> getLiveLocationStats() {
+        return ResponseEntity.ok(metricsServer.liveLocationStats());
+    }
+
+    /**
+     * 查询地理围栏引擎和到场记录写入
+     * @return 索引中的活动数、进入/离开事件数、到场记录写库行数
+     */
+    @GetMapping("/geofence")
+    public ResponseEntity<Map<String, Object>> getGeofenceStats() {
+        return ResponseEntity.ok(metricsServer.geofenceStats());
+    }
+
+    /**
+     * 查询位置记录压缩任务
+     * @return 执行次数、删除行数、耗时
+     */
+    @GetMapping("/location-compaction")
+    public ResponseEntity<Map<String, Object>> getLocationCompactionStats() {
+        return ResponseEntity.ok(metricsServer.locationCompactionStats());
+    }
+
+    /**
+     * 查询聊天室增量同步
+     * @return 撤回数、增量查询次数、返回的消息和撤回条数、为查询提前写库的次数
+     */
+    @GetMapping("/chat-delta")
+    public ResponseEntity<Map<String, Object>> getChatDeltaStats() {
+        return ResponseEntity.ok(metricsServer.chatDeltaStats());
+    }
+
+    /**
+     * 查询会话未读数计数
+     * @return 计数次数、标记已读次数、待写库用户数、写库行数
+     */
+    @GetMapping("/unread")
+    public ResponseEntity<Map<String, Object>> getUnreadStats() {
+        return ResponseEntity.ok(metricsServer.unreadStats());
+    }
+
+    /**
+     * 查询聊天室在线状态
+     * @return 房间数、在线人数、心跳次数、上线/离开/过期次数、时间轮槽数
+     */
+    @GetMapping("/presence")
+    public ResponseEntity<Map<String, Object>> getPresenceStats() {
+        return ResponseEntity.ok(metricsServer.presenceStats());
+    }
+
+    /**
+     * 查询写接口限流
+     * @return 拒绝总次数，每条规则的次数上限、窗口秒数、放行和拒绝次数、正在计数的用户数
+     */
+    @GetMapping("/rate-limit")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(metricsServer.rateLimitStats());
+    }
+
+    /**
+     * 查询私信会话摘要
+     * @return 会话更新次数、收件箱查询次数、从私信月表补建的会话数
+     */
+    @GetMapping("/conversations")
+    public ResponseEntity<Map<String, Object>> getConversationStats() {
+        return ResponseEntity.ok(metricsServer.conversationStats());
+    }
+}
@@ -1,15 +1,21 @@
 package com.myteam.activity_campus_backend.controller;
 
 import com.myteam.activity_campus_backend.dto.request.userLocationRequest;
+import com.myteam.activity_campus_backend.dto.response.LocationBatchResponse;
 import com.myteam.activity_campus_backend.service.UserLocationServer;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+
 /**
  * @author sjy15
  * @description: 用户实时位置
@@ -23,14 +29,19 @@ public class UserLocationController {
 
     /**
      * 保存用户实时位置
-     * @param ulRequest 前端传入的用户位置请求参数（包含用户ID、经纬度、有效时间等）
-     * @return 响应结果（成功/失败提示）
+     * @param ulRequest 前端传入的用户位置请求参数（包含用户ID、经纬度、有效时间等），用户ID须为当前用户，可不传
+     * @param request HTTP请求，取当前登录用户
+     * @return 响应结果（成功/失败提示）；上报其他用户的位置或经纬度超出范围返回400
      */
     @PostMapping("/save")
-    public ResponseEntity<String> saveUserLocation(@Valid @RequestBody userLocationRequest ulRequest) {
+    public ResponseEntity<String> saveUserLocation(@Valid @RequestBody userLocationRequest ulRequest, HttpServletRequest request) {
+        Object currentUserId = request.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("未登录");
+        }
         try {
             // 调用服务层保存逻辑
-            userLocationServer.save(ulRequest);
+            userLocationServer.save(ulRequest, (Integer) currentUserId);
             // 服务层无异常抛出，说明保存成功或已处理过期逻辑
             return ResponseEntity.ok("用户位置保存成功（若有效时间未过期）");
         } catch (Exception e) {
@@ -38,4 +49,25 @@ public class UserLocationController {
             return ResponseEntity.badRequest().body("用户位置保存失败：" + e.getMessage());
         }
     }
+
+    /**
+     * 批量上报用户位置（离线缓存的点一次补传，或网关转发多个用户）
+     * @param request HTTP请求，请求体为位置数组，流式读取
+     * @return 收到、写入、丢弃的条数（不是当前用户的位置计入丢弃，网关用户除外）；请求体格式错误或超过条数上限返回400
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<LocationBatchResponse> saveUserLocationBatch(HttpServletRequest request) {
+        Object currentUserId = request.getAttribute("currentUserId");
+        if (!(currentUserId instanceof Integer)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new LocationBatchResponse(false, 0, 0, 0, 0, "未登录"));
+        }
+        try {
+            return ResponseEntity.ok(userLocationServer.saveBatch(request.getInputStream(), (Integer) currentUserId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new LocationBatchResponse(false, 0, 0, 0, 0, e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(new LocationBatchResponse(false, 0, 0, 0, 0, "读取请求体失败"));
+        }
+    }
 }
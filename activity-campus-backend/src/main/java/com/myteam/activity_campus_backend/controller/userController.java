@@ -6,12 +6,14 @@ import com.myteam.activity_campus_backend.dto.request.UserRegisterRequest;
 import com.myteam.activity_campus_backend.dto.response.ChangePasswordResponse;
 import com.myteam.activity_campus_backend.dto.response.UserLoginResponse;
 import com.myteam.activity_campus_backend.dto.response.UserRegisterResponse;
+import com.myteam.activity_campus_backend.service.PasswordService;
 import com.myteam.activity_campus_backend.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -48,6 +50,9 @@ public class userController {
             }
             return ResponseEntity.status(status).body(response);
 
+        } catch (PasswordService.HashRejectedException e) {
+            logger.warn("用户注册被拒绝（密码计算繁忙）: userId={}", request.getUserId());
+            return busy(new UserRegisterResponse(e.getMessage(), request.getUserId()));
         } catch (Exception e) {
             logger.error("用户注册异常: userId={}, error={}", request.getUserId(), e.getMessage());
             UserRegisterResponse errorResponse = new UserRegisterResponse("系统异常，请稍后重试", request.getUserId());
@@ -73,6 +78,9 @@ public class userController {
 
             return ResponseEntity.status(status).body(response);
 
+        } catch (PasswordService.HashRejectedException e) {
+            logger.warn("用户登录被拒绝（密码计算繁忙）: userId={}", request.getUserId());
+            return busy(new UserLoginResponse(e.getMessage(), request.getUserId()));
         } catch (Exception e) {
             logger.error("用户登录异常: userId={}, error={}", request.getUserId(), e.getMessage());
             UserLoginResponse errorResponse = new UserLoginResponse("系统异常，请稍后重试", request.getUserId());
@@ -118,6 +126,9 @@ public class userController {
             }
             return ResponseEntity.status(status).body(response);
 
+        } catch (PasswordService.HashRejectedException e) {
+            logger.warn("修改密码被拒绝（密码计算繁忙）: userId={}", updateRequest.getUserId());
+            return busy(new ChangePasswordResponse(e.getMessage(), updateRequest.getUserId()));
         } catch (Exception e) {
             logger.error("💥 修改密码异常: userId={}, error={}", updateRequest.getUserId(), e.getMessage(), e);
             ChangePasswordResponse errorResponse=new ChangePasswordResponse("系统异常，请稍后重试", updateRequest.getUserId());
@@ -125,6 +136,14 @@ public class userController {
                     .body(errorResponse);
         }
     }
+    /**
+     * 密码计算线程池已满：返回503并提示客户端稍后重试
+     */
+    private <T> ResponseEntity<T> busy(T body) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(body);
+    }
     /**
      * 根据响应消息确定HTTP状态码
      */
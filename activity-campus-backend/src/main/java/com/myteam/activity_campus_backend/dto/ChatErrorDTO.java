@@ -0,0 +1,34 @@
+package com.myteam.activity_campus_backend.dto;
+
+/**
+ * @author sjy15
+ * @description: 聊天室WebSocket消息发送失败的通知（只发给发送者的连接）
+ * @date 2026/10/18 19:10
+ */
+public class ChatErrorDTO {
+    //失败原因（超过频率限制、消息写缓冲已满、内容不合法等）
+    private String reason;
+    //建议的重试等待毫秒数，不能靠重试解决的（内容不合法等）为null
+    private Long retryAfterMillis;
+    public ChatErrorDTO() {}
+    public ChatErrorDTO(String reason, Long retryAfterMillis) {
+        this.reason = reason;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    //推送类型，和ChatMessageDTO、ChatRecallDTO区分
+    public String getType() {
+        return "error";
+    }
+    public String getReason() {
+        return reason;
+    }
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+    public Long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+    public void setRetryAfterMillis(Long retryAfterMillis) {
+        this.retryAfterMillis = retryAfterMillis;
+    }
+}
@@ -0,0 +1,80 @@
+package com.myteam.activity_campus_backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author sjy15
+ * @description: 聊天室推送消息
+ * @date 2026/10/17 19:20
+ */
+public class ChatMessageDTO {
+    private Integer messageId;
+    //房间序号，客户端记住收到的最大值，重连时作为since增量同步
+    private Long seq;
+    private Integer activityId;
+    private Integer senderId;
+    private String senderName;
+    private String content;
+    private LocalDateTime sendTime;
+    public ChatMessageDTO() {}
+    public ChatMessageDTO(Integer messageId, Integer activityId, Integer senderId, String senderName,
+                          String content, LocalDateTime sendTime) {
+        this.messageId = messageId;
+        this.activityId = activityId;
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.content = content;
+        this.sendTime = sendTime;
+    }
+    public ChatMessageDTO(Integer messageId, Long seq, Integer activityId, Integer senderId, String senderName,
+                          String content, LocalDateTime sendTime) {
+        this(messageId, activityId, senderId, senderName, content, sendTime);
+        this.seq = seq;
+    }
+    //推送类型，和ChatRecallDTO区分
+    public String getType() {
+        return "message";
+    }
+    public Integer getMessageId() {
+        return messageId;
+    }
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
+    public Long getSeq() {
+        return seq;
+    }
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    public Integer getActivityId() {
+        return activityId;
+    }
+    public void setActivityId(Integer activityId) {
+        this.activityId = activityId;
+    }
+    public Integer getSenderId() {
+        return senderId;
+    }
+    public void setSenderId(Integer senderId) {
+        this.senderId = senderId;
+    }
+    public String getSenderName() {
+        return senderName;
+    }
+    public void setSenderName(String senderName) {
+        this.senderName = senderName;
+    }
+    public String getContent() {
+        return content;
+    }
+    public void setContent(String content) {
+        this.content = content;
+    }
+    public LocalDateTime getSendTime() {
+        return sendTime;
+    }
+    public void setSendTime(LocalDateTime sendTime) {
+        this.sendTime = sendTime;
+    }
+}
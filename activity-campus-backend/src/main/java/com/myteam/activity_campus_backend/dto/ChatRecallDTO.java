@@ -0,0 +1,54 @@
+package com.myteam.activity_campus_backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author sjy15
+ * @description: 聊天室撤回通知（客户端按messageId删除本地消息，不用重新拉取整个房间）
+ * @date 2026/10/17 21:50
+ */
+public class ChatRecallDTO {
+    private Integer messageId;
+    //撤回本身占用的房间序号
+    private Long seq;
+    private Integer activityId;
+    private LocalDateTime recallTime;
+    public ChatRecallDTO() {}
+    public ChatRecallDTO(Integer messageId, Integer activityId, LocalDateTime recallTime) {
+        this.messageId = messageId;
+        this.activityId = activityId;
+        this.recallTime = recallTime;
+    }
+    public ChatRecallDTO(Integer messageId, Long seq, Integer activityId, LocalDateTime recallTime) {
+        this(messageId, activityId, recallTime);
+        this.seq = seq;
+    }
+    //推送类型，和ChatMessageDTO区分
+    public String getType() {
+        return "recall";
+    }
+    public Integer getMessageId() {
+        return messageId;
+    }
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
+    public Long getSeq() {
+        return seq;
+    }
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    public Integer getActivityId() {
+        return activityId;
+    }
+    public void setActivityId(Integer activityId) {
+        this.activityId = activityId;
+    }
+    public LocalDateTime getRecallTime() {
+        return recallTime;
+    }
+    public void setRecallTime(LocalDateTime recallTime) {
+        this.recallTime = recallTime;
+    }
+}
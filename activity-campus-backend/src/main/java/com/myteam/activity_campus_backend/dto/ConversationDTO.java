@@ -0,0 +1,71 @@
+package com.myteam.activity_campus_backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author sjy15
+ * @description: 收件箱中的一个私信会话：对方用户、最后一条私信和当前用户的未读数
+ * @date 2026/10/18 18:20
+ */
+public class ConversationDTO {
+    private Integer peerId;
+    private String peerName;
+    private Integer lastMessageId;
+    private Integer lastSenderId;
+    private String lastMessage;
+    private LocalDateTime lastTime;
+    private Integer unreadCount;
+    public ConversationDTO() {}
+    public ConversationDTO(Integer peerId, String peerName, Integer lastMessageId, Integer lastSenderId,
+                           String lastMessage, LocalDateTime lastTime, Integer unreadCount) {
+        this.peerId = peerId;
+        this.peerName = peerName;
+        this.lastMessageId = lastMessageId;
+        this.lastSenderId = lastSenderId;
+        this.lastMessage = lastMessage;
+        this.lastTime = lastTime;
+        this.unreadCount = unreadCount;
+    }
+    public Integer getPeerId() {
+        return peerId;
+    }
+    public void setPeerId(Integer peerId) {
+        this.peerId = peerId;
+    }
+    public String getPeerName() {
+        return peerName;
+    }
+    public void setPeerName(String peerName) {
+        this.peerName = peerName;
+    }
+    public Integer getLastMessageId() {
+        return lastMessageId;
+    }
+    public void setLastMessageId(Integer lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+    public Integer getLastSenderId() {
+        return lastSenderId;
+    }
+    public void setLastSenderId(Integer lastSenderId) {
+        this.lastSenderId = lastSenderId;
+    }
+    public String getLastMessage() {
+        return lastMessage;
+    }
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+    public LocalDateTime getLastTime() {
+        return lastTime;
+    }
+    public void setLastTime(LocalDateTime lastTime) {
+        this.lastTime = lastTime;
+    }
+    public Integer getUnreadCount() {
+        return unreadCount;
+    }
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
@@ -0,0 +1,80 @@
+package com.myteam.activity_campus_backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author sjy15
+ * @description: 附近活动（带与查询点的距离）
+ * @date 2026/10/17 18:05
+ */
+public class NearbyActivityDTO {
+    private Integer activityId;
+    private String activityName;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Integer locationId;
+    private String regionName;
+    private String detailAddress;
+    //距离（米，保留2位小数）
+    private double distance;
+    public NearbyActivityDTO() {}
+    public NearbyActivityDTO(Integer activityId, String activityName, LocalDateTime startTime, LocalDateTime endTime,
+                             Integer locationId, String regionName, String detailAddress, double distance) {
+        this.activityId = activityId;
+        this.activityName = activityName;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.locationId = locationId;
+        this.regionName = regionName;
+        this.detailAddress = detailAddress;
+        this.distance = distance;
+    }
+    public Integer getActivityId() {
+        return activityId;
+    }
+    public void setActivityId(Integer activityId) {
+        this.activityId = activityId;
+    }
+    public String getActivityName() {
+        return activityName;
+    }
+    public void setActivityName(String activityName) {
+        this.activityName = activityName;
+    }
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+    public Integer getLocationId() {
+        return locationId;
+    }
+    public void setLocationId(Integer locationId) {
+        this.locationId = locationId;
+    }
+    public String getRegionName() {
+        return regionName;
+    }
+    public void setRegionName(String regionName) {
+        this.regionName = regionName;
+    }
+    public String getDetailAddress() {
+        return detailAddress;
+    }
+    public void setDetailAddress(String detailAddress) {
+        this.detailAddress = detailAddress;
+    }
+    public double getDistance() {
+        return distance;
+    }
+    public void setDistance(double distance) {
+        this.distance = distance;
+    }
+}
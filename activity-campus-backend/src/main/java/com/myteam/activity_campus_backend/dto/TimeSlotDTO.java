@@ -0,0 +1,30 @@
+package com.myteam.activity_campus_backend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author sjy15
+ * @description: 时间段（左闭右开）
+ * @date 2026/10/17 16:10
+ */
+public class TimeSlotDTO {
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    public TimeSlotDTO() {}
+    public TimeSlotDTO(LocalDateTime startTime, LocalDateTime endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+}
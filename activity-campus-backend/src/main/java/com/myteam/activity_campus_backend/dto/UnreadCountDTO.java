@@ -0,0 +1,37 @@
+package com.myteam.activity_campus_backend.dto;
+
+/**
+ * @author sjy15
+ * @description: 一个会话的未读数（活动聊天室或私信）
+ * @date 2026/10/18 16:10
+ */
+public class UnreadCountDTO {
+    //activity：活动聊天室，conversationId为活动id；direct：私信，conversationId为对方用户id
+    private String type;
+    private Integer conversationId;
+    private Integer unreadCount;
+    public UnreadCountDTO() {}
+    public UnreadCountDTO(String type, Integer conversationId, Integer unreadCount) {
+        this.type = type;
+        this.conversationId = conversationId;
+        this.unreadCount = unreadCount;
+    }
+    public String getType() {
+        return type;
+    }
+    public void setType(String type) {
+        this.type = type;
+    }
+    public Integer getConversationId() {
+        return conversationId;
+    }
+    public void setConversationId(Integer conversationId) {
+        this.conversationId = conversationId;
+    }
+    public Integer getUnreadCount() {
+        return unreadCount;
+    }
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
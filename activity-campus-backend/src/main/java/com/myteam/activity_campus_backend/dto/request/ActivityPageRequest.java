@@ -0,0 +1,35 @@
+package com.myteam.activity_campus_backend.dto.request;
+
+/**
+ * @author sjy15
+ * @description: 活动列表游标分页请求
+ * @date 2026/10/17 11:10
+ */
+public class ActivityPageRequest {
+    private String keyword;
+    private String cursor;
+    private Integer size;
+    public ActivityPageRequest(String keyword, String cursor, Integer size) {
+        this.keyword = keyword;
+        this.cursor = cursor;
+        this.size = size;
+    }
+    public String getKeyword() {
+        return keyword;
+    }
+    public void setKeyword(String keyword) {
+        this.keyword = keyword;
+    }
+    public String getCursor() {
+        return cursor;
+    }
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+    public Integer getSize() {
+        return size;
+    }
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,43 @@
+package com.myteam.activity_campus_backend.dto.request;
+
+/**
+ * @author sjy15
+ * @description: 聊天记录游标分页请求（before/after都不传时取最新一页）
+ * @date 2026/10/17 20:10
+ */
+public class MessagePageRequest {
+    private Integer receiveId;
+    private String before;
+    private String after;
+    private Integer size;
+    public MessagePageRequest(Integer receiveId, String before, String after, Integer size) {
+        this.receiveId = receiveId;
+        this.before = before;
+        this.after = after;
+        this.size = size;
+    }
+    public Integer getReceiveId() {
+        return receiveId;
+    }
+    public void setReceiveId(Integer receiveId) {
+        this.receiveId = receiveId;
+    }
+    public String getBefore() {
+        return before;
+    }
+    public void setBefore(String before) {
+        this.before = before;
+    }
+    public String getAfter() {
+        return after;
+    }
+    public void setAfter(String after) {
+        this.after = after;
+    }
+    public Integer getSize() {
+        return size;
+    }
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,68 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.dto.ChatRecallDTO;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 聊天室增量同步响应：since之后的新消息和撤回墓碑（都按序号升序）
+ * @date 2026/10/18 15:20
+ */
+public class ChatDeltaResponse {
+    private boolean result;
+    private List<ChatMessageDTO> messages;
+    //客户端本地已有、之后被撤回的消息id
+    private List<ChatRecallDTO> recalls;
+    //下次同步作为since传回
+    private Long nextSince;
+    //还有没取完的变化，用nextSince继续取
+    private boolean hasMore;
+    private String message;
+    public ChatDeltaResponse(boolean result, List<ChatMessageDTO> messages, List<ChatRecallDTO> recalls,
+                             Long nextSince, boolean hasMore, String message) {
+        this.result = result;
+        this.messages = messages;
+        this.recalls = recalls;
+        this.nextSince = nextSince;
+        this.hasMore = hasMore;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public List<ChatMessageDTO> getMessages() {
+        return messages;
+    }
+    public void setMessages(List<ChatMessageDTO> messages) {
+        this.messages = messages;
+    }
+    public List<ChatRecallDTO> getRecalls() {
+        return recalls;
+    }
+    public void setRecalls(List<ChatRecallDTO> recalls) {
+        this.recalls = recalls;
+    }
+    public Long getNextSince() {
+        return nextSince;
+    }
+    public void setNextSince(Long nextSince) {
+        this.nextSince = nextSince;
+    }
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
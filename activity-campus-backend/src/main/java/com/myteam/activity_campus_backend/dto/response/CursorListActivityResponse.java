@@ -0,0 +1,55 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import com.myteam.activity_campus_backend.dto.ActivityDTO;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 活动列表游标分页响应
+ * @date 2026/10/17 11:12
+ */
+public class CursorListActivityResponse {
+    private boolean result;
+    private List<ActivityDTO> activities;
+    private String nextCursor;
+    private boolean hasMore;
+    private String message;
+    public CursorListActivityResponse(boolean result, List<ActivityDTO> activities, String nextCursor, boolean hasMore, String message) {
+        this.result = result;
+        this.activities = activities;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public List<ActivityDTO> getActivities() {
+        return activities;
+    }
+    public void setActivities(List<ActivityDTO> activities) {
+        this.activities = activities;
+    }
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,65 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 聊天记录游标分页响应（消息按发送时间升序）
+ * @date 2026/10/17 20:12
+ */
+public class CursorMessageHistoryResponse {
+    private boolean result;
+    private List<MessageHistoryResponse> messages;
+    //取更早消息时作为before传回
+    private String beforeCursor;
+    //取更新消息时作为after传回
+    private String afterCursor;
+    //查询方向上是否还有消息
+    private boolean hasMore;
+    private String message;
+    public CursorMessageHistoryResponse(boolean result, List<MessageHistoryResponse> messages, String beforeCursor,
+                                        String afterCursor, boolean hasMore, String message) {
+        this.result = result;
+        this.messages = messages;
+        this.beforeCursor = beforeCursor;
+        this.afterCursor = afterCursor;
+        this.hasMore = hasMore;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public List<MessageHistoryResponse> getMessages() {
+        return messages;
+    }
+    public void setMessages(List<MessageHistoryResponse> messages) {
+        this.messages = messages;
+    }
+    public String getBeforeCursor() {
+        return beforeCursor;
+    }
+    public void setBeforeCursor(String beforeCursor) {
+        this.beforeCursor = beforeCursor;
+    }
+    public String getAfterCursor() {
+        return afterCursor;
+    }
+    public void setAfterCursor(String afterCursor) {
+        this.afterCursor = afterCursor;
+    }
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,40 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import com.myteam.activity_campus_backend.dto.TimeSlotDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 场地某一天的空闲时段
+ * @date 2026/10/17 16:14
+ */
+public class FreeSlotListResponse {
+    private Integer locationId;
+    private LocalDate date;
+    private List<TimeSlotDTO> freeSlots;
+    public FreeSlotListResponse(Integer locationId, LocalDate date, List<TimeSlotDTO> freeSlots) {
+        this.locationId = locationId;
+        this.date = date;
+        this.freeSlots = freeSlots;
+    }
+    public Integer getLocationId() {
+        return locationId;
+    }
+    public void setLocationId(Integer locationId) {
+        this.locationId = locationId;
+    }
+    public LocalDate getDate() {
+        return date;
+    }
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+    public List<TimeSlotDTO> getFreeSlots() {
+        return freeSlots;
+    }
+    public void setFreeSlots(List<TimeSlotDTO> freeSlots) {
+        this.freeSlots = freeSlots;
+    }
+}
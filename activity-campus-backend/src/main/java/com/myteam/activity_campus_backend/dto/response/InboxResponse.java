@@ -0,0 +1,56 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import com.myteam.activity_campus_backend.dto.ConversationDTO;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 私信收件箱游标分页响应（会话按最后一条私信时间倒序）
+ * @date 2026/10/18 18:20
+ */
+public class InboxResponse {
+    private boolean result;
+    private List<ConversationDTO> conversations;
+    //取下一页时作为cursor传回
+    private String nextCursor;
+    private boolean hasMore;
+    private String message;
+    public InboxResponse(boolean result, List<ConversationDTO> conversations, String nextCursor, boolean hasMore, String message) {
+        this.result = result;
+        this.conversations = conversations;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public List<ConversationDTO> getConversations() {
+        return conversations;
+    }
+    public void setConversations(List<ConversationDTO> conversations) {
+        this.conversations = conversations;
+    }
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
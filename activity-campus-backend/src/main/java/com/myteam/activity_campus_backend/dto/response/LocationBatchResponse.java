@@ -0,0 +1,63 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+/**
+ * @author sjy15
+ * @description: 批量上报位置的结果
+ * @date 2026/10/18 12:30
+ */
+public class LocationBatchResponse {
+    private boolean result;
+    //收到的位置条数
+    private int received;
+    //写入的位置条数（全部写入历史，每个用户有效期最晚的一条更新实时位置）
+    private int accepted;
+    //不合法、已过期、用户不存在或不是当前用户（网关用户除外）的条数
+    private int rejected;
+    //更新了实时位置的用户数
+    private int users;
+    private String message;
+    public LocationBatchResponse(boolean result, int received, int accepted, int rejected, int users, String message) {
+        this.result = result;
+        this.received = received;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.users = users;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public int getReceived() {
+        return received;
+    }
+    public void setReceived(int received) {
+        this.received = received;
+    }
+    public int getAccepted() {
+        return accepted;
+    }
+    public void setAccepted(int accepted) {
+        this.accepted = accepted;
+    }
+    public int getRejected() {
+        return rejected;
+    }
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+    public int getUsers() {
+        return users;
+    }
+    public void setUsers(int users) {
+        this.users = users;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -1,9 +1,10 @@
 package com.myteam.activity_campus_backend.dto.response;
 
-import com.myteam.activity_campus_backend.entity.Message;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.time.Instant;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 /**
  * @author sjy15
@@ -11,22 +12,45 @@ import java.util.List;
  * @date 2025/10/31 00:26
  */
 public class MessageHistoryResponse {
+    private Integer messageId;
     private Integer receiveId;
+    private Integer senderId;
     private String senderName;
     private String content;
     private Instant sentAt;
+    //数据库里的发送时间，只用于生成分页游标
+    @JsonIgnore
+    private LocalDateTime sendTime;
     public MessageHistoryResponse(Integer receiveId, String senderName, String content, Instant sentAt) {
         this.receiveId = receiveId;
         this.senderName = senderName;
         this.content = content;
         this.sentAt = sentAt;
     }
+    //JPQL构造表达式使用
+    public MessageHistoryResponse(Integer messageId, Integer receiveId, String senderName, String content, LocalDateTime sendTime) {
+        this(receiveId, senderName, content, sendTime.atZone(ZoneId.systemDefault()).toInstant());
+        this.messageId = messageId;
+        this.sendTime = sendTime;
+    }
+    public Integer getMessageId() {
+        return messageId;
+    }
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
     public Integer getReceiveId() {
         return receiveId;
     }
     public void setReceiveId(Integer receiveId) {
         this.receiveId = receiveId;
     }
+    public Integer getSenderId() {
+        return senderId;
+    }
+    public void setSenderId(Integer senderId) {
+        this.senderId = senderId;
+    }
     public String getSenderName() {
         return senderName;
     }
@@ -45,4 +69,10 @@ public class MessageHistoryResponse {
     public void setSentAt(Instant sentAt) {
         this.sentAt = sentAt;
     }
+    public LocalDateTime getSendTime() {
+        return sendTime;
+    }
+    public void setSendTime(LocalDateTime sendTime) {
+        this.sendTime = sendTime;
+    }
 }
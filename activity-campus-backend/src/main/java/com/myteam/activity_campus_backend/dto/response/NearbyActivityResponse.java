@@ -0,0 +1,39 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import com.myteam.activity_campus_backend.dto.NearbyActivityDTO;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 附近活动查询响应
+ * @date 2026/10/17 18:07
+ */
+public class NearbyActivityResponse {
+    private boolean result;
+    private List<NearbyActivityDTO> activities;
+    private String message;
+    public NearbyActivityResponse(boolean result, List<NearbyActivityDTO> activities, String message) {
+        this.result = result;
+        this.activities = activities;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public List<NearbyActivityDTO> getActivities() {
+        return activities;
+    }
+    public void setActivities(List<NearbyActivityDTO> activities) {
+        this.activities = activities;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
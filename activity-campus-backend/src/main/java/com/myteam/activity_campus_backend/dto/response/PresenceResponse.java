@@ -0,0 +1,53 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 活动聊天室在线状态：在线人数和在线用户id（升序）
+ * @date 2026/10/18 17:10
+ */
+public class PresenceResponse {
+    private boolean result;
+    private Integer activityId;
+    private int onlineCount;
+    private List<Integer> members;
+    private String message;
+    public PresenceResponse(boolean result, Integer activityId, int onlineCount, List<Integer> members, String message) {
+        this.result = result;
+        this.activityId = activityId;
+        this.onlineCount = onlineCount;
+        this.members = members;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public Integer getActivityId() {
+        return activityId;
+    }
+    public void setActivityId(Integer activityId) {
+        this.activityId = activityId;
+    }
+    public int getOnlineCount() {
+        return onlineCount;
+    }
+    public void setOnlineCount(int onlineCount) {
+        this.onlineCount = onlineCount;
+    }
+    public List<Integer> getMembers() {
+        return members;
+    }
+    public void setMembers(List<Integer> members) {
+        this.members = members;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,53 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author sjy15
+ * @description: 场地时间段是否空闲
+ * @date 2026/10/17 16:12
+ */
+public class SlotAvailableResponse {
+    private Integer locationId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private boolean available;
+    private String message;
+    public SlotAvailableResponse(Integer locationId, LocalDateTime startTime, LocalDateTime endTime, boolean available, String message) {
+        this.locationId = locationId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.available = available;
+        this.message = message;
+    }
+    public Integer getLocationId() {
+        return locationId;
+    }
+    public void setLocationId(Integer locationId) {
+        this.locationId = locationId;
+    }
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+    public boolean isAvailable() {
+        return available;
+    }
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,48 @@
+package com.myteam.activity_campus_backend.dto.response;
+
+import com.myteam.activity_campus_backend.dto.UnreadCountDTO;
+
+import java.util.List;
+
+/**
+ * @author sjy15
+ * @description: 当前用户全部会话的未读数（只列出有未读的会话）
+ * @date 2026/10/18 16:10
+ */
+public class UnreadSummaryResponse {
+    private boolean result;
+    //所有会话未读数之和
+    private long total;
+    private List<UnreadCountDTO> conversations;
+    private String message;
+    public UnreadSummaryResponse(boolean result, long total, List<UnreadCountDTO> conversations, String message) {
+        this.result = result;
+        this.total = total;
+        this.conversations = conversations;
+        this.message = message;
+    }
+    public boolean isResult() {
+        return result;
+    }
+    public void setResult(boolean result) {
+        this.result = result;
+    }
+    public long getTotal() {
+        return total;
+    }
+    public void setTotal(long total) {
+        this.total = total;
+    }
+    public List<UnreadCountDTO> getConversations() {
+        return conversations;
+    }
+    public void setConversations(List<UnreadCountDTO> conversations) {
+        this.conversations = conversations;
+    }
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
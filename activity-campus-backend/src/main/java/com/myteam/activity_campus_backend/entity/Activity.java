@@ -14,7 +14,8 @@ import java.util.Set;
 @Entity
 @Table(name = "app_activity", indexes = {  // 修正：移除schema，使用双引号
         @Index(name = "idx_Activity_Publisher_Id", columnList = "publisher_Id"),
-        @Index(name = "idx_Activity_Location_Id", columnList = "location_Id")
+        @Index(name = "idx_Activity_Location_Id", columnList = "location_Id"),
+        @Index(name = "idx_Activity_Start_Time_Id", columnList = "start_Time, activity_Id")
 })
 public class Activity {
     @Id
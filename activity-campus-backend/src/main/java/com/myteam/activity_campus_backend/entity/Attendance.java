@@ -0,0 +1,44 @@
+package com.myteam.activity_campus_backend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 活动到场记录：用户位置第一次进入活动范围时写入，离开时记录离开时间，由AttendanceRecorder批量写入
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "app_attendance", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_Attendance_Activity_User", columnNames = {"activity_Id", "user_Id"})
+})
+public class Attendance {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "attendance_Id", nullable = false)
+    private Integer id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "activity_Id", nullable = false)
+    private Activity activity;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_Id", nullable = false)
+    private User user;
+
+    @NotNull
+    @Column(name = "check_In_Time", nullable = false)
+    private LocalDateTime checkInTime;
+
+    @Column(name = "check_Out_Time")
+    private LocalDateTime checkOutTime;
+
+    public Attendance() {
+    }
+}
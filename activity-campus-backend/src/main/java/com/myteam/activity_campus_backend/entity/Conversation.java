@@ -0,0 +1,69 @@
+package com.myteam.activity_campus_backend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 私信会话摘要：每对用户一行（user_Low为较小的用户id），保存最后一条私信和双方各自的未读数
+ * 发送私信时与私信月表在同一事务中更新，收件箱按 (用户, 最后时间) 索引直接分页读取
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "app_conversation", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_Conversation_Pair", columnNames = {"user_Low", "user_High"})
+}, indexes = {
+        @Index(name = "idx_Conversation_Low_Time", columnList = "user_Low, last_Time, last_Message_Id"),
+        @Index(name = "idx_Conversation_High_Time", columnList = "user_High, last_Time, last_Message_Id")
+})
+public class Conversation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "conversation_Id", nullable = false)
+    private Integer id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_Low", nullable = false)
+    private User userLow;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_High", nullable = false)
+    private User userHigh;
+
+    @NotNull
+    @Column(name = "last_Message_Id", nullable = false)
+    private Integer lastMessageId;
+
+    @NotNull
+    @Column(name = "last_Sender_Id", nullable = false)
+    private Integer lastSenderId;
+
+    @Size(max = 255)
+    @NotNull
+    @Column(name = "last_Content", nullable = false)
+    private String lastContent;
+
+    @NotNull
+    @Column(name = "last_Time", nullable = false)
+    private LocalDateTime lastTime;
+
+    // user_Low一方的未读数
+    @NotNull
+    @Column(name = "unread_Low", nullable = false)
+    private Integer unreadLow;
+
+    // user_High一方的未读数
+    @NotNull
+    @Column(name = "unread_High", nullable = false)
+    private Integer unreadHigh;
+
+    public Conversation() {
+    }
+}
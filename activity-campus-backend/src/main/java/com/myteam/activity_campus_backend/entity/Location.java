@@ -1,5 +1,6 @@
 package com.myteam.activity_campus_backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -53,6 +54,7 @@ public class Location {
     @Column(name = "region_Radius", nullable = false, precision = 10, scale = 2)
     private BigDecimal regionRadius;
 
+    @JsonIgnore
     @OneToMany(mappedBy = "location")
     private Set<Activity> activities = new LinkedHashSet<>();
     public Location() {
@@ -10,11 +10,14 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "app_message", indexes = {  // 修正：移除schema，使用双引号
         @Index(name = "idx_Message_User_Id", columnList = "user_Id"),
-        @Index(name = "idx_Message_Receive_Id", columnList = "receive_Id")
+        // 聊天记录按 (活动id, 发送时间, 消息id) 分页，同时覆盖按活动id的查询
+        @Index(name = "idx_Message_Receive_Time_Id", columnList = "receive_Id, send_Time, message_Id"),
+        // 按房间序号增量同步
+        @Index(name = "idx_Message_Receive_Seq", columnList = "receive_Id, room_Seq")
 })
 public class Message {
+    // 消息id由MessageWriteBuffer分配，批量写库时不依赖自增主键回填
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "message_Id", nullable = false)
     private Integer id;
 
@@ -22,6 +25,10 @@ public class Message {
     @Column(name = "receive_Id", nullable = false)
     private Integer receiveId;
 
+    // 房间内单调递增的序号，由MessageWriteBuffer通过RoomSequencer分配
+    @Column(name = "room_Seq")
+    private Long roomSeq;
+
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "user_Id", nullable = false)
@@ -54,6 +61,14 @@ public class Message {
         this.receiveId = receiveId;
     }
 
+    public Long getRoomSeq() {
+        return roomSeq;
+    }
+
+    public void setRoomSeq(Long roomSeq) {
+        this.roomSeq = roomSeq;
+    }
+
     public User getUser() {
         return user;
     }
@@ -0,0 +1,48 @@
+package com.myteam.activity_campus_backend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 聊天室撤回墓碑：消息撤回时删除原消息并写入一条，占用一个房间序号，增量同步时告诉客户端删除本地消息，由ChatDeltaStore写入
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "app_message_recall", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_Message_Recall_Receive_Seq", columnNames = {"receive_Id", "room_Seq"})
+})
+public class MessageRecall {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "recall_Id", nullable = false)
+    private Integer id;
+
+    @NotNull
+    @Column(name = "receive_Id", nullable = false)
+    private Integer receiveId;
+
+    @NotNull
+    @Column(name = "room_Seq", nullable = false)
+    private Long roomSeq;
+
+    @NotNull
+    @Column(name = "message_Id", nullable = false)
+    private Integer messageId;
+
+    // 被撤回消息自己的序号，客户端同步位置比它小时从没拿到过这条消息，不用下发墓碑
+    @NotNull
+    @Column(name = "message_Seq", nullable = false)
+    private Long messageSeq;
+
+    @NotNull
+    @Column(name = "recall_Time", nullable = false)
+    private LocalDateTime recallTime;
+
+    public MessageRecall() {
+    }
+}
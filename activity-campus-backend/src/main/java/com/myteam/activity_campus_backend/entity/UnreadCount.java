@@ -0,0 +1,49 @@
+package com.myteam.activity_campus_backend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 会话未读数：每个用户每个会话一行，由UnreadCounter在内存中累加后批量写入
+ * conv_Type为1表示活动聊天室（conv_Id为活动id）；私信未读数在app_conversation，早期写入的2（私信）不再使用
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "app_unread", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_Unread_User_Conv", columnNames = {"user_Id", "conv_Type", "conv_Id"})
+})
+public class UnreadCount {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "unread_Id", nullable = false)
+    private Integer id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_Id", nullable = false)
+    private User user;
+
+    @NotNull
+    @Column(name = "conv_Type", nullable = false)
+    private Integer convType;
+
+    @NotNull
+    @Column(name = "conv_Id", nullable = false)
+    private Integer convId;
+
+    @NotNull
+    @Column(name = "unread_Count", nullable = false)
+    private Integer unreadCount;
+
+    // 最近一次标记已读的时间
+    @Column(name = "read_Time")
+    private LocalDateTime readTime;
+
+    public UnreadCount() {
+    }
+}
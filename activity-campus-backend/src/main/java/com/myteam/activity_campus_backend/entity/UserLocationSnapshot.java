@@ -0,0 +1,77 @@
+package com.myteam.activity_campus_backend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+
+import java.math.BigDecimal;
+
+/**
+ * 每个用户一行的最新位置快照，由LiveLocationStore定时覆盖写入，重启时用来恢复内存中的实时位置
+ */
+@Entity
+@Table(name = "app_userlocation_latest")
+public class UserLocationSnapshot {
+    @Id
+    @Column(name = "user_Id", nullable = false)
+    private Integer userId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_Id", nullable = false)
+    private User user;
+
+    @NotNull
+    @Column(name = "longitude", nullable = false, precision = 10, scale = 6)
+    private BigDecimal longitude;
+
+    @NotNull
+    @Column(name = "latitude", nullable = false, precision = 10, scale = 6)
+    private BigDecimal latitude;
+
+    @NotNull
+    @Column(name = "valid_time", nullable = false)
+    private Long validTime;
+
+    public UserLocationSnapshot() {
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public BigDecimal getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(BigDecimal longitude) {
+        this.longitude = longitude;
+    }
+
+    public BigDecimal getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(BigDecimal latitude) {
+        this.latitude = latitude;
+    }
+
+    public Long getValidTime() {
+        return validTime;
+    }
+
+    public void setValidTime(Long validTime) {
+        this.validTime = validTime;
+    }
+}
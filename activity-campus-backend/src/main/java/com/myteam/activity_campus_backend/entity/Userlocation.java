@@ -10,7 +10,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "app_userlocation",
         indexes = {
-                @Index(name = "idx_userlocation_user", columnList = "user_Id"),
+                // 按用户取最新的有效位置
+                @Index(name = "idx_userlocation_user_valid", columnList = "user_Id, valid_time"),
                 @Index(name = "idx_userlocation_coords", columnList = "latitude,longitude")
         })
 public class Userlocation {
@@ -1,12 +1,17 @@
 package com.myteam.activity_campus_backend.repository;
 
+import com.myteam.activity_campus_backend.config.CacheConfig;
 import com.myteam.activity_campus_backend.entity.Activity;
 import com.myteam.activity_campus_backend.entity.Location;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,34 +22,54 @@ import java.util.Optional;
  */
 @Repository
 public interface ActivityRepository extends JpaRepository<Activity, Integer> {
-    // 检查同一地点同一时间是否有冲突活动
-    @Query("SELECT COUNT(a) > 0 " +
-            "FROM Activity a " +
-            "WHERE " +
-            "LOWER(TRIM(a.detailedAddress)) = LOWER(TRIM(:detailedAddress)) AND " +
-            "((a.startTime BETWEEN :startTime AND :endTime) OR " +
-            "(a.endTime BETWEEN :startTime AND :endTime) OR " +
-            "(a.startTime <= :startTime AND a.endTime>= :endTime))")
-    boolean existsConflictActivity(@Param("detailedAddress") String detailedAddress,
-                                   @Param("startTime") LocalDateTime startTime,
-                                   @Param("endTime") LocalDateTime endTime);
+    // 启动时加载场地占用区间：地点id、活动id、开始时间、结束时间，按地点和开始时间排序
+    @Query("SELECT a.location.id, a.id, a.startTime, a.endTime FROM Activity a " +
+            "ORDER BY a.location.id ASC, a.startTime ASC")
+    List<Object[]> findAllSchedules();
+    // 启动时加载附近活动索引：地点id、活动id、活动名称、开始时间、结束时间，只取未结束的活动
+    @Query("SELECT a.location.id, a.id, a.activityName, a.startTime, a.endTime FROM Activity a " +
+            "WHERE a.endTime > :now")
+    List<Object[]> findUpcomingForNearby(@Param("now") LocalDateTime now);
+    // 地理围栏：活动id、开始时间、结束时间、地点中心纬度、经度、半径，取正在进行和to之前开始的活动
+    @Query("SELECT a.id, a.startTime, a.endTime, l.centerLatitude, l.centerLongitude, l.regionRadius FROM Activity a " +
+            "JOIN a.location l WHERE a.startTime < :to AND a.endTime > :now")
+    List<Object[]> findGeofences(@Param("now") LocalDateTime now, @Param("to") LocalDateTime to);
+    // 活动发布者id，不存在时返回null
+    @Query("SELECT a.publisher.id FROM Activity a WHERE a.id = :activityId")
+    Integer findPublisherId(@Param("activityId") Integer activityId);
     @Query("SELECT COUNT(a) > 0 "+
            "FROM Activity a "+
            "WHERE LOWER(TRIM(a.activityName)) = LOWER(TRIM(:activityName))")
     boolean existsByActivityName(@Param("activityName") String activityName);
-    // 包含整数字段的模糊搜索（以 maxPeople 为例）
-    @Query("SELECT a FROM Activity a WHERE " +
-            // 字符串字段正常模糊匹配
-            "a.activityName LIKE %:keyword% OR " +
-            "a.activityDescription LIKE %:keyword% OR " +
-            "a.publisher.userName LIKE %:keyword% OR " +
-            "a.detailedAddress LIKE %:keyword% OR " +
-            // 整数字段转换为字符串后模糊匹配（关键）
-            "CAST(a.id AS string) LIKE %:keyword% OR " +
-            "CAST(a.publisher.id AS string) LIKE %:keyword%")
-    List<Activity> findByActivitiesLike(@Param("keyword") String keyword);
+    // 启动时重建搜索索引，一并取出发布者避免逐条懒加载
+    @Query("SELECT a FROM Activity a JOIN FETCH a.publisher")
+    List<Activity> findAllWithPublisher();
+
+    // 游标分页第一页：按 (开始时间, 活动id) 升序，走 idx_Activity_Start_Time_Id
+    @Query("SELECT a FROM Activity a JOIN FETCH a.publisher JOIN FETCH a.location " +
+            "ORDER BY a.startTime ASC, a.id ASC")
+    List<Activity> findFirstPage(Pageable pageable);
+    // 游标分页后续页：只取游标之后的记录，不使用OFFSET
+    @Query("SELECT a FROM Activity a JOIN FETCH a.publisher JOIN FETCH a.location " +
+            "WHERE a.startTime > :startTime OR (a.startTime = :startTime AND a.id > :activityId) " +
+            "ORDER BY a.startTime ASC, a.id ASC")
+    List<Activity> findPageAfter(@Param("startTime") LocalDateTime startTime,
+                                 @Param("activityId") Integer activityId,
+                                 Pageable pageable);
 
     Optional<Activity> findById(Integer activityId);
+    // 原子占用一个名额：人数未满时加一，返回1；已满返回0
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Activity a SET a.currentPeople = a.currentPeople + 1 " +
+            "WHERE a.id = :activityId AND a.currentPeople < a.maxPeople")
+    int reserveSeat(@Param("activityId") Integer activityId);
+    // 列表和详情的读路径：发布者和地点一次取出，ActivityDTO.convert 不再逐条懒加载
+    @Query("SELECT a FROM Activity a JOIN FETCH a.publisher JOIN FETCH a.location WHERE a.id IN :ids")
+    List<Activity> findAllWithDetailsByIdIn(@Param("ids") Collection<Integer> ids);
+    // 详情、报名、审核共用，结果缓存；更新活动的地方负责清除
+    @Cacheable(cacheNames = CacheConfig.ACTIVITY_DETAILS, key = "#p0", unless = "#result == null")
+    @Query("SELECT a FROM Activity a JOIN FETCH a.publisher JOIN FETCH a.location WHERE a.id = :activityId")
+    Optional<Activity> findDetailById(@Param("activityId") Integer activityId);
     @Query("SELECT a.location "+
             "FROM Activity a "+
             "WHERE a.id=:activityId")
@@ -15,6 +15,10 @@ import java.util.List;
  */
 @Repository
 public interface BelongRepository extends JpaRepository<Belong, Integer> {
-    @Query("SELECT b "+"FROM Belong b "+"WHERE b.user.id=:id OR b.team.id=:id")
-    List<Belong> findByUser_IdOrTeam_Id(@Param("id") Integer Id);
+    // 用户所属团队：成员、团队及创建者一次取出
+    @Query("SELECT b "+"FROM Belong b "+"JOIN FETCH b.user "+"JOIN FETCH b.team t "+"JOIN FETCH t.creator "+"WHERE b.user.id=:userId")
+    List<Belong> findByUserIdWithDetails(@Param("userId") Integer userId);
+    // 团队成员：同上，按团队id过滤
+    @Query("SELECT b "+"FROM Belong b "+"JOIN FETCH b.user "+"JOIN FETCH b.team t "+"JOIN FETCH t.creator "+"WHERE t.id=:teamId")
+    List<Belong> findByTeamIdWithDetails(@Param("teamId") Integer teamId);
 }
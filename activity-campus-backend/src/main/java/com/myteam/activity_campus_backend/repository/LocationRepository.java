@@ -1,11 +1,15 @@
 package com.myteam.activity_campus_backend.repository;
 
+import com.myteam.activity_campus_backend.config.CacheConfig;
 import com.myteam.activity_campus_backend.entity.Location;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
 *   @author sjy15
 *   @description: 地图数据库
@@ -13,5 +17,9 @@ import org.springframework.stereotype.Repository;
 */
 @Repository
 public interface LocationRepository extends JpaRepository<Location, Integer> {
+    //按详细地址查找，创建活动时每次都会调用，结果缓存
+    @Cacheable(cacheNames = CacheConfig.LOCATIONS, key = "#p0", unless = "#result == null")
     Location findByDetailAddress(String detailAddress);
+    //启动时加载附近活动索引，只取启用的地点
+    List<Location> findByIsEnabledTrue();
 }
@@ -2,6 +2,7 @@ package com.myteam.activity_campus_backend.repository;
 
 import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
 import com.myteam.activity_campus_backend.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,8 +27,43 @@ public interface MessageRepository extends JpaRepository<Message, Integer> {
                           @Param("senderId") Integer senderId,
                           @Param("receiverId") Integer receiverId,
                           @Param("sendTime") LocalDateTime sendTime);
-    @Query("SELECT m.receiveId,m.user.userName,m.content,m.sendTime " +
+    // 当前最大消息id，写缓冲启动时从这里继续分配
+    @Query("SELECT MAX(m.id) FROM Message m")
+    Integer findMaxId();
+    @Query("SELECT new com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse(" +
+            "m.id,m.receiveId,m.user.userName,m.content,m.sendTime) " +
             "FROM Message m " +
-            "WHERE m.receiveId=:id")
+            "WHERE m.receiveId=:id " +
+            "ORDER BY m.sendTime ASC, m.id ASC")
     List<MessageHistoryResponse> findByReceiveId(@Param("id") Integer id);
+
+    // 最新一页：按 (发送时间, 消息id) 倒序，走 idx_Message_Receive_Time_Id
+    @Query("SELECT new com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse(" +
+            "m.id,m.receiveId,m.user.userName,m.content,m.sendTime) " +
+            "FROM Message m " +
+            "WHERE m.receiveId=:id " +
+            "ORDER BY m.sendTime DESC, m.id DESC")
+    List<MessageHistoryResponse> findLatestPage(@Param("id") Integer id, Pageable pageable);
+    // 游标之前（更早）的消息，倒序
+    @Query("SELECT new com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse(" +
+            "m.id,m.receiveId,m.user.userName,m.content,m.sendTime) " +
+            "FROM Message m " +
+            "WHERE m.receiveId=:id AND " +
+            "(m.sendTime < :sendTime OR (m.sendTime = :sendTime AND m.id < :messageId)) " +
+            "ORDER BY m.sendTime DESC, m.id DESC")
+    List<MessageHistoryResponse> findPageBefore(@Param("id") Integer id,
+                                                @Param("sendTime") LocalDateTime sendTime,
+                                                @Param("messageId") Integer messageId,
+                                                Pageable pageable);
+    // 游标之后（更新）的消息，升序
+    @Query("SELECT new com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse(" +
+            "m.id,m.receiveId,m.user.userName,m.content,m.sendTime) " +
+            "FROM Message m " +
+            "WHERE m.receiveId=:id AND " +
+            "(m.sendTime > :sendTime OR (m.sendTime = :sendTime AND m.id > :messageId)) " +
+            "ORDER BY m.sendTime ASC, m.id ASC")
+    List<MessageHistoryResponse> findPageAfter(@Param("id") Integer id,
+                                               @Param("sendTime") LocalDateTime sendTime,
+                                               @Param("messageId") Integer messageId,
+                                               Pageable pageable);
 }
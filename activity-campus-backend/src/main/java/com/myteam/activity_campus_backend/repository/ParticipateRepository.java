@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -15,8 +16,27 @@ import java.util.List;
  */
 @Repository
 public interface ParticipateRepository extends JpaRepository<Participate, Integer> {
+    // 用户参加的活动：参与者、活动及其发布者和地点一次取出
     @Query("SELECT p "+
             "FROM Participate p "+
-            "WHERE p.participant.id=:id OR p.activity.id=:id")
-    List<Participate> findByParticipant_IdOrActivity_Id(@Param("id") Integer id);
+            "JOIN FETCH p.participant "+
+            "JOIN FETCH p.activity a "+
+            "JOIN FETCH a.publisher "+
+            "JOIN FETCH a.location "+
+            "WHERE p.participant.id=:userId")
+    List<Participate> findByParticipantIdWithDetails(@Param("userId") Integer userId);
+    // 活动的参与者：同上，按活动id过滤
+    @Query("SELECT p "+
+            "FROM Participate p "+
+            "JOIN FETCH p.participant "+
+            "JOIN FETCH p.activity a "+
+            "JOIN FETCH a.publisher "+
+            "JOIN FETCH a.location "+
+            "WHERE a.id=:activityId")
+    List<Participate> findByActivityIdWithDetails(@Param("activityId") Integer activityId);
+    // 活动的报名用户：活动id、用户id
+    @Query("SELECT p.activity.id, p.participant.id FROM Participate p WHERE p.activity.id IN :activityIds")
+    List<Object[]> findParticipantIds(@Param("activityIds") Collection<Integer> activityIds);
+    // 是否已报名该活动
+    boolean existsByParticipant_IdAndActivity_Id(Integer participantId, Integer activityId);
 }
@@ -1,11 +1,15 @@
 package com.myteam.activity_campus_backend.repository;
 
+import com.myteam.activity_campus_backend.config.CacheConfig;
 import com.myteam.activity_campus_backend.entity.User;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -17,4 +21,10 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Integer> {
     //查找姓名
     Optional<User> findByUserName(String userName);
+    //按id查找，结果缓存；修改用户的地方负责清除
+    @Cacheable(cacheNames = CacheConfig.USERS, key = "#p0", unless = "#result == null")
+    Optional<User> findById(Integer id);
+    //批量确认用户存在，返回存在的id
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
 }
@@ -1,15 +1,13 @@
 package com.myteam.activity_campus_backend.repository;
 
 import com.myteam.activity_campus_backend.entity.Userlocation;
-import org.springdoc.core.service.GenericParameterService;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.List;
 
 /**
  * @author sjy15
@@ -18,6 +16,7 @@ import java.util.Optional;
  */
 @Repository
 public interface UserlocationRepository extends JpaRepository<Userlocation, Integer> {
-    @Query(value = "SELECT * FROM userlocation l WHERE l.user_Id = :userId AND l.valid_Time > UNIX_TIMESTAMP() * 1000", nativeQuery = true)
-    Optional<Userlocation> findByUserId(@Param("userId") Integer userId); // 方法名优化（移除冗余下划线）
+    //用户最近一条仍然有效的位置记录（app_userlocation是历史表，一个用户有多条），传PageRequest.of(0, 1)
+    @Query("SELECT l FROM Userlocation l WHERE l.user.id = :userId AND l.validTime > :now ORDER BY l.validTime DESC, l.id DESC")
+    List<Userlocation> findValidByUserId(@Param("userId") Integer userId, @Param("now") Long now, Pageable pageable);
 }
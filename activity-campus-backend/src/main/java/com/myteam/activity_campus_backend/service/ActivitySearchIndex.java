@@ -0,0 +1,209 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author sjy15
+ * @description: 活动搜索倒排索引（按字符二元组切分，替代 LIKE %keyword% 全表扫描）
+ * @date 2026/10/17 10:12
+ */
+@Component
+public class ActivitySearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(ActivitySearchIndex.class);
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    //词项 -> 活动id集合（单字和二元组都建索引，单字只用于一个字的关键词）
+    private volatile Map<String, Set<Integer>> postings = new ConcurrentHashMap<>();
+    //活动id -> 被索引字段（小写）和开始时间，用于候选结果的二次校验和分页排序
+    private volatile Map<Integer, IndexedActivity> documents = new ConcurrentHashMap<>();
+
+    //启动时从数据库重建索引
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Map<String, Set<Integer>> newPostings = new ConcurrentHashMap<>();
+        Map<Integer, IndexedActivity> newDocuments = new ConcurrentHashMap<>();
+        List<Activity> activities = activityRepository.findAllWithPublisher();
+        for (Activity activity : activities) {
+            addTo(newPostings, newDocuments, activity.getId(), activity);
+        }
+        postings = newPostings;
+        documents = newDocuments;
+        log.info("活动搜索索引重建完成，共{}条活动，{}个词项", newDocuments.size(), newPostings.size());
+    }
+
+    //新建活动后增量写入索引
+    public synchronized void add(Integer activityId, Activity activity) {
+        if (activityId == null || activity == null) {
+            return;
+        }
+        addTo(postings, documents, activityId, activity);
+    }
+
+    /**
+     * 按关键词搜索活动
+     * 语义与原来的 LIKE %keyword% 一致：任一字段包含关键词即命中（不区分大小写）
+     * @param keyword 关键词，为空时返回全部活动
+     * @return 命中的活动id，按id升序
+     */
+    public List<Integer> search(String keyword) {
+        Map<Integer, IndexedActivity> docs = documents;
+        String key = normalize(keyword);
+        if (key.isEmpty()) {
+            List<Integer> all = new ArrayList<>(docs.keySet());
+            Collections.sort(all);
+            return all;
+        }
+        List<Integer> result = new ArrayList<>();
+        for (Integer id : candidates(key)) {
+            IndexedActivity doc = docs.get(id);
+            if (doc != null && matches(doc.fields, key)) {
+                result.add(id);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * 按关键词分页搜索，顺序与数据库游标分页一致：(开始时间, 活动id) 升序
+     * @param keyword 关键词
+     * @param afterTime 上一页最后一条的开始时间，为null表示第一页
+     * @param afterId 上一页最后一条的活动id
+     * @param limit 最多返回条数
+     * @return 命中的活动id，按(开始时间, id)升序
+     */
+    public List<Integer> searchPage(String keyword, LocalDateTime afterTime, Integer afterId, int limit) {
+        Map<Integer, IndexedActivity> docs = documents;
+        List<IndexedActivity> hits = new ArrayList<>();
+        for (Integer id : search(keyword)) {
+            IndexedActivity doc = docs.get(id);
+            if (doc != null && (afterTime == null || doc.isAfter(afterTime, afterId))) {
+                hits.add(doc);
+            }
+        }
+        hits.sort(IndexedActivity.ORDER);
+        List<Integer> page = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            page.add(hits.get(i).id);
+        }
+        return page;
+    }
+
+    //当前索引中的活动数量
+    public int size() {
+        return documents.size();
+    }
+
+    //取各词项倒排表的交集，从最短的倒排表开始
+    private Collection<Integer> candidates(String key) {
+        Map<String, Set<Integer>> index = postings;
+        List<String> terms = key.length() == 1 ? List.of(key) : bigrams(key);
+        List<Set<Integer>> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Set<Integer> ids = index.get(term);
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        List<Integer> result = new ArrayList<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            Set<Integer> other = lists.get(i);
+            result.removeIf(id -> !other.contains(id));
+        }
+        return result;
+    }
+
+    private static boolean matches(String[] fields, String key) {
+        for (String field : fields) {
+            if (field.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addTo(Map<String, Set<Integer>> index, Map<Integer, IndexedActivity> docs,
+                              Integer activityId, Activity activity) {
+        String[] fields = fieldsOf(activityId, activity);
+        docs.put(activityId, new IndexedActivity(activityId, activity.getStartTime(), fields));
+        for (String field : fields) {
+            for (int i = 0; i < field.length(); i++) {
+                index.computeIfAbsent(field.substring(i, i + 1), k -> ConcurrentHashMap.newKeySet()).add(activityId);
+                if (i + 1 < field.length()) {
+                    index.computeIfAbsent(field.substring(i, i + 2), k -> ConcurrentHashMap.newKeySet()).add(activityId);
+                }
+            }
+        }
+    }
+
+    //被索引的字段：活动名称、描述、发布者姓名、详细地址，以及原查询支持的活动id和发布者id
+    private static String[] fieldsOf(Integer activityId, Activity activity) {
+        List<String> fields = new ArrayList<>(6);
+        addField(fields, activity.getActivityName());
+        addField(fields, activity.getActivityDescription());
+        addField(fields, activity.getDetailedAddress());
+        if (activity.getPublisher() != null) {
+            addField(fields, activity.getPublisher().getUserName());
+            addField(fields, String.valueOf(activity.getPublisher().getId()));
+        }
+        addField(fields, String.valueOf(activityId));
+        return fields.toArray(new String[0]);
+    }
+
+    private static void addField(List<String> fields, String value) {
+        String normalized = normalize(value);
+        if (!normalized.isEmpty()) {
+            fields.add(normalized);
+        }
+    }
+
+    //中文无需分词，直接按相邻两个字符切分；英文和数字同样处理，保证子串都能命中
+    private static List<String> bigrams(String text) {
+        List<String> terms = new ArrayList<>(Math.max(text.length() - 1, 0));
+        for (int i = 0; i + 1 < text.length(); i++) {
+            terms.add(text.substring(i, i + 2));
+        }
+        return terms;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static class IndexedActivity {
+        private static final Comparator<IndexedActivity> ORDER = Comparator
+                .comparing((IndexedActivity doc) -> doc.startTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(doc -> doc.id);
+        private final Integer id;
+        private final LocalDateTime startTime;
+        private final String[] fields;
+        IndexedActivity(Integer id, LocalDateTime startTime, String[] fields) {
+            this.id = id;
+            this.startTime = startTime;
+            this.fields = fields;
+        }
+        //是否排在游标 (time, id) 之后
+        boolean isAfter(LocalDateTime time, Integer afterId) {
+            if (startTime == null) {
+                return false;
+            }
+            int cmp = startTime.compareTo(time);
+            return cmp > 0 || (cmp == 0 && id > afterId);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.myteam.activity_campus_backend.service;
 
+import com.myteam.activity_campus_backend.config.CacheConfig;
 import com.myteam.activity_campus_backend.dto.ActivityDTO;
+import com.myteam.activity_campus_backend.dto.NearbyActivityDTO;
 import com.myteam.activity_campus_backend.dto.UserDTO;
 import com.myteam.activity_campus_backend.dto.request.*;
 import com.myteam.activity_campus_backend.dto.response.*;
@@ -8,14 +10,23 @@ import com.myteam.activity_campus_backend.entity.*;
 import com.myteam.activity_campus_backend.repository.*;
 import io.jsonwebtoken.lang.Assert;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import com.myteam.activity_campus_backend.util.CursorUtil;
 import com.myteam.activity_campus_backend.util.GeoUtil;
 /**
  * @author sjy15
@@ -24,6 +35,12 @@ import com.myteam.activity_campus_backend.util.GeoUtil;
  */
 @Service
 public class ActivityServer {
+    //游标分页默认每页条数和上限
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 50;
+    //附近活动默认半径、最大半径（米），半径越大要扫描的网格越多
+    private static final double DEFAULT_NEARBY_RADIUS = 1000;
+    private static final double MAX_NEARBY_RADIUS = 20000;
     @Autowired
     private ActivityRepository activityRepository;
     @Autowired
@@ -35,8 +52,17 @@ public class ActivityServer {
     @Autowired
     private UserlocationRepository userlocationRepository;
     @Autowired
-    private GeoUtil geoUtil;
+    private ActivitySearchIndex activitySearchIndex;
+    @Autowired
+    private VenueScheduleIndex venueScheduleIndex;
+    @Autowired
+    private NearbyActivityIndex nearbyActivityIndex;
+    @Autowired
+    private LiveLocationStore liveLocationStore;
+    @Autowired
+    private UnreadCounter unreadCounter;
     //创建活动
+    @Transactional
     public simpleActivityResponse getsimpleActivityResponse(CreateActivityRequest request) {
         //检查时间顺序是否正确
         Assert.isTrue(request.getEndTime().isAfter(request.getStartTime()),"活动结束时间不能早于开始时间");
@@ -49,8 +75,9 @@ public class ActivityServer {
             if(local==null){
                 return new simpleActivityResponse(dto,false,"地址不存在");
             }
-            //确保不会撞时间和地点
-            if(!activityRepository.existsConflictActivity(request.getLocationDescription(),request.getStartTime(),request.getEndTime())){
+            //确保不会撞时间和地点：在该地点的时间区间索引上原子占位，事务回滚时自动释放
+            VenueScheduleIndex.Booking booking=venueScheduleIndex.tryReserve(local.getId(),request.getStartTime(),request.getEndTime());
+            if(booking!=null){
                 UserDTO userdto=new UserDTO();
                 Optional<User> user1=userRepository.findByUserName(request.getPublisherName());//获得主理人id
                 if(user1.isPresent()){
@@ -69,6 +96,9 @@ public class ActivityServer {
                     activity.setMaxPeople(request.getMaxPeople());
                     activityRepository.save(activity);
                     Integer id=activityRepository.findActivityIdByActivityName(activity.getActivityName());
+                    booking.setActivityId(id);
+                    activitySearchIndex.add(id,activity);
+                    nearbyActivityIndex.addActivity(activity);
                     dto.setId(id);
                     dto.setActivityName(activity.getActivityName());
                     dto.setPublisher(userdto);
@@ -83,6 +113,7 @@ public class ActivityServer {
                     dto.setCurrentPeople(activity.getCurrentPeople());
                     return new simpleActivityResponse(dto,true,"活动创建成功");
                 }else{
+                    venueScheduleIndex.release(booking);
                     return new simpleActivityResponse(dto,false,"用户不存在");
                 }
             }else{
@@ -94,16 +125,69 @@ public class ActivityServer {
     }
     //获得活动列表
     public CheckListActivityResponse ActivityListResponse(ActivityListRequest request) {
-        List<Activity> activities=activityRepository.findByActivitiesLike(request.getKeyword());
-        if(activities.isEmpty()){
+        //先查内存倒排索引，再按主键取活动
+        List<Integer> ids=activitySearchIndex.search(request.getKeyword());
+        if(ids.isEmpty()){
             return new CheckListActivityResponse(false,null);
         }
+        List<Activity> activities=new ArrayList<>(activityRepository.findAllWithDetailsByIdIn(ids));
+        activities.sort(Comparator.comparing(Activity::getId));
         List<ActivityDTO> dtos=activities.stream().map(ActivityDTO::convert).collect(Collectors.toList());
         return new CheckListActivityResponse(true,dtos);
     }
+    //游标分页获得活动列表，按(开始时间, 活动id)升序，不用OFFSET
+    public CursorListActivityResponse ActivityPageResponse(ActivityPageRequest request) {
+        int size=request.getSize()==null||request.getSize()<=0?DEFAULT_PAGE_SIZE:Math.min(request.getSize(),MAX_PAGE_SIZE);
+        CursorUtil.Cursor cursor=request.getCursor()==null||request.getCursor().isBlank()?null:CursorUtil.decode(request.getCursor());
+        //多取一条用于判断是否还有下一页
+        List<Activity> activities;
+        if(request.getKeyword()==null||request.getKeyword().isBlank()){
+            Pageable pageable=PageRequest.of(0,size+1);
+            activities=cursor==null?activityRepository.findFirstPage(pageable)
+                    :activityRepository.findPageAfter(cursor.getTime(),cursor.getId(),pageable);
+        }else{
+            List<Integer> ids=activitySearchIndex.searchPage(request.getKeyword(),
+                    cursor==null?null:cursor.getTime(),cursor==null?null:cursor.getId(),size+1);
+            Map<Integer,Activity> byId=new HashMap<>();
+            for(Activity activity:activityRepository.findAllWithDetailsByIdIn(ids)){
+                byId.put(activity.getId(),activity);
+            }
+            activities=new ArrayList<>(ids.size());
+            for(Integer id:ids){
+                Activity activity=byId.get(id);
+                if(activity!=null){
+                    activities.add(activity);
+                }
+            }
+        }
+        boolean hasMore=activities.size()>size;
+        if(hasMore){
+            activities=activities.subList(0,size);
+        }
+        String nextCursor=null;
+        if(hasMore){
+            Activity last=activities.get(activities.size()-1);
+            nextCursor=CursorUtil.encode(last.getStartTime(),last.getId());
+        }
+        List<ActivityDTO> dtos=activities.stream().map(ActivityDTO::convert).collect(Collectors.toList());
+        return new CursorListActivityResponse(true,dtos,nextCursor,hasMore,dtos.isEmpty()?"没有更多活动":"查询成功");
+    }
+    //查询附近的活动，按距离升序
+    public NearbyActivityResponse NearbyActivityResponse(Double lat, Double lng, Double radius, Integer size) {
+        if(lat==null||lng==null||lat<-90||lat>90||lng<-180||lng>180){
+            return new NearbyActivityResponse(false,null,"经纬度格式错误");
+        }
+        double r=radius==null?DEFAULT_NEARBY_RADIUS:radius;
+        if(r<0||r>MAX_NEARBY_RADIUS){
+            return new NearbyActivityResponse(false,null,"半径需在0到"+(int)MAX_NEARBY_RADIUS+"米之间");
+        }
+        int limit=size==null||size<=0?DEFAULT_PAGE_SIZE:Math.min(size,MAX_PAGE_SIZE);
+        List<NearbyActivityDTO> activities=nearbyActivityIndex.search(lat,lng,r,limit);
+        return new NearbyActivityResponse(true,activities,activities.isEmpty()?"附近没有活动":"查询成功");
+    }
     //获得单个活动详情
     public simpleActivityResponse DetailActivityResponse(CheckActivityRequest request){
-        Optional<Activity> act=activityRepository.findById(request.getActivityId());
+        Optional<Activity> act=activityRepository.findDetailById(request.getActivityId());
         if(act.isEmpty()){
             return new simpleActivityResponse(null,false,"活动不存在");
         }
@@ -117,18 +201,24 @@ public class ActivityServer {
         if(user.isEmpty()){
             return new ParticipateInActivityResponse(null,null,"用户不存在");
         }
-        Optional<Activity> activity1=activityRepository.findById(request.getActivityId());
+        Optional<Activity> activity1=activityRepository.findDetailById(request.getActivityId());
         if(activity1.isEmpty()){
             return new ParticipateInActivityResponse(null,null,"活动不存在");
         }
         Activity activity=activity1.get();
         ActivityDTO dto=ActivityDTO.convert(activity);
+        //名额以审批时的原子占用为准，这里只提前拦住已满的活动
+        if(activity.getCurrentPeople()>=activity.getMaxPeople()){
+            return new ParticipateInActivityResponse(null,dto,"活动人数已满");
+        }
         UserDTO participant=new UserDTO();
         participant.setUser_id(request.getuserId());
         participant.setUsername(user.get().getUserName());
         return new ParticipateInActivityResponse(participant,dto,"报名活动");
     }
-    //同意活动参与申请
+    //同意活动参与申请：同一事务内原子占用名额并写入报名记录
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.ACTIVITY_DETAILS, key = "#agreement.activity.id")
     public ParticipateInActivityResponse publisherAgreement(ParticipateInActivityResponse agreement) {
         //参与者
         Optional<User> user1=userRepository.findById(agreement.getParticipant().getUser_id());
@@ -138,38 +228,60 @@ public class ActivityServer {
         }
         User user=user1.get();
         //活动
-        Optional<Activity> activity1=activityRepository.findById(agreement.getActivity().getId());
+        Optional<Activity> activity1=activityRepository.findDetailById(agreement.getActivity().getId());
         if(activity1.isEmpty()){
             agreement.setMessage("活动不存在");
             return agreement;
         }
         Activity activity=activity1.get();
+        if(participateRepository.existsByParticipant_IdAndActivity_Id(user.getId(),activity.getId())){
+            agreement.setMessage("已参加该活动");
+            return agreement;
+        }
+        //条件更新：当前人数小于上限才加一，只锁这一行，并发审批也不会超员
+        if(activityRepository.reserveSeat(activity.getId())==0){
+            agreement.setMessage("活动人数已满");
+            return agreement;
+        }
         Participate participate=new Participate();
         participate.setParticipant(user);
         participate.setActivity(activity);
         participate.setTime(LocalDateTime.now());
+        //重复报名撞唯一约束时整个事务回滚，占用的名额一并撤销
         participateRepository.save(participate);
+        //新成员马上开始计聊天室未读数
+        unreadCounter.invalidateMembers(activity.getId());
         agreement.setMessage("同意");
         return agreement;
     }
-    //同意后更新活动人数
+    //同意后返回活动最新人数（人数已在publisherAgreement中原子更新，这里只读取数据库中的值）
     public RefreshActivityResponse refresh(ParticipateInActivityResponse agreement){
-        Optional<Activity> activity=activityRepository.findById(agreement.getActivity().getId());
-        activity.get().setCurrentPeople(agreement.getActivity().getCurrentPeople()+1);
-        activityRepository.save(activity.get());
+        Optional<Activity> activity=activityRepository.findDetailById(agreement.getActivity().getId());
         UserDTO publisher=new UserDTO();
         publisher.setUser_id(activity.get().getPublisher().getId());
         publisher.setUsername(activity.get().getPublisher().getUserName());
         return new RefreshActivityResponse(activity.get().getId(),publisher, activity.get().getCurrentPeople());
     }
     //活动签到
+   //位置直接读内存中的实时位置；内存里没有时（如快照写入前的旧数据）再查历史表里最近一条有效记录
    public CheckInActivityResponse checkInActivity(CheckInActivityRequest checkInActivityRequest) {
-        Optional<Userlocation> userl=userlocationRepository.findByUserId(checkInActivityRequest.getUserId());
-        if(userl.isEmpty()){
-            return new CheckInActivityResponse(checkInActivityRequest,false,"用户不存在");
+        long now=Instant.now().toEpochMilli();
+        double latitude;
+        double longitude;
+        LiveLocationStore.Position live=liveLocationStore.get(checkInActivityRequest.getUserId(),now);
+        if(live!=null){
+            latitude=live.getLatitude();
+            longitude=live.getLongitude();
+        }else{
+            List<Userlocation> userl=userlocationRepository.findValidByUserId(checkInActivityRequest.getUserId(),now,PageRequest.of(0,1));
+            if(userl.isEmpty()){
+                return new CheckInActivityResponse(checkInActivityRequest,false,"用户不存在");
+            }
+            latitude=userl.get(0).getLatitude().doubleValue();
+            longitude=userl.get(0).getLongitude().doubleValue();
         }
         Location location= activityRepository.findLocationByActivityId(checkInActivityRequest.getActivityId());
-       boolean result=geoUtil.isInArea(userl.get().getLatitude(), userl.get().getLongitude(),location.getCenterLatitude(),location.getCenterLongitude(),location.getRegionRadius());
+       boolean result=GeoUtil.isInArea(latitude,longitude,location.getCenterLatitude().doubleValue(),location.getCenterLongitude().doubleValue(),location.getRegionRadius().doubleValue());
         return new CheckInActivityResponse(checkInActivityRequest,result,"签到结果");
    }
 }
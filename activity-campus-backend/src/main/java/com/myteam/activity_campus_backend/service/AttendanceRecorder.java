@@ -0,0 +1,179 @@
+package com.myteam.activity_campus_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 到场记录：收到地理围栏事件只放入队列，后台定时合并后批量写入app_attendance
+ * 每个用户每个活动一行，第一次进入写签到时间，离开写离开时间，再次进入清空离开时间
+ * @date 2026/10/18 13:40
+ */
+@Component
+public class AttendanceRecorder {
+    private static final Logger log = LoggerFactory.getLogger(AttendanceRecorder.class);
+    private static final String ENTER_SQL =
+            "MERGE INTO app_attendance t USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS TIMESTAMP))) " +
+            "s(activity_Id, user_Id, check_In_Time) ON t.activity_Id = s.activity_Id AND t.user_Id = s.user_Id " +
+            "WHEN MATCHED THEN UPDATE SET t.check_Out_Time = NULL " +
+            "WHEN NOT MATCHED THEN INSERT (activity_Id, user_Id, check_In_Time) VALUES (s.activity_Id, s.user_Id, s.check_In_Time)";
+    private static final String EXIT_SQL =
+            "UPDATE app_attendance SET check_Out_Time = ? WHERE activity_Id = ? AND user_Id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //写库间隔（毫秒）
+    @Value("${attendance.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    private final Queue<GeofenceEvent> queue = new ConcurrentLinkedQueue<>();
+    //只在持有flushLock时访问：上次写库失败留下的事件
+    private final List<GeofenceEvent> retry = new ArrayList<>();
+    private final Object flushLock = new Object();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder enterRows = new LongAdder();
+    private final LongAdder exitRows = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //停止时把队列里的事件写完
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+
+    @EventListener
+    public void onGeofenceEvent(GeofenceEvent event) {
+        queue.add(event);
+        received.increment();
+    }
+
+    //立即写库（测试和停止时用）
+    public void flushQuietly() {
+        synchronized (flushLock) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("到场记录写库失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void flush() {
+        List<GeofenceEvent> events = new ArrayList<>(retry);
+        retry.clear();
+        GeofenceEvent event;
+        while ((event = queue.poll()) != null) {
+            events.add(event);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        //同一用户同一活动合并：批次内第一次进入的时间，以及最后是否离开
+        Map<Long, Pending> pending = new LinkedHashMap<>();
+        for (GeofenceEvent e : events) {
+            Pending p = pending.computeIfAbsent(((long) e.getActivityId() << 32) | (e.getUserId() & 0xffffffffL),
+                    k -> new Pending(e.getActivityId(), e.getUserId()));
+            if (e.getType() == GeofenceEvent.Type.ENTER) {
+                if (p.enterTime == null) {
+                    p.enterTime = e.getTime();
+                }
+                p.exitTime = null;
+            } else {
+                p.exitTime = e.getTime();
+            }
+        }
+        List<Object[]> enterRowsBatch = new ArrayList<>();
+        List<Object[]> exitRowsBatch = new ArrayList<>();
+        for (Pending p : pending.values()) {
+            if (p.enterTime != null) {
+                enterRowsBatch.add(new Object[]{p.activityId, p.userId, Timestamp.valueOf(p.enterTime)});
+            }
+            if (p.exitTime != null) {
+                exitRowsBatch.add(new Object[]{Timestamp.valueOf(p.exitTime), p.activityId, p.userId});
+            }
+        }
+        try {
+            write(ENTER_SQL, enterRowsBatch, enterRows);
+            write(EXIT_SQL, exitRowsBatch, exitRows);
+        } catch (DataAccessException e) {
+            //数据库暂时不可用：下一轮重写（进入是MERGE、离开是UPDATE，重复写结果不变）
+            retry.addAll(events);
+            throw e;
+        }
+    }
+
+    private void write(String sql, List<Object[]> rows, LongAdder written) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(sql, rows);
+            written.add(rows.size());
+        } catch (DataIntegrityViolationException e) {
+            //活动或用户已被删除：逐条写，丢弃写不进去的
+            for (Object[] row : rows) {
+                try {
+                    jdbcTemplate.update(sql, row);
+                    written.increment();
+                } catch (DataIntegrityViolationException rowError) {
+                    dropped.increment();
+                    log.warn("丢弃无法写入的到场记录: {}", rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    //事件数和写库行数
+    public Map<String, Object> stats() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("receivedEventCount", received.sum());
+        item.put("pendingEventCount", queue.size());
+        item.put("enterRowCount", enterRows.sum());
+        item.put("exitRowCount", exitRows.sum());
+        item.put("droppedRowCount", dropped.sum());
+        return item;
+    }
+
+    private static class Pending {
+        private final int activityId;
+        private final int userId;
+        private LocalDateTime enterTime;
+        private LocalDateTime exitTime;
+        Pending(int activityId, int userId) {
+            this.activityId = activityId;
+            this.userId = userId;
+        }
+    }
+}
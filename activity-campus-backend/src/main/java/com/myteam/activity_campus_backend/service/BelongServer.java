@@ -23,13 +23,13 @@ public class BelongServer {
     private BelongRepository belongRepository;
     //用户找参与团队
     public UserBelongResponse getUserBelong(UserBelongRequest userBelongRequest) {
-        List<Belong> belongs=belongRepository.findByUser_IdOrTeam_Id(userBelongRequest.getUserId());
+        List<Belong> belongs=belongRepository.findByUserIdWithDetails(userBelongRequest.getUserId());
         List<BelongDTO> belongDTOS=belongs.stream().map(BelongDTO::toBelongDTO).collect(Collectors.toList());
         return new UserBelongResponse(belongDTOS);
     }
     //团队找成员
     public List<BelongDTO> listBelongs(Integer teamId) {
-        List<Belong> belongs=belongRepository.findByUser_IdOrTeam_Id(teamId);
+        List<Belong> belongs=belongRepository.findByTeamIdWithDetails(teamId);
         List<BelongDTO> belongDTOS=belongs.stream().map(BelongDTO::toBelongDTO).collect(Collectors.toList());
         return belongDTOS;
     }
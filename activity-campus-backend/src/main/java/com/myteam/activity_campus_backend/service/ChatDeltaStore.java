@@ -0,0 +1,161 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.dto.ChatRecallDTO;
+import com.myteam.activity_campus_backend.dto.response.ChatDeltaResponse;
+import com.myteam.activity_campus_backend.entity.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * @author sjy15
+ * @description: 聊天室增量同步：撤回时删除消息并写撤回墓碑（占用一个房间序号），按since查询之后的新消息和墓碑
+ * 客户端重连时只取变化的部分，不用重新下载整个房间
+ * @date 2026/10/18 15:20
+ */
+@Component
+public class ChatDeltaStore {
+    private static final String DELETE_MESSAGE_SQL = "DELETE FROM app_message WHERE message_Id = ?";
+    private static final String INSERT_RECALL_SQL =
+            "INSERT INTO app_message_recall (receive_Id, room_Seq, message_Id, message_Seq, recall_Time) VALUES (?, ?, ?, ?, ?)";
+    private static final String DELTA_MESSAGES_SQL =
+            "SELECT m.message_Id, m.room_Seq, m.user_Id, u.user_Name, m.content, m.send_Time FROM app_message m " +
+            "JOIN app_user u ON u.user_Id = m.user_Id " +
+            "WHERE m.receive_Id = ? AND m.room_Seq > ? AND m.room_Seq <= ? ORDER BY m.room_Seq LIMIT ?";
+    //被撤回的消息在since之后才发出的，客户端从没拿到过，不下发墓碑
+    private static final String DELTA_RECALLS_SQL =
+            "SELECT message_Id, room_Seq, recall_Time FROM app_message_recall " +
+            "WHERE receive_Id = ? AND room_Seq > ? AND room_Seq <= ? AND message_Seq <= ? ORDER BY room_Seq";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private RoomSequencer roomSequencer;
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+
+    private final LongAdder recalls = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder deltaMessages = new LongAdder();
+    private final LongAdder deltaRecalls = new LongAdder();
+    private final LongAdder unflushedServed = new LongAdder();
+
+    /**
+     * 删除消息并写入撤回墓碑，两者在同一个事务里
+     * 分配序号到事务提交期间持有房间锁，增量同步读到的当前序号之前的墓碑一定已经提交
+     * @param message 要撤回的消息（已入库）
+     * @param recallTime 撤回时间
+     * @param onRecalled 提交后、释放房间锁前调用（参数为墓碑序号），用于和新消息按序号顺序推送
+     * @return 撤回占用的房间序号；消息已被删除（并发撤回）时返回null
+     */
+    public Long recall(Message message, LocalDateTime recallTime, LongConsumer onRecalled) {
+        int roomId = message.getReceiveId();
+        long messageSeq = message.getRoomSeq() == null ? 0 : message.getRoomSeq();
+        synchronized (roomSequencer.lock(roomId)) {
+            long seq = roomSequencer.next(roomId);
+            Boolean deleted = transactionTemplate.execute(status -> {
+                if (jdbcTemplate.update(DELETE_MESSAGE_SQL, message.getId()) == 0) {
+                    return false;
+                }
+                jdbcTemplate.update(INSERT_RECALL_SQL, roomId, seq, message.getId(), messageSeq, Timestamp.valueOf(recallTime));
+                return true;
+            });
+            if (!Boolean.TRUE.equals(deleted)) {
+                return null;
+            }
+            recalls.increment();
+            onRecalled.accept(seq);
+            return seq;
+        }
+    }
+
+    /**
+     * 给没有写进库的消息（写库时被丢弃）补一条撤回墓碑
+     * @param onRecalled 同recall，写入后、释放房间锁前调用
+     * @return 墓碑占用的房间序号
+     */
+    public long tombstone(int roomId, int messageId, long messageSeq, LocalDateTime recallTime, LongConsumer onRecalled) {
+        synchronized (roomSequencer.lock(roomId)) {
+            long seq = roomSequencer.next(roomId);
+            jdbcTemplate.update(INSERT_RECALL_SQL, roomId, seq, messageId, messageSeq, Timestamp.valueOf(recallTime));
+            recalls.increment();
+            onRecalled.accept(seq);
+            return seq;
+        }
+    }
+
+    /**
+     * 查询since之后的变化
+     * @param roomId 活动id
+     * @param since 客户端收到的最大序号，0表示从头开始
+     * @param limit 最多返回的消息条数，超出时hasMore为true，用nextSince继续取
+     */
+    public ChatDeltaResponse delta(int roomId, long since, int limit) {
+        deltas.increment();
+        long upTo;
+        synchronized (roomSequencer.lock(roomId)) {
+            upTo = roomSequencer.current(roomId);
+        }
+        if (since >= upTo) {
+            return new ChatDeltaResponse(true, List.of(), List.of(), upTo, false, "没有新的变化");
+        }
+        //先取写缓冲里还没入库的部分再查库：在这之后才写库的消息已经在这一步取到，不用每次轮询都强制写库
+        List<ChatMessageDTO> unflushed = messageWriteBuffer.unflushed(roomId, since, upTo);
+        //多取一条用于判断是否还有更多
+        List<ChatMessageDTO> stored = jdbcTemplate.query(DELTA_MESSAGES_SQL, (rs, rowNum) -> new ChatMessageDTO(
+                rs.getInt("message_Id"), rs.getLong("room_Seq"), roomId, rs.getInt("user_Id"), rs.getString("user_Name"),
+                rs.getString("content"), rs.getTimestamp("send_Time").toLocalDateTime()), roomId, since, upTo, limit + 1);
+        List<ChatMessageDTO> messages = merge(stored, unflushed, limit + 1);
+        unflushedServed.add(unflushed.size());
+        boolean hasMore = messages.size() > limit;
+        long nextSince = upTo;
+        if (hasMore) {
+            messages = messages.subList(0, limit);
+            nextSince = messages.get(limit - 1).getSeq();
+        }
+        List<ChatRecallDTO> recallList = jdbcTemplate.query(DELTA_RECALLS_SQL, (rs, rowNum) -> new ChatRecallDTO(
+                rs.getInt("message_Id"), rs.getLong("room_Seq"), roomId, rs.getTimestamp("recall_Time").toLocalDateTime()),
+                roomId, since, nextSince, since);
+        deltaMessages.add(messages.size());
+        deltaRecalls.add(recallList.size());
+        return new ChatDeltaResponse(true, messages, recallList, nextSince, hasMore, "查询成功");
+    }
+
+    //按序号合并库里和写缓冲里的消息，两边都有的（查询期间刚写库）只留一条
+    private static List<ChatMessageDTO> merge(List<ChatMessageDTO> stored, List<ChatMessageDTO> unflushed, int limit) {
+        if (unflushed.isEmpty()) {
+            return stored;
+        }
+        TreeMap<Long, ChatMessageDTO> bySeq = new TreeMap<>();
+        stored.forEach(m -> bySeq.put(m.getSeq(), m));
+        unflushed.forEach(m -> bySeq.putIfAbsent(m.getSeq(), m));
+        return bySeq.values().stream().limit(limit).collect(Collectors.toList());
+    }
+
+    //撤回数、增量查询次数和返回条数
+    public Map<String, Object> stats() {
+        long count = deltas.sum();
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("recallCount", recalls.sum());
+        item.put("deltaCount", count);
+        item.put("deltaMessageCount", deltaMessages.sum());
+        item.put("deltaRecallCount", deltaRecalls.sum());
+        item.put("avgDeltaMessages", count == 0 ? 0d : (double) deltaMessages.sum() / count);
+        item.put("unflushedServedCount", unflushedServed.sum());
+        return item;
+    }
+}
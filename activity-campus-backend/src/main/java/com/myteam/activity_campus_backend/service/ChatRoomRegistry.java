@@ -0,0 +1,278 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.dto.ChatRecallDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 聊天室订阅表（活动id -> 在线连接），新消息写入日志、进入写缓冲后立即推送给房间内所有连接，不等写库
+ * 每个连接一个有界的待发送队列，推送只入队不阻塞；队列满说明客户端跟不上，直接断开，客户端重连后按序号增量同步补齐
+ * @date 2026/10/17 19:25
+ */
+@Component
+public class ChatRoomRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ChatRoomRegistry.class);
+    //心跳在队列里的占位
+    private static final Push PING = new Push(null, null);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    //SSE连接超时时间（毫秒），超时后客户端自动重连
+    @Value("${chat.sse-timeout-ms:1800000}")
+    private long sseTimeoutMillis;
+    //心跳间隔（秒），及时清理已断开的连接
+    @Value("${chat.heartbeat-seconds:25}")
+    private long heartbeatSeconds;
+    //推送线程数，一个慢连接最多占住一个线程
+    @Value("${chat.fanout-threads:4}")
+    private int fanoutThreads = 4;
+    //每个连接最多排队的推送条数，超过时断开这个连接
+    @Value("${chat.subscriber-queue-size:256}")
+    private int queueCapacity = 256;
+
+    //活动id -> (订阅者 -> 待发送队列)，空房间及时移除
+    private final Map<Integer, Map<Subscriber, Outbox>> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder slowDropped = new LongAdder();
+    //各连接的队列在推送线程池上发送，同一连接同一时间只在一个线程上发送，保证连接内顺序
+    private ExecutorService fanout;
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        fanout = Executors.newFixedThreadPool(fanoutThreads,
+                runnable -> daemon(runnable, "chat-fanout-" + threadCount.incrementAndGet()));
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "chat-heartbeat"));
+        heartbeat.scheduleWithFixedDelay(this::pingAll, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdownNow();
+        fanout.shutdownNow();
+        rooms.values().forEach(map -> map.keySet().forEach(Subscriber::close));
+        rooms.clear();
+    }
+
+    //加入房间
+    public void subscribe(Integer activityId, Subscriber subscriber) {
+        rooms.compute(activityId, (key, map) -> {
+            if (map == null) {
+                map = new ConcurrentHashMap<>();
+            }
+            if (map.putIfAbsent(subscriber, new Outbox(activityId, subscriber)) == null) {
+                connections.incrementAndGet();
+            }
+            return map;
+        });
+    }
+
+    //离开房间，房间空了就删除
+    public void unsubscribe(Integer activityId, Subscriber subscriber) {
+        rooms.computeIfPresent(activityId, (key, map) -> {
+            if (map.remove(subscriber) != null) {
+                connections.decrementAndGet();
+            }
+            return map.isEmpty() ? null : map;
+        });
+    }
+
+    /**
+     * 用SSE订阅房间（WebSocket不可用时的兜底）
+     * @param activityId 活动id
+     * @return 已加入房间的SseEmitter，连接结束时自动移出房间
+     */
+    public SseEmitter subscribeSse(Integer activityId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        SseSubscriber subscriber = new SseSubscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(activityId, subscriber));
+        emitter.onTimeout(() -> unsubscribe(activityId, subscriber));
+        emitter.onError(e -> unsubscribe(activityId, subscriber));
+        subscribe(activityId, subscriber);
+        return emitter;
+    }
+
+    //推送新消息
+    public void publish(Integer activityId, ChatMessageDTO message) {
+        broadcast(activityId, "message", message);
+    }
+
+    //推送撤回通知
+    public void publishRecall(Integer activityId, ChatRecallDTO recall) {
+        broadcast(activityId, "recall", recall);
+    }
+
+    /**
+     * 放入房间内所有连接的队列，JSON只序列化一次，不等待发送
+     * 同一房间的推送加锁入队，各连接收到的顺序一致
+     */
+    private void broadcast(Integer activityId, String event, Object payload) {
+        Map<Subscriber, Outbox> map = rooms.get(activityId);
+        if (map == null || map.isEmpty()) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            log.error("聊天推送序列化失败: {}", e.getMessage());
+            return;
+        }
+        Push push = new Push(event, json);
+        synchronized (map) {
+            for (Outbox outbox : map.values()) {
+                outbox.offer(push);
+            }
+        }
+    }
+
+    //心跳：给所有连接排一个ping，发送失败或队列满的连接移出房间
+    private void pingAll() {
+        rooms.values().forEach(map -> map.values().forEach(outbox -> outbox.offer(PING)));
+    }
+
+    //在线房间数、连接数和因为太慢被断开的连接数
+    public Map<String, Object> stats() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("rooms", rooms.size());
+        item.put("connections", connections.get());
+        item.put("slowDroppedCount", slowDropped.sum());
+        return item;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    //房间内的一个连接（WebSocket或SSE）；event为推送类型（message/recall）
+    public interface Subscriber {
+        void send(String event, String json) throws IOException;
+        void ping() throws IOException;
+        void close();
+    }
+
+    //一条待发送的推送
+    private static final class Push {
+        private final String event;
+        private final String json;
+        Push(String event, String json) {
+            this.event = event;
+            this.json = json;
+        }
+    }
+
+    /**
+     * 一个连接的待发送队列：入队后如果没有在发送就提交到推送线程池，发送任务把队列发空后退出
+     * 队列满或发送失败时关闭连接并移出房间
+     */
+    private final class Outbox implements Runnable {
+        private final Integer activityId;
+        private final Subscriber subscriber;
+        private final BlockingQueue<Push> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Outbox(Integer activityId, Subscriber subscriber) {
+            this.activityId = activityId;
+            this.subscriber = subscriber;
+        }
+
+        void offer(Push push) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(push)) {
+                slowDropped.increment();
+                log.debug("连接待发送的推送过多，断开: activityId={}", activityId);
+                close();
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    fanout.execute(this);
+                } catch (RejectedExecutionException e) {
+                    //已停止
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Push push;
+                while (!closed.get() && (push = queue.poll()) != null) {
+                    try {
+                        if (push == PING) {
+                            subscriber.ping();
+                        } else {
+                            subscriber.send(push.event, push.json);
+                        }
+                    } catch (Exception e) {
+                        log.debug("推送失败，移除连接: activityId={}, error={}", activityId, e.getMessage());
+                        close();
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            //退出前又有推送入队时重新提交
+            if (!closed.get() && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                queue.clear();
+                subscriber.close();
+                unsubscribe(activityId, subscriber);
+            }
+        }
+    }
+
+    private static class SseSubscriber implements Subscriber {
+        private final SseEmitter emitter;
+        SseSubscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        @Override
+        public void send(String event, String json) throws IOException {
+            emitter.send(SseEmitter.event().name(event).data(json));
+        }
+        @Override
+        public void ping() throws IOException {
+            emitter.send(SseEmitter.event().comment("ping"));
+        }
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.dto.ConversationDTO;
+import com.myteam.activity_campus_backend.dto.UnreadCountDTO;
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.util.CursorUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 私信会话摘要（app_conversation）：每对用户一行，保存最后一条私信和双方的未读数
+ * 由DirectMessageStore在写私信的同一事务中更新；收件箱按用户在两个 (用户, 最后时间) 索引上各取一页再合并，不扫描私信表
+ * @date 2026/10/18 18:30
+ */
+@Component
+public class ConversationIndex {
+    //新私信：最后一条按消息id取较新的（并发发送时后分配id的为准），接收方未读数+1
+    private static final String UPSERT_SQL =
+            "MERGE INTO app_conversation t USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS INT), CAST(? AS INT), " +
+            "CAST(? AS VARCHAR(255)), CAST(? AS TIMESTAMP), CAST(? AS INT), CAST(? AS INT))) " +
+            "s(user_Low, user_High, message_Id, sender_Id, content, send_Time, unread_Low, unread_High) " +
+            "ON t.user_Low = s.user_Low AND t.user_High = s.user_High " +
+            "WHEN MATCHED THEN UPDATE SET " +
+            "t.last_Sender_Id = CASE WHEN s.message_Id > t.last_Message_Id THEN s.sender_Id ELSE t.last_Sender_Id END, " +
+            "t.last_Content = CASE WHEN s.message_Id > t.last_Message_Id THEN s.content ELSE t.last_Content END, " +
+            "t.last_Time = CASE WHEN s.message_Id > t.last_Message_Id THEN s.send_Time ELSE t.last_Time END, " +
+            "t.last_Message_Id = GREATEST(t.last_Message_Id, s.message_Id), " +
+            "t.unread_Low = t.unread_Low + s.unread_Low, t.unread_High = t.unread_High + s.unread_High " +
+            "WHEN NOT MATCHED THEN INSERT (user_Low, user_High, last_Message_Id, last_Sender_Id, last_Content, last_Time, unread_Low, unread_High) " +
+            "VALUES (s.user_Low, s.user_High, s.message_Id, s.sender_Id, s.content, s.send_Time, s.unread_Low, s.unread_High)";
+    private static final String INBOX_COLUMNS =
+            "c.last_Message_Id, c.last_Sender_Id, c.last_Content, c.last_Time, u.user_Name FROM app_conversation c ";
+    private static final String CURSOR_CONDITION =
+            " AND (c.last_Time < ? OR (c.last_Time = ? AND c.last_Message_Id < ?))";
+    private static final String INBOX_ORDER = " ORDER BY c.last_Time DESC, c.last_Message_Id DESC LIMIT ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LongAdder upserts = new LongAdder();
+    private final LongAdder inboxQueries = new LongAdder();
+    private final LongAdder backfilled = new LongAdder();
+
+    /**
+     * 记录一条新私信（调用方负责和私信写入放在同一事务中）
+     */
+    public void onMessage(MessageHistoryResponse message) {
+        int senderId = message.getSenderId();
+        int receiverId = message.getReceiveId();
+        int low = Math.min(senderId, receiverId);
+        int high = Math.max(senderId, receiverId);
+        //发给自己的不计未读
+        int unreadLow = senderId != receiverId && receiverId == low ? 1 : 0;
+        int unreadHigh = senderId != receiverId && receiverId == high ? 1 : 0;
+        Object[] args = {low, high, message.getMessageId(), senderId, message.getContent(),
+                Timestamp.valueOf(message.getSendTime()), unreadLow, unreadHigh};
+        try {
+            jdbcTemplate.update(UPSERT_SQL, args);
+        } catch (DuplicateKeyException e) {
+            //两人第一次互发私信时并发插入，另一边已建好会话，重试一次走更新
+            jdbcTemplate.update(UPSERT_SQL, args);
+        }
+        upserts.increment();
+    }
+
+    //会话当前的最后一条私信id，没有会话时返回null
+    public Integer lastMessageId(int userA, int userB) {
+        List<Integer> found = jdbcTemplate.queryForList(
+                "SELECT last_Message_Id FROM app_conversation WHERE user_Low = ? AND user_High = ?",
+                Integer.class, Math.min(userA, userB), Math.max(userA, userB));
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * 最后一条私信被撤回后改为之前的一条，会话里没有私信了就删除会话
+     * @param removedId 被撤回的私信id，会话的最后一条已经不是它时不修改
+     * @param latest 撤回后会话里最新的私信，没有时为null
+     */
+    public void onLastRemoved(int userA, int userB, int removedId, MessageHistoryResponse latest) {
+        int low = Math.min(userA, userB);
+        int high = Math.max(userA, userB);
+        if (latest == null) {
+            jdbcTemplate.update("DELETE FROM app_conversation WHERE user_Low = ? AND user_High = ? AND last_Message_Id = ?",
+                    low, high, removedId);
+            return;
+        }
+        jdbcTemplate.update("UPDATE app_conversation SET last_Message_Id = ?, last_Sender_Id = ?, last_Content = ?, last_Time = ? " +
+                        "WHERE user_Low = ? AND user_High = ? AND last_Message_Id = ?",
+                latest.getMessageId(), latest.getSenderId(), latest.getContent(), Timestamp.valueOf(latest.getSendTime()),
+                low, high, removedId);
+    }
+
+    //当前用户有未读私信的会话（私信未读数只在这里维护），按对方用户id升序
+    public List<UnreadCountDTO> unread(int userId) {
+        List<UnreadCountDTO> result = new ArrayList<>(jdbcTemplate.query(
+                "SELECT user_High AS peer_Id, unread_Low AS unread_Count FROM app_conversation WHERE user_Low = ? AND unread_Low > 0",
+                UNREAD_MAPPER, userId));
+        result.addAll(jdbcTemplate.query(
+                "SELECT user_Low AS peer_Id, unread_High AS unread_Count FROM app_conversation WHERE user_High = ? AND unread_High > 0",
+                UNREAD_MAPPER, userId));
+        result.sort(Comparator.comparing(UnreadCountDTO::getConversationId));
+        return result;
+    }
+
+    //当前用户把和对方的会话标记为已读
+    public void markRead(int userId, int peerId) {
+        jdbcTemplate.update("UPDATE app_conversation SET " +
+                        "unread_Low = CASE WHEN user_Low = ? THEN 0 ELSE unread_Low END, " +
+                        "unread_High = CASE WHEN user_High = ? THEN 0 ELSE unread_High END " +
+                        "WHERE user_Low = ? AND user_High = ?",
+                userId, userId, Math.min(userId, peerId), Math.max(userId, peerId));
+    }
+
+    /**
+     * 收件箱一页：当前用户作为user_Low和作为user_High的会话各按索引取limit条，合并后取前limit条
+     * @param after 游标（上一页最后一个会话的最后时间和最后私信id），为空时从最新开始
+     */
+    public List<ConversationDTO> inbox(int userId, CursorUtil.Cursor after, int limit) {
+        inboxQueries.increment();
+        String lowSql = "SELECT c.user_High AS peer_Id, c.unread_Low AS unread_Count, " + INBOX_COLUMNS +
+                "JOIN app_user u ON u.user_Id = c.user_High WHERE c.user_Low = ?";
+        //发给自己的会话只在上面出现一次
+        String highSql = "SELECT c.user_Low AS peer_Id, c.unread_High AS unread_Count, " + INBOX_COLUMNS +
+                "JOIN app_user u ON u.user_Id = c.user_Low WHERE c.user_High = ? AND c.user_Low <> c.user_High";
+        List<ConversationDTO> result = new ArrayList<>();
+        if (after == null) {
+            result.addAll(jdbcTemplate.query(lowSql + INBOX_ORDER + limit, ROW_MAPPER, userId));
+            result.addAll(jdbcTemplate.query(highSql + INBOX_ORDER + limit, ROW_MAPPER, userId));
+        } else {
+            Timestamp time = Timestamp.valueOf(after.getTime());
+            result.addAll(jdbcTemplate.query(lowSql + CURSOR_CONDITION + INBOX_ORDER + limit, ROW_MAPPER,
+                    userId, time, time, after.getId()));
+            result.addAll(jdbcTemplate.query(highSql + CURSOR_CONDITION + INBOX_ORDER + limit, ROW_MAPPER,
+                    userId, time, time, after.getId()));
+        }
+        result.sort(Comparator.comparing(ConversationDTO::getLastTime)
+                .thenComparing(ConversationDTO::getLastMessageId).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    //会话表是否为空（升级后第一次启动时需要从私信月表补建）
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT conversation_Id FROM app_conversation LIMIT 1", Integer.class).isEmpty();
+    }
+
+    /**
+     * 从一个私信月表补建还没有的会话：每对用户取该表中最新的一条，未读数从0开始
+     * 按月份从新到旧调用，已有会话的用户对不会被更早的月份覆盖
+     * @param table 私信月表名
+     */
+    public int backfill(String table) {
+        int rows = jdbcTemplate.update("INSERT INTO app_conversation " +
+                "(user_Low, user_High, last_Message_Id, last_Sender_Id, last_Content, last_Time, unread_Low, unread_High) " +
+                "SELECT m.user_Low, m.user_High, m.message_Id, m.sender_Id, m.content, m.send_Time, 0, 0 " +
+                "FROM " + table + " m " +
+                "WHERE m.message_Id = (SELECT MAX(x.message_Id) FROM " + table + " x WHERE x.user_Low = m.user_Low AND x.user_High = m.user_High) " +
+                "AND NOT EXISTS (SELECT 1 FROM app_conversation c WHERE c.user_Low = m.user_Low AND c.user_High = m.user_High)");
+        backfilled.add(rows);
+        return rows;
+    }
+
+    //会话更新次数、收件箱查询次数和补建的会话数
+    public Map<String, Object> stats() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("upsertCount", upserts.sum());
+        item.put("inboxQueryCount", inboxQueries.sum());
+        item.put("backfilledConversations", backfilled.sum());
+        return item;
+    }
+
+    private static final RowMapper<UnreadCountDTO> UNREAD_MAPPER = (rs, rowNum) ->
+            new UnreadCountDTO("direct", rs.getInt("peer_Id"), rs.getInt("unread_Count"));
+
+    private static final RowMapper<ConversationDTO> ROW_MAPPER = (rs, rowNum) -> new ConversationDTO(
+            rs.getInt("peer_Id"), rs.getString("user_Name"), rs.getInt("last_Message_Id"), rs.getInt("last_Sender_Id"),
+            rs.getString("last_Content"), rs.getTimestamp("last_Time").toLocalDateTime(), rs.getInt("unread_Count"));
+}
@@ -0,0 +1,398 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.util.CursorUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author sjy15
+ * @description: 私信存储，按月分表（app_direct_message_yyyyMM），与活动聊天室的app_message分开
+ * 查询只访问游标所在月份及之前的表；超过保留期的整月表直接DROP，不做大批量DELETE
+ * 写入和撤回时在同一事务中更新会话摘要（ConversationIndex）
+ * @date 2026/10/18 10:10
+ */
+@Component
+public class DirectMessageStore {
+    private static final Logger log = LoggerFactory.getLogger(DirectMessageStore.class);
+    private static final String TABLE_PREFIX = "app_direct_message_";
+    private static final Pattern TABLE_PATTERN = Pattern.compile("(?i)" + TABLE_PREFIX + "(\\d{6})");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String SELECT_COLUMNS =
+            "SELECT m.message_Id, m.sender_Id, m.receiver_Id, u.user_Name, m.content, m.send_Time FROM ";
+    //月表上线前写在app_message里的私信：旧数据没有房间/私信标记，接收方是存在的用户、
+    //发送者既不是同id活动的发布者也没有报名该活动的，按私信处理；这只是推测（旧版发言不校验成员），所以只复制不删除
+    private static final String LEGACY_SQL =
+            "SELECT m.message_Id, m.user_Id AS sender_Id, m.receive_Id AS receiver_Id, u.user_Name, m.content, m.send_Time " +
+            "FROM app_message m JOIN app_user u ON u.user_Id = m.user_Id " +
+            "WHERE m.message_Id > ? AND m.message_Id <= ? " +
+            "AND EXISTS (SELECT 1 FROM app_user r WHERE r.user_Id = m.receive_Id) " +
+            "AND NOT EXISTS (SELECT 1 FROM app_activity a WHERE a.activity_Id = m.receive_Id AND a.publisher_Id = m.user_Id) " +
+            "AND NOT EXISTS (SELECT 1 FROM app_participate p WHERE p.activity_Id = m.receive_Id AND p.participant_Id = m.user_Id) " +
+            "ORDER BY m.message_Id LIMIT ";
+    //旧私信每批迁移的条数，每批一个事务
+    private static final int MIGRATE_BATCH = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ConversationIndex conversationIndex;
+
+    //保留月数（含当月），更早的月表整表删除；0表示不删除
+    @Value("${message.direct.retention-months:12}")
+    private int retentionMonths;
+    //升级后第一次启动时是否把app_message里推测为私信的旧消息复制到月表，默认不复制
+    @Value("${message.direct.migrate-legacy:false}")
+    private boolean migrateLegacy;
+
+    //已存在的月表，按月份升序
+    private final NavigableSet<YearMonth> partitions = new ConcurrentSkipListSet<>();
+    //每个月表的最小消息id，按id定位月表
+    private final NavigableMap<Integer, YearMonth> firstIds = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder migrated = new LongAdder();
+    private ScheduledExecutorService retention;
+
+    @PostConstruct
+    public void start() {
+        int maxId = 0;
+        for (YearMonth month : discoverPartitions()) {
+            partitions.add(month);
+            addReceiverKey(month);
+            Integer min = jdbcTemplate.queryForObject("SELECT MIN(message_Id) FROM " + table(month), Integer.class);
+            Integer max = jdbcTemplate.queryForObject("SELECT MAX(message_Id) FROM " + table(month), Integer.class);
+            if (min != null) {
+                firstIds.put(min, month);
+                maxId = Math.max(maxId, max);
+            }
+        }
+        nextId.set(maxId);
+        retention = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "direct-message-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retention.scheduleWithFixedDelay(this::dropExpired, 0, 1, TimeUnit.DAYS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        retention.shutdownNow();
+    }
+
+    /**
+     * 会话表为空时（升级后第一次启动）按配置先把app_message里的旧私信复制到月表，再按月份从新到旧补建会话
+     * 表结构在启动完成后才齐全
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillConversations() {
+        if (!conversationIndex.isEmpty()) {
+            return;
+        }
+        if (migrateLegacy) {
+            int copied = migrateLegacy();
+            log.info("从app_message复制旧私信到月表: {}条", copied);
+        }
+        if (partitions.isEmpty()) {
+            return;
+        }
+        int rows = 0;
+        for (YearMonth month : partitions.descendingSet()) {
+            rows += conversationIndex.backfill(table(month));
+        }
+        log.info("从私信月表补建会话: {}个", rows);
+    }
+
+    //数据库里已有的月表
+    private List<YearMonth> discoverPartitions() {
+        List<YearMonth> months = jdbcTemplate.execute((ConnectionCallback<List<YearMonth>>) connection -> {
+            List<YearMonth> found = new ArrayList<>();
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, "%", null)) {
+                while (tables.next()) {
+                    Matcher matcher = TABLE_PATTERN.matcher(tables.getString("TABLE_NAME"));
+                    if (matcher.matches()) {
+                        found.add(YearMonth.parse(matcher.group(1), MONTH));
+                    }
+                }
+            }
+            return found;
+        });
+        return months == null ? List.of() : months;
+    }
+
+    private static String table(YearMonth month) {
+        return TABLE_PREFIX + month.format(MONTH);
+    }
+
+    //按需建当月的表；建表很少发生，加锁即可
+    private synchronized void ensurePartition(YearMonth month) {
+        if (partitions.contains(month)) {
+            return;
+        }
+        String table = table(month);
+        String suffix = month.format(MONTH);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " (" +
+                "message_Id INT NOT NULL, " +
+                "sender_Id INT NOT NULL, " +
+                "receiver_Id INT NOT NULL, " +
+                "user_Low INT NOT NULL, " +
+                "user_High INT NOT NULL, " +
+                "content VARCHAR(255) NOT NULL, " +
+                "send_Time TIMESTAMP NOT NULL, " +
+                "PRIMARY KEY (message_Id), " +
+                "CONSTRAINT fk_DM_" + suffix + "_Sender FOREIGN KEY (sender_Id) REFERENCES app_user(user_Id), " +
+                "CONSTRAINT fk_DM_" + suffix + "_Receiver FOREIGN KEY (receiver_Id) REFERENCES app_user(user_Id))");
+        //收件箱按接收者查，会话按两个用户（小id在前）查
+        jdbcTemplate.execute("CREATE INDEX idx_DM_" + suffix + "_Receiver ON " + table + "(receiver_Id, send_Time, message_Id)");
+        jdbcTemplate.execute("CREATE INDEX idx_DM_" + suffix + "_Pair ON " + table + "(user_Low, user_High, send_Time, message_Id)");
+        partitions.add(month);
+    }
+
+    //早期建的月表只有发送者外键，启动时补上接收者外键
+    private void addReceiverKey(YearMonth month) {
+        String suffix = month.format(MONTH);
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + table(month) + " ADD CONSTRAINT IF NOT EXISTS fk_DM_" + suffix +
+                    "_Receiver FOREIGN KEY (receiver_Id) REFERENCES app_user(user_Id)");
+        } catch (RuntimeException e) {
+            log.error("私信月表补建接收者外键失败: table={}, error={}", table(month), e.getMessage());
+        }
+    }
+
+    /**
+     * 把app_message里的旧私信复制到发送月份的表（分配新的私信id），app_message里的原记录保留，推测错的聊天室消息不会丢
+     * 只处理开始时已有的消息；不更新会话摘要和未读数，会话由随后的补建生成
+     * @return 复制的条数
+     */
+    public int migrateLegacy() {
+        Integer maxId = jdbcTemplate.queryForObject("SELECT MAX(message_Id) FROM app_message", Integer.class);
+        if (maxId == null) {
+            return 0;
+        }
+        int total = 0;
+        int after = 0;
+        while (true) {
+            List<MessageHistoryResponse> batch = jdbcTemplate.query(LEGACY_SQL + MIGRATE_BATCH, ROW_MAPPER, after, maxId);
+            if (batch.isEmpty()) {
+                return total;
+            }
+            after = batch.get(batch.size() - 1).getMessageId();
+            //建表不能放进事务
+            for (MessageHistoryResponse message : batch) {
+                ensurePartition(YearMonth.from(message.getSendTime()));
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                for (MessageHistoryResponse message : batch) {
+                    YearMonth month = YearMonth.from(message.getSendTime());
+                    int id = nextId.incrementAndGet();
+                    if (!firstIds.containsValue(month)) {
+                        firstIds.put(id, month);
+                    }
+                    int senderId = message.getSenderId();
+                    int receiverId = message.getReceiveId();
+                    jdbcTemplate.update("INSERT INTO " + table(month) +
+                                    " (message_Id, sender_Id, receiver_Id, user_Low, user_High, content, send_Time) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                            id, senderId, receiverId, Math.min(senderId, receiverId), Math.max(senderId, receiverId),
+                            message.getContent(), Timestamp.valueOf(message.getSendTime()));
+                }
+            });
+            total += batch.size();
+            migrated.add(batch.size());
+        }
+    }
+
+    /**
+     * 保存一条私信，写入发送月份的表，同一事务中更新会话摘要
+     * @return 消息（含分配的消息id）
+     */
+    public MessageHistoryResponse insert(Integer senderId, String senderName, Integer receiverId, String content, LocalDateTime sendTime) {
+        YearMonth month = YearMonth.from(sendTime);
+        ensurePartition(month);
+        int id = nextId.incrementAndGet();
+        if (!firstIds.containsValue(month)) {
+            firstIds.put(id, month);
+        }
+        MessageHistoryResponse message = new MessageHistoryResponse(id, receiverId, senderName, content, sendTime);
+        message.setSenderId(senderId);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO " + table(month) +
+                            " (message_Id, sender_Id, receiver_Id, user_Low, user_High, content, send_Time) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    id, senderId, receiverId, Math.min(senderId, receiverId), Math.max(senderId, receiverId),
+                    content, Timestamp.valueOf(sendTime));
+            conversationIndex.onMessage(message);
+        });
+        return message;
+    }
+
+    //接收者收到的全部私信（旧接口），按时间升序
+    public List<MessageHistoryResponse> findReceived(Integer receiverId) {
+        List<MessageHistoryResponse> result = new ArrayList<>();
+        for (YearMonth month : partitions) {
+            result.addAll(jdbcTemplate.query(SELECT_COLUMNS + table(month) + " m JOIN app_user u ON u.user_Id = m.sender_Id " +
+                    "WHERE m.receiver_Id = ? ORDER BY m.send_Time, m.message_Id", ROW_MAPPER, receiverId));
+        }
+        return result;
+    }
+
+    /**
+     * 两个用户之间的会话，按 (发送时间, 消息id) 倒序取一页
+     * 从游标所在月份往前逐月查，取够就停，不访问更新的月表
+     * @param before 游标，为空时从最新开始
+     * @param limit 条数
+     */
+    public List<MessageHistoryResponse> findConversationBefore(Integer userA, Integer userB, CursorUtil.Cursor before, int limit) {
+        int low = Math.min(userA, userB);
+        int high = Math.max(userA, userB);
+        List<MessageHistoryResponse> result = new ArrayList<>();
+        NavigableSet<YearMonth> months = before == null ? partitions.descendingSet()
+                : partitions.headSet(YearMonth.from(before.getTime()), true).descendingSet();
+        for (YearMonth month : months) {
+            int remaining = limit - result.size();
+            if (remaining <= 0) {
+                break;
+            }
+            String sql = SELECT_COLUMNS + table(month) + " m JOIN app_user u ON u.user_Id = m.sender_Id " +
+                    "WHERE m.user_Low = ? AND m.user_High = ?" +
+                    (before == null ? "" : " AND (m.send_Time < ? OR (m.send_Time = ? AND m.message_Id < ?))") +
+                    " ORDER BY m.send_Time DESC, m.message_Id DESC LIMIT " + remaining;
+            if (before == null) {
+                result.addAll(jdbcTemplate.query(sql, ROW_MAPPER, low, high));
+            } else {
+                Timestamp time = Timestamp.valueOf(before.getTime());
+                result.addAll(jdbcTemplate.query(sql, ROW_MAPPER, low, high, time, time, before.getId()));
+            }
+        }
+        return result;
+    }
+
+    //按id查私信：先按起始id定位月表，找不到再查其他月表
+    public MessageHistoryResponse findById(Integer messageId) {
+        Map.Entry<Integer, YearMonth> floor = firstIds.floorEntry(messageId);
+        List<YearMonth> order = new ArrayList<>();
+        if (floor != null) {
+            order.add(floor.getValue());
+        }
+        for (YearMonth month : partitions.descendingSet()) {
+            if (!order.contains(month)) {
+                order.add(month);
+            }
+        }
+        for (YearMonth month : order) {
+            if (!partitions.contains(month)) {
+                continue;
+            }
+            List<MessageHistoryResponse> found = jdbcTemplate.query(SELECT_COLUMNS + table(month) +
+                    " m JOIN app_user u ON u.user_Id = m.sender_Id WHERE m.message_Id = ?", ROW_MAPPER, messageId);
+            if (!found.isEmpty()) {
+                return found.get(0);
+            }
+        }
+        return null;
+    }
+
+    //旧撤回接口：按发送者、接收者、发送时间和内容查，只访问发送时间所在月份的表，走会话索引
+    public MessageHistoryResponse findExact(Integer senderId, Integer receiverId, LocalDateTime sendTime, String content) {
+        YearMonth month = YearMonth.from(sendTime);
+        if (!partitions.contains(month)) {
+            return null;
+        }
+        List<MessageHistoryResponse> found = jdbcTemplate.query(SELECT_COLUMNS + table(month) +
+                        " m JOIN app_user u ON u.user_Id = m.sender_Id " +
+                        "WHERE m.user_Low = ? AND m.user_High = ? AND m.send_Time = ? AND m.sender_Id = ? AND m.content = ?",
+                ROW_MAPPER, Math.min(senderId, receiverId), Math.max(senderId, receiverId),
+                Timestamp.valueOf(sendTime), senderId, content);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    //删除私信（撤回），按发送时间定位月表；删的是会话的最后一条时，会话改为之前的一条
+    public boolean delete(MessageHistoryResponse message) {
+        YearMonth month = YearMonth.from(message.getSendTime());
+        if (!partitions.contains(month)) {
+            return false;
+        }
+        Boolean deleted = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update("DELETE FROM " + table(month) + " WHERE message_Id = ?", message.getMessageId()) == 0) {
+                return false;
+            }
+            int senderId = message.getSenderId();
+            int receiverId = message.getReceiveId();
+            if (message.getMessageId().equals(conversationIndex.lastMessageId(senderId, receiverId))) {
+                List<MessageHistoryResponse> latest = findConversationBefore(senderId, receiverId, null, 1);
+                conversationIndex.onLastRemoved(senderId, receiverId, message.getMessageId(),
+                        latest.isEmpty() ? null : latest.get(0));
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(deleted);
+    }
+
+    //删除超过保留期的整月表
+    public void dropExpired() {
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths - 1L);
+        for (YearMonth month : new ArrayList<>(partitions.headSet(oldestKept, false))) {
+            try {
+                jdbcTemplate.execute("DROP TABLE " + table(month));
+                partitions.remove(month);
+                firstIds.values().removeIf(month::equals);
+                dropped.increment();
+                log.info("私信月表超过保留期，已删除: {}", table(month));
+            } catch (RuntimeException e) {
+                log.error("删除私信月表失败: table={}, error={}", table(month), e.getMessage());
+            }
+        }
+    }
+
+    //月表列表和已删除的月表数
+    public Map<String, Object> stats() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        List<String> tables = new ArrayList<>();
+        partitions.forEach(month -> tables.add(table(month)));
+        item.put("partitions", tables);
+        item.put("retentionMonths", retentionMonths);
+        item.put("droppedPartitionCount", dropped.sum());
+        item.put("migratedLegacyCount", migrated.sum());
+        return item;
+    }
+
+    private static final RowMapper<MessageHistoryResponse> ROW_MAPPER = (rs, rowNum) -> {
+        MessageHistoryResponse message = new MessageHistoryResponse(rs.getInt("message_Id"), rs.getInt("receiver_Id"),
+                rs.getString("user_Name"), rs.getString("content"), rs.getTimestamp("send_Time").toLocalDateTime());
+        message.setSenderId(rs.getInt("sender_Id"));
+        return message;
+    };
+}
@@ -0,0 +1,275 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.ParticipateRepository;
+import com.myteam.activity_campus_backend.util.GeoUtil;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 地理围栏引擎：把位置上报和正在进行的活动范围做匹配，报名用户进入/离开时发布GeofenceEvent
+ * 活动范围和报名名单定时从库里加载到内存网格索引，每次上报只查内存，不访问数据库
+ * @date 2026/10/18 13:20
+ */
+@Component
+public class GeofenceEngine {
+    private static final Logger log = LoggerFactory.getLogger(GeofenceEngine.class);
+    //格子边长（度），纬度方向约1.1公里
+    private static final double CELL_DEGREES = 0.01;
+    //每度纬度对应的弧长（米）
+    private static final double METERS_PER_DEGREE = GeoUtil.EARTH_RADIUS * Math.PI / 180;
+    private static final int[] NONE = new int[0];
+
+    @Autowired
+    private ActivityRepository activityRepository;
+    @Autowired
+    private ParticipateRepository participateRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    //重新加载活动范围和报名名单的间隔（秒），新报名的用户最多延迟这么久生效
+    @Value("${geofence.refresh-seconds:60}")
+    private long refreshSeconds;
+    //离开判定的余量（米）：进入按活动半径判断，超出半径加余量才算离开，避免定位抖动反复进出
+    @Value("${geofence.exit-margin-meters:20}")
+    private double exitMarginMeters;
+
+    private volatile Index index = new Index(Map.of(), Map.of());
+    //用户id -> 用户当前所在的活动id（升序）
+    private final Map<Integer, int[]> insideByUser = new ConcurrentHashMap<>();
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder enters = new LongAdder();
+    private final LongAdder exits = new LongAdder();
+    private volatile LocalDateTime lastRefresh;
+    private ScheduledExecutorService refresher;
+
+    //启动后加载一次，之后定时刷新
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "geofence-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                log.error("地理围栏刷新失败: {}", e.getMessage());
+            }
+        }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * 重新加载正在进行和下次刷新前开始的活动，以及它们的报名用户
+     * 已结束或被删除的活动，仍在范围内的用户补发离开事件
+     */
+    public synchronized void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Fence> fences = new HashMap<>();
+        for (Object[] row : activityRepository.findGeofences(now, now.plusSeconds(refreshSeconds * 2))) {
+            Fence fence = new Fence((Integer) row[0], toMillis((LocalDateTime) row[1]), toMillis((LocalDateTime) row[2]),
+                    ((BigDecimal) row[3]).doubleValue(), ((BigDecimal) row[4]).doubleValue(), ((BigDecimal) row[5]).doubleValue());
+            fences.put(fence.activityId, fence);
+        }
+        if (!fences.isEmpty()) {
+            Map<Integer, List<Integer>> participants = new HashMap<>();
+            for (Object[] row : participateRepository.findParticipantIds(fences.keySet())) {
+                participants.computeIfAbsent((Integer) row[0], k -> new ArrayList<>()).add((Integer) row[1]);
+            }
+            participants.forEach((activityId, userIds) ->
+                    fences.get(activityId).participants = userIds.stream().mapToInt(Integer::intValue).sorted().toArray());
+        }
+        Map<Long, List<Fence>> cellLists = new HashMap<>();
+        for (Fence fence : fences.values()) {
+            if (fence.participants.length == 0) {
+                continue;
+            }
+            //活动范围外接矩形覆盖的格子都登记这个活动
+            double latSpan = fence.radius / METERS_PER_DEGREE;
+            double cosLat = Math.cos(Math.toRadians(Math.min(89, Math.abs(fence.latitude) + latSpan)));
+            double lngSpan = latSpan / cosLat;
+            for (int latCell = cell(fence.latitude - latSpan); latCell <= cell(fence.latitude + latSpan); latCell++) {
+                for (int lngCell = cell(fence.longitude - lngSpan); lngCell <= cell(fence.longitude + lngSpan); lngCell++) {
+                    cellLists.computeIfAbsent(key(latCell, lngCell), k -> new ArrayList<>()).add(fence);
+                }
+            }
+        }
+        Map<Long, Fence[]> cells = new HashMap<>();
+        cellLists.forEach((key, list) -> cells.put(key, list.toArray(new Fence[0])));
+        Index previous = index;
+        index = new Index(fences, cells);
+        lastRefresh = now;
+        //不再出现在索引里的活动（已结束、被删除），范围内的用户按活动结束时间离开
+        for (Integer userId : insideByUser.keySet()) {
+            List<GeofenceEvent> events = new ArrayList<>();
+            insideByUser.computeIfPresent(userId, (k, inside) -> {
+                int[] kept = Arrays.stream(inside).filter(fences::containsKey).toArray();
+                for (int activityId : inside) {
+                    if (!fences.containsKey(activityId)) {
+                        Fence ended = previous.fences.get(activityId);
+                        LocalDateTime time = ended == null ? now : min(now, toTime(ended.endMillis));
+                        events.add(new GeofenceEvent(GeofenceEvent.Type.EXIT, userId, activityId, time));
+                    }
+                }
+                return kept.length == 0 ? null : kept;
+            });
+            publish(events);
+        }
+        log.info("地理围栏刷新完成，共{}个活动，{}个格子", fences.size(), cells.size());
+    }
+
+    /**
+     * 处理一次位置上报：先判断已在范围内的活动是否离开，再判断格子里的活动是否进入
+     * @param userId 用户id
+     * @param lat 纬度
+     * @param lng 经度
+     * @param nowMillis 上报时间（毫秒时间戳）
+     */
+    public void onPing(int userId, double lat, double lng, long nowMillis) {
+        pings.increment();
+        Index current = index;
+        Fence[] candidates = current.cells.get(key(cell(lat), cell(lng)));
+        if (candidates == null && !insideByUser.containsKey(userId)) {
+            return;
+        }
+        List<GeofenceEvent> events = new ArrayList<>();
+        insideByUser.compute(userId, (k, old) -> {
+            int[] inside = old == null ? NONE : old;
+            int[] next = new int[inside.length + (candidates == null ? 0 : candidates.length)];
+            int size = 0;
+            for (int activityId : inside) {
+                Fence fence = current.fences.get(activityId);
+                if (fence != null && fence.isActive(nowMillis)
+                        && GeoUtil.isInArea(lat, lng, fence.latitude, fence.longitude, fence.radius + exitMarginMeters)) {
+                    next[size++] = activityId;
+                } else {
+                    events.add(new GeofenceEvent(GeofenceEvent.Type.EXIT, userId, activityId, toTime(nowMillis)));
+                }
+            }
+            if (candidates != null) {
+                for (Fence fence : candidates) {
+                    if (Arrays.binarySearch(inside, fence.activityId) < 0 && fence.isActive(nowMillis)
+                            && Arrays.binarySearch(fence.participants, userId) >= 0
+                            && GeoUtil.isInArea(lat, lng, fence.latitude, fence.longitude, fence.radius)) {
+                        next[size++] = fence.activityId;
+                        events.add(new GeofenceEvent(GeofenceEvent.Type.ENTER, userId, fence.activityId, toTime(nowMillis)));
+                    }
+                }
+            }
+            if (size == 0) {
+                return null;
+            }
+            int[] result = Arrays.copyOf(next, size);
+            Arrays.sort(result);
+            return result;
+        });
+        publish(events);
+    }
+
+    private void publish(List<GeofenceEvent> events) {
+        for (GeofenceEvent event : events) {
+            (event.getType() == GeofenceEvent.Type.ENTER ? enters : exits).increment();
+            eventPublisher.publishEvent(event);
+        }
+    }
+
+    //用户当前所在的活动
+    public int[] activitiesOf(int userId) {
+        int[] inside = insideByUser.get(userId);
+        return inside == null ? NONE : inside.clone();
+    }
+
+    //索引规模和事件计数
+    public Map<String, Object> stats() {
+        Index current = index;
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("fences", current.fences.size());
+        item.put("cells", current.cells.size());
+        item.put("usersInside", insideByUser.size());
+        item.put("pingCount", pings.sum());
+        item.put("enterCount", enters.sum());
+        item.put("exitCount", exits.sum());
+        item.put("lastRefresh", lastRefresh);
+        return item;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long key(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    //一次加载的索引，加载完成后不再修改，整体替换
+    private static class Index {
+        private final Map<Integer, Fence> fences;
+        private final Map<Long, Fence[]> cells;
+        Index(Map<Integer, Fence> fences, Map<Long, Fence[]> cells) {
+            this.fences = fences;
+            this.cells = cells;
+        }
+    }
+
+    //一个活动的范围，participants为报名用户id（升序）
+    private static class Fence {
+        private final int activityId;
+        private final long startMillis;
+        private final long endMillis;
+        private final double latitude;
+        private final double longitude;
+        private final double radius;
+        private int[] participants = NONE;
+        Fence(int activityId, long startMillis, long endMillis, double latitude, double longitude, double radius) {
+            this.activityId = activityId;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = radius;
+        }
+        boolean isActive(long nowMillis) {
+            return nowMillis >= startMillis && nowMillis < endMillis;
+        }
+    }
+}
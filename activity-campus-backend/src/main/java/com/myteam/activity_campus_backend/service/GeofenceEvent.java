@@ -0,0 +1,40 @@
+package com.myteam.activity_campus_backend.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author sjy15
+ * @description: 地理围栏事件：报名用户进入或离开正在进行的活动范围，由GeofenceEngine发布
+ * @date 2026/10/18 13:10
+ */
+public class GeofenceEvent {
+    public enum Type { ENTER, EXIT }
+
+    private final Type type;
+    private final int userId;
+    private final int activityId;
+    private final LocalDateTime time;
+
+    public GeofenceEvent(Type type, int userId, int activityId, LocalDateTime time) {
+        this.type = type;
+        this.userId = userId;
+        this.activityId = activityId;
+        this.time = time;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getActivityId() {
+        return activityId;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+}
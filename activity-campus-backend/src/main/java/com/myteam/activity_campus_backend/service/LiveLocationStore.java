@@ -0,0 +1,374 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.dto.request.userLocationRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 用户实时位置（内存），按用户id直接定位槽位，经纬度按微度压成一个long，和有效期一起保存
+ * 上报只改内存，签到直接读这里；后台定时把变化过的位置覆盖写入快照表，并按更长的间隔追加到历史表app_userlocation
+ * @date 2026/10/18 11:20
+ */
+@Component
+//启动时要读快照表，等JPA建好表之后再初始化
+@DependsOn("entityManagerFactory")
+public class LiveLocationStore {
+    private static final Logger log = LoggerFactory.getLogger(LiveLocationStore.class);
+    private static final String SNAPSHOT_SQL =
+            "MERGE INTO app_userlocation_latest (user_Id, latitude, longitude, valid_time) KEY (user_Id) VALUES (?, ?, ?, ?)";
+    private static final String HISTORY_SQL =
+            "INSERT INTO app_userlocation (user_Id, latitude, longitude, valid_time) VALUES (?, ?, ?, ?)";
+    //每块4096个用户，块按需创建
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    //槽位变化后待写入的标记位
+    private static final int SNAPSHOT_DIRTY = 1;
+    private static final int HISTORY_DIRTY = 2;
+    private static final double MICRO = 1_000_000d;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //快照写库间隔（秒）
+    @Value("${location.live.snapshot-seconds:5}")
+    private long snapshotSeconds;
+    //历史记录写库间隔（秒），每个用户每个间隔最多一条
+    @Value("${location.live.history-seconds:60}")
+    private long historySeconds;
+
+    //块目录，写时复制：新增块时整体替换，读取不加锁
+    private volatile Chunk[] chunks = new Chunk[0];
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder staleUpdates = new LongAdder();
+    private final LongAdder snapshotRows = new LongAdder();
+    private final LongAdder historyRows = new LongAdder();
+    private final LongAdder droppedRows = new LongAdder();
+    private final Object persistLock = new Object();
+    private ScheduledExecutorService persister;
+
+    @PostConstruct
+    public void start() {
+        restore();
+        persister = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-location-persist");
+            thread.setDaemon(true);
+            return thread;
+        });
+        persister.scheduleWithFixedDelay(() -> persistQuietly(SNAPSHOT_DIRTY), snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        persister.scheduleWithFixedDelay(() -> persistQuietly(HISTORY_DIRTY), historySeconds, historySeconds, TimeUnit.SECONDS);
+    }
+
+    //停止时把还没写库的位置写完
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        persister.shutdown();
+        persister.awaitTermination(10, TimeUnit.SECONDS);
+        persistNow();
+    }
+
+    //从快照表恢复仍然有效的位置（写入内存但不标记为待写库）
+    private void restore() {
+        long now = Instant.now().toEpochMilli();
+        jdbcTemplate.query("SELECT user_Id, latitude, longitude, valid_time FROM app_userlocation_latest WHERE valid_time > ?",
+                rs -> {
+                    write(rs.getInt("user_Id"), toMicro(rs.getBigDecimal("latitude")), toMicro(rs.getBigDecimal("longitude")),
+                            rs.getLong("valid_time"), 0);
+                }, now);
+    }
+
+    /**
+     * 更新用户的实时位置，有效期不早于已有位置时才覆盖（乱序到达的旧点不覆盖新点）
+     * @param userId 用户id
+     * @param latitude 纬度（最多6位小数）
+     * @param longitude 经度（最多6位小数）
+     * @param validUntil 有效期（毫秒时间戳）
+     * @return 是否写入
+     */
+    public boolean update(int userId, BigDecimal latitude, BigDecimal longitude, long validUntil) {
+        return update(userId, latitude, longitude, validUntil, SNAPSHOT_DIRTY | HISTORY_DIRTY);
+    }
+
+    //批量上报：所有点已由appendHistory写入历史表，最新的点只更新实时位置和快照
+    public boolean updateWithoutHistory(int userId, BigDecimal latitude, BigDecimal longitude, long validUntil) {
+        return update(userId, latitude, longitude, validUntil, SNAPSHOT_DIRTY);
+    }
+
+    private boolean update(int userId, BigDecimal latitude, BigDecimal longitude, long validUntil, int dirty) {
+        if (!write(userId, toMicro(latitude), toMicro(longitude), validUntil, dirty)) {
+            staleUpdates.increment();
+            return false;
+        }
+        updates.increment();
+        return true;
+    }
+
+    /**
+     * 批量上报的点全部追加到历史表（离线缓存的轨迹不能只留最新的一条），一次批量写入
+     * @param pings 已校验过的位置
+     */
+    public void appendHistory(List<userLocationRequest> pings) {
+        if (pings.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(pings.size());
+        for (userLocationRequest ping : pings) {
+            rows.add(new Object[]{ping.getUserId(), ping.getLatitude().setScale(6, RoundingMode.HALF_UP),
+                    ping.getLongitude().setScale(6, RoundingMode.HALF_UP), ping.getValidTime()});
+        }
+        jdbcTemplate.batchUpdate(HISTORY_SQL, rows);
+        historyRows.add(rows.size());
+    }
+
+    //是否已有这个用户的位置（不管是否过期），已有的用户上报时不用再查用户表
+    public boolean contains(int userId) {
+        Chunk chunk = chunk(userId);
+        return chunk != null && chunk.read(userId & CHUNK_MASK).validUntil != 0;
+    }
+
+    /**
+     * 用户当前有效的位置
+     * @param now 当前毫秒时间戳
+     * @return 位置，没有或已过期时返回null
+     */
+    public Position get(int userId, long now) {
+        Chunk chunk = chunk(userId);
+        if (chunk == null) {
+            return null;
+        }
+        Position position = chunk.read(userId & CHUNK_MASK);
+        return position.validUntil > now ? position : null;
+    }
+
+    private Chunk chunk(int userId) {
+        Chunk[] current = chunks;
+        int index = userId >>> CHUNK_BITS;
+        return userId < 0 || index >= current.length ? null : current[index];
+    }
+
+    private boolean write(int userId, int latMicro, int lngMicro, long validUntil, int dirty) {
+        if (userId < 0) {
+            throw new IllegalArgumentException("用户id不合法");
+        }
+        Chunk chunk = chunk(userId);
+        if (chunk == null) {
+            chunk = createChunk(userId >>> CHUNK_BITS);
+        }
+        return chunk.write(userId & CHUNK_MASK, latMicro, lngMicro, validUntil, dirty);
+    }
+
+    //新建块很少发生（每4096个用户一次），加锁并替换整个目录
+    private synchronized Chunk createChunk(int index) {
+        Chunk[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        Chunk[] next = Arrays.copyOf(current, Math.max(current.length, index + 1));
+        next[index] = new Chunk();
+        chunks = next;
+        return next[index];
+    }
+
+    //写快照或历史，并发调用（定时任务、停止、测试）串行执行；用单独的锁，写库期间不挡住新建块
+    private void persistQuietly(int flag) {
+        synchronized (persistLock) {
+            try {
+                persist(flag);
+            } catch (RuntimeException e) {
+                log.error("实时位置写库失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    //立即写库（测试和停止时用）
+    public void persistNow() {
+        persistQuietly(SNAPSHOT_DIRTY);
+        persistQuietly(HISTORY_DIRTY);
+    }
+
+    private void persist(int flag) {
+        List<Object[]> rows = new ArrayList<>();
+        List<Integer> userIds = new ArrayList<>();
+        Chunk[] current = chunks;
+        for (int c = 0; c < current.length; c++) {
+            Chunk chunk = current[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int slot = 0; slot < CHUNK_SIZE; slot++) {
+                if (chunk.clearDirty(slot, flag)) {
+                    Position position = chunk.read(slot);
+                    int userId = (c << CHUNK_BITS) | slot;
+                    userIds.add(userId);
+                    rows.add(new Object[]{userId, BigDecimal.valueOf(position.latMicro, 6),
+                            BigDecimal.valueOf(position.lngMicro, 6), position.validUntil});
+                }
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        String sql = flag == SNAPSHOT_DIRTY ? SNAPSHOT_SQL : HISTORY_SQL;
+        LongAdder written = flag == SNAPSHOT_DIRTY ? snapshotRows : historyRows;
+        try {
+            jdbcTemplate.batchUpdate(sql, rows);
+            written.add(rows.size());
+        } catch (DataIntegrityViolationException e) {
+            //用户已被删除等：逐条写，丢弃写不进去的
+            for (Object[] row : rows) {
+                try {
+                    jdbcTemplate.update(sql, row);
+                    written.increment();
+                } catch (DataIntegrityViolationException rowError) {
+                    droppedRows.increment();
+                    log.warn("丢弃无法写入的位置: userId={}, error={}", row[0], rowError.getMessage());
+                }
+            }
+        } catch (DataAccessException e) {
+            //数据库暂时不可用：重新标记，下一轮再写
+            for (Integer userId : userIds) {
+                chunk(userId).markDirty(userId & CHUNK_MASK, flag);
+            }
+            throw e;
+        }
+    }
+
+    //内存中的用户数和写库统计
+    public Map<String, Object> stats() {
+        long now = Instant.now().toEpochMilli();
+        long users = 0;
+        long valid = 0;
+        Chunk[] current = chunks;
+        for (Chunk chunk : current) {
+            if (chunk == null) {
+                continue;
+            }
+            for (int slot = 0; slot < CHUNK_SIZE; slot++) {
+                long validUntil = chunk.validUntil.get(slot);
+                if (validUntil != 0) {
+                    users++;
+                    if (validUntil > now) {
+                        valid++;
+                    }
+                }
+            }
+        }
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("users", users);
+        item.put("validUsers", valid);
+        item.put("chunks", current.length);
+        item.put("updateCount", updates.sum());
+        item.put("staleUpdateCount", staleUpdates.sum());
+        item.put("snapshotRowCount", snapshotRows.sum());
+        item.put("historyRowCount", historyRows.sum());
+        item.put("droppedRowCount", droppedRows.sum());
+        return item;
+    }
+
+    private static int toMicro(BigDecimal degrees) {
+        return degrees.movePointRight(6).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    /**
+     * 一块用户槽位：经纬度（高32位纬度、低32位经度，单位微度）、有效期各一个long数组
+     * 每个槽位一个版本号做顺序锁：写时先把版本号CAS成奇数，写完再加一；读时版本号前后一致且为偶数才算读到完整的一组
+     * 读不加锁；同一用户并发上报极少，写方只会在这种情况下短暂自旋
+     * 写方持有顺序锁时比较有效期，保证并发上报时有效期最晚的一条留下
+     */
+    private static final class Chunk {
+        private final AtomicLongArray versions = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray coordinates = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray validUntil = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicIntegerArray dirty = new AtomicIntegerArray(CHUNK_SIZE);
+
+        //有效期早于已有位置时不写，返回false
+        boolean write(int slot, int latMicro, int lngMicro, long until, int dirtyFlags) {
+            long version = versions.get(slot);
+            while ((version & 1) != 0 || !versions.compareAndSet(slot, version, version + 1)) {
+                Thread.onSpinWait();
+                version = versions.get(slot);
+            }
+            if (until < validUntil.get(slot)) {
+                //没有修改，版本号恢复原值
+                versions.set(slot, version);
+                return false;
+            }
+            coordinates.set(slot, ((long) latMicro << 32) | (lngMicro & 0xffffffffL));
+            validUntil.set(slot, until);
+            versions.set(slot, version + 2);
+            if (dirtyFlags != 0) {
+                markDirty(slot, dirtyFlags);
+            }
+            return true;
+        }
+
+        Position read(int slot) {
+            while (true) {
+                long version = versions.get(slot);
+                if ((version & 1) == 0) {
+                    long packed = coordinates.get(slot);
+                    long until = validUntil.get(slot);
+                    if (versions.get(slot) == version) {
+                        return new Position((int) (packed >> 32), (int) packed, until);
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        void markDirty(int slot, int flag) {
+            dirty.getAndUpdate(slot, flags -> flags | flag);
+        }
+
+        //清除标记，返回清除前是否被标记
+        boolean clearDirty(int slot, int flag) {
+            return (dirty.getAndUpdate(slot, flags -> flags & ~flag) & flag) != 0;
+        }
+    }
+
+    //读出的一个位置
+    public static final class Position {
+        private final int latMicro;
+        private final int lngMicro;
+        private final long validUntil;
+
+        public Position(int latMicro, int lngMicro, long validUntil) {
+            this.latMicro = latMicro;
+            this.lngMicro = lngMicro;
+            this.validUntil = validUntil;
+        }
+
+        public double getLatitude() {
+            return latMicro / MICRO;
+        }
+
+        public double getLongitude() {
+            return lngMicro / MICRO;
+        }
+
+        public long getValidUntil() {
+            return validUntil;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.myteam.activity_campus_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: app_userlocation定时压缩：默认保留期内的每个点都保留，只删除超过保留期的历史；可选按时间桶降采样，
+ * 或不保留历史（每个用户只留最新的一条有效位置）。"最新"按有效期判断，离线补传、乱序写入的旧点不会顶掉真正最新的位置
+ * 按record_Id分段删除，每条DELETE只涉及一段内的行并自动提交，段之间暂停，不长时间占用表锁
+ * @date 2026/10/18 14:40
+ */
+@Component
+public class LocationCompactionJob {
+    private static final Logger log = LoggerFactory.getLogger(LocationCompactionJob.class);
+    //n比l新：有效期更晚，有效期相同时后插入的算新
+    private static final String NEWER = "(n.valid_time > l.valid_time OR (n.valid_time = l.valid_time AND n.record_Id > l.record_Id))";
+    //保留历史：只删除超过保留期的
+    private static final String DELETE_EXPIRED_SQL =
+            "DELETE FROM app_userlocation l WHERE l.record_Id > ? AND l.record_Id <= ? AND l.valid_time <= ?";
+    //不保留历史：过期的删除；有效的只保留每个用户最新的一条
+    private static final String DELETE_LATEST_ONLY_SQL =
+            "DELETE FROM app_userlocation l WHERE l.record_Id > ? AND l.record_Id <= ? AND (l.valid_time <= ? " +
+            "OR EXISTS (SELECT 1 FROM app_userlocation n WHERE n.user_Id = l.user_Id AND n.valid_time > ? AND " + NEWER + "))";
+    //降采样：超过保留期的删除；保留期内每个用户每个时间桶（按有效期划分）只保留最新的一条，最新的一条有效位置总会保留
+    private static final String DELETE_DOWNSAMPLE_SQL =
+            "DELETE FROM app_userlocation l WHERE l.record_Id > ? AND l.record_Id <= ? AND (l.valid_time <= ? " +
+            "OR EXISTS (SELECT 1 FROM app_userlocation n WHERE n.user_Id = l.user_Id " +
+            "AND n.valid_time / ? = l.valid_time / ? AND " + NEWER + "))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //执行间隔（分钟）
+    @Value("${location.compaction.interval-minutes:60}")
+    private long intervalMinutes;
+    //每段的record_Id跨度，一条DELETE最多涉及这么多行
+    @Value("${location.compaction.chunk-size:1000}")
+    private int chunkSize;
+    //段之间暂停（毫秒），让出数据库给在线请求
+    @Value("${location.compaction.pause-ms:50}")
+    private long pauseMillis;
+    //降采样时间桶（分钟），0表示不降采样，保留期内的每个点都保留
+    @Value("${location.compaction.bucket-minutes:0}")
+    private long bucketMinutes;
+    //历史保留天数，更早的记录删除；0表示不保留历史，只保留每个用户最新的一条有效位置
+    @Value("${location.compaction.history-days:7}")
+    private long historyDays;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private volatile long lastRemoved;
+    private volatile long lastMillis;
+    private volatile LocalDateTime lastRun;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "location-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                log.error("位置记录压缩失败: {}", e.getMessage());
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 执行一次压缩，只处理开始时已存在的记录（之后写入的历史留到下一次）
+     * @return 删除的行数，已有压缩在执行时返回-1
+     */
+    public long compact() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        long started = System.nanoTime();
+        long count = 0;
+        try {
+            Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(record_Id) AS min_id, MAX(record_Id) AS max_id FROM app_userlocation");
+            if (range.get("min_id") == null) {
+                return 0;
+            }
+            long minId = ((Number) range.get("min_id")).longValue();
+            long maxId = ((Number) range.get("max_id")).longValue();
+            long now = Instant.now().toEpochMilli();
+            long bucketMillis = TimeUnit.MINUTES.toMillis(bucketMinutes);
+            long cutoff = now - TimeUnit.DAYS.toMillis(historyDays);
+            for (long from = minId - 1; from < maxId; from += chunkSize) {
+                long to = Math.min(maxId, from + chunkSize);
+                if (historyDays <= 0) {
+                    count += jdbcTemplate.update(DELETE_LATEST_ONLY_SQL, from, to, now, now);
+                } else if (bucketMillis > 0) {
+                    count += jdbcTemplate.update(DELETE_DOWNSAMPLE_SQL, from, to, cutoff, bucketMillis, bucketMillis);
+                } else {
+                    count += jdbcTemplate.update(DELETE_EXPIRED_SQL, from, to, cutoff);
+                }
+                chunks.increment();
+                if (pauseMillis > 0 && to < maxId) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return count;
+        } finally {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            runs.increment();
+            removed.add(count);
+            totalMillis.add(millis);
+            lastRemoved = count;
+            lastMillis = millis;
+            lastRun = LocalDateTime.now();
+            running.set(false);
+            if (count > 0) {
+                log.info("位置记录压缩完成，删除{}行，耗时{}毫秒", count, millis);
+            }
+        }
+    }
+
+    //执行次数、删除行数和耗时
+    public Map<String, Object> stats() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("runCount", runs.sum());
+        item.put("removedRowCount", removed.sum());
+        item.put("chunkCount", chunks.sum());
+        item.put("totalMillis", totalMillis.sum());
+        item.put("lastRemovedRowCount", lastRemoved);
+        item.put("lastMillis", lastMillis);
+        item.put("lastRun", lastRun);
+        item.put("bucketMinutes", bucketMinutes);
+        item.put("historyDays", historyDays);
+        return item;
+    }
+}
@@ -1,11 +1,18 @@
 package com.myteam.activity_campus_backend.service;
 
+import com.myteam.activity_campus_backend.config.CacheConfig;
 import com.myteam.activity_campus_backend.dto.request.LocationRequest;
+import com.myteam.activity_campus_backend.dto.response.FreeSlotListResponse;
+import com.myteam.activity_campus_backend.dto.response.SlotAvailableResponse;
 import com.myteam.activity_campus_backend.entity.Location;
 import com.myteam.activity_campus_backend.repository.LocationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
 /**
  * @author sjy15
  * @description:地图保存
@@ -15,6 +22,12 @@ import org.springframework.stereotype.Service;
 public class LocationServer {
     @Autowired
     private LocationRepository locationRepository;
+    @Autowired
+    private VenueScheduleIndex venueScheduleIndex;
+    @Autowired
+    private NearbyActivityIndex nearbyActivityIndex;
+    //同一地址的缓存失效，下次创建活动时重新查询
+    @CacheEvict(cacheNames = CacheConfig.LOCATIONS, key = "#locationRequest.detailAddress")
     public void save(LocationRequest locationRequest) {
         Location location = new Location();
         location.setRegionName(locationRequest.getRegionName());
@@ -24,6 +37,20 @@ public class LocationServer {
         location.setRegionType(locationRequest.getRegionType());
         location.setDetailAddress(locationRequest.getDetailAddress());
         location.setRegionRadius(locationRequest.getRegionRadius());
-        locationRepository.save(location);
+        //保存后写入附近活动索引
+        nearbyActivityIndex.addLocation(locationRepository.save(location));
+    }
+    //查询场地某个时间段是否空闲
+    public SlotAvailableResponse checkSlot(Integer locationId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (!endTime.isAfter(startTime)) {
+            return new SlotAvailableResponse(locationId, startTime, endTime, false, "结束时间必须晚于开始时间");
+        }
+        boolean free = venueScheduleIndex.isFree(locationId, startTime, endTime);
+        return new SlotAvailableResponse(locationId, startTime, endTime, free, free ? "时间段空闲" : "时间段已被占用");
+    }
+    //查询场地某一天的空闲时段
+    public FreeSlotListResponse freeSlotsOfDay(Integer locationId, LocalDate date) {
+        LocalDateTime from = date.atStartOfDay();
+        return new FreeSlotListResponse(locationId, date, venueScheduleIndex.freeSlots(locationId, from, from.plusDays(1)));
     }
 }
@@ -0,0 +1,30 @@
+package com.myteam.activity_campus_backend.service;
+
+/**
+ * @author sjy15
+ * @description: 已确认并推送的聊天消息写库时违反约束被丢弃，由MessageWriteBuffer发布，收到后给房间补一条撤回墓碑
+ * @date 2026/10/18 20:10
+ */
+public class MessageDroppedEvent {
+    private final int messageId;
+    private final int roomId;
+    private final long seq;
+
+    public MessageDroppedEvent(int messageId, int roomId, long seq) {
+        this.messageId = messageId;
+        this.roomId = roomId;
+        this.seq = seq;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+}
@@ -1,18 +1,35 @@
 package com.myteam.activity_campus_backend.service;
 
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.dto.ChatRecallDTO;
+import com.myteam.activity_campus_backend.dto.ConversationDTO;
 import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.dto.UnreadCountDTO;
+import com.myteam.activity_campus_backend.dto.response.ChatDeltaResponse;
+import com.myteam.activity_campus_backend.dto.response.CursorMessageHistoryResponse;
+import com.myteam.activity_campus_backend.dto.response.InboxResponse;
 import com.myteam.activity_campus_backend.dto.response.ListMessageHistory;
 import com.myteam.activity_campus_backend.dto.request.MessageHistoryRequest;
+import com.myteam.activity_campus_backend.dto.request.MessagePageRequest;
 import com.myteam.activity_campus_backend.dto.request.RecallMessageRequest;
 import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.dto.response.PresenceResponse;
+import com.myteam.activity_campus_backend.dto.response.UnreadSummaryResponse;
 import com.myteam.activity_campus_backend.entity.Message;
 import com.myteam.activity_campus_backend.entity.User;
 import com.myteam.activity_campus_backend.repository.MessageRepository;
 import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.util.CursorUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,21 +40,101 @@ import java.util.Optional;
  */
 @Service
 public class MessageServer {
+    private static final int DEFAULT_PAGE_SIZE = 30;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_DELTA_SIZE = 200;
+    private static final int MAX_DELTA_SIZE = 500;
+    //与app_message、私信月表的content列长度一致
+    private static final int MAX_CONTENT_LENGTH = 255;
     @Autowired
     private MessageRepository MessageRepository;
     @Autowired
     private UserRepository userRepository;
-    //撤回消息
+    @Autowired
+    private ChatRoomRegistry chatRoomRegistry;
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+    @Autowired
+    private DirectMessageStore directMessageStore;
+    @Autowired
+    private ChatDeltaStore chatDeltaStore;
+    @Autowired
+    private UnreadCounter unreadCounter;
+    @Autowired
+    private PresenceTracker presenceTracker;
+    @Autowired
+    private ConversationIndex conversationIndex;
+    //撤回消息（按内容+发送者+接收者+时间匹配，旧接口保留；新客户端用recallMessageById）
+    //先查私信（只查发送时间所在月份的表），再查活动聊天室
     public String recallMessage(RecallMessageRequest recall) {
+        MessageHistoryResponse direct=directMessageStore.findExact(recall.getSenderId(), recall.getReceiverId(), recall.getTime(), recall.getMessage());
+        if(direct!=null){
+            directMessageStore.delete(direct);
+            return "撤回成功";
+        }
         Message message=MessageRepository.findByContentAndSenderAndReceiverAndTime(recall.getMessage(), recall.getSenderId(), recall.getReceiverId(),recall.getTime());
+        if(message==null&&messageWriteBuffer.pendingCount()>0){
+            //可能还在写缓冲里没入库，先写库再查
+            messageWriteBuffer.flushNow();
+            message=MessageRepository.findByContentAndSenderAndReceiverAndTime(recall.getMessage(), recall.getSenderId(), recall.getReceiverId(),recall.getTime());
+        }
         if(message==null){
             return "消息不存在";
         }
-        MessageRepository.delete(message);
-        return "撤回成功";
+        return deleteAndNotify(message)?"撤回成功":"消息不存在";
+    }
+    /**
+     * 按消息id撤回：主键查询 + 校验发送者
+     * @param messageId 消息id
+     * @param currentUserId 当前登录用户id
+     * @return 撤回成功/消息不存在/无权撤回他人的消息
+     */
+    public String recallMessageById(Integer messageId, Integer currentUserId) {
+        Optional<Message> found=MessageRepository.findById(messageId);
+        if(found.isEmpty()&&messageId<=messageWriteBuffer.lastAssignedId()){
+            //可能还在写缓冲里没入库，先写库再查
+            messageWriteBuffer.flushNow();
+            found=MessageRepository.findById(messageId);
+        }
+        if(found.isEmpty()){
+            return "消息不存在";
+        }
+        Message message=found.get();
+        if(!message.getUser().getId().equals(currentUserId)){
+            return "无权撤回他人的消息";
+        }
+        return deleteAndNotify(message)?"撤回成功":"消息不存在";
+    }
+    //删除消息、写撤回墓碑并推送撤回通知，在线客户端按id删除本地消息；消息已被并发撤回时返回false
+    private boolean deleteAndNotify(Message message) {
+        LocalDateTime recallTime=LocalDateTime.now();
+        //在房间锁内推送，和新消息按序号顺序入队
+        Long seq=chatDeltaStore.recall(message,recallTime,recallSeq->{
+            recentMessageCache.remove(message.getReceiveId(), message.getId());
+            chatRoomRegistry.publishRecall(message.getReceiveId(),
+                    new ChatRecallDTO(message.getId(), recallSeq, message.getReceiveId(), recallTime));
+        });
+        return seq!=null;
     }
-    //发送信息
+    //已推送的消息写库时被丢弃：补撤回墓碑并推送撤回通知，客户端和增量同步都会删掉它
+    @EventListener
+    public void onMessageDropped(MessageDroppedEvent event) {
+        LocalDateTime recallTime=LocalDateTime.now();
+        chatDeltaStore.tombstone(event.getRoomId(), event.getMessageId(), event.getSeq(), recallTime, recallSeq->{
+            recentMessageCache.remove(event.getRoomId(), event.getMessageId());
+            chatRoomRegistry.publishRecall(event.getRoomId(),
+                    new ChatRecallDTO(event.getMessageId(), recallSeq, event.getRoomId(), recallTime));
+        });
+    }
+    //发送活动聊天室消息（receiverId为活动id）
     public String sendMessage(MessageSendDTO savedMessage) {
+        //写缓冲直接用JDBC写库，不经过实体校验，入队前先检查内容
+        String invalid=checkContent(savedMessage.getMessage());
+        if(invalid!=null){
+            return invalid;
+        }
         Message message=new Message();
         Optional<User> sender=userRepository.findById(savedMessage.getSenderId());
         if(sender.isEmpty()){
@@ -48,15 +145,208 @@ public class MessageServer {
         message.setReceiveId(savedMessage.getReceiverId());//活动id
         message.setContent(savedMessage.getMessage());
         message.setSendTime(LocalDateTime.now());
-        MessageRepository.save(message);
+        //写日志入队即返回，后台批量写库；队列满时抛出QueueFullException
+        //推送给房间内的在线连接：在分配序号的房间锁内入队，并发发送时也按序号顺序推送
+        messageWriteBuffer.append(message, appended->chatRoomRegistry.publish(appended.getReceiveId(),
+                new ChatMessageDTO(appended.getId(), appended.getRoomSeq(), appended.getReceiveId(), user.getId(),
+                        user.getUserName(), appended.getContent(), appended.getSendTime())));
+        recentMessageCache.add(new MessageHistoryResponse(message.getId(), message.getReceiveId(),
+                user.getUserName(), message.getContent(), message.getSendTime()));
+        unreadCounter.onRoomMessage(message.getReceiveId(), user.getId());
         return "发送成功";
     }
+    //发送私信（receiverId为用户id），写入私信月表，不进入活动聊天室
+    public String sendDirectMessage(MessageSendDTO savedMessage) {
+        String invalid=checkContent(savedMessage.getMessage());
+        if(invalid!=null){
+            return invalid;
+        }
+        Optional<User> sender=userRepository.findById(savedMessage.getSenderId());
+        if(sender.isEmpty()){
+            return "发送者不存在";
+        }
+        if(userRepository.findById(savedMessage.getReceiverId()).isEmpty()){
+            return "接收者不存在";
+        }
+        directMessageStore.insert(sender.get().getId(), sender.get().getUserName(), savedMessage.getReceiverId(),
+                savedMessage.getMessage(), LocalDateTime.now());
+        return "发送成功";
+    }
+    //消息内容不能为空、不能超过列长度，合法时返回null
+    private static String checkContent(String content) {
+        if(content==null||content.isBlank()){
+            return "消息内容不能为空";
+        }
+        if(content.length()>MAX_CONTENT_LENGTH){
+            return "消息内容不能超过"+MAX_CONTENT_LENGTH+"个字符";
+        }
+        return null;
+    }
+    //查看收到的私信
+    public ListMessageHistory directMessageHistory(MessageHistoryRequest messageHistoryRequest) {
+        List<MessageHistoryResponse> messageList=directMessageStore.findReceived(messageHistoryRequest.getReceiveId());
+        if(messageList.isEmpty()){
+            return new ListMessageHistory(null,false);
+        }
+        return new ListMessageHistory(messageList,true);
+    }
+    /**
+     * 和某个用户的私信会话，游标分页（默认最新一页，before取更早的），返回的消息按发送时间升序
+     * @param currentUserId 当前登录用户id
+     * @param peerId 对方用户id
+     */
+    public CursorMessageHistoryResponse directConversationPage(Integer currentUserId, Integer peerId, String before, Integer size) {
+        int limit=size==null||size<=0?DEFAULT_PAGE_SIZE:Math.min(size,MAX_PAGE_SIZE);
+        CursorUtil.Cursor cursor=before==null||before.isBlank()?null:CursorUtil.decode(before);
+        //多取一条用于判断是否还有更早的消息
+        List<MessageHistoryResponse> messages=directMessageStore.findConversationBefore(currentUserId,peerId,cursor,limit+1);
+        boolean hasMore=messages.size()>limit;
+        messages=new ArrayList<>(hasMore?messages.subList(0,limit):messages);
+        Collections.reverse(messages);
+        if(messages.isEmpty()){
+            return new CursorMessageHistoryResponse(true,messages,null,null,false,"没有更多消息");
+        }
+        MessageHistoryResponse first=messages.get(0);
+        MessageHistoryResponse last=messages.get(messages.size()-1);
+        return new CursorMessageHistoryResponse(true,messages,
+                CursorUtil.encode(first.getSendTime(),first.getMessageId()),
+                CursorUtil.encode(last.getSendTime(),last.getMessageId()),
+                hasMore,"查询成功");
+    }
+    /**
+     * 私信收件箱：每个会话一条（对方、最后一条私信、未读数），按最后一条私信时间倒序游标分页，只读会话摘要表
+     * @param currentUserId 当前登录用户id
+     * @param cursor 上一页返回的nextCursor，第一页不传
+     * @param size 每页会话数，默认30，最大100
+     */
+    public InboxResponse inbox(Integer currentUserId, String cursor, Integer size) {
+        int limit=size==null||size<=0?DEFAULT_PAGE_SIZE:Math.min(size,MAX_PAGE_SIZE);
+        CursorUtil.Cursor after=cursor==null||cursor.isBlank()?null:CursorUtil.decode(cursor);
+        //多取一条用于判断是否还有下一页
+        List<ConversationDTO> conversations=conversationIndex.inbox(currentUserId,after,limit+1);
+        boolean hasMore=conversations.size()>limit;
+        if(hasMore){
+            conversations=new ArrayList<>(conversations.subList(0,limit));
+        }
+        if(conversations.isEmpty()){
+            return new InboxResponse(true,conversations,null,false,"没有更多会话");
+        }
+        ConversationDTO last=conversations.get(conversations.size()-1);
+        return new InboxResponse(true,conversations,
+                hasMore?CursorUtil.encode(last.getLastTime(),last.getLastMessageId()):null,hasMore,"查询成功");
+    }
+    //按id撤回私信：只能撤回自己发送的
+    public String recallDirectMessageById(Integer messageId, Integer currentUserId) {
+        MessageHistoryResponse message=directMessageStore.findById(messageId);
+        if(message==null){
+            return "消息不存在";
+        }
+        if(!message.getSenderId().equals(currentUserId)){
+            return "无权撤回他人的消息";
+        }
+        directMessageStore.delete(message);
+        return "撤回成功";
+    }
+    /**
+     * 活动聊天室增量同步：since之后的新消息和撤回墓碑，按序号升序
+     * @param activityId 活动id
+     * @param since 客户端收到的最大序号（推送和上次同步返回的nextSince），不传或0表示从头开始
+     * @param size 最多返回的消息条数，默认200，最大500
+     */
+    public ChatDeltaResponse chatDelta(Integer activityId, Long since, Integer size) {
+        if(since!=null&&since<0){
+            throw new IllegalArgumentException("since不能为负数");
+        }
+        int limit=size==null||size<=0?DEFAULT_DELTA_SIZE:Math.min(size,MAX_DELTA_SIZE);
+        return chatDeltaStore.delta(activityId,since==null?0:since,limit);
+    }
+    //当前用户全部会话的未读数：活动聊天室来自UnreadCounter，私信来自会话摘要
+    public UnreadSummaryResponse unread(Integer currentUserId) {
+        List<UnreadCountDTO> conversations=new ArrayList<>(unreadCounter.unread(currentUserId));
+        conversations.addAll(conversationIndex.unread(currentUserId));
+        long total=conversations.stream().mapToLong(UnreadCountDTO::getUnreadCount).sum();
+        return new UnreadSummaryResponse(true,total,conversations,"查询成功");
+    }
+    //标记活动聊天室已读
+    public void markActivityRead(Integer currentUserId, Integer activityId) {
+        unreadCounter.markRead(currentUserId,activityId);
+    }
+    //标记和某个用户的私信已读
+    public void markDirectRead(Integer currentUserId, Integer peerId) {
+        conversationIndex.markRead(currentUserId,peerId);
+    }
+    //聊天室在线心跳（SSE等非WebSocket客户端定时调用，WebSocket连接由pong维持）
+    public PresenceResponse heartbeat(Integer activityId, Integer currentUserId) {
+        presenceTracker.heartbeat(activityId,currentUserId);
+        return presence(activityId);
+    }
+    //离开聊天室，立即从在线名单移除
+    public void leave(Integer activityId, Integer currentUserId) {
+        presenceTracker.leave(activityId,currentUserId);
+    }
+    //聊天室在线人数和在线用户，只读内存
+    public PresenceResponse presence(Integer activityId) {
+        List<Integer> members=presenceTracker.onlineMembers(activityId,System.currentTimeMillis());
+        return new PresenceResponse(true,activityId,members.size(),members,"查询成功");
+    }
+    //订阅活动聊天室（SSE）
+    public SseEmitter subscribe(Integer activityId) {
+        return chatRoomRegistry.subscribeSse(activityId);
+    }
     //查看消息历史
     public ListMessageHistory messageHistory(MessageHistoryRequest messageHistoryRequest) {
+        //旧接口返回整个房间，写缓冲里已确认的消息先写库
+        if(messageWriteBuffer.pendingCount()>0){
+            messageWriteBuffer.flushNow();
+        }
         List<MessageHistoryResponse> messageList=MessageRepository.findByReceiveId(messageHistoryRequest.getReceiveId());
         if(messageList.isEmpty()){
             return new ListMessageHistory(null,false);
         }
         return new ListMessageHistory(messageList,true);
     }
+    //分页查看消息历史：默认最新一页，before取更早的，after取更新的；返回的消息按发送时间升序
+    public CursorMessageHistoryResponse messageHistoryPage(MessagePageRequest request) {
+        boolean hasBefore=request.getBefore()!=null&&!request.getBefore().isBlank();
+        boolean hasAfter=request.getAfter()!=null&&!request.getAfter().isBlank();
+        if(hasBefore&&hasAfter){
+            throw new IllegalArgumentException("before和after不能同时使用");
+        }
+        int size=request.getSize()==null||request.getSize()<=0?DEFAULT_PAGE_SIZE:Math.min(request.getSize(),MAX_PAGE_SIZE);
+        CursorUtil.Cursor before=hasBefore?CursorUtil.decode(request.getBefore()):null;
+        CursorUtil.Cursor after=hasAfter?CursorUtil.decode(request.getAfter()):null;
+        List<MessageHistoryResponse> messages;
+        boolean hasMore;
+        //最近的消息从内存返回，缓冲覆盖不到的更早分页再查库
+        RecentMessageCache.Page cached=recentMessageCache.page(request.getReceiveId(),before,after,size);
+        if(cached!=null){
+            messages=cached.getMessages();
+            hasMore=cached.isHasMore();
+        }else{
+            //多取一条用于判断是否还有更多
+            Pageable pageable=PageRequest.of(0,size+1);
+            if(after!=null){
+                messages=MessageRepository.findPageAfter(request.getReceiveId(),after.getTime(),after.getId(),pageable);
+            }else if(before!=null){
+                messages=MessageRepository.findPageBefore(request.getReceiveId(),before.getTime(),before.getId(),pageable);
+            }else{
+                messages=MessageRepository.findLatestPage(request.getReceiveId(),pageable);
+            }
+            hasMore=messages.size()>size;
+            messages=new ArrayList<>(hasMore?messages.subList(0,size):messages);
+            if(after==null){
+                //倒序查出的，翻转成升序
+                Collections.reverse(messages);
+            }
+        }
+        if(messages.isEmpty()){
+            return new CursorMessageHistoryResponse(true,messages,null,null,false,"没有更多消息");
+        }
+        MessageHistoryResponse first=messages.get(0);
+        MessageHistoryResponse last=messages.get(messages.size()-1);
+        return new CursorMessageHistoryResponse(true,messages,
+                CursorUtil.encode(first.getSendTime(),first.getMessageId()),
+                CursorUtil.encode(last.getSendTime(),last.getMessageId()),
+                hasMore,"查询成功");
+    }
 }
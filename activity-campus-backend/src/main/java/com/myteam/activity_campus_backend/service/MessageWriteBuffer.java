@@ -0,0 +1,502 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.entity.Message;
+import com.myteam.activity_campus_backend.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author sjy15
+ * @description: 聊天消息写缓冲（write-behind）
+ * 发送时只写本地日志并放入内存队列即返回，后台线程按条数或时间批量插入app_message；
+ * 消息id和房间序号由这里分配（单实例部署），日志在批次提交后删除，重启时补写未入库的消息
+ * @date 2026/10/17 20:50
+ */
+@Component
+public class MessageWriteBuffer {
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBuffer.class);
+    private static final String INSERT_SQL =
+            "INSERT INTO app_message (message_Id, room_Seq, receive_Id, user_Id, content, send_Time) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SEGMENT_PREFIX = "messages-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    //写库时被丢弃的消息，格式同日志段，不参与补写，留给人工处理
+    private static final String DEAD_LETTER = "dead-letter.journal";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private RoomSequencer roomSequencer;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    //队列上限：已确认但未入库的消息数，满了之后发送方最多等待offerTimeoutMillis
+    @Value("${message.write.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${message.write.offer-timeout-ms:200}")
+    private long offerTimeoutMillis;
+    //每批插入条数，攒够一批立即写库
+    @Value("${message.write.batch-size:200}")
+    private int batchSize;
+    //不满一批时最长等待时间
+    @Value("${message.write.flush-interval-ms:50}")
+    private long flushIntervalMillis;
+    //本地日志目录
+    @Value("${message.write.journal-dir:data/message-journal}")
+    private String journalDir;
+
+    private final Object journalLock = new Object();
+    private final Queue<PendingMessage> queue = new ArrayDeque<>();
+    //只由写库线程访问：上次写库失败留下的消息，以及对应的已封存日志段
+    private final List<PendingMessage> retry = new ArrayList<>();
+    private final List<Path> sealedSegments = new ArrayList<>();
+    //按房间和序号索引的未入库消息，在journalLock里读写；写库提交后移除，增量同步不用为读到它们而强制写库
+    private final Map<Integer, TreeMap<Long, PendingMessage>> unflushed = new HashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private Semaphore permits;
+    private ScheduledExecutorService flusher;
+    private DataOutputStream journal;
+    private FileOutputStream journalFile;
+    //在journalLock里复用：先把整条记录编码到这里再一次写入日志，编码失败时日志里不会留下半条记录
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private Path currentSegment;
+    private long segmentSeq;
+
+    //统计：入队、入库、被拒绝、丢弃（违反约束）、批次数、写库失败次数、写库耗时
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+        Integer maxId = messageRepository.findMaxId();
+        int seed = maxId == null ? 0 : maxId;
+        //补写上次未入库的消息
+        for (Path segment : listSegments(dir)) {
+            seed = Math.max(seed, replay(segment));
+            segmentSeq = Math.max(segmentSeq, segmentSeq(segment));
+        }
+        nextId.set(seed);
+        permits = new Semaphore(queueCapacity);
+        openSegment();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //关闭时把队列里的消息全部写库
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+        synchronized (journalLock) {
+            closeJournal();
+            if (queue.isEmpty() && retry.isEmpty()) {
+                deleteSegment(currentSegment);
+            }
+        }
+    }
+
+    /**
+     * 分配消息id和房间序号、写日志并入队，写库异步进行
+     * @param message 待保存的消息，返回时已设置id和房间序号
+     * @throws QueueFullException 队列已满且等待超时
+     */
+    public Message append(Message message) {
+        return append(message, null);
+    }
+
+    /**
+     * 同上，onSequenced在持有房间锁时调用（日志写入成功后），用于按序号顺序推送
+     * 回调里只能做不阻塞的事（如放入推送队列）
+     */
+    public Message append(Message message, Consumer<Message> onSequenced) {
+        try {
+            if (!permits.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new QueueFullException("消息发送繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueFullException("请求被中断");
+        }
+        int size;
+        try {
+            roomSequencer.warm(message.getReceiveId());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        synchronized (journalLock) {
+            //序号和入队在同一把锁里完成：flushNow返回时，已分配的序号对应的消息都已写库
+            //分配序号到回调结束持有房间锁，和撤回墓碑一起，同一房间的推送按序号顺序入队
+            synchronized (roomSequencer.lock(message.getReceiveId())) {
+                PendingMessage pending;
+                try {
+                    pending = new PendingMessage(nextId.incrementAndGet(), roomSequencer.next(message.getReceiveId()),
+                            message.getReceiveId(), message.getUser().getId(), message.getUser().getUserName(),
+                            message.getContent(), message.getSendTime());
+                    record.reset();
+                    write(recordOut, pending);
+                    record.writeTo(journal);
+                    journal.flush();
+                } catch (RuntimeException | IOException e) {
+                    //消息id在锁内分配，可以回退；房间序号不回退，允许有空洞
+                    nextId.decrementAndGet();
+                    permits.release();
+                    if (e instanceof IOException) {
+                        throw new UncheckedIOException("消息日志写入失败", (IOException) e);
+                    }
+                    throw (RuntimeException) e;
+                }
+                message.setId(pending.id);
+                message.setRoomSeq(pending.seq);
+                queue.add(pending);
+                unflushed.computeIfAbsent(pending.receiveId, k -> new TreeMap<>()).put(pending.seq, pending);
+                size = queue.size();
+                if (onSequenced != null) {
+                    try {
+                        onSequenced.accept(message);
+                    } catch (RuntimeException e) {
+                        //消息已经写入日志，推送失败不影响发送结果
+                        log.error("消息入队后回调失败: messageId={}, error={}", pending.id, e.getMessage());
+                    }
+                }
+            }
+        }
+        appended.increment();
+        //攒够一批立即写库，不等定时器
+        if (size >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException ignored) {
+                //正在关闭，stop()会写完剩下的消息
+            }
+        }
+        return message;
+    }
+
+    //最近分配的消息id，大于它的id一定不存在
+    public int lastAssignedId() {
+        return nextId.get();
+    }
+
+    //已确认但还没写库的消息数
+    public int pendingCount() {
+        return queueCapacity - permits.availablePermits();
+    }
+
+    /**
+     * 房间里序号在(since, upTo]之间、还没写库的消息，按序号升序
+     * 在journalLock里读：序号不超过upTo的消息要么已在这里，要么已经写库
+     */
+    public List<ChatMessageDTO> unflushed(int roomId, long since, long upTo) {
+        synchronized (journalLock) {
+            TreeMap<Long, PendingMessage> room = unflushed.get(roomId);
+            if (room == null || since >= upTo) {
+                return List.of();
+            }
+            return room.subMap(since, false, upTo, true).values().stream()
+                    .map(p -> new ChatMessageDTO(p.id, p.seq, p.receiveId, p.userId, p.userName, p.content, p.sendTime))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    //立即写库并等待完成（撤回、测试等需要读到刚发送的消息时使用）
+    public void flushNow() {
+        try {
+            flusher.submit(this::flushQuietly).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            log.warn("消息写库失败: {}", e.getMessage());
+        }
+    }
+
+    //取出队列中的全部消息并切换日志段，再分批写库；全部成功后删除旧日志段
+    private void flushQuietly() {
+        flushRequested.set(false);
+        synchronized (journalLock) {
+            if (!queue.isEmpty()) {
+                retry.addAll(queue);
+                queue.clear();
+                closeJournal();
+                sealedSegments.add(currentSegment);
+                try {
+                    openSegment();
+                } catch (IOException e) {
+                    log.error("消息日志切换失败: {}", e.getMessage());
+                }
+            }
+        }
+        if (retry.isEmpty()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        int done = 0;
+        try {
+            while (done < retry.size()) {
+                List<PendingMessage> chunk = retry.subList(done, Math.min(done + batchSize, retry.size()));
+                insertChunk(chunk);
+                done += chunk.size();
+            }
+        } catch (DataAccessException e) {
+            failures.increment();
+            log.error("消息批量写库失败，稍后重试: pending={}, error={}", retry.size() - done, e.getMessage());
+        } finally {
+            List<PendingMessage> written = retry.subList(0, done);
+            synchronized (journalLock) {
+                for (PendingMessage pending : written) {
+                    TreeMap<Long, PendingMessage> room = unflushed.get(pending.receiveId);
+                    if (room != null) {
+                        room.remove(pending.seq);
+                        if (room.isEmpty()) {
+                            unflushed.remove(pending.receiveId);
+                        }
+                    }
+                }
+            }
+            written.clear();
+            permits.release(done);
+            flushNanos.add(System.nanoTime() - startedAt);
+        }
+        if (retry.isEmpty()) {
+            sealedSegments.forEach(this::deleteSegment);
+            sealedSegments.clear();
+        }
+    }
+
+    //一批一个事务；违反约束（如发送者已删除）时逐条插入，丢弃插不进去的消息
+    private void insertChunk(List<PendingMessage> chunk) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, chunk, chunk.size(),
+                    (ps, pending) -> {
+                        ps.setInt(1, pending.id);
+                        ps.setLong(2, pending.seq);
+                        ps.setInt(3, pending.receiveId);
+                        ps.setInt(4, pending.userId);
+                        ps.setString(5, pending.content);
+                        ps.setTimestamp(6, Timestamp.valueOf(pending.sendTime));
+                    }));
+            batches.increment();
+            flushed.add(chunk.size());
+        } catch (DataIntegrityViolationException e) {
+            for (PendingMessage pending : chunk) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, pending.id, pending.seq, pending.receiveId, pending.userId,
+                            pending.content, Timestamp.valueOf(pending.sendTime));
+                    flushed.increment();
+                } catch (DataIntegrityViolationException single) {
+                    dropped.increment();
+                    log.error("消息无法写库，已丢弃: messageId={}, error={}", pending.id, single.getMessage());
+                    deadLetter(pending);
+                }
+            }
+        }
+    }
+
+    /**
+     * 丢弃的消息已经确认并推送过：追加到死信文件，并发布事件让聊天室补一条撤回墓碑，客户端据此删除
+     * 启动补写时事件监听还没注册，只留死信
+     */
+    private void deadLetter(PendingMessage pending) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(new DataOutputStream(bytes), pending);
+            Files.write(Paths.get(journalDir, DEAD_LETTER), bytes.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("死信写入失败: messageId={}, error={}", pending.id, e.getMessage());
+        }
+        try {
+            eventPublisher.publishEvent(new MessageDroppedEvent(pending.id, pending.receiveId, pending.seq));
+        } catch (RuntimeException e) {
+            log.error("丢弃消息的撤回通知失败: messageId={}, error={}", pending.id, e.getMessage());
+        }
+    }
+
+    //补写一个日志段中尚未入库的消息，返回其中最大的消息id
+    private int replay(Path segment) {
+        List<PendingMessage> entries = read(segment);
+        if (entries.isEmpty()) {
+            deleteSegment(segment);
+            return 0;
+        }
+        int min = entries.stream().mapToInt(p -> p.id).min().getAsInt();
+        int max = entries.stream().mapToInt(p -> p.id).max().getAsInt();
+        Set<Integer> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT message_Id FROM app_message WHERE message_Id BETWEEN ? AND ?", Integer.class, min, max));
+        List<PendingMessage> missing = entries.stream()
+                .filter(p -> !existing.contains(p.id))
+                .collect(Collectors.toList());
+        try {
+            for (int i = 0; i < missing.size(); i += batchSize) {
+                insertChunk(missing.subList(i, Math.min(i + batchSize, missing.size())));
+            }
+            deleteSegment(segment);
+            log.info("补写消息日志: segment={}, replayed={}", segment.getFileName(), missing.size());
+        } catch (DataAccessException e) {
+            //保留日志文件，改名避免下次启动重复处理，等待人工处理
+            log.error("消息日志补写失败: segment={}, error={}", segment.getFileName(), e.getMessage());
+            try {
+                Files.move(segment, segment.resolveSibling(segment.getFileName() + ".failed"));
+            } catch (IOException ignored) {
+                //改名失败时下次启动再试
+            }
+        }
+        return max;
+    }
+
+    //读取日志段，末尾写了一半的记录（进程崩溃）直接忽略
+    private static List<PendingMessage> read(Path segment) {
+        List<PendingMessage> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                entries.add(new PendingMessage(in.readInt(), in.readLong(), in.readInt(), in.readInt(), null, in.readUTF(),
+                        LocalDateTime.parse(in.readUTF())));
+            }
+        } catch (EOFException end) {
+            return entries;
+        } catch (IOException | RuntimeException e) {
+            log.error("消息日志损坏，只补写可读部分: segment={}, error={}", segment.getFileName(), e.getMessage());
+            return entries;
+        }
+    }
+
+    private static void write(DataOutputStream out, PendingMessage pending) throws IOException {
+        out.writeInt(pending.id);
+        out.writeLong(pending.seq);
+        out.writeInt(pending.receiveId);
+        out.writeInt(pending.userId);
+        out.writeUTF(pending.content);
+        out.writeUTF(pending.sendTime.toString());
+    }
+
+    private void openSegment() throws IOException {
+        currentSegment = Paths.get(journalDir, SEGMENT_PREFIX + (++segmentSeq) + SEGMENT_SUFFIX);
+        journalFile = new FileOutputStream(currentSegment.toFile(), true);
+        journal = new DataOutputStream(new BufferedOutputStream(journalFile));
+    }
+
+    //封存日志段时落盘（每个写库周期一次），之后即使写库失败、机器断电，日志段也还在
+    private void closeJournal() {
+        try {
+            journal.flush();
+            journalFile.getChannel().force(false);
+            journal.close();
+        } catch (IOException e) {
+            log.warn("关闭消息日志失败: {}", e.getMessage());
+        }
+    }
+
+    private void deleteSegment(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            log.warn("删除消息日志失败: segment={}, error={}", segment.getFileName(), e.getMessage());
+        }
+    }
+
+    //按序号升序列出日志段
+    private static List<Path> listSegments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(MessageWriteBuffer::segmentSeq))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    //写缓冲运行指标
+    public Map<String, Object> stats() {
+        long count = batches.sum();
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("queueCapacity", queueCapacity);
+        item.put("pending", pendingCount());
+        item.put("appendedCount", appended.sum());
+        item.put("flushedCount", flushed.sum());
+        item.put("rejectedCount", rejected.sum());
+        item.put("droppedCount", dropped.sum());
+        item.put("batchCount", count);
+        item.put("failedFlushCount", failures.sum());
+        item.put("avgBatchSize", count == 0 ? 0d : (double) flushed.sum() / count);
+        item.put("totalFlushMillis", flushNanos.sum() / 1e6);
+        return item;
+    }
+
+    //已确认、等待写库的一条消息
+    private static final class PendingMessage {
+        private final int id;
+        private final long seq;
+        private final int receiveId;
+        private final int userId;
+        //只在内存里，不写日志；补写日志时为null
+        private final String userName;
+        private final String content;
+        private final LocalDateTime sendTime;
+        PendingMessage(int id, long seq, int receiveId, int userId, String userName, String content, LocalDateTime sendTime) {
+            this.id = id;
+            this.seq = seq;
+            this.receiveId = receiveId;
+            this.userId = userId;
+            this.userName = userName;
+            this.content = content;
+            this.sendTime = sendTime;
+        }
+    }
+
+    //写缓冲已满且等待超时
+    public static class QueueFullException extends RuntimeException {
+        public QueueFullException(String message) {
+            super(message);
+        }
+    }
+}
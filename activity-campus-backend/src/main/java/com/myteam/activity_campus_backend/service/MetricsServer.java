@@ -0,0 +1,147 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.myteam.activity_campus_backend.util.JWTTokenUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author sjy15
+ * @description: 运行指标汇总
+ * @date 2026/10/17 15:20
+ */
+@Service
+public class MetricsServer {
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private JWTTokenUtil jwtTokenUtil;
+    @Autowired
+    private PasswordService passwordService;
+    @Autowired
+    private ChatRoomRegistry chatRoomRegistry;
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+    @Autowired
+    private DirectMessageStore directMessageStore;
+    @Autowired
+    private LiveLocationStore liveLocationStore;
+    @Autowired
+    private GeofenceEngine geofenceEngine;
+    @Autowired
+    private AttendanceRecorder attendanceRecorder;
+    @Autowired
+    private LocationCompactionJob locationCompactionJob;
+    @Autowired
+    private ChatDeltaStore chatDeltaStore;
+    @Autowired
+    private UnreadCounter unreadCounter;
+    @Autowired
+    private PresenceTracker presenceTracker;
+    @Autowired
+    private RateLimiter rateLimiter;
+    @Autowired
+    private ConversationIndex conversationIndex;
+
+    //各缓存的命中、未命中、淘汰次数和当前条数
+    public Map<String, Map<String, Object>> cacheStats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (!(cache instanceof CaffeineCache)) {
+                continue;
+            }
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = ((CaffeineCache) cache).getNativeCache();
+            result.put(name, toMap(nativeCache.stats(), nativeCache.estimatedSize()));
+        }
+        //已验证令牌缓存不走CacheManager（按令牌过期时间逐条失效），单独统计
+        result.put("verifiedTokens", toMap(jwtTokenUtil.verifiedCacheStats(), jwtTokenUtil.verifiedCacheSize()));
+        return result;
+    }
+
+    //密码计算线程池的队列深度和耗时
+    public Map<String, Object> passwordHashStats() {
+        return passwordService.stats();
+    }
+
+    //聊天室在线房间数和连接数
+    public Map<String, Object> chatStats() {
+        return chatRoomRegistry.stats();
+    }
+
+    //消息写缓冲的积压量、批次数和写库耗时
+    public Map<String, Object> messageWriteStats() {
+        return messageWriteBuffer.stats();
+    }
+
+    //聊天室最近消息缓存的命中率和内存占用
+    public Map<String, Object> recentMessageStats() {
+        return recentMessageCache.stats();
+    }
+
+    //私信月表和保留期
+    public Map<String, Object> directMessageStats() {
+        return directMessageStore.stats();
+    }
+
+    //实时位置：内存中的用户数和写库行数
+    public Map<String, Object> liveLocationStats() {
+        return liveLocationStore.stats();
+    }
+
+    //地理围栏和到场记录
+    public Map<String, Object> geofenceStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("engine", geofenceEngine.stats());
+        result.put("attendance", attendanceRecorder.stats());
+        return result;
+    }
+
+    //位置记录压缩：删除行数和耗时
+    public Map<String, Object> locationCompactionStats() {
+        return locationCompactionJob.stats();
+    }
+
+    //聊天室增量同步：撤回数、增量查询次数和返回条数
+    public Map<String, Object> chatDeltaStats() {
+        return chatDeltaStore.stats();
+    }
+
+    //未读数：计数、标记已读和写库行数
+    public Map<String, Object> unreadStats() {
+        return unreadCounter.stats();
+    }
+
+    //聊天室在线状态：房间数、在线人数、心跳和过期次数
+    public Map<String, Object> presenceStats() {
+        return presenceTracker.stats();
+    }
+
+    //写接口限流：每条规则的放行和拒绝次数
+    public Map<String, Object> rateLimitStats() {
+        return rateLimiter.stats();
+    }
+
+    //私信会话摘要：更新次数、收件箱查询次数、补建的会话数
+    public Map<String, Object> conversationStats() {
+        return conversationIndex.stats();
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats, long size) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("hitCount", stats.hitCount());
+        item.put("missCount", stats.missCount());
+        item.put("hitRate", stats.hitRate());
+        item.put("evictionCount", stats.evictionCount());
+        item.put("size", size);
+        return item;
+    }
+}
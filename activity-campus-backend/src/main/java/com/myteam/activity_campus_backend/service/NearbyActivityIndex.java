@@ -0,0 +1,222 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.dto.NearbyActivityDTO;
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.entity.Location;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.LocationRepository;
+import com.myteam.activity_campus_backend.util.GeoUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author sjy15
+ * @description: 附近活动空间索引（按经纬度划分均匀网格，每个格子记录其中启用的地点和地点上未结束的活动）
+ * @date 2026/10/17 18:10
+ */
+@Component
+public class NearbyActivityIndex {
+    private static final Logger log = LoggerFactory.getLogger(NearbyActivityIndex.class);
+    //格子边长（度），纬度方向约1.1公里
+    private static final double CELL_DEGREES = 0.01;
+    //每度纬度对应的弧长（米）
+    private static final double METERS_PER_DEGREE = GeoUtil.EARTH_RADIUS * Math.PI / 180;
+    //经度方向一整圈的格子数，经度格子编号回绕到[-180, 180)对应的范围内
+    private static final int LNG_CELLS = (int) Math.round(360 / CELL_DEGREES);
+    private static final int MIN_LNG_CELL = (int) Math.floor(-180 / CELL_DEGREES);
+
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    //格子编号 -> 格子内的地点
+    private volatile Map<Long, List<Venue>> cells = new ConcurrentHashMap<>();
+    //地点id -> 地点（活动按地点id挂到对应地点上）
+    private volatile Map<Integer, Venue> venues = new ConcurrentHashMap<>();
+
+    //启动时从数据库加载启用的地点和未结束的活动
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Map<Long, List<Venue>> newCells = new ConcurrentHashMap<>();
+        Map<Integer, Venue> newVenues = new ConcurrentHashMap<>();
+        for (Location location : locationRepository.findByIsEnabledTrue()) {
+            addVenue(newCells, newVenues, location);
+        }
+        int count = 0;
+        for (Object[] row : activityRepository.findUpcomingForNearby(LocalDateTime.now())) {
+            Venue venue = newVenues.get((Integer) row[0]);
+            if (venue != null) {
+                venue.activities.add(new UpcomingActivity((Integer) row[1], (String) row[2],
+                        (LocalDateTime) row[3], (LocalDateTime) row[4]));
+                count++;
+            }
+        }
+        cells = newCells;
+        venues = newVenues;
+        log.info("附近活动索引重建完成，共{}个地点，{}个格子，{}条未结束活动", newVenues.size(), newCells.size(), count);
+    }
+
+    //保存地点后增量写入索引（未启用的地点不索引）
+    public synchronized void addLocation(Location location) {
+        if (location == null || location.getId() == null || !Boolean.TRUE.equals(location.getIsEnabled())) {
+            return;
+        }
+        addVenue(cells, venues, location);
+    }
+
+    //新建活动后增量写入索引，当前线程有事务时等事务提交后再写入，回滚的活动不会出现在结果里
+    public void addActivity(Activity activity) {
+        if (activity == null || activity.getId() == null || activity.getLocation() == null) {
+            return;
+        }
+        UpcomingActivity upcoming = new UpcomingActivity(activity.getId(), activity.getActivityName(),
+                activity.getStartTime(), activity.getEndTime());
+        Integer locationId = activity.getLocation().getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    attach(locationId, upcoming);
+                }
+            });
+        } else {
+            attach(locationId, upcoming);
+        }
+    }
+
+    /**
+     * 查询附近未结束的活动，只扫描圆形范围外接矩形覆盖的格子
+     * @param lat 纬度（度）
+     * @param lng 经度（度）
+     * @param radius 半径（米）
+     * @param limit 最多返回条数
+     * @return 按距离升序（距离相同按开始时间升序）的活动
+     */
+    public List<NearbyActivityDTO> search(double lat, double lng, double radius, int limit) {
+        Map<Long, List<Venue>> snapshot = cells;
+        LocalDateTime now = LocalDateTime.now();
+        double latSpan = radius / METERS_PER_DEGREE;
+        //越靠近两极经度方向的格子越窄，cos接近0时直接扫描整圈经度
+        double cosLat = Math.cos(Math.toRadians(Math.min(90, Math.abs(lat) + latSpan)));
+        double lngSpan = cosLat < 1e-6 ? 180 : Math.min(180, latSpan / cosLat);
+        int minLatCell = cell(Math.max(-90, lat - latSpan));
+        int maxLatCell = cell(Math.min(90, lat + latSpan));
+        int minLngCell = cell(lng - lngSpan);
+        int maxLngCell = cell(lng + lngSpan);
+        //经度跨越±180度时格子编号要回绕，格子数量上限为整圈
+        if (maxLngCell - minLngCell >= LNG_CELLS) {
+            minLngCell = MIN_LNG_CELL;
+            maxLngCell = MIN_LNG_CELL + LNG_CELLS - 1;
+        }
+        List<NearbyActivityDTO> result = new ArrayList<>();
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (int lngCell = minLngCell; lngCell <= maxLngCell; lngCell++) {
+                List<Venue> list = snapshot.get(key(latCell, wrapLngCell(lngCell)));
+                if (list == null) {
+                    continue;
+                }
+                for (Venue venue : list) {
+                    if (venue.activities.isEmpty()) {
+                        continue;
+                    }
+                    double distance = GeoUtil.distance(lat, lng, venue.latitude, venue.longitude);
+                    if (distance > radius) {
+                        continue;
+                    }
+                    boolean hasEnded = false;
+                    for (UpcomingActivity activity : venue.activities) {
+                        if (activity.endTime.isAfter(now)) {
+                            result.add(new NearbyActivityDTO(activity.activityId, activity.activityName,
+                                    activity.startTime, activity.endTime, venue.locationId, venue.regionName,
+                                    venue.detailAddress, Math.round(distance * 100) / 100d));
+                        } else {
+                            hasEnded = true;
+                        }
+                    }
+                    //查到已结束的活动顺手移除，索引不随历史活动增长
+                    if (hasEnded) {
+                        venue.pruneEnded(now);
+                    }
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(NearbyActivityDTO::getDistance)
+                .thenComparing(NearbyActivityDTO::getStartTime)
+                .thenComparing(NearbyActivityDTO::getActivityId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private void attach(Integer locationId, UpcomingActivity activity) {
+        Venue venue = venues.get(locationId);
+        if (venue != null) {
+            //加入新活动时清掉这个地点上已结束的活动，没人查询的地点也不会一直堆积
+            venue.pruneEnded(LocalDateTime.now());
+            venue.activities.add(activity);
+        }
+    }
+
+    private static void addVenue(Map<Long, List<Venue>> cells, Map<Integer, Venue> venues, Location location) {
+        Venue venue = new Venue(location.getId(), location.getRegionName(), location.getDetailAddress(),
+                location.getCenterLatitude().doubleValue(), location.getCenterLongitude().doubleValue());
+        venues.put(venue.locationId, venue);
+        cells.computeIfAbsent(key(cell(venue.latitude), wrapLngCell(cell(venue.longitude))), k -> new CopyOnWriteArrayList<>())
+                .add(venue);
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static int wrapLngCell(int lngCell) {
+        return Math.floorMod(lngCell - MIN_LNG_CELL, LNG_CELLS) + MIN_LNG_CELL;
+    }
+
+    private static long key(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    private static class Venue {
+        private final Integer locationId;
+        private final String regionName;
+        private final String detailAddress;
+        private final double latitude;
+        private final double longitude;
+        private final List<UpcomingActivity> activities = new CopyOnWriteArrayList<>();
+        Venue(Integer locationId, String regionName, String detailAddress, double latitude, double longitude) {
+            this.locationId = locationId;
+            this.regionName = regionName;
+            this.detailAddress = detailAddress;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+        //写时复制列表，只在确实有已结束的活动时才复制
+        void pruneEnded(LocalDateTime now) {
+            activities.removeIf(activity -> !activity.endTime.isAfter(now));
+        }
+    }
+
+    private static class UpcomingActivity {
+        private final Integer activityId;
+        private final String activityName;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        UpcomingActivity(Integer activityId, String activityName, LocalDateTime startTime, LocalDateTime endTime) {
+            this.activityId = activityId;
+            this.activityName = activityName;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+    }
+}
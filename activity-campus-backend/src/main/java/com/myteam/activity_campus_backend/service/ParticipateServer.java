@@ -23,13 +23,13 @@ public class ParticipateServer {
     private ParticipateRepository participateRepository;
     //用户找活动
     public UserPartActivityResponse activityList(UserPartActivity userPartActivity) {
-        List<Participate> participates = participateRepository.findByParticipant_IdOrActivity_Id(userPartActivity.getUserId());
+        List<Participate> participates = participateRepository.findByParticipantIdWithDetails(userPartActivity.getUserId());
         List<PartiDTO> partiDTOs = participates.stream().map(PartiDTO::toDTO).collect(Collectors.toList());
         return new UserPartActivityResponse(partiDTOs);
     }
     //活动找用户
     public List<PartiDTO> list(Integer activityId) {
-        List<Participate> participates = participateRepository.findByParticipant_IdOrActivity_Id(activityId);
+        List<Participate> participates = participateRepository.findByActivityIdWithDetails(activityId);
         List<PartiDTO> partiDTOs = participates.stream().map(PartiDTO::toDTO).collect(Collectors.toList());
         return partiDTOs;
     }
@@ -1,19 +1,138 @@
 package com.myteam.activity_campus_backend.service;
 
 import com.myteam.activity_campus_backend.util.BCryptUtil;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * @author sjy15
- * @description: 重构密码加密依赖
+ * @description: 重构密码加密依赖（BCrypt计算放到独立的有界线程池，队列满时直接拒绝，不占满请求线程）
  * @date 2025/11/6 20:59
  */
 @Component
 public class PasswordService {
+    //默认队列长度和最长等待时间
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long timeoutMillis;
+    //统计：完成次数、被拒绝次数、哈希计算耗时、排队耗时（纳秒）
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    public PasswordService() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param threads 工作线程数，默认CPU核数（BCrypt纯CPU计算，线程再多也不会更快）
+     * @param queueCapacity 排队上限，超过直接拒绝
+     * @param timeoutMillis 请求线程最长等待时间
+     */
+    @Autowired
+    public PasswordService(@Value("${password.hash.threads:0}") int threads,
+                           @Value("${password.hash.queue-capacity:" + DEFAULT_QUEUE_CAPACITY + "}") int queueCapacity,
+                           @Value("${password.hash.timeout-ms:" + DEFAULT_TIMEOUT_MILLIS + "}") long timeoutMillis) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-worker-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
     public boolean matches(String rawPassword, String encodedPassword) {
-        return BCryptUtil.matches(rawPassword, encodedPassword);
+        return submit(() -> BCryptUtil.matches(rawPassword, encodedPassword));
     }
     public String encrypt(String rawPassword) {
-        return BCryptUtil.encrypt(rawPassword);
+        return submit(() -> BCryptUtil.encrypt(rawPassword));
+    }
+
+    //提交到线程池并等待结果；队列已满或等待超时抛出HashRejectedException
+    private <T> T submit(Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                waitNanos.add(startedAt - queuedAt);
+                try {
+                    return task.call();
+                } finally {
+                    long cost = System.nanoTime() - startedAt;
+                    hashNanos.add(cost);
+                    maxHashNanos.accumulateAndGet(cost, Math::max);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new HashRejectedException("系统繁忙，请稍后重试");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new HashRejectedException("系统繁忙，请稍后重试");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new HashRejectedException("请求被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    //线程池运行指标：队列深度、活跃线程、完成和拒绝次数、平均/最大计算耗时、平均排队耗时
+    public Map<String, Object> stats() {
+        long count = completed.sum();
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("poolSize", executor.getMaximumPoolSize());
+        item.put("activeThreads", executor.getActiveCount());
+        item.put("queueDepth", executor.getQueue().size());
+        item.put("queueCapacity", queueCapacity);
+        item.put("completedCount", count);
+        item.put("rejectedCount", rejected.sum());
+        item.put("avgHashMillis", count == 0 ? 0d : hashNanos.sum() / 1e6 / count);
+        item.put("maxHashMillis", maxHashNanos.get() / 1e6);
+        item.put("avgWaitMillis", count == 0 ? 0d : waitNanos.sum() / 1e6 / count);
+        return item;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //密码计算线程池已满或等待超时
+    public static class HashRejectedException extends RuntimeException {
+        public HashRejectedException(String message) {
+            super(message);
+        }
     }
 }
@@ -0,0 +1,234 @@
+package com.myteam.activity_campus_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 聊天室在线状态：客户端定时心跳，超过ttl没有心跳视为离线，全部在内存中，不访问数据库
+ * 心跳只对已在线的成员做一次CAS延长过期时间；过期由时间轮处理，每个成员只挂在一个槽里，到期时还没过期的挪到新的槽
+ * @date 2026/10/18 17:00
+ */
+@Component
+public class PresenceTracker {
+    private static final Logger log = LoggerFactory.getLogger(PresenceTracker.class);
+    //已离线（过期或主动离开），不能再延长
+    private static final long DEAD = Long.MIN_VALUE;
+
+    //多久没有心跳视为离线（秒）
+    @Value("${chat.presence.ttl-seconds:60}")
+    private long ttlSeconds;
+    //时间轮每格的时长（毫秒），过期时间按格对齐，最多提前一格过期
+    @Value("${chat.presence.tick-ms:1000}")
+    private long tickMillis;
+
+    //活动id -> (用户id -> 在线记录)，新增和移除成员在rooms.compute里进行，空房间及时删除
+    private final Map<Integer, Map<Integer, Member>> rooms = new ConcurrentHashMap<>();
+    private final LongAdder heartbeats = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+    private final LongAdder leaves = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private long ttlMillis;
+    //时间轮：槽号为过期时间所在格 % 槽数，槽数大于ttl对应的格数，一个成员不会跨越一圈
+    private Queue<Member>[] wheel;
+    //只由advance访问：已处理到的格
+    private long lastTick;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void start() {
+        ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        wheel = new Queue[(int) (ttlMillis / tickMillis) + 2];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        lastTick = System.currentTimeMillis() / tickMillis;
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                advance(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.error("在线状态过期处理失败: {}", e.getMessage());
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    public void heartbeat(int activityId, int userId) {
+        heartbeat(activityId, userId, System.currentTimeMillis());
+    }
+
+    /**
+     * 心跳：已在线时只延长过期时间（无锁），不在线时加入房间并挂到时间轮
+     * @param activityId 活动id
+     * @param userId 用户id
+     * @param nowMillis 心跳时间（毫秒时间戳）
+     */
+    public void heartbeat(int activityId, int userId, long nowMillis) {
+        long expiresAt = nowMillis + ttlMillis;
+        heartbeats.increment();
+        Map<Integer, Member> members = rooms.get(activityId);
+        Member member = members == null ? null : members.get(userId);
+        if (member != null && member.extend(expiresAt)) {
+            return;
+        }
+        //新加入，或者刚好被过期处理移除
+        rooms.compute(activityId, (k, map) -> {
+            Map<Integer, Member> room = map == null ? new ConcurrentHashMap<>() : map;
+            Member current = room.get(userId);
+            if (current == null || !current.extend(expiresAt)) {
+                Member joined = new Member(activityId, userId, expiresAt);
+                room.put(userId, joined);
+                schedule(joined, expiresAt);
+                joins.increment();
+            }
+            return room;
+        });
+    }
+
+    //主动离开（连接关闭），时间轮里的记录到期时直接丢弃
+    public void leave(int activityId, int userId) {
+        rooms.computeIfPresent(activityId, (k, room) -> {
+            Member member = room.remove(userId);
+            if (member != null) {
+                member.deadline.set(DEAD);
+                leaves.increment();
+            }
+            return room.isEmpty() ? null : room;
+        });
+    }
+
+    /**
+     * 推进时间轮到nowMillis所在的格，移除到期的成员（定时调用）
+     * 到期时已被心跳延长的成员挪到新过期时间所在的槽
+     */
+    public synchronized void advance(long nowMillis) {
+        long tick = nowMillis / tickMillis;
+        //停顿超过一圈时每个槽只需处理一次
+        lastTick = Math.max(lastTick, tick - wheel.length);
+        while (lastTick < tick) {
+            lastTick++;
+            Queue<Member> slot = wheel[(int) (lastTick % wheel.length)];
+            List<Member> due = new ArrayList<>();
+            Member member;
+            while ((member = slot.poll()) != null) {
+                due.add(member);
+            }
+            for (Member m : due) {
+                expireOrReschedule(m);
+            }
+        }
+    }
+
+    private void expireOrReschedule(Member member) {
+        while (true) {
+            long deadline = member.deadline.get();
+            if (deadline == DEAD) {
+                return;
+            }
+            if (deadline / tickMillis > lastTick) {
+                schedule(member, deadline);
+                return;
+            }
+            //和心跳竞争：CAS失败说明刚被延长，重新判断
+            if (member.deadline.compareAndSet(deadline, DEAD)) {
+                rooms.computeIfPresent(member.activityId, (k, room) -> {
+                    room.remove(member.userId, member);
+                    return room.isEmpty() ? null : room;
+                });
+                expirations.increment();
+                return;
+            }
+        }
+    }
+
+    private void schedule(Member member, long deadline) {
+        wheel[(int) ((deadline / tickMillis) % wheel.length)].add(member);
+    }
+
+    public int onlineCount(int activityId) {
+        return onlineMembers(activityId, System.currentTimeMillis()).size();
+    }
+
+    /**
+     * 房间当前在线的用户id（升序），只读内存
+     * 时间轮两次推进之间已过期但还没移除的成员不计入
+     */
+    public List<Integer> onlineMembers(int activityId, long nowMillis) {
+        Map<Integer, Member> room = rooms.get(activityId);
+        if (room == null) {
+            return List.of();
+        }
+        List<Integer> result = new ArrayList<>(room.size());
+        for (Member member : room.values()) {
+            if (member.deadline.get() > nowMillis) {
+                result.add(member.userId);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    //房间数、在线人数和心跳计数
+    public Map<String, Object> stats() {
+        long online = 0;
+        for (Map<Integer, Member> room : rooms.values()) {
+            online += room.size();
+        }
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("rooms", rooms.size());
+        item.put("onlineMembers", online);
+        item.put("heartbeatCount", heartbeats.sum());
+        item.put("joinCount", joins.sum());
+        item.put("leaveCount", leaves.sum());
+        item.put("expiredCount", expirations.sum());
+        item.put("wheelSlots", wheel.length);
+        return item;
+    }
+
+    //一个房间里的一个在线用户，deadline为过期时间（毫秒时间戳），DEAD表示已离线
+    private static class Member {
+        private final int activityId;
+        private final int userId;
+        private final AtomicLong deadline;
+        Member(int activityId, int userId, long deadline) {
+            this.activityId = activityId;
+            this.userId = userId;
+            this.deadline = new AtomicLong(deadline);
+        }
+        //延长过期时间，已离线时返回false
+        boolean extend(long expiresAt) {
+            while (true) {
+                long current = deadline.get();
+                if (current == DEAD) {
+                    return false;
+                }
+                if (current >= expiresAt || deadline.compareAndSet(current, expiresAt)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.myteam.activity_campus_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 按用户、按接口的滑动窗口限流：用上一个固定窗口的计数按剩余比例加上当前窗口计数估算最近一个窗口内的请求数
+ * 每条规则的计数分成若干分段，各分段一把锁，分段内用基本类型数组做开放寻址表，请求路径上不分配对象
+ * @date 2026/10/18 17:40
+ */
+@Component
+public class RateLimiter {
+    //分段数为2^STRIPE_BITS，按用户id哈希的高位选分段、低位定位表内位置
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int MIN_CAPACITY = 16;
+
+    //限流规则，逗号分隔，每条格式为 "方法 路径=次数/窗口秒数"，路径以/**结尾时匹配该前缀下的所有路径
+    @Value("${rate-limit.routes:}")
+    private String routes;
+
+    private List<Rule> rules;
+
+    @PostConstruct
+    public void init() {
+        rules = parse(routes);
+    }
+
+    /**
+     * 查找请求对应的限流规则，没有规则时返回null
+     * @param method 请求方法（WebSocket消息用WS）
+     * @param path 请求路径
+     */
+    public Rule match(String method, String path) {
+        for (Rule rule : rules) {
+            if (rule.matches(method, path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 尝试通过一次请求
+     * @param rule 限流规则
+     * @param userId 当前用户id
+     * @param nowMillis 当前时间（毫秒时间戳）
+     * @return 0表示放行（已计数）；大于0表示被拒绝，值为建议的重试等待毫秒数
+     */
+    public long acquire(Rule rule, int userId, long nowMillis) {
+        int hash = userId * 0x9E3779B9;
+        Stripe stripe = rule.stripes[hash >>> (32 - STRIPE_BITS)];
+        long wait;
+        synchronized (stripe) {
+            wait = stripe.acquire(userId, hash, nowMillis / rule.windowMillis, nowMillis % rule.windowMillis,
+                    rule.limit, rule.windowMillis);
+        }
+        if (wait == 0) {
+            rule.allowed.increment();
+        } else {
+            rule.rejected.increment();
+        }
+        return wait;
+    }
+
+    //每条规则的放行、拒绝次数和当前计数的用户数
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long rejected = 0;
+        for (Rule rule : rules) {
+            int tracked = 0;
+            for (Stripe stripe : rule.stripes) {
+                synchronized (stripe) {
+                    tracked += stripe.size;
+                }
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("limit", rule.limit);
+            item.put("windowSeconds", rule.windowMillis / 1000);
+            item.put("allowedCount", rule.allowed.sum());
+            item.put("rejectedCount", rule.rejected.sum());
+            item.put("trackedUsers", tracked);
+            result.put(rule.name, item);
+            rejected += rule.rejected.sum();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rejectedCount", rejected);
+        stats.put("routes", result);
+        return stats;
+    }
+
+    private static List<Rule> parse(String routes) {
+        List<Rule> result = new ArrayList<>();
+        if (routes == null || routes.isBlank()) {
+            return result;
+        }
+        for (String entry : routes.split(",")) {
+            String text = entry.trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            String[] ruleAndLimit = text.split("=");
+            String[] methodAndPath = ruleAndLimit[0].trim().split("\\s+");
+            String[] limitAndWindow = ruleAndLimit.length == 2 ? ruleAndLimit[1].trim().split("/") : new String[0];
+            if (methodAndPath.length != 2 || limitAndWindow.length != 2) {
+                throw new IllegalArgumentException("限流规则格式错误（应为\"方法 路径=次数/窗口秒数\"）: " + text);
+            }
+            int limit = Integer.parseInt(limitAndWindow[0].trim());
+            long windowSeconds = Long.parseLong(limitAndWindow[1].trim());
+            if (limit < 1 || windowSeconds < 1) {
+                throw new IllegalArgumentException("限流次数和窗口秒数必须大于0: " + text);
+            }
+            result.add(new Rule(methodAndPath[0].toUpperCase() + " " + methodAndPath[1], methodAndPath[0].toUpperCase(),
+                    methodAndPath[1], limit, windowSeconds * 1000));
+        }
+        return result;
+    }
+
+    //一条限流规则：方法+路径（或路径前缀）、窗口内次数上限
+    public static final class Rule {
+        private final String name;
+        private final String method;
+        private final String path;
+        private final boolean prefix;
+        private final int limit;
+        private final long windowMillis;
+        private final Stripe[] stripes = new Stripe[STRIPES];
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Rule(String name, String method, String path, int limit, long windowMillis) {
+            this.name = name;
+            this.method = method;
+            this.prefix = path.endsWith("/**");
+            this.path = prefix ? path.substring(0, path.length() - 3) : path;
+            this.limit = limit;
+            this.windowMillis = windowMillis;
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        boolean matches(String method, String path) {
+            if (!this.method.equals(method)) {
+                return false;
+            }
+            if (!prefix) {
+                return this.path.equals(path);
+            }
+            return path.startsWith(this.path)
+                    && (path.length() == this.path.length() || path.charAt(this.path.length()) == '/');
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * 一个分段：用户id -> (窗口编号, 当前窗口计数, 上一窗口计数)，线性探测，windows为0表示空位
+     * 表满时重建，顺带丢弃两个窗口以前的用户（它们的估算值已经是0）
+     */
+    private static final class Stripe {
+        private int[] users = new int[MIN_CAPACITY];
+        private long[] windows = new long[MIN_CAPACITY];
+        private int[] current = new int[MIN_CAPACITY];
+        private int[] previous = new int[MIN_CAPACITY];
+        private int size;
+
+        long acquire(int userId, int hash, long window, long elapsed, int limit, long windowMillis) {
+            int slot = slotOf(userId, hash, window);
+            if (windows[slot] == window - 1) {
+                previous[slot] = current[slot];
+                current[slot] = 0;
+            } else if (windows[slot] != window) {
+                previous[slot] = 0;
+                current[slot] = 0;
+            }
+            windows[slot] = window;
+            int cur = current[slot];
+            int prev = previous[slot];
+            //上一窗口的请求按还落在滑动窗口内的比例计入
+            double estimate = prev * (double) (windowMillis - elapsed) / windowMillis + cur;
+            if (estimate + 1 <= limit) {
+                current[slot] = cur + 1;
+                return 0;
+            }
+            if (cur + 1 <= limit) {
+                //等上一窗口的权重降到够再放行一次
+                double at = windowMillis - (limit - cur - 1) * (double) windowMillis / prev;
+                return Math.max(1, (long) Math.ceil(at - elapsed));
+            }
+            //当前窗口已满：到下一个窗口后本窗口计数成为上一窗口计数
+            double at = windowMillis - (limit - 1) * (double) windowMillis / cur;
+            return windowMillis - elapsed + Math.max(0, (long) Math.ceil(at));
+        }
+
+        //找到用户所在位置，不存在时插入
+        private int slotOf(int userId, int hash, long window) {
+            int mask = users.length - 1;
+            int slot = hash & mask;
+            while (windows[slot] != 0) {
+                if (users[slot] == userId) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if ((size + 1) * 4 > users.length * 3) {
+                rebuild(window);
+                return slotOf(userId, hash, window);
+            }
+            users[slot] = userId;
+            size++;
+            return slot;
+        }
+
+        private void rebuild(long window) {
+            int live = 0;
+            for (long w : windows) {
+                if (w >= window - 1) {
+                    live++;
+                }
+            }
+            int capacity = MIN_CAPACITY;
+            while (capacity < (live + 1) * 2) {
+                capacity <<= 1;
+            }
+            int[] oldUsers = users;
+            long[] oldWindows = windows;
+            int[] oldCurrent = current;
+            int[] oldPrevious = previous;
+            users = new int[capacity];
+            windows = new long[capacity];
+            current = new int[capacity];
+            previous = new int[capacity];
+            size = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldWindows.length; i++) {
+                if (oldWindows[i] == 0 || oldWindows[i] < window - 1) {
+                    continue;
+                }
+                int slot = (oldUsers[i] * 0x9E3779B9) & mask;
+                while (windows[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                users[slot] = oldUsers[i];
+                windows[slot] = oldWindows[i];
+                current[slot] = oldCurrent[i];
+                previous[slot] = oldPrevious[i];
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.repository.MessageRepository;
+import com.myteam.activity_campus_backend.util.CursorUtil;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 聊天室最近消息缓存（每个房间一个定长环形缓冲，按 (发送时间, 消息id) 升序）
+ * 第一次读房间时从库里加载最新一页，之后发送/撤回直接更新缓冲；最近的历史从内存返回，更早的分页回落到数据库
+ * @date 2026/10/17 22:10
+ */
+@Component
+public class RecentMessageCache {
+    //估算内存占用：每条消息对象、字段、时间等固定开销（字节），字符串另按长度计
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+
+    //每个房间缓存的最近消息条数
+    @Value("${chat.recent.capacity:100}")
+    private int capacity;
+    //最多缓存的房间数，超出后淘汰最近最少使用的房间
+    @Value("${chat.recent.max-rooms:1000}")
+    private long maxRooms;
+    //房间空闲多久后淘汰（分钟）
+    @Value("${chat.recent.idle-minutes:30}")
+    private long idleMinutes;
+
+    private Cache<Integer, RoomBuffer> rooms;
+    //按请求统计：从内存返回 / 回落到数据库
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        rooms = Caffeine.newBuilder()
+                .maximumSize(maxRooms)
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    //新消息：房间已缓存时追加，未缓存的房间等第一次读时再加载
+    public void add(MessageHistoryResponse message) {
+        RoomBuffer room = rooms.getIfPresent(message.getReceiveId());
+        if (room != null) {
+            room.add(message);
+        }
+    }
+
+    //撤回：从缓冲中删除
+    public void remove(Integer activityId, Integer messageId) {
+        RoomBuffer room = rooms.getIfPresent(activityId);
+        if (room != null) {
+            room.remove(messageId);
+        }
+    }
+
+    /**
+     * 从缓存取一页消息（升序）；缓冲覆盖不了这一页时返回null，由调用方查库
+     * @param activityId 活动id
+     * @param before 只取这个位置之前的消息，可为空
+     * @param after 只取这个位置之后的消息，可为空
+     * @param size 条数
+     */
+    public Page page(Integer activityId, CursorUtil.Cursor before, CursorUtil.Cursor after, int size) {
+        //往前翻页时超过缓冲长度的页大小缓存一定不够，不加载房间；往后翻页取的是缓冲末尾，不受限制
+        Page page = after == null && size > capacity ? null : load(activityId).page(before, after, size);
+        if (page == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return page;
+    }
+
+    //取房间缓冲，第一次使用时从库里加载最新一页
+    private RoomBuffer load(Integer activityId) {
+        RoomBuffer room = rooms.get(activityId, key -> new RoomBuffer(capacity));
+        if (!room.loaded) {
+            //加载用单独的锁，查库期间不挡住往缓冲里追加新消息
+            synchronized (room.loadLock) {
+                if (!room.loaded) {
+                    //写缓冲里还没入库的消息先写库，加载后不会漏掉；加载期间新发的消息由add进入缓冲，合并时去重
+                    messageWriteBuffer.flushNow();
+                    List<MessageHistoryResponse> latest = messageRepository.findLatestPage(activityId, PageRequest.of(0, capacity));
+                    room.merge(latest, latest.size() < capacity);
+                    room.loaded = true;
+                }
+            }
+        }
+        return room;
+    }
+
+    //缓存命中率和估算的内存占用
+    public Map<String, Object> stats() {
+        long entries = 0;
+        long bytes = 0;
+        for (RoomBuffer room : rooms.asMap().values()) {
+            synchronized (room) {
+                entries += room.size;
+                bytes += room.estimatedBytes();
+            }
+        }
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        CacheStats roomStats = rooms.stats();
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("rooms", rooms.estimatedSize());
+        item.put("entries", entries);
+        item.put("estimatedBytes", bytes);
+        item.put("hitCount", hitCount);
+        item.put("missCount", misses.sum());
+        item.put("hitRate", total == 0 ? 1d : (double) hitCount / total);
+        item.put("roomLoadCount", roomStats.missCount());
+        item.put("roomEvictionCount", roomStats.evictionCount());
+        return item;
+    }
+
+    //从缓存取出的一页
+    public static class Page {
+        private final List<MessageHistoryResponse> messages;
+        private final boolean hasMore;
+        Page(List<MessageHistoryResponse> messages, boolean hasMore) {
+            this.messages = messages;
+            this.hasMore = hasMore;
+        }
+        public List<MessageHistoryResponse> getMessages() {
+            return messages;
+        }
+        public boolean isHasMore() {
+            return hasMore;
+        }
+    }
+
+    private static int compare(LocalDateTime time, Integer id, MessageHistoryResponse message) {
+        int result = time.compareTo(message.getSendTime());
+        return result != 0 ? result : id.compareTo(message.getMessageId());
+    }
+
+    /**
+     * 一个房间最新的若干条消息：定长数组做环形缓冲，满了覆盖最旧的一条
+     * complete表示房间的全部消息都在缓冲里（更早的没有了）
+     */
+    static class RoomBuffer {
+        private final MessageHistoryResponse[] entries;
+        private int head;
+        private int size;
+        private boolean complete;
+        private volatile boolean loaded;
+        private final Object loadLock = new Object();
+
+        RoomBuffer(int capacity) {
+            this.entries = new MessageHistoryResponse[capacity];
+        }
+
+        private MessageHistoryResponse get(int index) {
+            return entries[(head + index) % entries.length];
+        }
+
+        private void set(int index, MessageHistoryResponse message) {
+            entries[(head + index) % entries.length] = message;
+        }
+
+        //按顺序插入，新消息几乎总在末尾，从后往前找位置
+        synchronized void add(MessageHistoryResponse message) {
+            int position = size;
+            while (position > 0 && compare(message.getSendTime(), message.getMessageId(), get(position - 1)) < 0) {
+                position--;
+            }
+            if (position > 0 && get(position - 1).getMessageId().equals(message.getMessageId())) {
+                return;
+            }
+            if (size == entries.length) {
+                if (position == 0) {
+                    //比缓冲里最旧的还旧，不放入
+                    complete = false;
+                    return;
+                }
+                //丢掉最旧的一条
+                entries[head] = null;
+                head = (head + 1) % entries.length;
+                size--;
+                position--;
+                complete = false;
+            }
+            for (int i = size; i > position; i--) {
+                set(i, get(i - 1));
+            }
+            set(position, message);
+            size++;
+        }
+
+        synchronized void remove(Integer messageId) {
+            for (int i = 0; i < size; i++) {
+                if (get(i).getMessageId().equals(messageId)) {
+                    for (int j = i; j < size - 1; j++) {
+                        set(j, get(j + 1));
+                    }
+                    set(size - 1, null);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        //合并库里加载的最新一页（倒序）；合并后超出缓冲长度时add会丢掉最旧的并清除complete
+        synchronized void merge(List<MessageHistoryResponse> latestDesc, boolean allLoaded) {
+            complete = allLoaded;
+            for (int i = latestDesc.size() - 1; i >= 0; i--) {
+                add(latestDesc.get(i));
+            }
+        }
+
+        synchronized Page page(CursorUtil.Cursor before, CursorUtil.Cursor after, int limit) {
+            if (after != null) {
+                //游标比缓冲里最旧的消息还早，缓冲覆盖不了游标之后的全部消息
+                if (!complete && (size == 0 || compare(after.getTime(), after.getId(), get(0)) < 0)) {
+                    return null;
+                }
+                int from = 0;
+                while (from < size && compare(after.getTime(), after.getId(), get(from)) >= 0) {
+                    from++;
+                }
+                int to = Math.min(size, from + limit);
+                return new Page(slice(from, to), size - from > limit);
+            }
+            int end = size;
+            if (before != null) {
+                while (end > 0 && compare(before.getTime(), before.getId(), get(end - 1)) <= 0) {
+                    end--;
+                }
+            }
+            if (end < limit && !complete) {
+                return null;
+            }
+            int from = Math.max(0, end - limit);
+            return new Page(slice(from, end), from > 0 || !complete);
+        }
+
+        private List<MessageHistoryResponse> slice(int from, int to) {
+            List<MessageHistoryResponse> result = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                result.add(get(i));
+            }
+            return result;
+        }
+
+        private long estimatedBytes() {
+            long bytes = 16L + 4L * entries.length;
+            for (int i = 0; i < size; i++) {
+                MessageHistoryResponse message = get(i);
+                bytes += ENTRY_OVERHEAD_BYTES;
+                bytes += message.getContent() == null ? 0 : 2L * message.getContent().length();
+                bytes += message.getSenderName() == null ? 0 : 2L * message.getSenderName().length();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.myteam.activity_campus_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author sjy15
+ * @description: 聊天室序号：每个房间一个单调递增的序号，新消息和撤回墓碑共用，客户端按序号增量同步
+ * 房间第一次使用时从app_message和app_message_recall取最大序号作为起点（单实例部署）
+ * 启动时先给序号上线前的旧消息补上序号，增量同步从0开始也能取到房间的全部历史
+ * @date 2026/10/18 15:10
+ */
+@Component
+public class RoomSequencer {
+    private static final Logger log = LoggerFactory.getLogger(RoomSequencer.class);
+    private static final String MAX_SEQ_SQL =
+            "SELECT GREATEST(COALESCE((SELECT MAX(room_Seq) FROM app_message WHERE receive_Id = ?), 0), " +
+            "COALESCE((SELECT MAX(room_Seq) FROM app_message_recall WHERE receive_Id = ?), 0))";
+    //没有序号的旧消息，按房间、发送时间、消息id排序
+    private static final String LEGACY_SQL =
+            "SELECT message_Id, receive_Id FROM app_message WHERE room_Seq IS NULL " +
+            "ORDER BY receive_Id, send_Time, message_Id LIMIT ";
+    //补序号每批条数，每批一次批量更新
+    private static final int BACKFILL_BATCH = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Integer, AtomicLong> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * 给没有序号的旧消息补序号：每个房间按发送时间、消息id的顺序接在已有的最大序号之后
+     * 在写缓冲（依赖本类）启动前执行，补完之前不会分配新序号
+     * @return 补序号的条数
+     */
+    @PostConstruct
+    public int backfill() {
+        int total = 0;
+        while (true) {
+            List<Map<String, Object>> batch = jdbcTemplate.queryForList(LEGACY_SQL + BACKFILL_BATCH);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Object[]> args = new ArrayList<>(batch.size());
+            for (Map<String, Object> row : batch) {
+                int roomId = ((Number) row.get("receive_Id")).intValue();
+                args.add(new Object[]{next(roomId), ((Number) row.get("message_Id")).intValue()});
+            }
+            jdbcTemplate.batchUpdate("UPDATE app_message SET room_Seq = ? WHERE message_Id = ?", args);
+            total += batch.size();
+        }
+        if (total > 0) {
+            log.info("旧消息补房间序号: {}条", total);
+        }
+        return total;
+    }
+
+    //取房间计数器，第一次使用时查库（查库在锁外进行，不挡住其他房间）
+    private AtomicLong room(int roomId) {
+        AtomicLong seq = rooms.get(roomId);
+        if (seq == null) {
+            Long max = jdbcTemplate.queryForObject(MAX_SEQ_SQL, Long.class, roomId, roomId);
+            long seed = max == null ? 0 : max;
+            seq = rooms.computeIfAbsent(roomId, k -> new AtomicLong(seed));
+        }
+        return seq;
+    }
+
+    //提前加载房间起点，之后的next不再查库（写缓冲在持有日志锁前调用）
+    public void warm(int roomId) {
+        room(roomId);
+    }
+
+    //分配下一个序号
+    public long next(int roomId) {
+        return room(roomId).incrementAndGet();
+    }
+
+    //最近分配的序号，必须在lock(roomId)内读取，保证小于等于它的撤回墓碑都已提交
+    public long current(int roomId) {
+        return room(roomId).get();
+    }
+
+    //房间锁：撤回时分配序号到墓碑提交之间持有，增量同步读取当前序号时持有
+    public Object lock(int roomId) {
+        return room(roomId);
+    }
+}
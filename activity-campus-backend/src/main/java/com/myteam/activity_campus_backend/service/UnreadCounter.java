@@ -0,0 +1,318 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.myteam.activity_campus_backend.dto.UnreadCountDTO;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.ParticipateRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author sjy15
+ * @description: 活动聊天室未读数：发消息时在内存里给每个接收者的会话加一，后台定时把增量批量写入app_unread
+ * 标记已读时清零；查询未读数只读这个用户的会话行再加上内存里还没写库的增量，和消息条数无关
+ * 私信未读数只由ConversationIndex在写私信的事务中维护，这里不计
+ * @date 2026/10/18 16:10
+ */
+@Component
+public class UnreadCounter {
+    private static final Logger log = LoggerFactory.getLogger(UnreadCounter.class);
+    //会话类型：活动聊天室（会话id为活动id）；早期版本写入的私信行（类型2）不再读取
+    public static final int ACTIVITY = 1;
+    //reset为真时（期间标记过已读）写入增量本身，否则在原值上累加
+    private static final String FLUSH_SQL =
+            "MERGE INTO app_unread t USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS INT), CAST(? AS INT), " +
+            "CAST(? AS BOOLEAN), CAST(? AS TIMESTAMP))) s(user_Id, conv_Type, conv_Id, delta, reset, read_Time) " +
+            "ON t.user_Id = s.user_Id AND t.conv_Type = s.conv_Type AND t.conv_Id = s.conv_Id " +
+            "WHEN MATCHED THEN UPDATE SET t.unread_Count = CASE WHEN s.reset THEN s.delta ELSE t.unread_Count + s.delta END, " +
+            "t.read_Time = COALESCE(s.read_Time, t.read_Time) " +
+            "WHEN NOT MATCHED THEN INSERT (user_Id, conv_Type, conv_Id, unread_Count, read_Time) " +
+            "VALUES (s.user_Id, s.conv_Type, s.conv_Id, s.delta, s.read_Time)";
+    private static final String LOAD_SQL =
+            "SELECT conv_Type, conv_Id, unread_Count FROM app_unread WHERE user_Id = ? AND conv_Type = " + ACTIVITY +
+            " AND unread_Count > 0";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ParticipateRepository participateRepository;
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    //写库间隔（毫秒）
+    @Value("${message.unread.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+    //活动聊天室成员名单缓存时间（秒）
+    @Value("${message.unread.members-ttl-seconds:60}")
+    private long membersTtlSeconds;
+
+    //用户id -> 还没写库的变化（会话 -> 增量），内层Map只在pending.compute里访问
+    //ConcurrentHashMap按桶加锁，不同用户的计数互不阻塞
+    private final ConcurrentHashMap<Integer, Map<Long, Pending>> pending = new ConcurrentHashMap<>();
+    //写库序号：写库期间为奇数；查询前后序号不同说明和写库交错，可能重复计算或漏算
+    private final AtomicLong flushEpoch = new AtomicLong();
+    private final Object flushLock = new Object();
+    private final LongAdder increments = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder droppedRows = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    //活动id -> 聊天室成员（报名用户和发布者）
+    private Cache<Integer, int[]> members;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        members = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(membersTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "unread-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //停止时把内存里的增量写完
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+
+    //活动聊天室新消息：除发送者外的每个成员未读数加一
+    public void onRoomMessage(int activityId, int senderId) {
+        for (int userId : members.get(activityId, this::loadMembers)) {
+            if (userId != senderId) {
+                add(userId, key(ACTIVITY, activityId));
+            }
+        }
+    }
+
+    private void add(int userId, long conversation) {
+        pending.compute(userId, (k, conversations) -> {
+            Map<Long, Pending> map = conversations == null ? new HashMap<>() : conversations;
+            map.computeIfAbsent(conversation, c -> new Pending()).delta++;
+            return map;
+        });
+        increments.increment();
+    }
+
+    /**
+     * 标记活动聊天室已读：未读数清零，记录已读时间
+     * @param userId 当前用户id
+     * @param activityId 活动id
+     */
+    public void markRead(int userId, int activityId) {
+        LocalDateTime now = LocalDateTime.now();
+        pending.compute(userId, (k, conversations) -> {
+            Map<Long, Pending> map = conversations == null ? new HashMap<>() : conversations;
+            Pending p = map.computeIfAbsent(key(ACTIVITY, activityId), c -> new Pending());
+            p.reset = true;
+            p.delta = 0;
+            p.readTime = now;
+            return map;
+        });
+        reads.increment();
+    }
+
+    /**
+     * 用户有未读的全部活动聊天室
+     * 先读内存里的增量再查库，前后写库序号一致说明期间没有写库；否则等写库结束后在写库锁里重读一次
+     */
+    public List<UnreadCountDTO> unread(int userId) {
+        long epoch = flushEpoch.get();
+        if ((epoch & 1) == 0) {
+            List<UnreadCountDTO> result = read(userId);
+            if (flushEpoch.get() == epoch) {
+                return result;
+            }
+        }
+        synchronized (flushLock) {
+            return read(userId);
+        }
+    }
+
+    private List<UnreadCountDTO> read(int userId) {
+        Map<Long, Pending> local = new HashMap<>();
+        pending.computeIfPresent(userId, (k, conversations) -> {
+            conversations.forEach((conversation, p) -> local.put(conversation, p.copy()));
+            return conversations;
+        });
+        Map<Long, Integer> counts = new TreeMap<>();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            counts.put(key(rs.getInt("conv_Type"), rs.getInt("conv_Id")), rs.getInt("unread_Count"));
+        }, userId);
+        local.forEach((conversation, p) -> counts.merge(conversation, p.delta, (stored, delta) -> p.reset ? delta : stored + delta));
+        List<UnreadCountDTO> result = new ArrayList<>();
+        counts.forEach((conversation, count) -> {
+            if (count > 0) {
+                result.add(new UnreadCountDTO("activity", (int) conversation.longValue(), count));
+            }
+        });
+        return result;
+    }
+
+    //立即写库（测试和停止时用）
+    public void flushQuietly() {
+        synchronized (flushLock) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("未读数写库失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushEpoch.incrementAndGet();
+        try {
+            List<Row> rows = new ArrayList<>();
+            for (Integer userId : pending.keySet()) {
+                Map<Long, Pending> conversations = pending.remove(userId);
+                if (conversations != null) {
+                    conversations.forEach((conversation, p) -> rows.add(new Row(userId, conversation, p)));
+                }
+            }
+            write(rows);
+        } finally {
+            flushEpoch.incrementAndGet();
+        }
+    }
+
+    //一个事务批量写；违反约束（用户已删除）时逐条写，丢弃写不进去的；数据库不可用时放回内存下一轮重写
+    private void write(List<Row> rows) {
+        int done = 0;
+        try {
+            try {
+                List<Object[]> args = rows.stream().map(Row::args).toList();
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, args));
+                done = rows.size();
+                flushedRows.add(rows.size());
+            } catch (DataIntegrityViolationException e) {
+                for (Row row : rows) {
+                    try {
+                        jdbcTemplate.update(FLUSH_SQL, row.args());
+                        flushedRows.increment();
+                    } catch (DataIntegrityViolationException rowError) {
+                        droppedRows.increment();
+                        log.warn("丢弃无法写入的未读数: userId={}, error={}", row.userId, rowError.getMessage());
+                    }
+                    done++;
+                }
+            }
+        } catch (DataAccessException e) {
+            failures.increment();
+            rows.subList(done, rows.size()).forEach(this::restore);
+            throw e;
+        }
+    }
+
+    //写库失败的增量放回内存，和期间新产生的变化合并（期间标记过已读的，以新的为准）
+    private void restore(Row row) {
+        pending.compute(row.userId, (k, conversations) -> {
+            Map<Long, Pending> map = conversations == null ? new HashMap<>() : conversations;
+            Pending newer = map.get(row.conversation);
+            if (newer == null) {
+                map.put(row.conversation, row.pending);
+            } else if (!newer.reset) {
+                newer.reset = row.pending.reset;
+                newer.delta += row.pending.delta;
+                newer.readTime = row.pending.readTime;
+            }
+            return map;
+        });
+    }
+
+    //活动聊天室成员：报名用户和发布者
+    private int[] loadMembers(Integer activityId) {
+        Set<Integer> ids = new TreeSet<>();
+        for (Object[] row : participateRepository.findParticipantIds(List.of(activityId))) {
+            ids.add((Integer) row[1]);
+        }
+        Integer publisherId = activityRepository.findPublisherId(activityId);
+        if (publisherId != null) {
+            ids.add(publisherId);
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    //报名名单变化后让成员缓存失效
+    public void invalidateMembers(int activityId) {
+        members.invalidate(activityId);
+    }
+
+    private static long key(int type, int conversationId) {
+        return ((long) type << 32) | (conversationId & 0xffffffffL);
+    }
+
+    //计数和写库行数
+    public Map<String, Object> stats() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("incrementCount", increments.sum());
+        item.put("markReadCount", reads.sum());
+        item.put("pendingUsers", pending.size());
+        item.put("flushedRowCount", flushedRows.sum());
+        item.put("droppedRowCount", droppedRows.sum());
+        item.put("failedFlushCount", failures.sum());
+        item.put("cachedRooms", members.estimatedSize());
+        return item;
+    }
+
+    //一个会话还没写库的变化
+    private static class Pending {
+        private boolean reset;
+        private int delta;
+        private LocalDateTime readTime;
+        Pending copy() {
+            Pending p = new Pending();
+            p.reset = reset;
+            p.delta = delta;
+            p.readTime = readTime;
+            return p;
+        }
+    }
+
+    private static class Row {
+        private final int userId;
+        private final long conversation;
+        private final Pending pending;
+        Row(int userId, long conversation, Pending pending) {
+            this.userId = userId;
+            this.conversation = conversation;
+            this.pending = pending;
+        }
+        Object[] args() {
+            return new Object[]{userId, (int) (conversation >>> 32), (int) conversation, pending.delta, pending.reset,
+                    pending.readTime == null ? null : Timestamp.valueOf(pending.readTime)};
+        }
+    }
+}
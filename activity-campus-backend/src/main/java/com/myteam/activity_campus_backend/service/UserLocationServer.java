@@ -1,41 +1,168 @@
 package com.myteam.activity_campus_backend.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.myteam.activity_campus_backend.dto.request.userLocationRequest;
-import com.myteam.activity_campus_backend.entity.User;
-import com.myteam.activity_campus_backend.entity.Userlocation;
+import com.myteam.activity_campus_backend.dto.response.LocationBatchResponse;
 import com.myteam.activity_campus_backend.repository.UserRepository;
-import com.myteam.activity_campus_backend.repository.UserlocationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.*;
 
 /**
  * @author sjy15
- * @description:用户实时位置存入数据库
+ * @description:用户实时位置上报
  * @date 2025/11/3 14:43
  */
 @Service
 public class UserLocationServer {
+    private static final BigDecimal MAX_LATITUDE = new BigDecimal("90");
+    private static final BigDecimal MAX_LONGITUDE = new BigDecimal("180");
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private UserlocationRepository userlocationRepository;
-    public void save(userLocationRequest ulRequest) {
-        User user = userRepository.findById(ulRequest.getUserId()).orElse(null);
-        if (user == null) {
-            return;
+    private LiveLocationStore liveLocationStore;
+    @Autowired
+    private GeofenceEngine geofenceEngine;
+    @Autowired
+    private ObjectMapper objectMapper;
+    //批量上报一次最多条数
+    @Value("${location.batch.max-size:1000}")
+    private int maxBatchSize;
+    //可以批量上报其他用户位置的网关用户id，逗号分隔，默认没有
+    @Value("${location.batch.gateway-user-ids:}")
+    private Set<Integer> gatewayUserIds = Set.of();
+    /**
+     * 上报一个位置。上报高频，只更新内存中的实时位置（由LiveLocationStore定时写快照和历史）并交给地理围栏引擎匹配
+     * 位置会生成到场记录，只能上报自己的位置（配置的网关用户除外），不传userId时按当前用户
+     * @param ulRequest 位置
+     * @param currentUserId 当前登录用户id
+     * @throws IllegalArgumentException 上报其他用户的位置，或经纬度超出范围
+     */
+    public void save(userLocationRequest ulRequest, int currentUserId) {
+        if (ulRequest.getUserId() == null) {
+            ulRequest.setUserId(currentUserId);
+        } else if (ulRequest.getUserId() != currentUserId && !gatewayUserIds.contains(currentUserId)) {
+            throw new IllegalArgumentException("不能上报其他用户的位置");
         }
-        Userlocation userlocation = new Userlocation();
-        userlocation.setUser(user);
-        userlocation.setLatitude(ulRequest.getLatitude());
-        userlocation.setLongitude(ulRequest.getLongitude());
-        Long currentTime = Instant.now().toEpochMilli();
-        if (ulRequest.getValidTime() <currentTime) {
+        long currentTime = Instant.now().toEpochMilli();
+        if (ulRequest.getValidTime() != null && ulRequest.getValidTime() < currentTime) {
             // 过期
             return;
         }
-        userlocation.setValidTime(ulRequest.getValidTime());
-        userlocationRepository.save(userlocation);
+        if (!isValid(ulRequest, currentTime)) {
+            throw new IllegalArgumentException("经纬度超出范围或缺少有效时间");
+        }
+        //已有位置的用户不再查用户表，只有第一次上报时确认用户存在
+        if (!liveLocationStore.contains(ulRequest.getUserId()) && !userRepository.existsById(ulRequest.getUserId())) {
+            return;
+        }
+        //比内存中已有的位置旧（乱序到达）时不更新，也不触发围栏
+        if (!liveLocationStore.update(ulRequest.getUserId(), ulRequest.getLatitude(), ulRequest.getLongitude(), ulRequest.getValidTime())) {
+            return;
+        }
+        geofenceEngine.onPing(ulRequest.getUserId(), ulRequest.getLatitude().doubleValue(), ulRequest.getLongitude().doubleValue(), currentTime);
+    }
+    /**
+     * 批量上报位置（离线缓存的多个点，或网关转发的多个用户），请求体为位置数组
+     * 用流式解析逐条读取，不整体反序列化；所有点写入历史表，每个用户有效期最晚的一条更新实时位置
+     * 普通用户只能上报自己的位置，配置的网关用户可以上报任意用户；新出现的用户一次查库确认存在
+     * @param body 请求体：[{"userId":1,"latitude":30.1,"longitude":120.2,"validTime":1700000000000}, ...]
+     * @param currentUserId 当前登录用户id
+     * @return 收到、写入、丢弃的条数
+     */
+    public LocationBatchResponse saveBatch(InputStream body, int currentUserId) throws IOException {
+        long currentTime = Instant.now().toEpochMilli();
+        boolean gateway = gatewayUserIds.contains(currentUserId);
+        int received = 0;
+        int rejected = 0;
+        List<userLocationRequest> pings = new ArrayList<>();
+        Map<Integer, userLocationRequest> latest = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("请求体必须是位置数组");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("位置数组的元素必须是对象");
+                }
+                if (++received > maxBatchSize) {
+                    throw new IllegalArgumentException("一次最多上报" + maxBatchSize + "条位置");
+                }
+                userLocationRequest ping = readPing(parser);
+                if (!isValid(ping, currentTime) || (!gateway && ping.getUserId() != currentUserId)) {
+                    rejected++;
+                    continue;
+                }
+                pings.add(ping);
+                userLocationRequest previous = latest.get(ping.getUserId());
+                if (previous == null || ping.getValidTime() >= previous.getValidTime()) {
+                    latest.put(ping.getUserId(), ping);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("请求体格式错误：" + e.getOriginalMessage());
+        }
+        //内存中还没有位置的用户，一次查库确认存在
+        List<Integer> unknown = new ArrayList<>();
+        for (Integer userId : latest.keySet()) {
+            if (!liveLocationStore.contains(userId)) {
+                unknown.add(userId);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            Set<Integer> existing = new HashSet<>(userRepository.findExistingIds(unknown));
+            for (Integer userId : unknown) {
+                if (!existing.contains(userId)) {
+                    latest.remove(userId);
+                }
+            }
+            int before = pings.size();
+            pings.removeIf(ping -> !latest.containsKey(ping.getUserId()));
+            rejected += before - pings.size();
+        }
+        liveLocationStore.appendHistory(pings);
+        for (userLocationRequest ping : latest.values()) {
+            //比内存中已有的位置旧（乱序到达）时不更新，也不触发围栏
+            if (liveLocationStore.updateWithoutHistory(ping.getUserId(), ping.getLatitude(), ping.getLongitude(), ping.getValidTime())) {
+                geofenceEngine.onPing(ping.getUserId(), ping.getLatitude().doubleValue(), ping.getLongitude().doubleValue(), currentTime);
+            }
+        }
+        return new LocationBatchResponse(true, received, received - rejected, rejected, latest.size(), "上报成功");
+    }
+    //读一个位置对象，类型不对的字段按缺失处理，由isValid丢弃
+    private userLocationRequest readPing(JsonParser parser) throws IOException {
+        userLocationRequest ping = new userLocationRequest();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "userId" -> ping.setUserId(value == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null);
+                case "latitude" -> ping.setLatitude(value.isNumeric() ? parser.getDecimalValue() : null);
+                case "longitude" -> ping.setLongitude(value.isNumeric() ? parser.getDecimalValue() : null);
+                case "validTime" -> ping.setValidTime(value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null);
+                default -> { }
+            }
+            //字段值是对象或数组时整体跳过（未知字段或类型不对）
+            parser.skipChildren();
+        }
+        return ping;
+    }
+    private static boolean isValid(userLocationRequest ping, long currentTime) {
+        return ping.getUserId() != null && ping.getUserId() > 0 && ping.getLatitude() != null && ping.getLongitude() != null
+                && ping.getValidTime() != null && ping.getValidTime() >= currentTime
+                && ping.getLatitude().abs().compareTo(MAX_LATITUDE) <= 0 && ping.getLongitude().abs().compareTo(MAX_LONGITUDE) <= 0;
     }
 }
@@ -1,4 +1,5 @@
 package com.myteam.activity_campus_backend.service;
+import com.myteam.activity_campus_backend.config.CacheConfig;
 import com.myteam.activity_campus_backend.dto.request.ChangePasswordRequest;
 import com.myteam.activity_campus_backend.dto.response.ChangePasswordResponse;
 import com.myteam.activity_campus_backend.util.JWTTokenUtil;
@@ -9,6 +10,8 @@ import com.myteam.activity_campus_backend.dto.response.UserRegisterResponse;
 import com.myteam.activity_campus_backend.entity.User;
 import com.myteam.activity_campus_backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -36,6 +39,10 @@ public class UserService {
     /**
      * 用户激活/注册（实际是激活已存在用户）
      */
+    //调用前后都清除：方法里的查询会把旧值重新放进缓存，保存成功后再清一次；保存失败时缓存里仍是未修改的旧值
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#request.userId", beforeInvocation = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#request.userId")})
     public UserRegisterResponse registration(UserRegisterRequest request) {
 
             Optional<User> userEntity = userRepository.findById(request.getUserId());
@@ -58,9 +65,8 @@ public class UserService {
                     return new UserRegisterResponse("密码错误", request.getUserId());
                 }
 
-                // 激活用户
-                user.setUserStatus("ACTIVE");
-                userRepository.save(user);
+                // 激活用户：查到的实体是缓存里共享的对象，改副本，保存提交前其他线程看不到
+                userRepository.save(new User(user.getId(), user.getUserName(), user.getUserPassword(), "ACTIVE"));
                 return new UserRegisterResponse("激活成功", request.getUserId());
 
             } else {
@@ -110,6 +116,10 @@ public class UserService {
     /**
      * 修改密码
      */
+    //调用前后都清除：方法里的查询会把旧值重新放进缓存，保存成功后再清一次；保存失败时缓存里仍是未修改的旧值
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#request.userId", beforeInvocation = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#request.userId")})
     public ChangePasswordResponse changePassword(ChangePasswordRequest request) {
 
             Optional<User> userEntity = userRepository.findById(request.getUserId());
@@ -127,10 +137,9 @@ public class UserService {
                     return new ChangePasswordResponse("原密码错误", request.getUserId());
                 }
 
-                // 更新密码
+                // 更新密码：改副本，不改缓存里共享的实体
                 String encryptedPassword = passwordService.encrypt(request.getUser_NewPassword());
-                user.setUserPassword(encryptedPassword);
-                userRepository.save(user);
+                userRepository.save(new User(user.getId(), user.getUserName(), encryptedPassword, user.getUserStatus()));
 
                 return new ChangePasswordResponse("密码修改成功", request.getUserId());
 
@@ -0,0 +1,184 @@
+package com.myteam.activity_campus_backend.service;
+
+import com.myteam.activity_campus_backend.dto.TimeSlotDTO;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author sjy15
+ * @description: 场地时间区间索引（每个地点一棵按开始时间排序的区间树，区间互不重叠，左闭右开）
+ * @date 2026/10/17 16:05
+ */
+@Component
+public class VenueScheduleIndex {
+    private static final Logger log = LoggerFactory.getLogger(VenueScheduleIndex.class);
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    //地点id -> (开始时间 -> 占用区间)，同一地点的读写都在该TreeMap上加锁
+    private volatile Map<Integer, TreeMap<LocalDateTime, Booking>> schedules = new ConcurrentHashMap<>();
+
+    //启动时从数据库加载所有活动的占用区间
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Map<Integer, TreeMap<LocalDateTime, Booking>> newSchedules = new ConcurrentHashMap<>();
+        int merged = 0;
+        List<Object[]> rows = activityRepository.findAllSchedules();
+        for (Object[] row : rows) {
+            Integer locationId = (Integer) row[0];
+            Integer activityId = (Integer) row[1];
+            LocalDateTime start = (LocalDateTime) row[2];
+            LocalDateTime end = (LocalDateTime) row[3];
+            TreeMap<LocalDateTime, Booking> tree = newSchedules.computeIfAbsent(locationId, k -> new TreeMap<>());
+            //历史数据可能已有重叠（旧的冲突判断有漏洞），合并成一个区间保证树内互不重叠
+            Map.Entry<LocalDateTime, Booking> last = tree.lastEntry();
+            if (last != null && last.getValue().end.isAfter(start)) {
+                if (end.isAfter(last.getValue().end)) {
+                    last.getValue().end = end;
+                }
+                merged++;
+                continue;
+            }
+            tree.put(start, new Booking(locationId, activityId, start, end));
+        }
+        schedules = newSchedules;
+        log.info("场地时间索引重建完成，共{}个地点，{}条活动，合并重叠区间{}个", newSchedules.size(), rows.size(), merged);
+    }
+
+    /**
+     * 判断时间段是否空闲，O(log n)
+     * @param locationId 地点id
+     * @param start 开始时间（含）
+     * @param end 结束时间（不含）
+     * @return 与已有活动都不重叠时返回true
+     */
+    public boolean isFree(Integer locationId, LocalDateTime start, LocalDateTime end) {
+        TreeMap<LocalDateTime, Booking> tree = schedules.get(locationId);
+        if (tree == null) {
+            return true;
+        }
+        synchronized (tree) {
+            return !overlaps(tree, start, end);
+        }
+    }
+
+    /**
+     * 检查并占用时间段，检查和写入在同一把锁内完成，并发创建不会抢到同一时段
+     * 当前线程有事务时，事务回滚会自动释放占用
+     * @return 占用成功返回占用记录，冲突时返回null
+     */
+    public Booking tryReserve(Integer locationId, LocalDateTime start, LocalDateTime end) {
+        TreeMap<LocalDateTime, Booking> tree = schedules.computeIfAbsent(locationId, k -> new TreeMap<>());
+        Booking booking;
+        synchronized (tree) {
+            if (overlaps(tree, start, end)) {
+                return null;
+            }
+            booking = new Booking(locationId, null, start, end);
+            tree.put(start, booking);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(booking);
+                    }
+                }
+            });
+        }
+        return booking;
+    }
+
+    //释放占用（只删除本次占用的那条记录）
+    public void release(Booking booking) {
+        if (booking == null) {
+            return;
+        }
+        TreeMap<LocalDateTime, Booking> tree = schedules.get(booking.locationId);
+        if (tree == null) {
+            return;
+        }
+        synchronized (tree) {
+            tree.remove(booking.start, booking);
+        }
+    }
+
+    /**
+     * 列出时间窗口内的空闲时段，O(log n + k)，k为窗口内的活动数
+     * @param locationId 地点id
+     * @param from 窗口开始（含）
+     * @param to 窗口结束（不含）
+     * @return 按时间升序的空闲时段
+     */
+    public List<TimeSlotDTO> freeSlots(Integer locationId, LocalDateTime from, LocalDateTime to) {
+        List<TimeSlotDTO> result = new ArrayList<>();
+        TreeMap<LocalDateTime, Booking> tree = schedules.get(locationId);
+        if (tree == null) {
+            result.add(new TimeSlotDTO(from, to));
+            return result;
+        }
+        synchronized (tree) {
+            LocalDateTime cursor = from;
+            //窗口开始前就已开始、但还没结束的活动
+            Map.Entry<LocalDateTime, Booking> before = tree.lowerEntry(from);
+            if (before != null && before.getValue().end.isAfter(cursor)) {
+                cursor = before.getValue().end;
+            }
+            for (Booking booking : tree.subMap(from, true, to, false).values()) {
+                if (booking.start.isAfter(cursor)) {
+                    result.add(new TimeSlotDTO(cursor, booking.start));
+                }
+                if (booking.end.isAfter(cursor)) {
+                    cursor = booking.end;
+                }
+            }
+            if (cursor.isBefore(to)) {
+                result.add(new TimeSlotDTO(cursor, to));
+            }
+        }
+        return result;
+    }
+
+    //区间互不重叠，只需检查开始时间前后相邻的两个区间
+    private static boolean overlaps(TreeMap<LocalDateTime, Booking> tree, LocalDateTime start, LocalDateTime end) {
+        Map.Entry<LocalDateTime, Booking> floor = tree.floorEntry(start);
+        if (floor != null && floor.getValue().end.isAfter(start)) {
+            return true;
+        }
+        Map.Entry<LocalDateTime, Booking> higher = tree.higherEntry(start);
+        return higher != null && higher.getKey().isBefore(end);
+    }
+
+    public static class Booking {
+        private final Integer locationId;
+        private final LocalDateTime start;
+        private LocalDateTime end;
+        private volatile Integer activityId;
+        Booking(Integer locationId, Integer activityId, LocalDateTime start, LocalDateTime end) {
+            this.locationId = locationId;
+            this.activityId = activityId;
+            this.start = start;
+            this.end = end;
+        }
+        public Integer getActivityId() {
+            return activityId;
+        }
+        //活动保存后补上id
+        public void setActivityId(Integer activityId) {
+            this.activityId = activityId;
+        }
+    }
+}
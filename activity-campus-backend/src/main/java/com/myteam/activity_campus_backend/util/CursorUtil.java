@@ -0,0 +1,52 @@
+package com.myteam.activity_campus_backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * @author sjy15
+ * @description: 分页游标编解码（时间+id，对前端不透明）
+ * @date 2026/10/17 11:05
+ */
+public class CursorUtil {
+    private static final String SEPARATOR = "|";
+
+    // 编码：排序时间 + 主键id → URL安全的Base64串
+    public static String encode(LocalDateTime time, Integer id) {
+        String raw = time + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 解码：游标格式不对时抛出IllegalArgumentException
+    public static Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(SEPARATOR);
+            if (split <= 0) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            LocalDateTime time = LocalDateTime.parse(raw.substring(0, split));
+            Integer id = Integer.valueOf(raw.substring(split + 1));
+            return new Cursor(time, id);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
+    public static class Cursor {
+        private final LocalDateTime time;
+        private final Integer id;
+        public Cursor(LocalDateTime time, Integer id) {
+            this.time = time;
+            this.id = id;
+        }
+        public LocalDateTime getTime() {
+            return time;
+        }
+        public Integer getId() {
+            return id;
+        }
+    }
+}
@@ -3,22 +3,24 @@ package com.myteam.activity_campus_backend.util;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 @Component
 public class GeoUtil {
-    // 地球半径（单位：米，使用BigDecimal确保精度）
-    private static final BigDecimal EARTH_RADIUS = new BigDecimal("6371000");
-    // 常量：π（用于角度转弧度）
-    private static final BigDecimal PI = new BigDecimal(Math.PI);
-    // 常量：180（角度转弧度的分母）
-    private static final BigDecimal ONE_EIGHTY = new BigDecimal("180");
-    // 常量：2（公式中多次用到的倍数）
-    private static final BigDecimal TWO = new BigDecimal("2");
+    // 地球半径（单位：米）
+    public static final double EARTH_RADIUS = 6371000d;
+    // 预筛选只在这个距离内使用（米），距离越远等距矩形近似误差越大
+    private static final double PREFILTER_MAX_DISTANCE = 10000d;
+    // 预筛选的相对误差余量，10公里内等距矩形近似的误差远小于这个值
+    private static final double PREFILTER_TOLERANCE = 1e-3;
+    // 经纬度合法范围
+    private static final BigDecimal MIN_LATITUDE = new BigDecimal("-90");
+    private static final BigDecimal MAX_LATITUDE = new BigDecimal("90");
+    private static final BigDecimal MIN_LONGITUDE = new BigDecimal("-180");
+    private static final BigDecimal MAX_LONGITUDE = new BigDecimal("180");
 
 
     /**
-     * 判断用户是否在指定圆形区域内（所有参数使用BigDecimal）
+     * 判断用户是否在指定圆形区域内（BigDecimal参数，兼容原有调用方）
      *
      * @param userLat    用户纬度（度，范围：-90 ~ 90）
      * @param userLng    用户经度（度，范围：-180 ~ 180）
@@ -34,159 +36,109 @@ public class GeoUtil {
         // 1. 统一参数校验（拆分成独立方法，提前抛异常）
         validateGeoParameters(userLat, userLng, centerLat, centerLng, radius);
 
-        // 2. 计算用户与中心点的球面距离（米）
-        BigDecimal distance = calculateDistance(userLat, userLng, centerLat, centerLng);
-
-        // 3. 比较距离与半径（保留2位小数，四舍五入）
-        BigDecimal distanceScaled = distance.setScale(2, RoundingMode.HALF_UP);
-        BigDecimal radiusScaled = radius.setScale(2, RoundingMode.HALF_UP);
-        return distanceScaled.compareTo(radiusScaled) <= 0;
+        // 2. 转成double走快速路径，三角函数原本就是用double算的，结果一致
+        return isInArea(userLat.doubleValue(), userLng.doubleValue(),
+                centerLat.doubleValue(), centerLng.doubleValue(), radius.doubleValue());
     }
 
     /**
-     * 提取参数校验为独立方法，集中处理非空和有效性判断
+     * 判断用户是否在指定圆形区域内（double快速路径，不分配对象）
+     * 与原实现语义一致：距离和半径都四舍五入到厘米后比较
+     * 参数不做校验，由调用方保证合法
      */
-    private static void validateGeoParameters(BigDecimal userLat, BigDecimal userLng,
-                                              BigDecimal centerLat, BigDecimal centerLng,
-                                              BigDecimal radius) {
-        // 非空校验（合并为一个判断，避免多个if）
-        if (isAnyNull(userLat, userLng, centerLat, centerLng, radius)) {
-            throw new IllegalArgumentException("地理参数不能为null");
+    public static boolean isInArea(double userLat, double userLng,
+                                   double centerLat, double centerLng,
+                                   double radius) {
+        double radiusCm = roundToCm(radius);
+        // 1. 纬度差对应的弧长是球面距离的下界，超出半径直接判定在外，不用三角函数
+        double deltaLat = Math.toRadians(centerLat - userLat);
+        if (roundToCm(EARTH_RADIUS * Math.abs(deltaLat)) > radiusCm) {
+            return false;
         }
 
-        // 经纬度有效性校验（合并重复逻辑）
-        if (!isValidLatitude(userLat) || !isValidLongitude(userLng)
-                || !isValidLatitude(centerLat) || !isValidLongitude(centerLng)) {
-            throw new IllegalArgumentException("无效的地理参数：经纬度格式错误");
-        }
-
-        // 半径有效性校验
-        if (radius.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("无效的地理参数：半径不能为负数");
-        }
-    }
-
-    /**
-     * 工具方法：判断任意参数是否为null（减少主逻辑中的重复null判断）
-     */
-    private static boolean isAnyNull(BigDecimal... params) {
-        for (BigDecimal param : params) {
-            if (param == null) {
+        // 2. 等距矩形近似（只算一次cos），离边界足够远时直接给出结果
+        double approx = equirectangularDistance(userLat, userLng, centerLat, centerLng);
+        if (approx <= PREFILTER_MAX_DISTANCE) {
+            double margin = PREFILTER_TOLERANCE * Math.max(approx, radius) + 0.01;
+            if (approx + margin < radius) {
                 return true;
             }
+            if (approx - margin > radius) {
+                return false;
+            }
         }
-        return false;
-    }
-
 
-
-    /**
-     * 校验纬度是否合法（-90 ~ 90度）
-     */
-    private static boolean isValidLatitude(BigDecimal latitude) {
-        return latitude.compareTo(new BigDecimal("-90")) >= 0
-                && latitude.compareTo(new BigDecimal("90")) <= 0;
+        // 3. 靠近边界时用Haversine精确计算
+        return roundToCm(distance(userLat, userLng, centerLat, centerLng)) <= radiusCm;
     }
 
-
-    /**
-     * 校验经度是否合法（-180 ~ 180度）
-     */
-    private static boolean isValidLongitude(BigDecimal longitude) {
-        return longitude.compareTo(new BigDecimal("-180")) >= 0
-                && longitude.compareTo(new BigDecimal("180")) <= 0;
-    }
-
-
     /**
      * 基于Haversine公式计算两点间的地球表面距离（米）
-     * 所有计算均使用BigDecimal，避免精度丢失
      */
-    private static BigDecimal calculateDistance(BigDecimal lat1, BigDecimal lng1,
-                                                BigDecimal lat2, BigDecimal lng2) {
-        // 1. 将角度转为弧度（弧度 = 角度 * π / 180）
-        BigDecimal radLat1 = toRadians(lat1);
-        BigDecimal radLat2 = toRadians(lat2);
-        BigDecimal radLng1 = toRadians(lng1);
-        BigDecimal radLng2 = toRadians(lng2);
-
-        // 2. 计算纬度差和经度差
-        BigDecimal deltaLat = radLat2.subtract(radLat1);
-        BigDecimal deltaLng = radLng2.subtract(radLng1);
-
-        // 3. Haversine公式核心计算
+    public static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double radLat1 = Math.toRadians(lat1);
+        double radLat2 = Math.toRadians(lat2);
+        double sinDeltaLatHalf = Math.sin((radLat2 - radLat1) / 2);
+        double sinDeltaLngHalf = Math.sin(Math.toRadians(lng2 - lng1) / 2);
         // a = sin²(Δφ/2) + cosφ1 * cosφ2 * sin²(Δλ/2)
-        BigDecimal sinDeltaLatHalf = sin(deltaLat.divide(TWO, 20, RoundingMode.HALF_UP));
-        BigDecimal sinDeltaLngHalf = sin(deltaLng.divide(TWO, 20, RoundingMode.HALF_UP));
-
-        BigDecimal a = sinDeltaLatHalf.pow(2)
-                .add(cos(radLat1)
-                        .multiply(cos(radLat2))
-                        .multiply(sinDeltaLngHalf.pow(2)));
-
-        // c = 2 * atan2(√a, √(1−a))
-        BigDecimal sqrtA = sqrt(a, 20);
-        BigDecimal sqrt1MinusA = sqrt(BigDecimal.ONE.subtract(a), 20);
-        BigDecimal c = TWO.multiply(atan2(sqrtA, sqrt1MinusA));
-
-        // 4. 距离 = 地球半径 * c（米）
-        return EARTH_RADIUS.multiply(c).setScale(6, RoundingMode.HALF_UP);
+        double a = sinDeltaLatHalf * sinDeltaLatHalf
+                + Math.cos(radLat1) * Math.cos(radLat2) * sinDeltaLngHalf * sinDeltaLngHalf;
+        // c = 2 * atan2(√a, √(1−a))，a可能因舍入略超出[0,1]
+        a = Math.min(1d, Math.max(0d, a));
+        return EARTH_RADIUS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
     }
 
-
     /**
-     * 角度转弧度（ BigDecimal实现 ）
+     * 等距矩形近似距离（米），短距离内与Haversine几乎相同，只需要一次cos
      */
-    private static BigDecimal toRadians(BigDecimal degrees) {
-        return degrees.multiply(PI).divide(ONE_EIGHTY, 20, RoundingMode.HALF_UP);
+    public static double equirectangularDistance(double lat1, double lng1, double lat2, double lng2) {
+        double x = Math.toRadians(lng2 - lng1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return EARTH_RADIUS * Math.sqrt(x * x + y * y);
     }
 
+    // 与原实现的 setScale(2, HALF_UP) 一致（距离和半径均非负）
+    private static double roundToCm(double meters) {
+        return Math.floor(meters * 100 + 0.5);
+    }
 
     /**
-     * 计算正弦值（基于Math.sin，转换为BigDecimal）
-     * 注：三角函数计算需通过double过渡，保留20位小数确保精度
+     * 提取参数校验为独立方法，集中处理非空和有效性判断
      */
-    private static BigDecimal sin(BigDecimal radians) {
-        double sinValue = Math.sin(radians.doubleValue());
-        return new BigDecimal(sinValue).setScale(20, RoundingMode.HALF_UP);
-    }
+    private static void validateGeoParameters(BigDecimal userLat, BigDecimal userLng,
+                                              BigDecimal centerLat, BigDecimal centerLng,
+                                              BigDecimal radius) {
+        // 非空校验（合并为一个判断，避免多个if）
+        if (userLat == null || userLng == null || centerLat == null || centerLng == null || radius == null) {
+            throw new IllegalArgumentException("地理参数不能为null");
+        }
 
+        // 经纬度有效性校验（合并重复逻辑）
+        if (!isValidLatitude(userLat) || !isValidLongitude(userLng)
+                || !isValidLatitude(centerLat) || !isValidLongitude(centerLng)) {
+            throw new IllegalArgumentException("无效的地理参数：经纬度格式错误");
+        }
 
-    /**
-     * 计算余弦值（基于Math.cos，转换为BigDecimal）
-     */
-    private static BigDecimal cos(BigDecimal radians) {
-        double cosValue = Math.cos(radians.doubleValue());
-        return new BigDecimal(cosValue).setScale(20, RoundingMode.HALF_UP);
+        // 半径有效性校验
+        if (radius.signum() < 0) {
+            throw new IllegalArgumentException("无效的地理参数：半径不能为负数");
+        }
     }
 
-
     /**
-     * 计算反正切值（atan2(y, x)，基于Math.atan2，转换为BigDecimal）
+     * 校验纬度是否合法（-90 ~ 90度）
      */
-    private static BigDecimal atan2(BigDecimal y, BigDecimal x) {
-        double atan2Value = Math.atan2(y.doubleValue(), x.doubleValue());
-        return new BigDecimal(atan2Value).setScale(20, RoundingMode.HALF_UP);
+    private static boolean isValidLatitude(BigDecimal latitude) {
+        return latitude.compareTo(MIN_LATITUDE) >= 0
+                && latitude.compareTo(MAX_LATITUDE) <= 0;
     }
 
 
     /**
-     * 计算平方根（牛顿迭代法实现BigDecimal高精度开方）
-     * @param value 被开方数
-     * @param scale 精度（保留小数位数）
+     * 校验经度是否合法（-180 ~ 180度）
      */
-    private static BigDecimal sqrt(BigDecimal value, int scale) {
-        if (value.compareTo(BigDecimal.ZERO) < 0) {
-            throw new ArithmeticException("不能对负数开平方");
-        }
-        BigDecimal guess = value;
-        BigDecimal prev;
-        do {
-            prev = guess;
-            guess = value.divide(guess, scale + 1, RoundingMode.HALF_UP)
-                    .add(guess)
-                    .divide(TWO, scale + 1, RoundingMode.HALF_UP);
-        } while (guess.subtract(prev).abs().compareTo(new BigDecimal("1e-" + (scale + 1))) > 0);
-        return guess.setScale(scale, RoundingMode.HALF_UP);
+    private static boolean isValidLongitude(BigDecimal longitude) {
+        return longitude.compareTo(MIN_LONGITUDE) >= 0
+                && longitude.compareTo(MAX_LONGITUDE) <= 0;
     }
-}
\ No newline at end of file
+}
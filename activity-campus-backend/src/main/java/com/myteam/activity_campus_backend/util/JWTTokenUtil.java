@@ -1,7 +1,12 @@
 package com.myteam.activity_campus_backend.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,10 +15,15 @@ import org.springframework.util.StringUtils;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JWTTokenUtil {
+    // 聊天室SSE订阅的路径前缀（/api/activity/chat/stream/{activityId}）
+    private static final String SSE_STREAM_PREFIX = "/api/activity/chat/stream/";
 
     // 从配置文件注入密钥和过期时间
     @Value("${jwt.secret}")
@@ -32,18 +42,41 @@ public class JWTTokenUtil {
     @Value("${jwt.remember-expiration}")
     private long rememberExpiration;
 
-    // 缓存密钥避免重复生成
+    // 已验证令牌缓存上限
+    @Value("${jwt.verified-cache-size:10000}")
+    private long verifiedCacheSize;
+
+    // 密钥和解析器只创建一次，解析器是线程安全的，可以在所有请求间复用
     private SecretKey secretKeyCache;
+    private JwtParser parserCache;
+    // 令牌摘要 -> 已验签的用户ID和过期时间，条目在令牌过期时自动失效
+    private Cache<String, VerifiedToken> verifiedCache;
+
+    @PostConstruct
+    public void init() {
+        secretKeyCache = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parserCache = Jwts.parser().verifyWith(secretKeyCache).build();
+        verifiedCache = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.expiresAt - System.currentTimeMillis()));
+                    }
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
 
-    // 密钥生成（线程安全，懒加载）
     private SecretKey getSecretKey() {
-        if (secretKeyCache == null) {
-            synchronized (this) {
-                if (secretKeyCache == null) {
-                    secretKeyCache = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-                }
-            }
-        }
         return secretKeyCache;
     }
 
@@ -77,9 +110,7 @@ public class JWTTokenUtil {
     // 解析令牌获取所有声明
     public Claims getClaimsFromToken(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith(getSecretKey())
-                    .build()
+            return parserCache
                     .parseSignedClaims(token)
                     .getPayload();
         } catch (ExpiredJwtException e) {
@@ -89,16 +120,69 @@ public class JWTTokenUtil {
         }
     }
 
+    /**
+     * 验证令牌并取出用户ID，同一令牌只解析、验签一次，之后直到过期都直接命中缓存
+     * @param token 令牌
+     * @return 验证通过的令牌信息；令牌无效或已过期返回null
+     * @throws RuntimeException 签名有效但用户ID格式无效
+     */
+    public VerifiedToken verify(String token) {
+        String key = digest(token);
+        VerifiedToken cached = verifiedCache.getIfPresent(key);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            return cached;
+        }
+        Claims claims;
+        try {
+            claims = getClaimsFromToken(token);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        Date expiration = claims.getExpiration();
+        if (expiration == null || expiration.before(new Date())) {
+            return null;
+        }
+        VerifiedToken verified = new VerifiedToken(parseUserId(claims.getSubject()), expiration.getTime());
+        verifiedCache.put(key, verified);
+        return verified;
+    }
+
     // 从令牌中获取用户ID
     public Integer getUserIdFromToken(String token) {
+        VerifiedToken verified = verify(token);
+        if (verified == null) {
+            throw new RuntimeException("令牌无效或已过期");
+        }
+        return verified.getUserId();
+    }
+
+    private static Integer parseUserId(String subject) {
         try {
-            String subject = getClaimsFromToken(token).getSubject();
             return Integer.parseInt(subject);
         } catch (NumberFormatException e) {
             throw new RuntimeException("令牌中的用户ID格式无效", e);
         }
     }
 
+    // 令牌的SHA-256摘要作为缓存键，不在内存中保存令牌原文
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 已验证令牌缓存的命中统计
+    public CacheStats verifiedCacheStats() {
+        return verifiedCache.stats();
+    }
+
+    public long verifiedCacheSize() {
+        return verifiedCache.estimatedSize();
+    }
+
     // 获取自定义声明
     public Map<String, Object> getCustomClaims(String token) {
         Claims claims = getClaimsFromToken(token);
@@ -126,11 +210,10 @@ public class JWTTokenUtil {
         }
     }
 
-    // 验证令牌有效性
+    // 验证令牌有效性（只解析一次，结果缓存）
     public boolean validateToken(String token) {
         try {
-            getClaimsFromToken(token);
-            return !isTokenExpired(token);
+            return verify(token) != null;
         } catch (RuntimeException e) {
             return false;
         }
@@ -174,10 +257,15 @@ public class JWTTokenUtil {
         }
     }
 
-    // 从请求头提取令牌
+    // 从请求头提取令牌；浏览器的EventSource不能设置请求头，聊天室SSE订阅允许用查询参数?token=
+    // 其他接口只认请求头，避免令牌出现在访问日志和浏览器历史里
     public String extractToken(HttpServletRequest request) {
-        String bearerToken = request.getHeader("Authorization");
-        return extractTokenFromHeader(bearerToken);
+        String token = extractTokenFromHeader(request.getHeader("Authorization"));
+        if (token == null && "GET".equals(request.getMethod()) && request.getRequestURI().startsWith(SSE_STREAM_PREFIX)) {
+            String param = request.getParameter("token");
+            return StringUtils.hasText(param) ? param : null;
+        }
+        return token;
     }
 
     // 从Authorization头提取令牌
@@ -188,4 +276,19 @@ public class JWTTokenUtil {
         return null;
     }
 
-}
\ No newline at end of file
+    // 已验证的令牌：用户ID和过期时间（毫秒）
+    public static class VerifiedToken {
+        private final Integer userId;
+        private final long expiresAt;
+        VerifiedToken(Integer userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+        public Integer getUserId() {
+            return userId;
+        }
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
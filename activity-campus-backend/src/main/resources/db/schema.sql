@@ -33,7 +33,15 @@ CREATE TABLE app_userlocation (
                               PRIMARY KEY (record_Id),
                               CONSTRAINT userlocation_ibfk_1 FOREIGN KEY (user_Id) REFERENCES app_user(user_Id)
 );
-CREATE INDEX idx_UserLocation_User_Id ON app_userlocation(user_Id);
+CREATE INDEX idx_UserLocation_User_Valid ON app_userlocation(user_Id, valid_time);
+CREATE TABLE app_userlocation_latest (
+                              user_Id INT NOT NULL COMMENT '用户ID',
+                              longitude DECIMAL(10,6) NOT NULL COMMENT '经度',
+                              latitude DECIMAL(10,6) NOT NULL COMMENT '纬度',
+                              valid_time BIGINT NOT NULL COMMENT '有效期（毫秒时间戳）',
+                              PRIMARY KEY (user_Id),
+                              CONSTRAINT userlocation_latest_ibfk_1 FOREIGN KEY (user_Id) REFERENCES app_user(user_Id)
+);
 CREATE TABLE app_activity (
                           activity_Id INT NOT NULL AUTO_INCREMENT COMMENT '活动 ID',
                           publisher_Id INT NOT NULL COMMENT '发布者 ID',
@@ -53,9 +61,11 @@ CREATE TABLE app_activity (
 );
 CREATE INDEX idx_Activity_Publisher_Id ON app_activity(publisher_Id);
 CREATE INDEX idx_Activity_Location_Id ON app_activity(location_Id);
+CREATE INDEX idx_Activity_Start_Time_Id ON app_activity(start_Time, activity_Id);
 CREATE TABLE app_message (
                          message_Id INT NOT NULL AUTO_INCREMENT COMMENT '消息唯一标识',
                          receive_Id INT NOT NULL COMMENT '接收方ID',
+                         room_Seq BIGINT COMMENT '房间内序号',
                          user_Id INT NOT NULL COMMENT '发送者ID',
                          content VARCHAR(255) NOT NULL,
                          send_Time TIMESTAMP NOT NULL COMMENT '发送时间',
@@ -63,7 +73,18 @@ CREATE TABLE app_message (
                          CONSTRAINT message_ibfk_1 FOREIGN KEY (user_Id) REFERENCES app_user(user_Id)
 );
 CREATE INDEX idx_Message_User_Id ON app_message(user_Id);
-CREATE INDEX idx_Message_Receive_Id ON app_message(receive_Id);
+CREATE INDEX idx_Message_Receive_Time_Id ON app_message(receive_Id, send_Time, message_Id);
+CREATE INDEX idx_Message_Receive_Seq ON app_message(receive_Id, room_Seq);
+CREATE TABLE app_message_recall (
+                         recall_Id INT NOT NULL AUTO_INCREMENT COMMENT '撤回记录唯一标识',
+                         receive_Id INT NOT NULL COMMENT '活动ID',
+                         room_Seq BIGINT NOT NULL COMMENT '撤回在房间内的序号',
+                         message_Id INT NOT NULL COMMENT '被撤回的消息ID',
+                         message_Seq BIGINT NOT NULL DEFAULT 0 COMMENT '被撤回消息的房间序号',
+                         recall_Time TIMESTAMP NOT NULL COMMENT '撤回时间',
+                         PRIMARY KEY (recall_Id)
+);
+CREATE UNIQUE INDEX uk_Message_Recall_Receive_Seq ON app_message_recall(receive_Id, room_Seq);
 CREATE TABLE app_belong (
                         team_record_Id INT NOT NULL AUTO_INCREMENT COMMENT '成员记录唯一标识',
                         team_Id INT NOT NULL COMMENT '团队ID',
@@ -87,4 +108,43 @@ CREATE TABLE app_participate (
                              CONSTRAINT participate_ibfk_2 FOREIGN KEY (activity_Id) REFERENCES app_activity(activity_Id)
 );
 CREATE INDEX idx_Participate_Participant_Id ON app_participate(participant_Id);
-CREATE INDEX idx_Participate_Activity_Id ON app_participate(activity_Id);
\ No newline at end of file
+CREATE INDEX idx_Participate_Activity_Id ON app_participate(activity_Id);
+CREATE TABLE app_attendance (
+                            attendance_Id INT NOT NULL AUTO_INCREMENT COMMENT '到场记录唯一标识',
+                            activity_Id INT NOT NULL COMMENT '活动ID',
+                            user_Id INT NOT NULL COMMENT '用户ID',
+                            check_In_Time TIMESTAMP NOT NULL COMMENT '第一次进入活动范围的时间',
+                            check_Out_Time TIMESTAMP COMMENT '离开活动范围的时间，仍在范围内为空',
+                            PRIMARY KEY (attendance_Id),
+                            CONSTRAINT attendance_ibfk_1 FOREIGN KEY (activity_Id) REFERENCES app_activity(activity_Id),
+                            CONSTRAINT attendance_ibfk_2 FOREIGN KEY (user_Id) REFERENCES app_user(user_Id)
+);
+CREATE UNIQUE INDEX uk_Attendance_Activity_User ON app_attendance(activity_Id, user_Id);
+CREATE TABLE app_unread (
+                            unread_Id INT NOT NULL AUTO_INCREMENT COMMENT '未读记录唯一标识',
+                            user_Id INT NOT NULL COMMENT '用户ID',
+                            conv_Type INT NOT NULL COMMENT '会话类型：1活动聊天室（私信未读数在app_conversation）',
+                            conv_Id INT NOT NULL COMMENT '活动ID',
+                            unread_Count INT NOT NULL DEFAULT 0 COMMENT '未读数',
+                            read_Time TIMESTAMP COMMENT '最近一次标记已读的时间',
+                            PRIMARY KEY (unread_Id),
+                            CONSTRAINT unread_ibfk_1 FOREIGN KEY (user_Id) REFERENCES app_user(user_Id)
+);
+CREATE UNIQUE INDEX uk_Unread_User_Conv ON app_unread(user_Id, conv_Type, conv_Id);
+CREATE TABLE app_conversation (
+                                  conversation_Id INT NOT NULL AUTO_INCREMENT COMMENT '私信会话唯一标识',
+                                  user_Low INT NOT NULL COMMENT '两个用户中较小的用户ID',
+                                  user_High INT NOT NULL COMMENT '两个用户中较大的用户ID',
+                                  last_Message_Id INT NOT NULL COMMENT '最后一条私信ID',
+                                  last_Sender_Id INT NOT NULL COMMENT '最后一条私信的发送者ID',
+                                  last_Content VARCHAR(255) NOT NULL COMMENT '最后一条私信内容',
+                                  last_Time TIMESTAMP NOT NULL COMMENT '最后一条私信的发送时间',
+                                  unread_Low INT NOT NULL DEFAULT 0 COMMENT 'user_Low一方的未读数',
+                                  unread_High INT NOT NULL DEFAULT 0 COMMENT 'user_High一方的未读数',
+                                  PRIMARY KEY (conversation_Id),
+                                  CONSTRAINT conversation_ibfk_1 FOREIGN KEY (user_Low) REFERENCES app_user(user_Id),
+                                  CONSTRAINT conversation_ibfk_2 FOREIGN KEY (user_High) REFERENCES app_user(user_Id)
+);
+CREATE UNIQUE INDEX uk_Conversation_Pair ON app_conversation(user_Low, user_High);
+CREATE INDEX idx_Conversation_Low_Time ON app_conversation(user_Low, last_Time, last_Message_Id);
+CREATE INDEX idx_Conversation_High_Time ON app_conversation(user_High, last_Time, last_Message_Id);
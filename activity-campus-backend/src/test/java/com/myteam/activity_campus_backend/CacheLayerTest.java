@@ -0,0 +1,170 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.config.CacheConfig;
+import com.myteam.activity_campus_backend.dto.ActivityDTO;
+import com.myteam.activity_campus_backend.dto.UserDTO;
+import com.myteam.activity_campus_backend.dto.request.LocationRequest;
+import com.myteam.activity_campus_backend.dto.request.UserRegisterRequest;
+import com.myteam.activity_campus_backend.dto.response.ParticipateInActivityResponse;
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.entity.Location;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.LocationRepository;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.ActivityServer;
+import com.myteam.activity_campus_backend.service.LocationServer;
+import com.myteam.activity_campus_backend.service.MetricsServer;
+import com.myteam.activity_campus_backend.service.UserService;
+import com.myteam.activity_campus_backend.util.BCryptUtil;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 缓存命中与写操作精确失效测试
+ * @date 2026/10/17 15:40
+ */
+@SpringBootTest
+@Transactional
+public class CacheLayerTest {
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private ActivityRepository activityRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private LocationServer locationServer;
+    @Autowired
+    private ActivityServer activityServer;
+    @Autowired
+    private MetricsServer metricsServer;
+
+    private User user;
+    private User other;
+    private Location location;
+    private Activity activity;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        user = new User(9101, "缓存用户", BCryptUtil.encrypt("123456"), "INACTIVE");
+        other = new User(9102, "其他用户", "pwd", "ACTIVE");
+        entityManager.persist(user);
+        entityManager.persist(other);
+        location = new Location();
+        location.setRegionName("缓存地点");
+        location.setCenterLatitude(new BigDecimal("39.904202"));
+        location.setCenterLongitude(new BigDecimal("116.407394"));
+        location.setDministrativeCode("110101");
+        location.setRegionType("SPORTS_FIELD");
+        location.setDetailAddress("缓存地址");
+        location.setRegionRadius(new BigDecimal("100.00"));
+        entityManager.persist(location);
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0);
+        activity = new Activity();
+        activity.setPublisher(user);
+        activity.setActivityName("缓存活动");
+        activity.setLocation(location);
+        activity.setDetailedAddress(location.getDetailAddress());
+        activity.setRegistrationTime(start.minusDays(2));
+        activity.setRegistrationEndTime(start.minusDays(1));
+        activity.setStartTime(start);
+        activity.setEndTime(start.plusHours(1));
+        entityManager.persist(activity);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    //------------------------用户缓存--------------------------
+    //第二次查询命中缓存
+    @Test
+    void user_SecondLookupHits() {
+        Map<String, Object> before = metricsServer.cacheStats().get(CacheConfig.USERS);
+        User first = userRepository.findById(user.getId()).orElseThrow();
+        User second = userRepository.findById(user.getId()).orElseThrow();
+        assertSame(first, second);
+        //统计在整个应用上下文中累计，按增量判断
+        Map<String, Object> after = metricsServer.cacheStats().get(CacheConfig.USERS);
+        assertEquals(1L, (Long) after.get("hitCount") - (Long) before.get("hitCount"));
+        assertEquals(1L, (Long) after.get("missCount") - (Long) before.get("missCount"));
+    }
+    //不存在的用户不缓存
+    @Test
+    void user_MissingNotCached() {
+        assertTrue(userRepository.findById(-1).isEmpty());
+        assertNull(cacheManager.getCache(CacheConfig.USERS).get(-1));
+    }
+    //激活只清除该用户
+    @Test
+    void user_RegistrationEvictsOnlyThatUser() {
+        userRepository.findById(user.getId());
+        userRepository.findById(other.getId());
+        userService.registration(new UserRegisterRequest(user.getId(), "缓存用户", "123456"));
+        Cache cache = cacheManager.getCache(CacheConfig.USERS);
+        assertNull(cache.get(user.getId()));
+        assertNotNull(cache.get(other.getId()));
+        assertEquals("ACTIVE", userRepository.findById(user.getId()).orElseThrow().getUserStatus());
+    }
+    //激活不修改之前缓存的对象（其他线程拿着的实体），之后查到的是新值
+    @Test
+    void user_RegistrationDoesNotMutateCachedEntity() {
+        User cached = userRepository.findById(user.getId()).orElseThrow();
+        //测试在一个事务里，分离出持久化上下文，模拟其他请求拿到的缓存对象
+        entityManager.detach(cached);
+        String status = cached.getUserStatus();
+        userService.registration(new UserRegisterRequest(user.getId(), "缓存用户", "123456"));
+        assertEquals(status, cached.getUserStatus());
+        assertNull(cacheManager.getCache(CacheConfig.USERS).get(user.getId()));
+        assertEquals("ACTIVE", userRepository.findById(user.getId()).orElseThrow().getUserStatus());
+    }
+    //------------------------地点缓存--------------------------
+    //保存同一地址的地点时清除
+    @Test
+    void location_SaveEvictsAddress() {
+        assertNotNull(locationRepository.findByDetailAddress("缓存地址"));
+        Cache cache = cacheManager.getCache(CacheConfig.LOCATIONS);
+        assertNotNull(cache.get("缓存地址"));
+        LocationRequest request = new LocationRequest();
+        request.setRegionName("新地点");
+        request.setCenterLatitude(new BigDecimal("39.904202"));
+        request.setCenterLongitude(new BigDecimal("116.407394"));
+        request.setDministrativeCode("110101");
+        request.setRegionType("SPORTS_FIELD");
+        request.setDetailAddress("缓存地址");
+        request.setRegionRadius(new BigDecimal("50.00"));
+        locationServer.save(request);
+        assertNull(cache.get("缓存地址"));
+    }
+    //------------------------活动详情缓存--------------------------
+    //审批占用名额后清除该活动
+    @Test
+    void activity_AgreementEvicts() {
+        Activity cached = activityRepository.findDetailById(activity.getId()).orElseThrow();
+        assertSame(cached, activityRepository.findDetailById(activity.getId()).orElseThrow());
+        UserDTO participant = new UserDTO();
+        participant.setUser_id(other.getId());
+        activityServer.publisherAgreement(new ParticipateInActivityResponse(participant, ActivityDTO.convert(cached), "报名活动"));
+        assertNull(cacheManager.getCache(CacheConfig.ACTIVITY_DETAILS).get(activity.getId()));
+        assertEquals(1, activityRepository.findDetailById(activity.getId()).orElseThrow().getCurrentPeople());
+    }
+}
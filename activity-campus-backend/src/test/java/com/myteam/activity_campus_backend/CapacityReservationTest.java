@@ -0,0 +1,126 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.ActivityDTO;
+import com.myteam.activity_campus_backend.dto.UserDTO;
+import com.myteam.activity_campus_backend.dto.response.ParticipateInActivityResponse;
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.entity.Location;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.LocationRepository;
+import com.myteam.activity_campus_backend.repository.ParticipateRepository;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.ActivityServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author sjy15
+ * @description: 并发审批报名不超员测试
+ * @date 2026/10/17 17:10
+ */
+@SpringBootTest
+public class CapacityReservationTest {
+    private static final int CAPACITY = 50;
+    private static final int APPLICANTS = 200;
+
+    @Autowired
+    private ActivityServer activityServer;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private ActivityRepository activityRepository;
+    @Autowired
+    private ParticipateRepository participateRepository;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final List<User> users = new ArrayList<>();
+    private Location location;
+    private Activity activity;
+
+    //需要真实提交事务，不使用@Transactional回滚，测试后手动清理
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i <= APPLICANTS; i++) {
+            users.add(new User(9201 + i, "并发用户" + i, "pwd", "ACTIVE"));
+        }
+        userRepository.saveAll(users);
+        location = new Location();
+        location.setRegionName("并发地点");
+        location.setCenterLatitude(new BigDecimal("39.904202"));
+        location.setCenterLongitude(new BigDecimal("116.407394"));
+        location.setDministrativeCode("110101");
+        location.setRegionType("SPORTS_FIELD");
+        location.setDetailAddress("并发地址");
+        location.setRegionRadius(new BigDecimal("100.00"));
+        location = locationRepository.save(location);
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0);
+        activity = new Activity();
+        activity.setPublisher(users.get(0));
+        activity.setActivityName("热门活动");
+        activity.setLocation(location);
+        activity.setDetailedAddress(location.getDetailAddress());
+        activity.setRegistrationTime(start.minusDays(2));
+        activity.setRegistrationEndTime(start.minusDays(1));
+        activity.setStartTime(start);
+        activity.setEndTime(start.plusHours(1));
+        activity.setMaxPeople(CAPACITY);
+        activity = activityRepository.save(activity);
+    }
+
+    @AfterEach
+    void tearDown() {
+        participateRepository.deleteAll(participateRepository.findByActivityIdWithDetails(activity.getId()));
+        activityRepository.deleteById(activity.getId());
+        locationRepository.deleteById(location.getId());
+        userRepository.deleteAll(users);
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    //200人同时被审批，名额50，恰好50人成功
+    @Test
+    void publisherAgreement_ConcurrentApprovals_NoOverbooking() throws Exception {
+        ActivityDTO activityDTO = ActivityDTO.convert(activityRepository.findDetailById(activity.getId()).orElseThrow());
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 1; i <= APPLICANTS; i++) {
+            UserDTO participant = new UserDTO();
+            participant.setUser_id(users.get(i).getId());
+            futures.add(executor.submit(() -> {
+                ready.await();
+                return activityServer.publisherAgreement(
+                        new ParticipateInActivityResponse(participant, activityDTO, "报名活动")).getMessage();
+            }));
+        }
+        ready.countDown();
+        List<String> messages = new ArrayList<>();
+        for (Future<String> future : futures) {
+            messages.add(future.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        Map<String, Long> counts = messages.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        assertEquals(CAPACITY, counts.get("同意"));
+        assertEquals(APPLICANTS - CAPACITY, counts.get("活动人数已满"));
+        assertEquals(CAPACITY, activityRepository.findById(activity.getId()).orElseThrow().getCurrentPeople());
+        assertEquals(CAPACITY, participateRepository.findByActivityIdWithDetails(activity.getId()).size());
+    }
+}
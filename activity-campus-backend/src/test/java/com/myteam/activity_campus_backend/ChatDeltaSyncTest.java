@@ -0,0 +1,132 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.dto.response.ChatDeltaResponse;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import com.myteam.activity_campus_backend.service.RoomSequencer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 聊天室增量同步测试（真实数据库）：房间序号、撤回墓碑、分批取
+ * @date 2026/10/18 15:40
+ */
+@SpringBootTest
+public class ChatDeltaSyncTest {
+    private static final int ACTIVITY_ID = 9801;
+
+    @Autowired
+    private MessageServer messageServer;
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+    @Autowired
+    private RoomSequencer roomSequencer;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(9801, "同步用户", "pwd", "ACTIVE"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        //增量同步不再强制写库，先把写缓冲里的消息写完再清理
+        messageWriteBuffer.flushNow();
+        jdbcTemplate.update("DELETE FROM app_message WHERE receive_Id = ?", ACTIVITY_ID);
+        jdbcTemplate.update("DELETE FROM app_message_recall WHERE receive_Id = ?", ACTIVITY_ID);
+        userRepository.delete(user);
+    }
+
+    private void send(String content) {
+        assertEquals("发送成功", messageServer.sendMessage(new MessageSendDTO(content, user.getId(), ACTIVITY_ID)));
+    }
+
+    private static List<String> contents(ChatDeltaResponse delta) {
+        return delta.getMessages().stream().map(ChatMessageDTO::getContent).toList();
+    }
+
+    //新消息按序号升序返回；撤回后增量里带墓碑；从更早的位置同步时已撤回的消息既不返回也不带墓碑
+    @Test
+    void delta_MessagesAndRecalls() {
+        long start = messageServer.chatDelta(ACTIVITY_ID, null, null).getNextSince();
+        send("a");
+        send("b");
+        send("c");
+        ChatDeltaResponse first = messageServer.chatDelta(ACTIVITY_ID, start, null);
+        assertEquals(List.of("a", "b", "c"), contents(first));
+        assertTrue(first.getRecalls().isEmpty());
+        assertFalse(first.isHasMore());
+        assertEquals(first.getMessages().get(2).getSeq(), first.getNextSince());
+
+        Integer recalledId = first.getMessages().get(1).getMessageId();
+        assertEquals("撤回成功", messageServer.recallMessageById(recalledId, user.getId()));
+        send("d");
+        ChatDeltaResponse second = messageServer.chatDelta(ACTIVITY_ID, first.getNextSince(), null);
+        assertEquals(List.of("d"), contents(second));
+        assertEquals(1, second.getRecalls().size());
+        assertEquals(recalledId, second.getRecalls().get(0).getMessageId());
+        assertTrue(second.getRecalls().get(0).getSeq() < second.getMessages().get(0).getSeq());
+
+        ChatDeltaResponse fresh = messageServer.chatDelta(ACTIVITY_ID, start, null);
+        assertEquals(List.of("a", "c", "d"), contents(fresh));
+        assertTrue(fresh.getRecalls().isEmpty());
+        assertEquals(second.getNextSince(), fresh.getNextSince());
+
+        ChatDeltaResponse none = messageServer.chatDelta(ACTIVITY_ID, fresh.getNextSince(), null);
+        assertTrue(none.getMessages().isEmpty());
+        assertTrue(none.getRecalls().isEmpty());
+        assertEquals(fresh.getNextSince(), none.getNextSince());
+    }
+
+    //超过size时分批取，nextSince接着取下一批
+    @Test
+    void delta_Paged() {
+        long start = messageServer.chatDelta(ACTIVITY_ID, null, null).getNextSince();
+        for (int i = 0; i < 5; i++) {
+            send("m" + i);
+        }
+        ChatDeltaResponse page = messageServer.chatDelta(ACTIVITY_ID, start, 2);
+        assertEquals(List.of("m0", "m1"), contents(page));
+        assertTrue(page.isHasMore());
+        page = messageServer.chatDelta(ACTIVITY_ID, page.getNextSince(), 2);
+        assertEquals(List.of("m2", "m3"), contents(page));
+        page = messageServer.chatDelta(ACTIVITY_ID, page.getNextSince(), 2);
+        assertEquals(List.of("m4"), contents(page));
+        assertFalse(page.isHasMore());
+    }
+    //序号上线前的旧消息补序号后，从0开始同步能取到，按发送时间排序
+    @Test
+    void delta_LegacyRowsBackfilled() {
+        LocalDateTime sent = LocalDateTime.now().minusDays(1).withNano(0);
+        jdbcTemplate.update("INSERT INTO app_message (message_Id, receive_Id, room_Seq, user_Id, content, send_Time) VALUES (?, ?, NULL, ?, ?, ?)",
+                996002, ACTIVITY_ID, user.getId(), "旧消息2", sent.plusMinutes(1));
+        jdbcTemplate.update("INSERT INTO app_message (message_Id, receive_Id, room_Seq, user_Id, content, send_Time) VALUES (?, ?, NULL, ?, ?, ?)",
+                996001, ACTIVITY_ID, user.getId(), "旧消息1", sent.plusMinutes(1));
+        jdbcTemplate.update("INSERT INTO app_message (message_Id, receive_Id, room_Seq, user_Id, content, send_Time) VALUES (?, ?, NULL, ?, ?, ?)",
+                996003, ACTIVITY_ID, user.getId(), "更早的旧消息", sent);
+
+        assertTrue(roomSequencer.backfill() >= 3);
+        send("新消息");
+        assertEquals(List.of("更早的旧消息", "旧消息1", "旧消息2", "新消息"), contents(messageServer.chatDelta(ACTIVITY_ID, 0L, null)));
+        assertEquals(0, roomSequencer.backfill());
+    }
+}
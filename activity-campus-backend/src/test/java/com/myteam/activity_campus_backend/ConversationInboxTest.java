@@ -0,0 +1,156 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.ConversationDTO;
+import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.dto.response.InboxResponse;
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.ConversationIndex;
+import com.myteam.activity_campus_backend.service.DirectMessageStore;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.UnreadCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 私信收件箱测试（真实数据库）：发送时更新会话摘要、分页、已读、撤回和补建
+ * @date 2026/10/18 18:50
+ */
+@SpringBootTest
+public class ConversationInboxTest {
+    @Autowired
+    private MessageServer messageServer;
+    @Autowired
+    private DirectMessageStore directMessageStore;
+    @Autowired
+    private ConversationIndex conversationIndex;
+    @Autowired
+    private UnreadCounter unreadCounter;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User me;
+    private User first;
+    private User second;
+
+    //需要真实提交事务，测试后手动清理
+    @BeforeEach
+    void setUp() {
+        me = userRepository.save(new User(9951, "收件人", "pwd", "ACTIVE"));
+        first = userRepository.save(new User(9952, "好友甲", "pwd", "ACTIVE"));
+        second = userRepository.save(new User(9953, "好友乙", "pwd", "ACTIVE"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        unreadCounter.flushQuietly();
+        jdbcTemplate.update("DELETE FROM app_unread WHERE user_Id IN (?, ?, ?)", me.getId(), first.getId(), second.getId());
+        jdbcTemplate.update("DELETE FROM app_conversation WHERE user_Low IN (?, ?, ?)", me.getId(), first.getId(), second.getId());
+        for (User peer : List.of(first, second)) {
+            for (MessageHistoryResponse message : directMessageStore.findConversationBefore(me.getId(), peer.getId(), null, 1000)) {
+                directMessageStore.delete(message);
+            }
+        }
+        userRepository.deleteAll(List.of(me, first, second));
+    }
+
+    //每个会话一行：最后一条私信和当前用户的未读数，按最后时间倒序；我发出的不计我的未读
+    @Test
+    void inbox_OneRowPerConversation() {
+        messageServer.sendDirectMessage(new MessageSendDTO("你好", first.getId(), me.getId()));
+        messageServer.sendDirectMessage(new MessageSendDTO("在吗", first.getId(), me.getId()));
+        messageServer.sendDirectMessage(new MessageSendDTO("明天见", second.getId(), me.getId()));
+        messageServer.sendDirectMessage(new MessageSendDTO("好的", me.getId(), second.getId()));
+
+        List<ConversationDTO> inbox = messageServer.inbox(me.getId(), null, null).getConversations();
+        assertEquals(2, inbox.size());
+        assertEquals(second.getId(), inbox.get(0).getPeerId());
+        assertEquals("好的", inbox.get(0).getLastMessage());
+        assertEquals(me.getId(), inbox.get(0).getLastSenderId());
+        assertEquals(1, inbox.get(0).getUnreadCount());
+        assertEquals(first.getId(), inbox.get(1).getPeerId());
+        assertEquals("好友甲", inbox.get(1).getPeerName());
+        assertEquals("在吗", inbox.get(1).getLastMessage());
+        assertEquals(2, inbox.get(1).getUnreadCount());
+
+        //对方看到的是同一行，未读数是对方自己的
+        List<ConversationDTO> peerInbox = messageServer.inbox(second.getId(), null, null).getConversations();
+        assertEquals(1, peerInbox.size());
+        assertEquals(me.getId(), peerInbox.get(0).getPeerId());
+        assertEquals(1, peerInbox.get(0).getUnreadCount());
+
+        messageServer.markDirectRead(me.getId(), first.getId());
+        inbox = messageServer.inbox(me.getId(), null, null).getConversations();
+        assertEquals(0, inbox.get(1).getUnreadCount());
+        assertEquals(1, messageServer.inbox(second.getId(), null, null).getConversations().get(0).getUnreadCount());
+    }
+
+    //游标分页：每页按最后时间倒序，翻完没有重复和遗漏
+    @Test
+    void inbox_Pages() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        directMessageStore.insert(first.getId(), first.getUserName(), me.getId(), "甲", now.minusMinutes(2));
+        directMessageStore.insert(me.getId(), me.getUserName(), second.getId(), "乙", now.minusMinutes(1));
+
+        InboxResponse page = messageServer.inbox(me.getId(), null, 1);
+        assertTrue(page.isHasMore());
+        assertEquals(second.getId(), page.getConversations().get(0).getPeerId());
+        InboxResponse next = messageServer.inbox(me.getId(), page.getNextCursor(), 1);
+        assertFalse(next.isHasMore());
+        assertNull(next.getNextCursor());
+        assertEquals(first.getId(), next.getConversations().get(0).getPeerId());
+    }
+
+    //撤回最后一条后会话显示之前的一条，全部撤回后会话消失
+    @Test
+    void recall_RewindsLastMessage() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        MessageHistoryResponse older = directMessageStore.insert(first.getId(), first.getUserName(), me.getId(), "第一条", now.minusMinutes(1));
+        MessageHistoryResponse newer = directMessageStore.insert(first.getId(), first.getUserName(), me.getId(), "第二条", now);
+
+        assertEquals("撤回成功", messageServer.recallDirectMessageById(newer.getMessageId(), first.getId()));
+        ConversationDTO conversation = messageServer.inbox(me.getId(), null, null).getConversations().get(0);
+        assertEquals(older.getMessageId(), conversation.getLastMessageId());
+        assertEquals("第一条", conversation.getLastMessage());
+
+        assertEquals("撤回成功", messageServer.recallDirectMessageById(older.getMessageId(), first.getId()));
+        assertTrue(messageServer.inbox(me.getId(), null, null).getConversations().isEmpty());
+    }
+
+    //会话表上线前的私信：从月表补建，每对用户取最新一条，不读app_unread
+    @Test
+    void backfill_FromPartitions() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        directMessageStore.insert(first.getId(), first.getUserName(), me.getId(), "上月", now.minusMonths(1));
+        directMessageStore.insert(me.getId(), me.getUserName(), first.getId(), "本月", now);
+        directMessageStore.insert(second.getId(), second.getUserName(), me.getId(), "只在上月", now.minusMonths(1));
+        jdbcTemplate.update("DELETE FROM app_conversation WHERE user_Low = ?", me.getId());
+
+        for (String table : List.of(monthTable(now), monthTable(now.minusMonths(1)))) {
+            conversationIndex.backfill(table);
+        }
+        List<ConversationDTO> inbox = messageServer.inbox(me.getId(), null, null).getConversations();
+        assertEquals(2, inbox.size());
+        assertEquals("本月", inbox.get(0).getLastMessage());
+        assertEquals("只在上月", inbox.get(1).getLastMessage());
+        //补建的会话未读数从0开始
+        assertEquals(0, inbox.get(1).getUnreadCount());
+    }
+
+    private static String monthTable(LocalDateTime time) {
+        return "app_direct_message_" + String.format("%04d%02d", time.getYear(), time.getMonthValue());
+    }
+}
@@ -0,0 +1,129 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.request.MessageHistoryRequest;
+import com.myteam.activity_campus_backend.dto.response.CursorMessageHistoryResponse;
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.DirectMessageStore;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 私信按月分表测试（真实数据库）
+ * @date 2026/10/18 10:40
+ */
+@SpringBootTest
+public class DirectMessagePartitionTest {
+    @Autowired
+    private MessageServer messageServer;
+    @Autowired
+    private DirectMessageStore directMessageStore;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = userRepository.save(new User(9501, "私信甲", "pwd", "ACTIVE"));
+        bob = userRepository.save(new User(9502, "私信乙", "pwd", "ACTIVE"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        //私信表外键引用用户，先删私信
+        for (MessageHistoryResponse message : directMessageStore.findConversationBefore(alice.getId(), bob.getId(), null, 1000)) {
+            directMessageStore.delete(message);
+        }
+        jdbcTemplate.update("DELETE FROM app_conversation WHERE user_Low = ? AND user_High = ?", alice.getId(), bob.getId());
+        userRepository.delete(alice);
+        userRepository.delete(bob);
+    }
+
+    //会话分页跨月表往前翻，每页按时间升序
+    @Test
+    void conversationPage_WalksBackAcrossMonths() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(directMessageStore.insert(alice.getId(), alice.getUserName(), bob.getId(), "上月" + i, now.minusMonths(1).plusSeconds(i)).getMessageId());
+        }
+        for (int i = 0; i < 2; i++) {
+            ids.add(directMessageStore.insert(bob.getId(), bob.getUserName(), alice.getId(), "本月" + i, now.plusSeconds(i)).getMessageId());
+        }
+
+        CursorMessageHistoryResponse latest = messageServer.directConversationPage(alice.getId(), bob.getId(), null, 3);
+        assertEquals(ids.subList(2, 5), latest.getMessages().stream().map(MessageHistoryResponse::getMessageId).toList());
+        assertTrue(latest.isHasMore());
+        CursorMessageHistoryResponse older = messageServer.directConversationPage(bob.getId(), alice.getId(), latest.getBeforeCursor(), 3);
+        assertEquals(ids.subList(0, 2), older.getMessages().stream().map(MessageHistoryResponse::getMessageId).toList());
+        assertFalse(older.isHasMore());
+        assertEquals("私信甲", older.getMessages().get(0).getSenderName());
+
+        //收件箱和按id撤回
+        assertEquals(3, messageServer.directMessageHistory(history(bob.getId())).getMessageHistory().size());
+        assertEquals("无权撤回他人的消息", messageServer.recallDirectMessageById(ids.get(0), bob.getId()));
+        assertEquals("撤回成功", messageServer.recallDirectMessageById(ids.get(0), alice.getId()));
+        assertNull(directMessageStore.findById(ids.get(0)));
+    }
+
+    //超过保留期的月表整表删除
+    @Test
+    void dropExpired_DropsWholeMonth() {
+        LocalDateTime expired = LocalDateTime.now().minusYears(3).withNano(0);
+        MessageHistoryResponse old = directMessageStore.insert(alice.getId(), alice.getUserName(), bob.getId(), "很久以前", expired);
+        String table = "app_direct_message_" + String.format("%04d%02d", expired.getYear(), expired.getMonthValue());
+        @SuppressWarnings("unchecked")
+        List<String> partitions = (List<String>) directMessageStore.stats().get("partitions");
+        assertTrue(partitions.contains(table));
+
+        directMessageStore.dropExpired();
+
+        @SuppressWarnings("unchecked")
+        List<String> remaining = (List<String>) directMessageStore.stats().get("partitions");
+        assertFalse(remaining.contains(table));
+        assertNull(directMessageStore.findById(old.getMessageId()));
+    }
+
+    //月表上线前写在app_message里的私信复制到月表，app_message里的原记录保留
+    @Test
+    void migrateLegacy_CopiesOldDirectMessages() {
+        LocalDateTime sent = LocalDateTime.now().minusMonths(2).withNano(0);
+        jdbcTemplate.update("INSERT INTO app_message (message_Id, receive_Id, room_Seq, user_Id, content, send_Time) VALUES (?, ?, NULL, ?, ?, ?)",
+                995001, bob.getId(), alice.getId(), "旧私信", sent);
+        try {
+            assertTrue(directMessageStore.migrateLegacy() >= 1);
+
+            List<MessageHistoryResponse> copied = directMessageStore.findConversationBefore(alice.getId(), bob.getId(), null, 10);
+            assertEquals(1, copied.size());
+            assertEquals("旧私信", copied.get(0).getContent());
+            assertEquals(sent, copied.get(0).getSendTime());
+            assertEquals(alice.getId(), copied.get(0).getSenderId());
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_message WHERE message_Id = 995001", Integer.class));
+        } finally {
+            jdbcTemplate.update("DELETE FROM app_message WHERE message_Id = 995001");
+        }
+    }
+
+    private MessageHistoryRequest history(Integer receiverId) {
+        MessageHistoryRequest request = new MessageHistoryRequest();
+        request.setReceiveId(receiverId);
+        return request;
+    }
+}
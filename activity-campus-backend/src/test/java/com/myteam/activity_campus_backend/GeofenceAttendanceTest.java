@@ -0,0 +1,153 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.request.userLocationRequest;
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.entity.Location;
+import com.myteam.activity_campus_backend.entity.Participate;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.LocationRepository;
+import com.myteam.activity_campus_backend.repository.ParticipateRepository;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.AttendanceRecorder;
+import com.myteam.activity_campus_backend.service.GeofenceEngine;
+import com.myteam.activity_campus_backend.service.LiveLocationStore;
+import com.myteam.activity_campus_backend.service.UserLocationServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 位置上报自动签到测试（真实数据库）
+ * @date 2026/10/18 14:10
+ */
+@SpringBootTest
+public class GeofenceAttendanceTest {
+    @Autowired
+    private UserLocationServer userLocationServer;
+    @Autowired
+    private GeofenceEngine geofenceEngine;
+    @Autowired
+    private AttendanceRecorder attendanceRecorder;
+    @Autowired
+    private LiveLocationStore liveLocationStore;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private ActivityRepository activityRepository;
+    @Autowired
+    private ParticipateRepository participateRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private User participant;
+    private User stranger;
+    private Location location;
+    private Activity activity;
+
+    //需要真实提交事务，测试后手动清理
+    @BeforeEach
+    void setUp() {
+        participant = userRepository.save(new User(9601, "签到用户", "pwd", "ACTIVE"));
+        stranger = userRepository.save(new User(9602, "路过用户", "pwd", "ACTIVE"));
+        location = new Location();
+        location.setRegionName("操场");
+        location.setCenterLatitude(new BigDecimal("39.904202"));
+        location.setCenterLongitude(new BigDecimal("116.407394"));
+        location.setDministrativeCode("110101");
+        location.setRegionType("SPORTS_FIELD");
+        location.setDetailAddress("签到地址");
+        location.setRegionRadius(new BigDecimal("100.00"));
+        location = locationRepository.save(location);
+        LocalDateTime now = LocalDateTime.now();
+        activity = new Activity();
+        activity.setPublisher(participant);
+        activity.setActivityName("夜跑");
+        activity.setLocation(location);
+        activity.setDetailedAddress(location.getDetailAddress());
+        activity.setRegistrationTime(now.minusDays(2));
+        activity.setRegistrationEndTime(now.minusDays(1));
+        activity.setStartTime(now.minusMinutes(10));
+        activity.setEndTime(now.plusHours(1));
+        activity.setMaxPeople(10);
+        activity = activityRepository.save(activity);
+        Participate participate = new Participate();
+        participate.setParticipant(participant);
+        participate.setActivity(activity);
+        participate.setTime(now.minusDays(1));
+        participateRepository.save(participate);
+        geofenceEngine.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        liveLocationStore.persistNow();
+        jdbcTemplate.update("DELETE FROM app_attendance WHERE activity_Id = ?", activity.getId());
+        jdbcTemplate.update("DELETE FROM app_userlocation_latest WHERE user_Id IN (?, ?)", participant.getId(), stranger.getId());
+        jdbcTemplate.update("DELETE FROM app_userlocation WHERE user_Id IN (?, ?)", participant.getId(), stranger.getId());
+        participateRepository.deleteAll(participateRepository.findByActivityIdWithDetails(activity.getId()));
+        activityRepository.deleteById(activity.getId());
+        locationRepository.deleteById(location.getId());
+        userRepository.deleteAll(List.of(participant, stranger));
+        geofenceEngine.refresh();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    private void ping(User user, String lat, String lng) {
+        userLocationRequest request = new userLocationRequest();
+        request.setUserId(user.getId());
+        request.setLatitude(new BigDecimal(lat));
+        request.setLongitude(new BigDecimal(lng));
+        request.setValidTime(Instant.now().plusSeconds(600).toEpochMilli());
+        userLocationServer.save(request, user.getId());
+    }
+
+    private List<Map<String, Object>> attendance() {
+        return jdbcTemplate.queryForList("SELECT user_Id, check_In_Time, check_Out_Time FROM app_attendance WHERE activity_Id = ?",
+                activity.getId());
+    }
+
+    //报名用户进入范围自动签到，离开后记录离开时间，再次进入清空离开时间；未报名的用户不记录
+    @Test
+    void pings_EnterExitPersisted() {
+        ping(stranger, "39.904202", "116.407394");
+        ping(participant, "39.904300", "116.407400");
+        ping(participant, "39.904310", "116.407410");
+        attendanceRecorder.flushQuietly();
+        List<Map<String, Object>> rows = attendance();
+        assertEquals(1, rows.size());
+        assertEquals(participant.getId(), ((Number) rows.get(0).get("USER_ID")).intValue());
+        assertNotNull(rows.get(0).get("CHECK_IN_TIME"));
+        assertNull(rows.get(0).get("CHECK_OUT_TIME"));
+        assertArrayEquals(new int[]{activity.getId()}, geofenceEngine.activitiesOf(participant.getId()));
+
+        //离开约1公里
+        ping(participant, "39.913202", "116.407394");
+        attendanceRecorder.flushQuietly();
+        assertNotNull(attendance().get(0).get("CHECK_OUT_TIME"));
+        assertEquals(0, geofenceEngine.activitiesOf(participant.getId()).length);
+
+        ping(participant, "39.904202", "116.407394");
+        attendanceRecorder.flushQuietly();
+        rows = attendance();
+        assertEquals(1, rows.size());
+        assertNull(rows.get(0).get("CHECK_OUT_TIME"));
+    }
+}
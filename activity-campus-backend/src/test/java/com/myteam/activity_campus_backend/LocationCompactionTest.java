@@ -0,0 +1,114 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.LocationCompactionJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author sjy15
+ * @description: 位置历史压缩测试（真实数据库）
+ * @date 2026/10/18 15:00
+ */
+@SpringBootTest
+public class LocationCompactionTest {
+    @Autowired
+    private LocationCompactionJob locationCompactionJob;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User first;
+    private User second;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        first = userRepository.save(new User(9701, "压缩用户甲", "pwd", "ACTIVE"));
+        second = userRepository.save(new User(9702, "压缩用户乙", "pwd", "ACTIVE"));
+        now = Instant.now().toEpochMilli();
+        //段长度小于行数，验证分段
+        ReflectionTestUtils.setField(locationCompactionJob, "chunkSize", 3);
+        ReflectionTestUtils.setField(locationCompactionJob, "pauseMillis", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(locationCompactionJob, "bucketMinutes", 0L);
+        ReflectionTestUtils.setField(locationCompactionJob, "historyDays", 7L);
+        jdbcTemplate.update("DELETE FROM app_userlocation WHERE user_Id IN (?, ?)", first.getId(), second.getId());
+        userRepository.deleteAll(List.of(first, second));
+    }
+
+    private void insert(User user, long validTime) {
+        jdbcTemplate.update("INSERT INTO app_userlocation (user_Id, latitude, longitude, valid_time) VALUES (?, ?, ?, ?)",
+                user.getId(), new BigDecimal("30.000000"), new BigDecimal("120.000000"), validTime);
+    }
+
+    private List<Long> remaining(User user) {
+        return jdbcTemplate.queryForList("SELECT valid_time FROM app_userlocation WHERE user_Id = ? ORDER BY record_Id",
+                Long.class, user.getId());
+    }
+
+    //默认：保留期内的每个点都保留（包括已过有效期的历史），只删除超过保留期的
+    @Test
+    void compact_KeepsHistoryWithinRetention() {
+        insert(first, now - TimeUnit.DAYS.toMillis(8));
+        insert(first, now - 5000);
+        insert(first, now - 1000);
+        insert(first, now + 60_000);
+
+        assertEquals(1, locationCompactionJob.compact());
+        assertEquals(List.of(now - 5000, now - 1000, now + 60_000), remaining(first));
+    }
+    //不保留历史：过期的全部删除，每个用户只保留有效期最晚的一条
+    @Test
+    void compact_KeepsLatestValidPerUser() {
+        ReflectionTestUtils.setField(locationCompactionJob, "historyDays", 0L);
+        insert(first, now - 5000);
+        insert(first, now + 60_000);
+        insert(second, now + 60_000);
+        insert(first, now - 1000);
+        insert(first, now + 120_000);
+        insert(second, now - 1);
+        //离线补传的旧点在最新的点之后插入，不能顶掉最新的点
+        insert(first, now + 90_000);
+
+        assertEquals(5, locationCompactionJob.compact());
+        assertEquals(List.of(now + 120_000), remaining(first));
+        assertEquals(List.of(now + 60_000), remaining(second));
+        assertEquals(0, locationCompactionJob.compact());
+        assertEquals(0L, locationCompactionJob.stats().get("lastRemovedRowCount"));
+    }
+    //降采样：保留期内每个用户每个时间桶保留最新一条，超过保留期的删除
+    @Test
+    void compact_DownsamplesHistory() {
+        ReflectionTestUtils.setField(locationCompactionJob, "bucketMinutes", 10L);
+        long bucket = TimeUnit.MINUTES.toMillis(10);
+        long base = (now - TimeUnit.HOURS.toMillis(2)) / bucket * bucket;
+        insert(first, base + 1000);
+        insert(first, base + 2000);
+        insert(first, base + 3000);
+        //同一个桶里乱序写入的旧点
+        insert(first, base + 2500);
+        insert(first, base + bucket + 1000);
+        insert(first, now - TimeUnit.DAYS.toMillis(8));
+
+        assertEquals(4, locationCompactionJob.compact());
+        assertEquals(List.of(base + 3000, base + bucket + 1000), remaining(first));
+    }
+}
@@ -0,0 +1,104 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.request.MessagePageRequest;
+import com.myteam.activity_campus_backend.dto.response.CursorMessageHistoryResponse;
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.entity.Message;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.MessageRepository;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 聊天记录游标分页测试（真实数据库）
+ * @date 2026/10/17 20:30
+ */
+@SpringBootTest
+public class MessageHistoryPageTest {
+    private static final int ACTIVITY_ID = 9301;
+    private static final int MESSAGES = 25;
+
+    @Autowired
+    private MessageServer messageServer;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private final List<Message> messages = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(9301, "聊天用户", "pwd", "ACTIVE"));
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 10, 0);
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            Message message = new Message();
+            message.setId(930100 + i);
+            message.setUser(user);
+            message.setReceiveId(i % 5 == 4 ? ACTIVITY_ID + 1 : ACTIVITY_ID);
+            message.setContent("消息" + i);
+            //每两条同一时间，检验同一时间按id排序
+            message.setSendTime(base.plusSeconds(i / 2));
+            batch.add(message);
+        }
+        messages.addAll(messageRepository.saveAll(batch));
+    }
+
+    @AfterEach
+    void tearDown() {
+        messageRepository.deleteAll(messages);
+        userRepository.delete(user);
+    }
+
+    private List<String> contents(CursorMessageHistoryResponse page) {
+        List<String> contents = new ArrayList<>();
+        for (MessageHistoryResponse message : page.getMessages()) {
+            contents.add(message.getContent());
+        }
+        return contents;
+    }
+
+    //向前翻页拼起来和全量历史一致，再用after往后翻回来
+    @Test
+    void pages_CoverWholeRoomInOrder() {
+        List<String> expected = new ArrayList<>();
+        for (MessageHistoryResponse message : messageRepository.findByReceiveId(ACTIVITY_ID)) {
+            expected.add(message.getContent());
+        }
+        assertEquals(20, expected.size());
+        assertEquals("消息0", expected.get(0));
+
+        CursorMessageHistoryResponse page = messageServer.messageHistoryPage(new MessagePageRequest(ACTIVITY_ID, null, null, 6));
+        assertEquals(expected.subList(14, 20), contents(page));
+        List<String> walked = new ArrayList<>(contents(page));
+        CursorMessageHistoryResponse oldest = page;
+        while (page.isHasMore()) {
+            page = messageServer.messageHistoryPage(new MessagePageRequest(ACTIVITY_ID, page.getBeforeCursor(), null, 6));
+            walked.addAll(0, contents(page));
+            oldest = page;
+        }
+        assertEquals(expected, walked);
+
+        List<String> forward = new ArrayList<>(contents(oldest));
+        page = oldest;
+        do {
+            page = messageServer.messageHistoryPage(new MessagePageRequest(ACTIVITY_ID, null, page.getAfterCursor(), 6));
+            forward.addAll(contents(page));
+        } while (page.isHasMore());
+        assertEquals(expected, forward);
+    }
+}
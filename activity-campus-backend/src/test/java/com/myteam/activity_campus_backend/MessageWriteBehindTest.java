@@ -0,0 +1,85 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.MessageRepository;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author sjy15
+ * @description: 聊天消息批量写库测试（真实数据库）
+ * @date 2026/10/17 21:30
+ */
+@SpringBootTest
+public class MessageWriteBehindTest {
+    private static final int ACTIVITY_ID = 9401;
+    private static final int SENDERS = 8;
+    private static final int PER_SENDER = 60;
+
+    @Autowired
+    private MessageServer messageServer;
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(9401, "批量用户", "pwd", "ACTIVE"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        messageRepository.deleteAll(messageRepository.findAllById(
+                messageRepository.findByReceiveId(ACTIVITY_ID).stream().map(MessageHistoryResponse::getMessageId).toList()));
+        userRepository.delete(user);
+    }
+
+    //并发发送，写库后每条消息都在，id各不相同，且按批插入
+    @Test
+    void concurrentSends_AllFlushedInBatches() throws Exception {
+        long batchesBefore = (Long) messageWriteBuffer.stats().get("batchCount");
+        ExecutorService pool = Executors.newFixedThreadPool(SENDERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int s = 0; s < SENDERS; s++) {
+            int sender = s;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < PER_SENDER; i++) {
+                    assertEquals("发送成功", messageServer.sendMessage(
+                            new MessageSendDTO("消息" + sender + "-" + i, user.getId(), ACTIVITY_ID)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        messageWriteBuffer.flushNow();
+
+        List<MessageHistoryResponse> history = messageRepository.findByReceiveId(ACTIVITY_ID);
+        assertEquals(SENDERS * PER_SENDER, history.size());
+        Set<Integer> ids = new HashSet<>();
+        history.forEach(message -> ids.add(message.getMessageId()));
+        assertEquals(SENDERS * PER_SENDER, ids.size());
+        long batches = (Long) messageWriteBuffer.stats().get("batchCount") - batchesBefore;
+        assertTrue(batches < SENDERS * PER_SENDER, "batches=" + batches);
+    }
+}
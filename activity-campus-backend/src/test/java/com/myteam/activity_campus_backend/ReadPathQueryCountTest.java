@@ -0,0 +1,170 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.BelongDTO;
+import com.myteam.activity_campus_backend.dto.PartiDTO;
+import com.myteam.activity_campus_backend.dto.request.*;
+import com.myteam.activity_campus_backend.dto.response.*;
+import com.myteam.activity_campus_backend.entity.*;
+import com.myteam.activity_campus_backend.service.ActivitySearchIndex;
+import com.myteam.activity_campus_backend.service.ActivityServer;
+import com.myteam.activity_campus_backend.service.BelongServer;
+import com.myteam.activity_campus_backend.service.ParticipateServer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 读接口SQL条数测试，结果条数变化时语句数保持不变
+ * @date 2026/10/17 14:20
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+public class ReadPathQueryCountTest {
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ActivityServer activityServer;
+    @Autowired
+    private ParticipateServer participateServer;
+    @Autowired
+    private BelongServer belongServer;
+    @Autowired
+    private ActivitySearchIndex activitySearchIndex;
+
+    private Statistics statistics;
+    private final List<Activity> activities = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+    private Team team;
+
+    //生成数据：5个用户各自发布活动，地点各不相同，全部报名第一个活动并加入同一个团队
+    @BeforeEach
+    void setUp() {
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0);
+        for (int i = 0; i < 5; i++) {
+            User user = new User(9001 + i, "统计用户" + i, "pwd", "ACTIVE");
+            entityManager.persist(user);
+            users.add(user);
+            Location location = new Location();
+            location.setRegionName("统计地点" + i);
+            location.setCenterLatitude(new BigDecimal("39.904202"));
+            location.setCenterLongitude(new BigDecimal("116.407394"));
+            location.setDministrativeCode("110101");
+            location.setRegionType("SPORTS_FIELD");
+            location.setDetailAddress("统计地址" + i);
+            location.setRegionRadius(new BigDecimal("100.00"));
+            entityManager.persist(location);
+            Activity activity = new Activity();
+            activity.setPublisher(user);
+            activity.setActivityName("统计活动" + i);
+            activity.setLocation(location);
+            activity.setDetailedAddress(location.getDetailAddress());
+            activity.setRegistrationTime(start.minusDays(2));
+            activity.setRegistrationEndTime(start.minusDays(1));
+            activity.setStartTime(start.plusHours(i));
+            activity.setEndTime(start.plusHours(i + 1));
+            entityManager.persist(activity);
+            activities.add(activity);
+        }
+        team = new Team();
+        team.setTeamName("统计团队");
+        team.setCreator(users.get(0));
+        entityManager.persist(team);
+        for (User user : users) {
+            Participate participate = new Participate();
+            participate.setParticipant(user);
+            participate.setActivity(activities.get(0));
+            participate.setTime(start.minusDays(2));
+            entityManager.persist(participate);
+            Belong belong = new Belong();
+            belong.setUser(user);
+            belong.setTeam(team);
+            belong.setJoinTime(start.minusDays(2));
+            entityManager.persist(belong);
+        }
+        entityManager.flush();
+        activitySearchIndex.rebuild();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    //------------------------活动列表--------------------------
+    @Test
+    void activityList_OneStatement() {
+        CheckListActivityResponse response = activityServer.ActivityListResponse(new ActivityListRequest("统计活动"));
+        assertEquals(5, response.getActivities().size());
+        assertEquals("统计用户4", response.getActivities().get(4).getPublisher().getUsername());
+        assertEquals("统计地址4", response.getActivities().get(4).getLocation().getDetailAddress());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    //------------------------活动列表（游标分页）--------------------------
+    @Test
+    void activityPage_OneStatement() {
+        CursorListActivityResponse response = activityServer.ActivityPageResponse(new ActivityPageRequest(null, null, 4));
+        assertTrue(response.getActivities().size() >= 4);
+        response.getActivities().forEach(dto -> assertNotNull(dto.getLocation().getRegionName()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    //------------------------活动详情--------------------------
+    @Test
+    void activityDetail_OneStatement() {
+        CheckActivityRequest request = new CheckActivityRequest();
+        request.setActivityId(activities.get(2).getId());
+        simpleActivityResponse response = activityServer.DetailActivityResponse(request);
+        assertEquals("统计用户2", response.getActivityDTO().getPublisher().getUsername());
+        assertEquals("统计地址2", response.getActivityDTO().getLocation().getDetailAddress());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    //------------------------活动参与者--------------------------
+    @Test
+    void activityParticipants_OneStatement() {
+        List<PartiDTO> list = participateServer.list(activities.get(0).getId());
+        assertEquals(5, list.size());
+        list.forEach(dto -> assertEquals("统计用户0", dto.getActivity().getPublisher().getUsername()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    //------------------------用户参加的活动--------------------------
+    @Test
+    void userActivities_OneStatement() {
+        UserPartActivity request = new UserPartActivity();
+        request.setUserId(users.get(3).getId());
+        UserPartActivityResponse response = participateServer.activityList(request);
+        assertEquals(1, response.getPartiList().size());
+        assertEquals("统计用户3", response.getPartiList().get(0).getUser().getUsername());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    //------------------------团队成员--------------------------
+    @Test
+    void teamMembers_OneStatement() {
+        List<BelongDTO> list = belongServer.listBelongs(team.getId());
+        assertEquals(5, list.size());
+        list.forEach(dto -> assertEquals("统计用户0", dto.getTeamdto().getUser().getUsername()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    //------------------------用户所属团队--------------------------
+    @Test
+    void userTeams_OneStatement() {
+        UserBelongRequest request = new UserBelongRequest();
+        request.setUserId(users.get(1).getId());
+        UserBelongResponse response = belongServer.getUserBelong(request);
+        assertEquals(1, response.getBelongs().size());
+        assertEquals("统计团队", response.getBelongs().get(0).getTeamdto().getTeamName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,180 @@
+package com.myteam.activity_campus_backend;
+
+import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.dto.UnreadCountDTO;
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.entity.Location;
+import com.myteam.activity_campus_backend.entity.Participate;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.LocationRepository;
+import com.myteam.activity_campus_backend.repository.ParticipateRepository;
+import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.DirectMessageStore;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import com.myteam.activity_campus_backend.service.UnreadCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 会话未读数测试（真实数据库）：发送时累加、批量写库、标记已读清零
+ * @date 2026/10/18 16:40
+ */
+@SpringBootTest
+public class UnreadCountTest {
+    @Autowired
+    private MessageServer messageServer;
+    @Autowired
+    private UnreadCounter unreadCounter;
+    @Autowired
+    private MessageWriteBuffer messageWriteBuffer;
+    @Autowired
+    private DirectMessageStore directMessageStore;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private ActivityRepository activityRepository;
+    @Autowired
+    private ParticipateRepository participateRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private User publisher;
+    private User member;
+    private User friend;
+    private Location location;
+    private Activity activity;
+
+    //需要真实提交事务，测试后手动清理
+    @BeforeEach
+    void setUp() {
+        publisher = userRepository.save(new User(9901, "发布者", "pwd", "ACTIVE"));
+        member = userRepository.save(new User(9902, "成员", "pwd", "ACTIVE"));
+        friend = userRepository.save(new User(9903, "好友", "pwd", "ACTIVE"));
+        location = new Location();
+        location.setRegionName("礼堂");
+        location.setCenterLatitude(new BigDecimal("39.904202"));
+        location.setCenterLongitude(new BigDecimal("116.407394"));
+        location.setDministrativeCode("110101");
+        location.setRegionType("HALL");
+        location.setDetailAddress("未读地址");
+        location.setRegionRadius(new BigDecimal("100.00"));
+        location = locationRepository.save(location);
+        LocalDateTime now = LocalDateTime.now();
+        activity = new Activity();
+        activity.setPublisher(publisher);
+        activity.setActivityName("读书会");
+        activity.setLocation(location);
+        activity.setDetailedAddress(location.getDetailAddress());
+        activity.setRegistrationTime(now.minusDays(2));
+        activity.setRegistrationEndTime(now.minusDays(1));
+        activity.setStartTime(now.plusDays(1));
+        activity.setEndTime(now.plusDays(1).plusHours(2));
+        activity.setMaxPeople(10);
+        activity = activityRepository.save(activity);
+        Participate participate = new Participate();
+        participate.setParticipant(member);
+        participate.setActivity(activity);
+        participate.setTime(now.minusDays(1));
+        participateRepository.save(participate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        messageWriteBuffer.flushNow();
+        unreadCounter.flushQuietly();
+        jdbcTemplate.update("DELETE FROM app_unread WHERE user_Id IN (?, ?, ?)", publisher.getId(), member.getId(), friend.getId());
+        //私信表外键引用用户，先删私信
+        for (MessageHistoryResponse message : directMessageStore.findConversationBefore(member.getId(), friend.getId(), null, 1000)) {
+            directMessageStore.delete(message);
+        }
+        jdbcTemplate.update("DELETE FROM app_conversation WHERE user_Low = ? AND user_High = ?",
+                Math.min(member.getId(), friend.getId()), Math.max(member.getId(), friend.getId()));
+        jdbcTemplate.update("DELETE FROM app_message WHERE receive_Id = ?", activity.getId());
+        participateRepository.deleteAll(participateRepository.findByActivityIdWithDetails(activity.getId()));
+        activityRepository.deleteById(activity.getId());
+        locationRepository.deleteById(location.getId());
+        userRepository.deleteAll(List.of(publisher, member, friend));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    private Map<String, Integer> unread(User user) {
+        return messageServer.unread(user.getId()).getConversations().stream()
+                .collect(Collectors.toMap(c -> c.getType() + ":" + c.getConversationId(), UnreadCountDTO::getUnreadCount));
+    }
+
+    private Integer stored(User user, int type, int conversationId) {
+        return jdbcTemplate.queryForObject("SELECT unread_Count FROM app_unread WHERE user_Id = ? AND conv_Type = ? AND conv_Id = ?",
+                Integer.class, user.getId(), type, conversationId);
+    }
+
+    //聊天室消息给除发送者外的成员计数，私信给接收者计数；写库前后查询结果一致
+    @Test
+    void unread_CountedAndFlushed() {
+        String room = "activity:" + activity.getId();
+        String direct = "direct:" + friend.getId();
+        messageServer.sendMessage(new MessageSendDTO("大家好", publisher.getId(), activity.getId()));
+        messageServer.sendMessage(new MessageSendDTO("明天见", publisher.getId(), activity.getId()));
+        messageServer.sendDirectMessage(new MessageSendDTO("在吗", friend.getId(), member.getId()));
+        assertEquals(Map.of(room, 2, direct, 1), unread(member));
+        assertTrue(unread(publisher).isEmpty());
+        assertEquals(3, messageServer.unread(member.getId()).getTotal());
+
+        unreadCounter.flushQuietly();
+        assertEquals(2, stored(member, UnreadCounter.ACTIVITY, activity.getId()));
+        assertEquals(Map.of(room, 2, direct, 1), unread(member));
+
+        //再写一次增量在原值上累加
+        messageServer.sendMessage(new MessageSendDTO("带上书", publisher.getId(), activity.getId()));
+        unreadCounter.flushQuietly();
+        assertEquals(3, stored(member, UnreadCounter.ACTIVITY, activity.getId()));
+
+        //私信未读数只在会话摘要里，标记已读后清零，app_unread里没有私信行
+        messageServer.markDirectRead(member.getId(), friend.getId());
+        assertEquals(Map.of(room, 3), unread(member));
+        unreadCounter.flushQuietly();
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_unread WHERE user_Id = ? AND conv_Type <> ?",
+                Integer.class, member.getId(), UnreadCounter.ACTIVITY));
+    }
+
+    //标记已读清零，之后的新消息从零开始计数，写库覆盖原值
+    @Test
+    void markRead_ResetsCount() {
+        String room = "activity:" + activity.getId();
+        messageServer.sendMessage(new MessageSendDTO("大家好", publisher.getId(), activity.getId()));
+        messageServer.sendMessage(new MessageSendDTO("明天见", publisher.getId(), activity.getId()));
+        unreadCounter.flushQuietly();
+
+        messageServer.markActivityRead(member.getId(), activity.getId());
+        assertTrue(unread(member).isEmpty());
+        messageServer.sendMessage(new MessageSendDTO("带上书", publisher.getId(), activity.getId()));
+        assertEquals(Map.of(room, 1), unread(member));
+
+        unreadCounter.flushQuietly();
+        assertEquals(1, stored(member, UnreadCounter.ACTIVITY, activity.getId()));
+        assertEquals(Map.of(room, 1), unread(member));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT read_Time FROM app_unread WHERE user_Id = ? AND conv_Id = ?",
+                Timestamp.class, member.getId(), activity.getId()));
+    }
+}
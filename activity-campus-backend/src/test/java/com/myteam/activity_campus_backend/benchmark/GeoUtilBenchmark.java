@@ -0,0 +1,91 @@
+package com.myteam.activity_campus_backend.benchmark;
+
+import com.myteam.activity_campus_backend.util.GeoUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author sjy15
+ * @description: 区域判断基准测试：旧版BigDecimal实现 vs BigDecimal入口 vs double快速路径
+ * 运行方式：mvn test-compile 后在IDE中运行main方法
+ * @date 2026/10/17 17:45
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoUtilBenchmark {
+    private static final int POINTS = 1024;
+
+    private final GeoUtil geoUtil = new GeoUtil();
+    private final BigDecimal centerLat = new BigDecimal("39.904202");
+    private final BigDecimal centerLng = new BigDecimal("116.407394");
+    private final BigDecimal radius = new BigDecimal("500.00");
+    private BigDecimal[] lats;
+    private BigDecimal[] lngs;
+    private double[] latValues;
+    private double[] lngValues;
+    private int index;
+
+    //中心点附近约2公里内随机取点，大约一半在区域内
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lats = new BigDecimal[POINTS];
+        lngs = new BigDecimal[POINTS];
+        latValues = new double[POINTS];
+        lngValues = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = centerLat.add(BigDecimal.valueOf((random.nextDouble() - 0.5) * 0.012)).setScale(6, RoundingMode.HALF_UP);
+            lngs[i] = centerLng.add(BigDecimal.valueOf((random.nextDouble() - 0.5) * 0.016)).setScale(6, RoundingMode.HALF_UP);
+            latValues[i] = lats[i].doubleValue();
+            lngValues[i] = lngs[i].doubleValue();
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (POINTS - 1);
+        return index;
+    }
+
+    @Benchmark
+    public boolean legacyBigDecimal() {
+        int i = next();
+        return LegacyGeoUtil.isInArea(lats[i], lngs[i], centerLat, centerLng, radius);
+    }
+
+    @Benchmark
+    public boolean bigDecimalFacade() {
+        int i = next();
+        return geoUtil.isInArea(lats[i], lngs[i], centerLat, centerLng, radius);
+    }
+
+    @Benchmark
+    public boolean primitive() {
+        int i = next();
+        return GeoUtil.isInArea(latValues[i], lngValues[i], 39.904202, 116.407394, 500d);
+    }
+
+    @Benchmark
+    public double haversineOnly() {
+        int i = next();
+        return GeoUtil.distance(latValues[i], lngValues[i], 39.904202, 116.407394);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GeoUtilBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
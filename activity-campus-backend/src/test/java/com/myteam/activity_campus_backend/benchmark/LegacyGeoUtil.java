@@ -0,0 +1,77 @@
+package com.myteam.activity_campus_backend.benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * @author sjy15
+ * @description: 旧版全BigDecimal的区域判断（仅用于基准对比和结果一致性测试，参数校验已省略）
+ * @date 2026/10/17 17:40
+ */
+public final class LegacyGeoUtil {
+    private static final BigDecimal EARTH_RADIUS = new BigDecimal("6371000");
+    private static final BigDecimal PI = new BigDecimal(Math.PI);
+    private static final BigDecimal ONE_EIGHTY = new BigDecimal("180");
+    private static final BigDecimal TWO = new BigDecimal("2");
+
+    private LegacyGeoUtil() {
+    }
+
+    //注意：两点完全重合时a=0，牛顿迭代会除以0抛ArithmeticException（新实现已修复）
+    public static boolean isInArea(BigDecimal userLat, BigDecimal userLng,
+                                   BigDecimal centerLat, BigDecimal centerLng,
+                                   BigDecimal radius) {
+        BigDecimal distance = calculateDistance(userLat, userLng, centerLat, centerLng);
+        BigDecimal distanceScaled = distance.setScale(2, RoundingMode.HALF_UP);
+        BigDecimal radiusScaled = radius.setScale(2, RoundingMode.HALF_UP);
+        return distanceScaled.compareTo(radiusScaled) <= 0;
+    }
+
+    public static BigDecimal calculateDistance(BigDecimal lat1, BigDecimal lng1,
+                                               BigDecimal lat2, BigDecimal lng2) {
+        BigDecimal radLat1 = toRadians(lat1);
+        BigDecimal radLat2 = toRadians(lat2);
+        BigDecimal radLng1 = toRadians(lng1);
+        BigDecimal radLng2 = toRadians(lng2);
+        BigDecimal deltaLat = radLat2.subtract(radLat1);
+        BigDecimal deltaLng = radLng2.subtract(radLng1);
+        BigDecimal sinDeltaLatHalf = sin(deltaLat.divide(TWO, 20, RoundingMode.HALF_UP));
+        BigDecimal sinDeltaLngHalf = sin(deltaLng.divide(TWO, 20, RoundingMode.HALF_UP));
+        BigDecimal a = sinDeltaLatHalf.pow(2)
+                .add(cos(radLat1)
+                        .multiply(cos(radLat2))
+                        .multiply(sinDeltaLngHalf.pow(2)));
+        BigDecimal sqrtA = sqrt(a, 20);
+        BigDecimal sqrt1MinusA = sqrt(BigDecimal.ONE.subtract(a), 20);
+        BigDecimal c = TWO.multiply(atan2(sqrtA, sqrt1MinusA));
+        return EARTH_RADIUS.multiply(c).setScale(6, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal toRadians(BigDecimal degrees) {
+        return degrees.multiply(PI).divide(ONE_EIGHTY, 20, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal sin(BigDecimal radians) {
+        return new BigDecimal(Math.sin(radians.doubleValue())).setScale(20, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal cos(BigDecimal radians) {
+        return new BigDecimal(Math.cos(radians.doubleValue())).setScale(20, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal atan2(BigDecimal y, BigDecimal x) {
+        return new BigDecimal(Math.atan2(y.doubleValue(), x.doubleValue())).setScale(20, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal sqrt(BigDecimal value, int scale) {
+        BigDecimal guess = value;
+        BigDecimal prev;
+        do {
+            prev = guess;
+            guess = value.divide(guess, scale + 1, RoundingMode.HALF_UP)
+                    .add(guess)
+                    .divide(TWO, scale + 1, RoundingMode.HALF_UP);
+        } while (guess.subtract(prev).abs().compareTo(new BigDecimal("1e-" + (scale + 1))) > 0);
+        return guess.setScale(scale, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,116 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.service.ActivitySearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author sjy15
+ * @description: 活动搜索索引测试
+ * @date 2026/10/17 10:40
+ */
+@ExtendWith(MockitoExtension.class)
+public class ActivitySearchIndexTest {
+    @Mock
+    private ActivityRepository activityRepository;
+    @InjectMocks
+    private ActivitySearchIndex activitySearchIndex;
+
+    private Activity createActivity(Integer id, String name, String description, String address, User publisher) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setActivityName(name);
+        activity.setActivityDescription(description);
+        activity.setDetailedAddress(address);
+        activity.setPublisher(publisher);
+        return activity;
+    }
+
+    @BeforeEach
+    void setUp() {
+        User publisher = new User(1001, "陈道明", "pwd", "ACTIVE");
+        User other = new User(1002, "Alice", "pwd", "ACTIVE");
+        when(activityRepository.findAllWithPublisher()).thenReturn(List.of(
+                createActivity(11, "篮球友谊赛", "周末的篮球比赛", "学校操场", publisher),
+                createActivity(12, "英语角", "English Corner 口语练习", "学生活动中心2楼", other),
+                createActivity(13, "编程马拉松", null, "计算机学院3楼301室", publisher)
+        ));
+        activitySearchIndex.rebuild();
+    }
+
+    //------------------------search方法：关键词搜索--------------------------
+    //中文二元组命中
+    @Test
+    void search_ChineseKeyword() {
+        assertEquals(List.of(11), activitySearchIndex.search("篮球"));
+        assertEquals(List.of(13), activitySearchIndex.search("3楼"));
+        assertEquals(List.of(11, 13), activitySearchIndex.search("陈道明"));
+    }
+    //单字关键词
+    @Test
+    void search_SingleCharacter() {
+        assertEquals(List.of(12, 13), activitySearchIndex.search("楼"));
+    }
+    //英文不区分大小写，按子串匹配
+    @Test
+    void search_AsciiCaseInsensitive() {
+        assertEquals(List.of(12), activitySearchIndex.search("corner"));
+        assertEquals(List.of(12), activitySearchIndex.search("ALI"));
+    }
+    //二元组都命中但不是连续子串时要排除
+    @Test
+    void search_NotContiguous_None() {
+        assertTrue(activitySearchIndex.search("篮球操场").isEmpty());
+        assertTrue(activitySearchIndex.search("不存在").isEmpty());
+    }
+    //按活动id和发布者id搜索
+    @Test
+    void search_ById() {
+        assertEquals(List.of(12), activitySearchIndex.search("12"));
+        assertEquals(List.of(11, 13), activitySearchIndex.search("1001"));
+    }
+    //空关键词返回全部
+    @Test
+    void search_Blank_All() {
+        assertEquals(List.of(11, 12, 13), activitySearchIndex.search(""));
+    }
+    //------------------------searchPage方法：按(开始时间, id)分页--------------------------
+    @Test
+    void searchPage_AfterCursor() {
+        User publisher = new User(1003, "罗韩", "pwd", "ACTIVE");
+        LocalDateTime time = LocalDateTime.of(2024, 11, 15, 10, 0);
+        Activity early = createActivity(null, "羽毛球训练", null, "体育馆", publisher);
+        early.setStartTime(time);
+        Activity late = createActivity(null, "羽毛球比赛", null, "体育馆", publisher);
+        late.setStartTime(time.plusDays(1));
+        Activity sameTime = createActivity(null, "羽毛球交流", null, "体育馆", publisher);
+        sameTime.setStartTime(time);
+        activitySearchIndex.add(20, late);
+        activitySearchIndex.add(21, early);
+        activitySearchIndex.add(22, sameTime);
+        assertEquals(List.of(21, 22), activitySearchIndex.searchPage("羽毛球", null, null, 2));
+        assertEquals(List.of(20), activitySearchIndex.searchPage("羽毛球", time, 22, 2));
+    }
+    //------------------------add方法：增量写入--------------------------
+    @Test
+    void add_ThenSearch() {
+        User publisher = new User(1003, "罗韩", "pwd", "ACTIVE");
+        activitySearchIndex.add(14, createActivity(null, "羽毛球训练", "新手友好", "体育馆主馆", publisher));
+        assertEquals(List.of(14), activitySearchIndex.search("羽毛球"));
+        assertEquals(4, activitySearchIndex.size());
+    }
+}
@@ -1,19 +1,26 @@
 package com.myteam.activity_campus_backend.unitTest;
 
 import com.myteam.activity_campus_backend.dto.ActivityDTO;
+import com.myteam.activity_campus_backend.dto.NearbyActivityDTO;
 import com.myteam.activity_campus_backend.dto.UserDTO;
 import com.myteam.activity_campus_backend.dto.request.*;
 import com.myteam.activity_campus_backend.dto.response.*;
 import com.myteam.activity_campus_backend.entity.*;
 import com.myteam.activity_campus_backend.repository.*;
+import com.myteam.activity_campus_backend.service.ActivitySearchIndex;
 import com.myteam.activity_campus_backend.service.ActivityServer;
+import com.myteam.activity_campus_backend.service.LiveLocationStore;
+import com.myteam.activity_campus_backend.service.UnreadCounter;
+import com.myteam.activity_campus_backend.service.NearbyActivityIndex;
 import com.myteam.activity_campus_backend.service.UserService;
-import com.myteam.activity_campus_backend.util.GeoUtil;
+import com.myteam.activity_campus_backend.service.VenueScheduleIndex;
+import com.myteam.activity_campus_backend.util.CursorUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -42,7 +49,17 @@ public class ActivityServerTest {
     @Mock
     private UserlocationRepository userlocationRepository;
     @Mock
-    private GeoUtil geoUtil;
+    private LiveLocationStore liveLocationStore;
+    @Mock
+    private UnreadCounter unreadCounter;
+    @Mock
+    private ActivitySearchIndex activitySearchIndex;
+    @Mock
+    private VenueScheduleIndex venueScheduleIndex;
+    @Mock
+    private VenueScheduleIndex.Booking booking;
+    @Mock
+    private NearbyActivityIndex nearbyActivityIndex;
     @InjectMocks
     private ActivityServer activityServer;
     //生成参数
@@ -154,7 +171,7 @@ public class ActivityServerTest {
         Location location=createMockLocation(1,request.getLocationDescription());
         when(activityRepository.existsByActivityName(request.getActivityName())).thenReturn(false);
         when(locationRepository.findByDetailAddress(request.getLocationDescription())).thenReturn(location);
-        when(activityRepository.existsConflictActivity(request.getLocationDescription(),request.getStartTime(),request.getEndTime())).thenReturn(true);
+        when(venueScheduleIndex.tryReserve(location.getId(),request.getStartTime(),request.getEndTime())).thenReturn(null);
         simpleActivityResponse response = activityServer.getsimpleActivityResponse(request);
         assertFalse(response.isSuccess());
         assertEquals("时间地点与别的活动冲突", response.getMessage());
@@ -175,12 +192,13 @@ public class ActivityServerTest {
         Location location=createMockLocation(1,request.getLocationDescription());
         when(activityRepository.existsByActivityName(request.getActivityName())).thenReturn(false);
         when(locationRepository.findByDetailAddress(request.getLocationDescription())).thenReturn(location);
-        when(activityRepository.existsConflictActivity(request.getLocationDescription(),request.getStartTime(),request.getEndTime())).thenReturn(false);
+        when(venueScheduleIndex.tryReserve(location.getId(),request.getStartTime(),request.getEndTime())).thenReturn(booking);
         when(userRepository.findByUserName(request.getPublisherName())).thenReturn(Optional.empty());
         simpleActivityResponse response = activityServer.getsimpleActivityResponse(request);
         assertFalse(response.isSuccess());
         assertEquals("用户不存在", response.getMessage());
         assertNotNull(response.getActivityDTO());
+        verify(venueScheduleIndex,times(1)).release(booking);
     }
     //活动创建成功
     @Test
@@ -199,7 +217,7 @@ public class ActivityServerTest {
         Activity activity=createMockActivity(2,request.getActivityName(),user,location,request.getActivityDescription());
         when(activityRepository.existsByActivityName(request.getActivityName())).thenReturn(false);
         when(locationRepository.findByDetailAddress(request.getLocationDescription())).thenReturn(location);
-        when(activityRepository.existsConflictActivity(request.getLocationDescription(),request.getStartTime(),request.getEndTime())).thenReturn(false);
+        when(venueScheduleIndex.tryReserve(location.getId(),request.getStartTime(),request.getEndTime())).thenReturn(booking);
         when(userRepository.findByUserName(request.getPublisherName())).thenReturn(Optional.of(user));
         when(activityRepository.findActivityIdByActivityName(request.getActivityName())).thenReturn(2);
         simpleActivityResponse response = activityServer.getsimpleActivityResponse(request);
@@ -208,13 +226,17 @@ public class ActivityServerTest {
         assertNotNull(response.getActivityDTO());
         assertEquals(2,response.getActivityDTO().getId());
         verify(activityRepository,times(1)).save(any(Activity.class));
+        verify(activitySearchIndex,times(1)).add(eq(2),any(Activity.class));
+        verify(nearbyActivityIndex,times(1)).addActivity(any(Activity.class));
+        verify(booking,times(1)).setActivityId(2);
+        verify(venueScheduleIndex,never()).release(any());
     }
     //------------------------ActivityListResponse方法：获得活动列表--------------------------
     //没结果
     @Test
     void ActivityListResponse_None(){
         ActivityListRequest request=new ActivityListRequest("无结果");
-        when(activityRepository.findByActivitiesLike("无结果")).thenReturn(new ArrayList<>());
+        when(activitySearchIndex.search("无结果")).thenReturn(new ArrayList<>());
         CheckListActivityResponse response=activityServer.ActivityListResponse(request);
         assertFalse(response.isResult());
         assertNull(response.getActivities());
@@ -228,9 +250,10 @@ public class ActivityServerTest {
         Activity activity1=createMockActivity(11,"activity_key_one",user,location,"activityDescription");
         Activity activity2=createMockActivity(12,"activity_two",user,location,"key_activityDescription");
         List<Activity> activities=new ArrayList<>();
-        activities.add(activity1);
         activities.add(activity2);
-        when(activityRepository.findByActivitiesLike("keyword")).thenReturn(activities);
+        activities.add(activity1);
+        when(activitySearchIndex.search("keyword")).thenReturn(List.of(11,12));
+        when(activityRepository.findAllWithDetailsByIdIn(List.of(11,12))).thenReturn(activities);
         CheckListActivityResponse response=activityServer.ActivityListResponse(request);
         assertTrue(response.isResult());
         assertNotNull(response.getActivities());
@@ -238,13 +261,91 @@ public class ActivityServerTest {
         assertEquals(11,response.getActivities().get(0).getId());
         assertEquals(12,response.getActivities().get(1).getId());
     }
+    //------------------------ActivityPageResponse方法：游标分页获得活动列表--------------------------
+    //第一页，多取一条判断有下一页
+    @Test
+    void ActivityPageResponse_FirstPage_HasMore(){
+        User user=createMockUser(1,"userName");
+        Location location=createMockLocation(2,"detailAddress");
+        Activity activity1=createMockActivity(11,"activity_one",user,location,"activityDescription");
+        Activity activity2=createMockActivity(12,"activity_two",user,location,"activityDescription");
+        Activity activity3=createMockActivity(13,"activity_three",user,location,"activityDescription");
+        when(activityRepository.findFirstPage(any())).thenReturn(List.of(activity1,activity2,activity3));
+        CursorListActivityResponse response=activityServer.ActivityPageResponse(new ActivityPageRequest(null,null,2));
+        assertTrue(response.isResult());
+        assertTrue(response.isHasMore());
+        assertEquals(2,response.getActivities().size());
+        CursorUtil.Cursor cursor=CursorUtil.decode(response.getNextCursor());
+        assertEquals(12,cursor.getId());
+        assertEquals(activity2.getStartTime(),cursor.getTime());
+    }
+    //带游标的最后一页
+    @Test
+    void ActivityPageResponse_AfterCursor_LastPage(){
+        User user=createMockUser(1,"userName");
+        Location location=createMockLocation(2,"detailAddress");
+        Activity activity3=createMockActivity(13,"activity_three",user,location,"activityDescription");
+        String cursor=CursorUtil.encode(now.plusHours(2),12);
+        when(activityRepository.findPageAfter(eq(now.plusHours(2)),eq(12),any())).thenReturn(List.of(activity3));
+        CursorListActivityResponse response=activityServer.ActivityPageResponse(new ActivityPageRequest("",cursor,2));
+        assertTrue(response.isResult());
+        assertFalse(response.isHasMore());
+        assertNull(response.getNextCursor());
+        assertEquals(13,response.getActivities().get(0).getId());
+    }
+    //有关键词时按索引给出的顺序返回
+    @Test
+    void ActivityPageResponse_Keyword_KeepIndexOrder(){
+        User user=createMockUser(1,"userName");
+        Location location=createMockLocation(2,"detailAddress");
+        Activity activity1=createMockActivity(11,"activity_key_one",user,location,"activityDescription");
+        Activity activity2=createMockActivity(12,"activity_key_two",user,location,"activityDescription");
+        when(activitySearchIndex.searchPage("key",null,null,21)).thenReturn(List.of(12,11));
+        when(activityRepository.findAllWithDetailsByIdIn(List.of(12,11))).thenReturn(List.of(activity1,activity2));
+        CursorListActivityResponse response=activityServer.ActivityPageResponse(new ActivityPageRequest("key",null,null));
+        assertFalse(response.isHasMore());
+        assertEquals(12,response.getActivities().get(0).getId());
+        assertEquals(11,response.getActivities().get(1).getId());
+    }
+    //游标格式错误
+    @Test
+    void ActivityPageResponse_BadCursor(){
+        assertThrows(IllegalArgumentException.class,
+                ()->activityServer.ActivityPageResponse(new ActivityPageRequest(null,"not-a-cursor",10)));
+    }
+    //------------------------NearbyActivityResponse方法：查询附近活动--------------------------
+    //经纬度超出范围
+    @Test
+    void NearbyActivityResponse_InvalidCoordinate(){
+        NearbyActivityResponse response=activityServer.NearbyActivityResponse(91.0,116.0,null,null);
+        assertFalse(response.isResult());
+        assertEquals("经纬度格式错误",response.getMessage());
+        verifyNoInteractions(nearbyActivityIndex);
+    }
+    //半径超过上限
+    @Test
+    void NearbyActivityResponse_RadiusTooLarge(){
+        NearbyActivityResponse response=activityServer.NearbyActivityResponse(39.9,116.4,50000.0,null);
+        assertFalse(response.isResult());
+        verifyNoInteractions(nearbyActivityIndex);
+    }
+    //默认半径1000米、默认20条
+    @Test
+    void NearbyActivityResponse_Defaults(){
+        NearbyActivityDTO dto=new NearbyActivityDTO(11,"活动",now,now.plusHours(1),100,"操场","地址",12.5);
+        when(nearbyActivityIndex.search(39.9,116.4,1000,20)).thenReturn(List.of(dto));
+        NearbyActivityResponse response=activityServer.NearbyActivityResponse(39.9,116.4,null,null);
+        assertTrue(response.isResult());
+        assertEquals(1,response.getActivities().size());
+        assertEquals(11,response.getActivities().get(0).getActivityId());
+    }
     //------------------------DetailActivityResponse方法：获得单个活动详情--------------------------
     //活动不存在
     @Test
     void DetailActivityResponse_None(){
         CheckActivityRequest request=new CheckActivityRequest();
         request.setActivityId(1);
-        when(activityRepository.findById(request.getActivityId())).thenReturn(Optional.empty());
+        when(activityRepository.findDetailById(request.getActivityId())).thenReturn(Optional.empty());
         simpleActivityResponse response = activityServer.DetailActivityResponse(request);
         assertFalse(response.isSuccess());
         assertNull(response.getActivityDTO());
@@ -258,7 +359,7 @@ public class ActivityServerTest {
         User user=createMockUser(1,"userName");
         Location location=createMockLocation(2,"detailAddress");
         Activity activity=createMockActivity(1,"name",user,location,"activityDescription");
-        when(activityRepository.findById(request.getActivityId())).thenReturn(Optional.of(activity));
+        when(activityRepository.findDetailById(request.getActivityId())).thenReturn(Optional.of(activity));
         simpleActivityResponse response = activityServer.DetailActivityResponse(request);
         assertTrue(response.isSuccess());
         assertNotNull(response.getActivityDTO());
@@ -282,7 +383,7 @@ public class ActivityServerTest {
         ParticipateInActivityRequest request=new ParticipateInActivityRequest(1,2);
         User user=createMockUser(1,"userName");
         when(userRepository.findById(request.getuserId())).thenReturn(Optional.of(user));
-        when(activityRepository.findById(request.getActivityId())).thenReturn(Optional.empty());
+        when(activityRepository.findDetailById(request.getActivityId())).thenReturn(Optional.empty());
         ParticipateInActivityResponse response = activityServer.participateInActivityResponse(request);
         assertNull(response.getActivity());
         assertNull(response.getParticipant());
@@ -296,7 +397,7 @@ public class ActivityServerTest {
         Location location=createMockLocation(3,"detailAddress");
         Activity activity=createMockActivity(1,"name",user,location,"activityDescription");
         when(userRepository.findById(request.getuserId())).thenReturn(Optional.of(user));
-        when(activityRepository.findById(request.getActivityId())).thenReturn(Optional.of(activity));
+        when(activityRepository.findDetailById(request.getActivityId())).thenReturn(Optional.of(activity));
         ParticipateInActivityResponse response = activityServer.participateInActivityResponse(request);
         assertNotNull(response.getActivity());
         assertNotNull(response.getParticipant());
@@ -332,7 +433,7 @@ public class ActivityServerTest {
         ActivityDTO activitydto=ActivityDTO.convert(activity);
         ParticipateInActivityResponse agreement=new ParticipateInActivityResponse(userdto,activitydto,"报名活动");
         when(userRepository.findById(agreement.getParticipant().getUser_id())).thenReturn(Optional.of(user));
-        when(activityRepository.findById(agreement.getActivity().getId())).thenReturn(Optional.empty());
+        when(activityRepository.findDetailById(agreement.getActivity().getId())).thenReturn(Optional.empty());
         ParticipateInActivityResponse response = activityServer.publisherAgreement(agreement);
         assertEquals("活动不存在",response.getMessage());
     }
@@ -348,7 +449,8 @@ public class ActivityServerTest {
         ActivityDTO activitydto=ActivityDTO.convert(activity);
         ParticipateInActivityResponse agreement=new ParticipateInActivityResponse(userdto,activitydto,"报名活动");
         when(userRepository.findById(agreement.getParticipant().getUser_id())).thenReturn(Optional.of(user));
-        when(activityRepository.findById(agreement.getActivity().getId())).thenReturn(Optional.of(activity));
+        when(activityRepository.findDetailById(agreement.getActivity().getId())).thenReturn(Optional.of(activity));
+        when(activityRepository.reserveSeat(11)).thenReturn(1);
         ParticipateInActivityResponse response = activityServer.publisherAgreement(agreement);
         assertNotNull(response.getActivity());
         assertNotNull(response.getParticipant());
@@ -356,65 +458,108 @@ public class ActivityServerTest {
         assertEquals(11,response.getActivity().getId());
         assertEquals(1,response.getParticipant().getUser_id());
         verify(participateRepository,times(1)).save(any(Participate.class));
+        verify(unreadCounter,times(1)).invalidateMembers(11);
+    }
+    //已报名过
+    @Test
+    void publisherAgreement_AlreadyJoined(){
+        User user=createMockUser(1,"userName");
+        Location location=createMockLocation(2,"detailAddress");
+        Activity activity=createMockActivity(11,"activity",user,location,"activityDescription");
+        UserDTO userdto=new UserDTO();
+        userdto.setUser_id(1);
+        ParticipateInActivityResponse agreement=new ParticipateInActivityResponse(userdto,ActivityDTO.convert(activity),"报名活动");
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        when(activityRepository.findDetailById(11)).thenReturn(Optional.of(activity));
+        when(participateRepository.existsByParticipant_IdAndActivity_Id(1,11)).thenReturn(true);
+        ParticipateInActivityResponse response = activityServer.publisherAgreement(agreement);
+        assertEquals("已参加该活动",response.getMessage());
+        verify(activityRepository,never()).reserveSeat(any());
+        verify(participateRepository,never()).save(any(Participate.class));
+    }
+    //人数已满，条件更新没有命中
+    @Test
+    void publisherAgreement_Full(){
+        User user=createMockUser(1,"userName");
+        Location location=createMockLocation(2,"detailAddress");
+        Activity activity=createMockActivity(11,"activity",user,location,"activityDescription");
+        UserDTO userdto=new UserDTO();
+        userdto.setUser_id(1);
+        ParticipateInActivityResponse agreement=new ParticipateInActivityResponse(userdto,ActivityDTO.convert(activity),"报名活动");
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        when(activityRepository.findDetailById(11)).thenReturn(Optional.of(activity));
+        when(activityRepository.reserveSeat(11)).thenReturn(0);
+        ParticipateInActivityResponse response = activityServer.publisherAgreement(agreement);
+        assertEquals("活动人数已满",response.getMessage());
+        verify(participateRepository,never()).save(any(Participate.class));
     }
-    //------------------------refresh方法：同意后更新活动人数--------------------------
-    //更新人数
+    //------------------------refresh方法：同意后返回活动人数--------------------------
+    //返回数据库中的人数，不再使用前端传来的人数
     @Test
     void refresh_OK(){
         User user=createMockUser(1,"userName");
         Location location=createMockLocation(2,"detailAddress");
         Activity activity=createMockActivity(11,"activity",user,location,"activityDescription");
-        Integer OldNumber=activity.getCurrentPeople();
         UserDTO userdto=new UserDTO();
         userdto.setUser_id(2);
         userdto.setUsername("user");
         ActivityDTO activitydto=ActivityDTO.convert(activity);
+        activitydto.setCurrentPeople(99);
+        activity.setCurrentPeople(5);
         ParticipateInActivityResponse agreement=new ParticipateInActivityResponse(userdto,activitydto,"同意");
-        when(activityRepository.findById(agreement.getActivity().getId())).thenReturn(Optional.of(activity));
+        when(activityRepository.findDetailById(agreement.getActivity().getId())).thenReturn(Optional.of(activity));
         RefreshActivityResponse response = activityServer.refresh(agreement);
         assertEquals(11,response.getActivityId());
         assertEquals(1,response.getPublisherId().getUser_id());
-        assertEquals(OldNumber+1,response.getCurrentPeople());
-        verify(activityRepository, times(1)).save(activity);
-        assertEquals(OldNumber+1,activity.getCurrentPeople());
+        assertEquals(5,response.getCurrentPeople());
+        verify(activityRepository, never()).save(any(Activity.class));
     }
     //------------------------checkInActivity方法：活动签到--------------------------
-    //找不到用户实时位置
+    //内存和历史表里都没有有效位置
     @Test
     void checkInActivity_UserLocationNotFound(){
         CheckInActivityRequest request=new CheckInActivityRequest(1,11);
-        when(userlocationRepository.findByUserId(1)).thenReturn(Optional.empty());
+        when(liveLocationStore.get(eq(1),anyLong())).thenReturn(null);
+        when(userlocationRepository.findValidByUserId(eq(1),anyLong(),any(Pageable.class))).thenReturn(List.of());
         CheckInActivityResponse response = activityServer.checkInActivity(request);
         assertEquals(false,response.getSuccess());
+        verify(activityRepository, never()).findLocationByActivityId(any());
     }
     //用户不在范围内
     @Test
     void checkInActivity_UserNotAround(){
         CheckInActivityRequest request=new CheckInActivityRequest(1,11);
-        Userlocation userlocation=new Userlocation();
-        userlocation.setLatitude(new BigDecimal("30.0000")); // 远离活动区域
-        userlocation.setLongitude(new BigDecimal("120.0000"));
-
         Location location=createMockLocation(100, "北京市海淀区中关村大街1号");
-        when(userlocationRepository.findByUserId(1)).thenReturn(Optional.of(userlocation));
+        // 远离活动区域
+        when(liveLocationStore.get(eq(1),anyLong())).thenReturn(new LiveLocationStore.Position(30_000000,120_000000,Long.MAX_VALUE));
         when(activityRepository.findLocationByActivityId(11)).thenReturn(location);
-        when(geoUtil.isInArea(userlocation.getLatitude(),userlocation.getLongitude(),location.getCenterLatitude(),location.getCenterLongitude(),location.getRegionRadius())).thenReturn(false);
         CheckInActivityResponse response = activityServer.checkInActivity(request);
         assertEquals(false,response.getSuccess());
     }
-    //用户签到成功
+    //用户签到成功：读内存中的实时位置，不查历史表
     @Test
     void checkInActivity_OK(){
+        CheckInActivityRequest request=new CheckInActivityRequest(1,11);
+        Location location=createMockLocation(100, "北京市海淀区中关村大街1号");
+        when(liveLocationStore.get(eq(1),anyLong())).thenReturn(new LiveLocationStore.Position(39_997500,116_337600,Long.MAX_VALUE));
+        when(activityRepository.findLocationByActivityId(11)).thenReturn(location);
+        CheckInActivityResponse response = activityServer.checkInActivity(request);
+        assertEquals(true,response.getSuccess());
+        assertEquals(request, response.getRequest());
+        verifyNoInteractions(userlocationRepository);
+    }
+    //内存里没有时用历史表里最近一条有效位置
+    @Test
+    void checkInActivity_FallbackToHistory(){
         CheckInActivityRequest request=new CheckInActivityRequest(1,11);
         Userlocation userlocation=new Userlocation();
         userlocation.setLatitude(new BigDecimal("39.9975"));
         userlocation.setLongitude(new BigDecimal("116.3376"));
         Location location=createMockLocation(100, "北京市海淀区中关村大街1号");
-        when(userlocationRepository.findByUserId(1)).thenReturn(Optional.of(userlocation));
+        when(liveLocationStore.get(eq(1),anyLong())).thenReturn(null);
+        when(userlocationRepository.findValidByUserId(eq(1),anyLong(),any(Pageable.class))).thenReturn(List.of(userlocation));
         when(activityRepository.findLocationByActivityId(11)).thenReturn(location);
-        when(geoUtil.isInArea(userlocation.getLatitude(),userlocation.getLongitude(),location.getCenterLatitude(),location.getCenterLongitude(),location.getRegionRadius())).thenReturn(true);
         CheckInActivityResponse response = activityServer.checkInActivity(request);
         assertEquals(true,response.getSuccess());
-        assertEquals(request, response.getRequest());
     }
 }
@@ -39,7 +39,7 @@ public class BelongServerTest {
         Integer userId = 1;
         UserBelongRequest request = new UserBelongRequest();
         request.setUserId(userId);
-        when(belongRepository.findByUser_IdOrTeam_Id(userId)).thenReturn(new ArrayList<>());
+        when(belongRepository.findByUserIdWithDetails(userId)).thenReturn(new ArrayList<>());
         UserBelongResponse response = belongServer.getUserBelong(request);
         assertNotNull(response);
         assertNotNull(response.getBelongs());
@@ -82,7 +82,7 @@ public class BelongServerTest {
         belongs.add(belong1);
         belongs.add(belong2);
 
-        when(belongRepository.findByUser_IdOrTeam_Id(userId)).thenReturn(belongs);
+        when(belongRepository.findByUserIdWithDetails(userId)).thenReturn(belongs);
         UserBelongResponse response = belongServer.getUserBelong(request);
 
         assertNotNull(response);
@@ -103,7 +103,7 @@ public class BelongServerTest {
     @Test
     void listBelongs_None(){
         Integer teamId = 1;
-        when(belongRepository.findByUser_IdOrTeam_Id(teamId)).thenReturn(new ArrayList<>());
+        when(belongRepository.findByTeamIdWithDetails(teamId)).thenReturn(new ArrayList<>());
         List<BelongDTO> belongs = belongServer.listBelongs(teamId);
         assertNotNull(belongs);
         assertTrue(belongs.isEmpty()); // 列表为空
@@ -142,7 +142,7 @@ public class BelongServerTest {
         belongs.add(belong1);
         belongs.add(belong2);
 
-        when(belongRepository.findByUser_IdOrTeam_Id(teamId)).thenReturn(belongs);
+        when(belongRepository.findByTeamIdWithDetails(teamId)).thenReturn(belongs);
         List<BelongDTO> result = belongServer.listBelongs(teamId);
         assertNotNull(result);
         assertEquals(2, result.size());
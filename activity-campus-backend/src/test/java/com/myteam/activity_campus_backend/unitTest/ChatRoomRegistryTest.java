@@ -0,0 +1,173 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.dto.ChatRecallDTO;
+import com.myteam.activity_campus_backend.service.ChatRoomRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 聊天室订阅表测试
+ * @date 2026/10/17 19:50
+ */
+public class ChatRoomRegistryTest {
+    private ChatRoomRegistry chatRoomRegistry;
+
+    //记录收到的消息，expected条收齐后放行
+    private static class RecordingSubscriber implements ChatRoomRegistry.Subscriber {
+        private final List<String> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch;
+        private final boolean broken;
+        private volatile boolean closed;
+        RecordingSubscriber(int expected, boolean broken) {
+            this.latch = new CountDownLatch(expected);
+            this.broken = broken;
+        }
+        @Override
+        public void send(String event, String json) throws IOException {
+            if (broken) {
+                latch.countDown();
+                throw new IOException("连接已断开");
+            }
+            received.add(json);
+            latch.countDown();
+        }
+        @Override
+        public void ping() {
+        }
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        chatRoomRegistry = new ChatRoomRegistry();
+        ReflectionTestUtils.setField(chatRoomRegistry, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(chatRoomRegistry, "heartbeatSeconds", 3600L);
+        chatRoomRegistry.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatRoomRegistry.stop();
+    }
+
+    private ChatMessageDTO message(int id, int activityId) {
+        return new ChatMessageDTO(id, activityId, 1, "用户", "内容" + id, LocalDateTime.of(2030, 1, 1, 10, 0));
+    }
+
+    //------------------------publish方法：推送--------------------------
+    //只推送给同一房间的连接，且按发送顺序到达
+    @Test
+    void publish_OnlyToRoomInOrder() throws Exception {
+        RecordingSubscriber a = new RecordingSubscriber(2, false);
+        RecordingSubscriber b = new RecordingSubscriber(2, false);
+        RecordingSubscriber other = new RecordingSubscriber(1, false);
+        chatRoomRegistry.subscribe(11, a);
+        chatRoomRegistry.subscribe(11, b);
+        chatRoomRegistry.subscribe(12, other);
+        chatRoomRegistry.publish(11, message(1, 11));
+        chatRoomRegistry.publish(11, message(2, 11));
+        assertTrue(a.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(b.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, a.received.size());
+        assertTrue(a.received.get(0).contains("\"content\":\"内容1\""));
+        assertTrue(a.received.get(1).contains("\"content\":\"内容2\""));
+        assertTrue(other.received.isEmpty());
+    }
+    //推送失败的连接被关闭并移出房间，空房间删除
+    @Test
+    void publish_RemovesBrokenSubscriber() throws Exception {
+        RecordingSubscriber broken = new RecordingSubscriber(1, true);
+        chatRoomRegistry.subscribe(11, broken);
+        assertEquals(1, chatRoomRegistry.stats().get("connections"));
+        chatRoomRegistry.publish(11, message(1, 11));
+        assertTrue(broken.latch.await(5, TimeUnit.SECONDS));
+        //移除发生在推送线程上，等推送线程处理完下一条任务
+        chatRoomRegistry.publish(11, message(2, 11));
+        for (int i = 0; i < 50 && !Integer.valueOf(0).equals(chatRoomRegistry.stats().get("connections")); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(broken.closed);
+        assertEquals(0, chatRoomRegistry.stats().get("connections"));
+        assertEquals(0, chatRoomRegistry.stats().get("rooms"));
+    }
+    //发送卡住的连接不影响同一房间的其他连接；排队超过上限时断开
+    @Test
+    void publish_SlowSubscriberDropped() throws Exception {
+        chatRoomRegistry.stop();
+        ReflectionTestUtils.setField(chatRoomRegistry, "queueCapacity", 2);
+        chatRoomRegistry.start();
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber(1, false) {
+            @Override
+            public void send(String event, String json) throws IOException {
+                super.send(event, json);
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        RecordingSubscriber fast = new RecordingSubscriber(5, false);
+        chatRoomRegistry.subscribe(11, slow);
+        chatRoomRegistry.subscribe(11, fast);
+        chatRoomRegistry.publish(11, message(1, 11));
+        //慢连接卡在第一条上，之后的推送在它的队列里排满
+        assertTrue(slow.latch.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 5; i++) {
+            chatRoomRegistry.publish(11, message(i, 11));
+            //等快连接发完再推下一条，它的队列不会满
+            for (int wait = 0; wait < 250 && fast.received.size() < i; wait++) {
+                Thread.sleep(20);
+            }
+        }
+        assertTrue(fast.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(5, fast.received.size());
+        assertTrue(slow.closed);
+        assertEquals(1, chatRoomRegistry.stats().get("connections"));
+        assertEquals(1L, chatRoomRegistry.stats().get("slowDroppedCount"));
+        release.countDown();
+    }
+    //------------------------publishRecall方法：撤回通知--------------------------
+    @Test
+    void publishRecall_Tombstone() throws Exception {
+        RecordingSubscriber a = new RecordingSubscriber(2, false);
+        chatRoomRegistry.subscribe(11, a);
+        chatRoomRegistry.publish(11, message(1, 11));
+        chatRoomRegistry.publishRecall(11, new ChatRecallDTO(1, 11, LocalDateTime.of(2030, 1, 1, 10, 1)));
+        assertTrue(a.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(a.received.get(0).contains("\"type\":\"message\""));
+        assertTrue(a.received.get(1).contains("\"type\":\"recall\""));
+        assertTrue(a.received.get(1).contains("\"messageId\":1"));
+    }
+    //------------------------unsubscribe方法：离开房间--------------------------
+    @Test
+    void unsubscribe_Leaves() throws Exception {
+        RecordingSubscriber a = new RecordingSubscriber(1, false);
+        RecordingSubscriber b = new RecordingSubscriber(1, false);
+        chatRoomRegistry.subscribe(11, a);
+        chatRoomRegistry.subscribe(11, b);
+        chatRoomRegistry.unsubscribe(11, a);
+        chatRoomRegistry.publish(11, message(1, 11));
+        assertTrue(b.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(a.received.isEmpty());
+        assertEquals(1, chatRoomRegistry.stats().get("connections"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.myteam.activity_campus_backend.config.ChatHandshakeInterceptor;
+import com.myteam.activity_campus_backend.config.ChatWebSocketHandler;
+import com.myteam.activity_campus_backend.service.ChatRoomRegistry;
+import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import com.myteam.activity_campus_backend.service.PresenceTracker;
+import com.myteam.activity_campus_backend.service.RateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author sjy15
+ * @description: 聊天室WebSocket处理测试
+ * @date 2026/10/18 19:20
+ */
+@ExtendWith(MockitoExtension.class)
+public class ChatWebSocketHandlerTest {
+    @Mock
+    private ChatRoomRegistry chatRoomRegistry;
+    @Mock
+    private MessageServer messageServer;
+    @Mock
+    private PresenceTracker presenceTracker;
+    @Mock
+    private RateLimiter rateLimiter;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    @InjectMocks
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        session = session(11, 5);
+        chatWebSocketHandler.afterConnectionEstablished(session);
+    }
+
+    private WebSocketSession session(int activityId, int userId) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(ChatHandshakeInterceptor.ACTIVITY_ID, activityId);
+        attributes.put(ChatHandshakeInterceptor.USER_ID, userId);
+        lenient().when(session.getAttributes()).thenReturn(attributes);
+        lenient().when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/chat?activityId=" + activityId));
+        return session;
+    }
+
+    //发给这个连接的最后一帧
+    private String lastFrame() throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> frames = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(session, atLeastOnce()).sendMessage(frames.capture());
+        return ((TextMessage) frames.getValue()).getPayload();
+    }
+
+    //------------------------handleTextMessage方法：收到聊天消息--------------------------
+    //超过频率限制：不发送，回错误通知和建议的重试等待
+    @Test
+    void handleTextMessage_RateLimited_ErrorFrame() throws Exception {
+        RateLimiter.Rule rule = mock(RateLimiter.Rule.class);
+        when(rateLimiter.match("WS", "/ws/chat")).thenReturn(rule);
+        when(rateLimiter.acquire(eq(rule), eq(5), anyLong())).thenReturn(1500L);
+        chatWebSocketHandler.handleMessage(session, new TextMessage("你好"));
+        verifyNoInteractions(messageServer);
+        String frame = lastFrame();
+        assertTrue(frame.contains("\"type\":\"error\""));
+        assertTrue(frame.contains("\"retryAfterMillis\":1500"));
+        assertTrue(frame.contains("发送过于频繁"));
+    }
+    //写缓冲已满：回错误通知，建议1秒后重试
+    @Test
+    void handleTextMessage_QueueFull_ErrorFrame() throws Exception {
+        when(messageServer.sendMessage(any())).thenThrow(new MessageWriteBuffer.QueueFullException("消息队列已满，请稍后重试"));
+        chatWebSocketHandler.handleMessage(session, new TextMessage("你好"));
+        String frame = lastFrame();
+        assertTrue(frame.contains("消息队列已满"));
+        assertTrue(frame.contains("\"retryAfterMillis\":1000"));
+    }
+    //内容不合法：回错误通知，不建议重试
+    @Test
+    void handleTextMessage_Invalid_ErrorFrame() throws Exception {
+        when(messageServer.sendMessage(any())).thenReturn("消息内容不能为空");
+        chatWebSocketHandler.handleMessage(session, new TextMessage(" "));
+        String frame = lastFrame();
+        assertTrue(frame.contains("消息内容不能为空"));
+        assertTrue(frame.contains("\"retryAfterMillis\":null"));
+    }
+    //发送成功：不回错误通知
+    @Test
+    void handleTextMessage_OK_NoFrame() throws Exception {
+        when(messageServer.sendMessage(any())).thenReturn("发送成功");
+        chatWebSocketHandler.handleMessage(session, new TextMessage("你好"));
+        verify(session, never()).sendMessage(any());
+    }
+    //------------------------afterConnectionClosed方法：断开连接--------------------------
+    //同一用户在同一房间开了两个连接：关掉一个仍在线，两个都关掉才下线
+    @Test
+    void afterConnectionClosed_LeavesOnLastConnection() throws Exception {
+        WebSocketSession second = session(11, 5);
+        WebSocketSession otherRoom = session(12, 5);
+        chatWebSocketHandler.afterConnectionEstablished(second);
+        chatWebSocketHandler.afterConnectionEstablished(otherRoom);
+        chatWebSocketHandler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        verify(presenceTracker, never()).leave(anyInt(), anyInt());
+        chatWebSocketHandler.afterConnectionClosed(otherRoom, CloseStatus.NORMAL);
+        verify(presenceTracker, times(1)).leave(12, 5);
+        chatWebSocketHandler.afterConnectionClosed(second, CloseStatus.NORMAL);
+        verify(presenceTracker, times(1)).leave(11, 5);
+    }
+}
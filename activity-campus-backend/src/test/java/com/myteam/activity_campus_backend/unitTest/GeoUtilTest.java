@@ -0,0 +1,81 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.benchmark.LegacyGeoUtil;
+import com.myteam.activity_campus_backend.util.GeoUtil;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 区域判断测试（double快速路径与旧版BigDecimal实现结果一致）
+ * @date 2026/10/17 17:50
+ */
+public class GeoUtilTest {
+    private final GeoUtil geoUtil = new GeoUtil();
+    private final BigDecimal centerLat = new BigDecimal("39.904202");
+    private final BigDecimal centerLng = new BigDecimal("116.407394");
+
+    //------------------------isInArea方法：与旧实现一致--------------------------
+    //近距离（预筛选生效）、中距离、远距离（回退Haversine）随机取点，结果与旧实现完全相同
+    @Test
+    void isInArea_SameAsLegacy() {
+        Random random = new Random(20261017);
+        double[] spans = {0.002, 0.01, 0.2, 5};
+        for (double span : spans) {
+            for (int i = 0; i < 2000; i++) {
+                BigDecimal lat = centerLat.add(BigDecimal.valueOf((random.nextDouble() - 0.5) * span)).setScale(6, RoundingMode.HALF_UP);
+                BigDecimal lng = centerLng.add(BigDecimal.valueOf((random.nextDouble() - 0.5) * span)).setScale(6, RoundingMode.HALF_UP);
+                BigDecimal radius = BigDecimal.valueOf(random.nextDouble() * span * 111000).setScale(2, RoundingMode.HALF_UP);
+                assertEquals(LegacyGeoUtil.isInArea(lat, lng, centerLat, centerLng, radius),
+                        geoUtil.isInArea(lat, lng, centerLat, centerLng, radius),
+                        () -> lat + "," + lng + " r=" + radius);
+            }
+        }
+    }
+    //半径刚好等于距离（四舍五入到厘米后相等）算在区域内，小1厘米算在区域外
+    @Test
+    void isInArea_Boundary() {
+        BigDecimal lat = new BigDecimal("39.905202");
+        BigDecimal lng = new BigDecimal("116.408394");
+        BigDecimal distance = LegacyGeoUtil.calculateDistance(lat, lng, centerLat, centerLng).setScale(2, RoundingMode.HALF_UP);
+        assertTrue(geoUtil.isInArea(lat, lng, centerLat, centerLng, distance));
+        assertFalse(geoUtil.isInArea(lat, lng, centerLat, centerLng, distance.subtract(new BigDecimal("0.01"))));
+    }
+    //同一点（旧实现开方时除以0会抛异常）
+    @Test
+    void isInArea_SamePoint() {
+        assertTrue(geoUtil.isInArea(centerLat, centerLng, centerLat, centerLng, BigDecimal.ZERO));
+        assertEquals(0d, GeoUtil.distance(39.904202, 116.407394, 39.904202, 116.407394));
+    }
+    //纬度差超过半径，直接判定在外
+    @Test
+    void isInArea_LatitudeBandReject() {
+        assertFalse(GeoUtil.isInArea(40.904202, 116.407394, 39.904202, 116.407394, 100000));
+        assertTrue(GeoUtil.isInArea(40.904202, 116.407394, 39.904202, 116.407394, 120000));
+    }
+    //参数校验
+    @Test
+    void isInArea_InvalidParameters() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> geoUtil.isInArea(null, centerLng, centerLat, centerLng, BigDecimal.TEN));
+        assertEquals("地理参数不能为null", e.getMessage());
+        e = assertThrows(IllegalArgumentException.class,
+                () -> geoUtil.isInArea(new BigDecimal("90.1"), centerLng, centerLat, centerLng, BigDecimal.TEN));
+        assertEquals("无效的地理参数：经纬度格式错误", e.getMessage());
+        e = assertThrows(IllegalArgumentException.class,
+                () -> geoUtil.isInArea(centerLat, centerLng, centerLat, centerLng, new BigDecimal("-1")));
+        assertEquals("无效的地理参数：半径不能为负数", e.getMessage());
+    }
+    //------------------------distance方法：Haversine距离--------------------------
+    //北京到上海约1067公里
+    @Test
+    void distance_KnownCities() {
+        double d = GeoUtil.distance(39.904202, 116.407394, 31.230416, 121.473701);
+        assertEquals(1067000, d, 2000);
+    }
+}
@@ -0,0 +1,112 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.ParticipateRepository;
+import com.myteam.activity_campus_backend.service.GeofenceEngine;
+import com.myteam.activity_campus_backend.service.GeofenceEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author sjy15
+ * @description: 地理围栏引擎测试
+ * @date 2026/10/18 14:00
+ */
+public class GeofenceEngineTest {
+    private static final double LAT = 39.9975;
+    private static final double LNG = 116.3376;
+
+    private GeofenceEngine geofenceEngine;
+    private ActivityRepository activityRepository;
+    private ParticipateRepository participateRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        activityRepository = mock(ActivityRepository.class);
+        participateRepository = mock(ParticipateRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        geofenceEngine = new GeofenceEngine();
+        ReflectionTestUtils.setField(geofenceEngine, "activityRepository", activityRepository);
+        ReflectionTestUtils.setField(geofenceEngine, "participateRepository", participateRepository);
+        ReflectionTestUtils.setField(geofenceEngine, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(geofenceEngine, "refreshSeconds", 60L);
+        ReflectionTestUtils.setField(geofenceEngine, "exitMarginMeters", 20d);
+        LocalDateTime start = LocalDateTime.now().minusMinutes(5);
+        now = start.plusMinutes(5).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<Object[]> fences = new ArrayList<>();
+        //活动11：半径100米，用户1、2报名；活动12：同一地点附近，半径500米，还没开始，用户1报名
+        fences.add(new Object[]{11, start, start.plusHours(1), new BigDecimal("39.9975"), new BigDecimal("116.3376"), new BigDecimal("100")});
+        fences.add(new Object[]{12, start.plusHours(2), start.plusHours(3), new BigDecimal("39.9975"), new BigDecimal("116.3376"), new BigDecimal("500")});
+        when(activityRepository.findGeofences(any(), any())).thenReturn(fences);
+        List<Object[]> participants = new ArrayList<>();
+        participants.add(new Object[]{11, 2});
+        participants.add(new Object[]{11, 1});
+        participants.add(new Object[]{12, 1});
+        when(participateRepository.findParticipantIds(anyCollection())).thenReturn(participants);
+        geofenceEngine.refresh();
+    }
+
+    private List<GeofenceEvent> events() {
+        ArgumentCaptor<GeofenceEvent> captor = ArgumentCaptor.forClass(GeofenceEvent.class);
+        verify(eventPublisher, atLeast(0)).publishEvent(captor.capture());
+        return captor.getAllValues();
+    }
+
+    //------------------------onPing方法：进入和离开--------------------------
+    //进入范围发一次进入事件，停留不重复发，超出半径加余量才离开
+    @Test
+    void onPing_EnterOnceThenExitWithMargin() {
+        geofenceEngine.onPing(1, LAT + 0.0005, LNG, now);
+        geofenceEngine.onPing(1, LAT + 0.0006, LNG, now + 1000);
+        //约110米：超出半径但在余量内，不算离开
+        geofenceEngine.onPing(1, LAT + 0.001, LNG, now + 2000);
+        assertEquals(1, events().size());
+        assertEquals(GeofenceEvent.Type.ENTER, events().get(0).getType());
+        assertEquals(11, events().get(0).getActivityId());
+        assertArrayEquals(new int[]{11}, geofenceEngine.activitiesOf(1));
+
+        geofenceEngine.onPing(1, LAT + 0.01, LNG, now + 3000);
+        List<GeofenceEvent> events = events();
+        assertEquals(2, events.size());
+        assertEquals(GeofenceEvent.Type.EXIT, events.get(1).getType());
+        assertEquals(0, geofenceEngine.activitiesOf(1).length);
+    }
+    //未报名的用户、没开始的活动不触发
+    @Test
+    void onPing_NotParticipantOrNotStarted() {
+        geofenceEngine.onPing(3, LAT, LNG, now);
+        assertTrue(events().isEmpty());
+        geofenceEngine.onPing(2, LAT, LNG, now);
+        assertEquals(1, events().size());
+        assertEquals(2, events().get(0).getUserId());
+        assertEquals(2L, geofenceEngine.stats().get("pingCount"));
+    }
+    //------------------------refresh方法：重新加载--------------------------
+    //活动从索引中消失（已结束），范围内的用户补发离开事件
+    @Test
+    void refresh_EndedActivityExitsUsers() {
+        geofenceEngine.onPing(1, LAT, LNG, now);
+        when(activityRepository.findGeofences(any(), any())).thenReturn(List.of());
+        geofenceEngine.refresh();
+        List<GeofenceEvent> events = events();
+        assertEquals(2, events.size());
+        assertEquals(GeofenceEvent.Type.EXIT, events.get(1).getType());
+        assertEquals(0, geofenceEngine.activitiesOf(1).length);
+        assertEquals(0, geofenceEngine.stats().get("fences"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.config.JwtAuthenticationFilter;
+import com.myteam.activity_campus_backend.util.JWTTokenUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 认证过滤器与令牌验证缓存测试
+ * @date 2026/10/17 18:50
+ */
+public class JwtAuthenticationFilterTest {
+    private static final String SECRET = "unit-test-secret-unit-test-secret-unit-test-secret-0123456789";
+
+    private JWTTokenUtil jwtTokenUtil;
+    private JwtAuthenticationFilter filter;
+
+    private JWTTokenUtil createUtil(long accessExpiration) {
+        JWTTokenUtil util = new JWTTokenUtil();
+        ReflectionTestUtils.setField(util, "secret", SECRET);
+        ReflectionTestUtils.setField(util, "accessExpiration", accessExpiration);
+        ReflectionTestUtils.setField(util, "verifiedCacheSize", 100L);
+        util.init();
+        return util;
+    }
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenUtil = createUtil(60_000);
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtTokenUtil", jwtTokenUtil);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletResponse doFilter(String uri, String token, MockFilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRequestURI(uri);
+        if (token != null) {
+            request.addHeader("Authorization", "Bearer " + token);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        if (chain.getRequest() != null) {
+            assertSame(request, chain.getRequest());
+        }
+        return response;
+    }
+
+    //------------------------verify方法：验证令牌--------------------------
+    //同一令牌第二次验证命中缓存，不再解析
+    @Test
+    void verify_SecondCallHitsCache() {
+        String token = jwtTokenUtil.generateAccessToken(1001, new HashMap<>());
+        assertEquals(1001, jwtTokenUtil.verify(token).getUserId());
+        assertEquals(1001, jwtTokenUtil.verify(token).getUserId());
+        assertEquals(1L, jwtTokenUtil.verifiedCacheStats().hitCount());
+        assertEquals(1L, jwtTokenUtil.verifiedCacheSize());
+    }
+    //签名被篡改的令牌无效，且不进入缓存
+    @Test
+    void verify_TamperedToken() {
+        String token = jwtTokenUtil.generateAccessToken(1001, new HashMap<>());
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertNull(jwtTokenUtil.verify(tampered));
+        assertFalse(jwtTokenUtil.validateToken(tampered));
+        assertEquals(0L, jwtTokenUtil.verifiedCacheSize());
+    }
+    //过期令牌无效
+    @Test
+    void verify_ExpiredToken() {
+        String token = createUtil(-1000).generateAccessToken(1001, new HashMap<>());
+        assertNull(jwtTokenUtil.verify(token));
+        assertFalse(jwtTokenUtil.validateToken(token));
+    }
+    //------------------------doFilterInternal方法：认证--------------------------
+    //有效令牌：设置用户ID并放行
+    @Test
+    void filter_ValidToken() throws Exception {
+        String token = jwtTokenUtil.generateAccessToken(1002, new HashMap<>());
+        MockFilterChain chain = new MockFilterChain();
+        doFilter("/api/activity/list", token, chain);
+        assertNotNull(chain.getRequest());
+        assertEquals(1002, chain.getRequest().getAttribute("currentUserId"));
+        assertEquals(1002, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+    //缺少令牌：返回401 JSON
+    @Test
+    void filter_MissingToken() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = doFilter("/api/activity/list", null, chain);
+        assertNull(chain.getRequest());
+        assertEquals(401, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Token无效或已过期"));
+    }
+    //SSE订阅可以用?token=传令牌（EventSource不能设置请求头），其他接口不认查询参数
+    @Test
+    void filter_QueryTokenOnlyForSse() throws Exception {
+        String token = jwtTokenUtil.generateAccessToken(1003, new HashMap<>());
+        MockHttpServletRequest sse = new MockHttpServletRequest("GET", "/api/activity/chat/stream/7");
+        sse.setParameter("token", token);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(sse, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        assertEquals(1003, chain.getRequest().getAttribute("currentUserId"));
+
+        MockHttpServletRequest other = new MockHttpServletRequest("GET", "/api/activity/list");
+        other.setParameter("token", token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(other, response, new MockFilterChain());
+        assertEquals(401, response.getStatus());
+    }
+    //排除路径不需要令牌：/** 按前缀，其余按路径本身或子路径
+    @Test
+    void filter_ExcludedPaths() throws Exception {
+        for (String uri : new String[]{"/api/user/login", "/h2-console", "/h2-console/login.do", "/swagger-ui/index.html", "/error"}) {
+            MockFilterChain chain = new MockFilterChain();
+            doFilter(uri, null, chain);
+            assertNotNull(chain.getRequest(), uri);
+        }
+        for (String uri : new String[]{"/api/user/loginx", "/api/user", "/api/activity/nearby"}) {
+            MockFilterChain chain = new MockFilterChain();
+            assertEquals(401, doFilter(uri, null, chain).getStatus(), uri);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.dto.request.userLocationRequest;
+import com.myteam.activity_campus_backend.service.LiveLocationStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author sjy15
+ * @description: 实时位置存储测试
+ * @date 2026/10/18 11:50
+ */
+public class LiveLocationStoreTest {
+    private LiveLocationStore liveLocationStore;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        liveLocationStore = new LiveLocationStore();
+        ReflectionTestUtils.setField(liveLocationStore, "jdbcTemplate", jdbcTemplate);
+        //定时任务间隔设长，测试里手动写库
+        ReflectionTestUtils.setField(liveLocationStore, "snapshotSeconds", 3600L);
+        ReflectionTestUtils.setField(liveLocationStore, "historySeconds", 3600L);
+        liveLocationStore.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        liveLocationStore.stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> batch(String table) {
+        List<Object[]> rows = new ArrayList<>();
+        mockingDetails(jdbcTemplate).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("batchUpdate")
+                        && ((String) invocation.getArgument(0)).contains(table + " "))
+                .forEach(invocation -> rows.addAll((List<Object[]>) invocation.getArgument(1)));
+        return rows;
+    }
+
+    //------------------------update/get方法：更新和读取实时位置--------------------------
+    //读到最后一次上报的位置，过期后读不到
+    @Test
+    void update_LatestWinsAndExpires() {
+        liveLocationStore.update(5000, new BigDecimal("39.997500"), new BigDecimal("116.337600"), 2000L);
+        liveLocationStore.update(5000, new BigDecimal("-30.123456"), new BigDecimal("-120.654321"), 3000L);
+        LiveLocationStore.Position position = liveLocationStore.get(5000, 1000L);
+        assertEquals(-30.123456, position.getLatitude(), 1e-9);
+        assertEquals(-120.654321, position.getLongitude(), 1e-9);
+        assertEquals(3000L, position.getValidUntil());
+        assertNull(liveLocationStore.get(5000, 3000L));
+        assertTrue(liveLocationStore.contains(5000));
+        assertFalse(liveLocationStore.contains(5001));
+        assertNull(liveLocationStore.get(999999, 0L));
+    }
+    //有效期早于已有位置的点（乱序到达）不覆盖
+    @Test
+    void update_OlderValidTimeIgnored() {
+        assertTrue(liveLocationStore.update(5000, new BigDecimal("30.1"), new BigDecimal("120.1"), 3000L));
+        assertFalse(liveLocationStore.update(5000, new BigDecimal("30.2"), new BigDecimal("120.2"), 2000L));
+        assertTrue(liveLocationStore.updateWithoutHistory(5000, new BigDecimal("30.3"), new BigDecimal("120.3"), 3000L));
+        LiveLocationStore.Position position = liveLocationStore.get(5000, 1000L);
+        assertEquals(30.3, position.getLatitude(), 1e-9);
+        assertEquals(3000L, position.getValidUntil());
+        assertEquals(1L, liveLocationStore.stats().get("staleUpdateCount"));
+    }
+    //多线程同时上报不同用户，每个用户读到自己完整的一组经纬度
+    @Test
+    void update_ConcurrentUsersConsistent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    int userId = thread * 5000 + i;
+                    liveLocationStore.update(userId, BigDecimal.valueOf(i, 6), BigDecimal.valueOf(-i, 6), Long.MAX_VALUE);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        for (int t = 0; t < 4; t++) {
+            for (int i = 0; i < 2000; i++) {
+                LiveLocationStore.Position position = liveLocationStore.get(t * 5000 + i, 0L);
+                assertEquals(i / 1e6, position.getLatitude(), 1e-9);
+                assertEquals(-i / 1e6, position.getLongitude(), 1e-9);
+            }
+        }
+        assertEquals(8000L, liveLocationStore.stats().get("users"));
+    }
+    //------------------------persistNow方法：写快照和历史--------------------------
+    //变化过的用户各写一行快照和一行历史，没有变化时不再写
+    @Test
+    void persistNow_OnlyChangedUsers() {
+        liveLocationStore.update(7, new BigDecimal("30.1"), new BigDecimal("120.2"), Long.MAX_VALUE);
+        liveLocationStore.update(7, new BigDecimal("30.3"), new BigDecimal("120.4"), Long.MAX_VALUE);
+        liveLocationStore.update(8, new BigDecimal("31"), new BigDecimal("121"), Long.MAX_VALUE);
+        liveLocationStore.persistNow();
+        List<Object[]> snapshot = batch("app_userlocation_latest");
+        assertEquals(2, snapshot.size());
+        assertEquals(7, snapshot.get(0)[0]);
+        assertEquals(new BigDecimal("30.300000"), snapshot.get(0)[1]);
+        assertEquals(2, batch("app_userlocation").size());
+
+        liveLocationStore.persistNow();
+        assertEquals(2, batch("app_userlocation_latest").size());
+        assertEquals(2L, liveLocationStore.stats().get("snapshotRowCount"));
+    }
+    //批量上报的点全部直接写历史；updateWithoutHistory只写快照，不再重复写历史
+    @Test
+    void appendHistory_AllPingsWithoutDuplicate() {
+        List<userLocationRequest> pings = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            userLocationRequest ping = new userLocationRequest();
+            ping.setUserId(7);
+            ping.setLatitude(new BigDecimal("30.1"));
+            ping.setLongitude(new BigDecimal("120.2"));
+            ping.setValidTime(1000L + i);
+            pings.add(ping);
+        }
+        liveLocationStore.appendHistory(pings);
+        liveLocationStore.updateWithoutHistory(7, new BigDecimal("30.1"), new BigDecimal("120.2"), 1002L);
+        liveLocationStore.persistNow();
+        List<Object[]> history = batch("app_userlocation");
+        assertEquals(3, history.size());
+        assertEquals(new BigDecimal("30.100000"), history.get(0)[1]);
+        assertEquals(1002L, history.get(2)[3]);
+        assertEquals(1, batch("app_userlocation_latest").size());
+        assertEquals(3L, liveLocationStore.stats().get("historyRowCount"));
+    }
+    //数据库不可用：保留标记，下一轮重写
+    @Test
+    void persistNow_RetriedAfterFailure() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(new int[]{1});
+        liveLocationStore.update(7, new BigDecimal("30.1"), new BigDecimal("120.2"), Long.MAX_VALUE);
+        liveLocationStore.persistNow();
+        assertEquals(0L, liveLocationStore.stats().get("snapshotRowCount"));
+        liveLocationStore.persistNow();
+        assertEquals(1L, liveLocationStore.stats().get("snapshotRowCount"));
+    }
+}
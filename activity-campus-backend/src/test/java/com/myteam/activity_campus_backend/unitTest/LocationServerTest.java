@@ -1,8 +1,13 @@
 package com.myteam.activity_campus_backend.unitTest;
 
+import com.myteam.activity_campus_backend.dto.TimeSlotDTO;
 import com.myteam.activity_campus_backend.dto.request.LocationRequest;
+import com.myteam.activity_campus_backend.dto.response.FreeSlotListResponse;
+import com.myteam.activity_campus_backend.dto.response.SlotAvailableResponse;
 import com.myteam.activity_campus_backend.repository.LocationRepository;
 import com.myteam.activity_campus_backend.service.LocationServer;
+import com.myteam.activity_campus_backend.service.NearbyActivityIndex;
+import com.myteam.activity_campus_backend.service.VenueScheduleIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -10,9 +15,13 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.argThat;
-import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.*;
 
 
 /**
@@ -24,6 +33,10 @@ import static org.mockito.Mockito.verify;
 public class LocationServerTest {
     @Mock
     private LocationRepository locationRepository;
+    @Mock
+    private VenueScheduleIndex venueScheduleIndex;
+    @Mock
+    private NearbyActivityIndex nearbyActivityIndex;
     @InjectMocks
     private LocationServer locationServer;
     //保存
@@ -49,4 +62,32 @@ public class LocationServerTest {
                 ));
 
     }
+    //------------------------checkSlot方法：时间段是否空闲--------------------------
+    //结束时间不晚于开始时间
+    @Test
+    void checkSlot_BadRange(){
+        LocalDateTime start=LocalDateTime.of(2030,1,1,10,0);
+        SlotAvailableResponse response=locationServer.checkSlot(1,start,start);
+        assertFalse(response.isAvailable());
+        verify(venueScheduleIndex,never()).isFree(any(),any(),any());
+    }
+    //被占用
+    @Test
+    void checkSlot_Occupied(){
+        LocalDateTime start=LocalDateTime.of(2030,1,1,10,0);
+        when(venueScheduleIndex.isFree(1,start,start.plusHours(1))).thenReturn(false);
+        SlotAvailableResponse response=locationServer.checkSlot(1,start,start.plusHours(1));
+        assertFalse(response.isAvailable());
+        assertEquals("时间段已被占用",response.getMessage());
+    }
+    //------------------------freeSlotsOfDay方法：当天空闲时段--------------------------
+    @Test
+    void freeSlotsOfDay_OK(){
+        LocalDate date=LocalDate.of(2030,1,1);
+        List<TimeSlotDTO> slots=List.of(new TimeSlotDTO(date.atStartOfDay(),date.atStartOfDay().plusHours(10)));
+        when(venueScheduleIndex.freeSlots(1,date.atStartOfDay(),date.plusDays(1).atStartOfDay())).thenReturn(slots);
+        FreeSlotListResponse response=locationServer.freeSlotsOfDay(1,date);
+        assertEquals(date,response.getDate());
+        assertEquals(slots,response.getFreeSlots());
+    }
 }
@@ -1,29 +1,46 @@
 package com.myteam.activity_campus_backend.unitTest;
 
+import com.myteam.activity_campus_backend.dto.ConversationDTO;
 import com.myteam.activity_campus_backend.dto.MessageSendDTO;
+import com.myteam.activity_campus_backend.dto.UnreadCountDTO;
 import com.myteam.activity_campus_backend.dto.request.MessageHistoryRequest;
+import com.myteam.activity_campus_backend.dto.request.MessagePageRequest;
 import com.myteam.activity_campus_backend.dto.request.RecallMessageRequest;
+import com.myteam.activity_campus_backend.dto.response.CursorMessageHistoryResponse;
+import com.myteam.activity_campus_backend.dto.response.InboxResponse;
 import com.myteam.activity_campus_backend.dto.response.ListMessageHistory;
 import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.dto.response.UnreadSummaryResponse;
 import com.myteam.activity_campus_backend.entity.Message;
 import com.myteam.activity_campus_backend.entity.User;
 import com.myteam.activity_campus_backend.repository.MessageRepository;
 import com.myteam.activity_campus_backend.repository.UserRepository;
+import com.myteam.activity_campus_backend.service.ChatDeltaStore;
+import com.myteam.activity_campus_backend.service.ChatRoomRegistry;
+import com.myteam.activity_campus_backend.service.ConversationIndex;
+import com.myteam.activity_campus_backend.service.DirectMessageStore;
+import com.myteam.activity_campus_backend.service.MessageDroppedEvent;
 import com.myteam.activity_campus_backend.service.MessageServer;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import com.myteam.activity_campus_backend.service.RecentMessageCache;
+import com.myteam.activity_campus_backend.service.UnreadCounter;
+import com.myteam.activity_campus_backend.util.CursorUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -37,6 +54,20 @@ public class MessageServerTest {
     private MessageRepository messageRepository;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private ChatRoomRegistry chatRoomRegistry;
+    @Mock
+    private MessageWriteBuffer messageWriteBuffer;
+    @Mock
+    private RecentMessageCache recentMessageCache;
+    @Mock
+    private DirectMessageStore directMessageStore;
+    @Mock
+    private ChatDeltaStore chatDeltaStore;
+    @Mock
+    private UnreadCounter unreadCounter;
+    @Mock
+    private ConversationIndex conversationIndex;
     @InjectMocks
     private MessageServer messageServer;
     //----------------recallMessage方法：撤回消息--------------
@@ -53,7 +84,7 @@ public class MessageServerTest {
         when(messageRepository.findByContentAndSenderAndReceiverAndTime(request.getMessage(),request.getSenderId(),request.getReceiverId(),request.getTime())).thenReturn(null);
         String result=messageServer.recallMessage(request);
         assertEquals("消息不存在",result);
-        verify(messageRepository, never()).delete(any(Message.class));
+        verifyNoInteractions(chatDeltaStore);
     }
     //撤回成功
     @Test
@@ -76,9 +107,180 @@ public class MessageServerTest {
         request.setTime(sendTime);
 
         when(messageRepository.findByContentAndSenderAndReceiverAndTime(request.getMessage(),request.getSenderId(),request.getReceiverId(),request.getTime())).thenReturn(message);
+        when(chatDeltaStore.recall(eq(message), any(LocalDateTime.class), any())).thenReturn(8L);
         String result=messageServer.recallMessage(request);
         assertEquals("撤回成功",result);
-        verify(messageRepository, times(1)).delete(message);
+        verify(chatDeltaStore, times(1)).recall(eq(message), any(LocalDateTime.class), any());
+    }
+    //还在写缓冲里：先写库再查
+    @Test
+    void recallMessage_Buffered_FlushesFirst(){
+        LocalDateTime sendTime = LocalDateTime.now();
+        User user = new User();
+        user.setId(1);
+        Message message=new Message();
+        message.setUser(user);
+        message.setReceiveId(2);
+        RecallMessageRequest request=new RecallMessageRequest();
+        request.setSenderId(1);
+        request.setReceiverId(2);
+        request.setMessage("content");
+        request.setTime(sendTime);
+        when(messageRepository.findByContentAndSenderAndReceiverAndTime("content",1,2,sendTime)).thenReturn(null, message);
+        when(messageWriteBuffer.pendingCount()).thenReturn(1);
+        when(chatDeltaStore.recall(eq(message), any(LocalDateTime.class), any())).thenReturn(8L);
+        assertEquals("撤回成功",messageServer.recallMessage(request));
+        verify(messageWriteBuffer, times(1)).flushNow();
+    }
+    //私信：从私信月表删除，不查活动聊天室
+    @Test
+    void recallMessage_Direct(){
+        LocalDateTime sendTime = LocalDateTime.now();
+        RecallMessageRequest request=new RecallMessageRequest();
+        request.setSenderId(1);
+        request.setReceiverId(2);
+        request.setMessage("content");
+        request.setTime(sendTime);
+        MessageHistoryResponse direct=new MessageHistoryResponse(7,2,"user","content",sendTime);
+        when(directMessageStore.findExact(1,2,sendTime,"content")).thenReturn(direct);
+        assertEquals("撤回成功",messageServer.recallMessage(request));
+        verify(directMessageStore, times(1)).delete(direct);
+        verifyNoInteractions(messageRepository);
+    }
+    //----------------recallMessageById方法：按id撤回消息--------------
+    private Message ownedMessage(int messageId, int senderId) {
+        User user = new User();
+        user.setId(senderId);
+        Message message=new Message();
+        message.setId(messageId);
+        message.setUser(user);
+        message.setReceiveId(23);
+        return message;
+    }
+    //id比已分配的最大id还大：直接返回不存在，不触发写库
+    @Test
+    void recallMessageById_NotFound(){
+        when(messageRepository.findById(500)).thenReturn(Optional.empty());
+        when(messageWriteBuffer.lastAssignedId()).thenReturn(100);
+        assertEquals("消息不存在",messageServer.recallMessageById(500,1));
+        verify(messageWriteBuffer, never()).flushNow();
+        verifyNoInteractions(chatDeltaStore);
+    }
+    //消息还在写缓冲里：先写库再查
+    @Test
+    void recallMessageById_PendingFlushed(){
+        Message message=ownedMessage(50,1);
+        when(messageRepository.findById(50)).thenReturn(Optional.empty()).thenReturn(Optional.of(message));
+        when(messageWriteBuffer.lastAssignedId()).thenReturn(100);
+        when(chatDeltaStore.recall(eq(message), any(LocalDateTime.class), any())).thenReturn(8L);
+        assertEquals("撤回成功",messageServer.recallMessageById(50,1));
+        verify(messageWriteBuffer, times(1)).flushNow();
+        verify(chatDeltaStore, times(1)).recall(eq(message), any(LocalDateTime.class), any());
+    }
+    //不是本人发送的消息
+    @Test
+    void recallMessageById_NotOwner(){
+        when(messageRepository.findById(50)).thenReturn(Optional.of(ownedMessage(50,1)));
+        assertEquals("无权撤回他人的消息",messageServer.recallMessageById(50,2));
+        verifyNoInteractions(chatDeltaStore);
+        verifyNoInteractions(chatRoomRegistry);
+    }
+    //撤回成功：写墓碑并推送撤回通知，带上撤回占用的房间序号
+    @Test
+    void recallMessageById_OK(){
+        Message message=ownedMessage(50,1);
+        when(messageRepository.findById(50)).thenReturn(Optional.of(message));
+        //房间锁内回调推送
+        when(chatDeltaStore.recall(eq(message), any(LocalDateTime.class), any())).thenAnswer(invocation -> {
+            ((LongConsumer) invocation.getArgument(2)).accept(8L);
+            return 8L;
+        });
+        assertEquals("撤回成功",messageServer.recallMessageById(50,1));
+        verify(chatRoomRegistry, times(1)).publishRecall(eq(23), argThat(recall ->
+                recall.getMessageId().equals(50)&&recall.getSeq().equals(8L)&&recall.getActivityId().equals(23)&&recall.getRecallTime()!=null));
+        verify(recentMessageCache, times(1)).remove(23,50);
+    }
+    //并发撤回：消息已被另一个请求删除，不重复推送
+    @Test
+    void recallMessageById_AlreadyRecalled(){
+        Message message=ownedMessage(50,1);
+        when(messageRepository.findById(50)).thenReturn(Optional.of(message));
+        when(chatDeltaStore.recall(eq(message), any(LocalDateTime.class), any())).thenReturn(null);
+        assertEquals("消息不存在",messageServer.recallMessageById(50,1));
+        verifyNoInteractions(chatRoomRegistry);
+    }
+    //----------------onMessageDropped方法：写库时丢弃的消息--------------
+    //补撤回墓碑，从最近消息缓存删除，推送撤回通知
+    @Test
+    void onMessageDropped_TombstoneAndNotify(){
+        when(chatDeltaStore.tombstone(eq(11), eq(41), eq(5L), any(LocalDateTime.class), any())).thenAnswer(invocation -> {
+            ((LongConsumer) invocation.getArgument(4)).accept(9L);
+            return 9L;
+        });
+        messageServer.onMessageDropped(new MessageDroppedEvent(41, 11, 5L));
+        verify(recentMessageCache, times(1)).remove(11, 41);
+        verify(chatRoomRegistry, times(1)).publishRecall(eq(11), argThat(recall -> recall.getMessageId() == 41 && recall.getSeq() == 9L));
+    }
+    //--------------------unread方法：未读数-------------------------------------
+    //汇总每个会话的未读数：活动聊天室来自UnreadCounter，私信来自会话摘要
+    @Test
+    void unread_Total(){
+        when(unreadCounter.unread(5)).thenReturn(List.of(new UnreadCountDTO("activity",23,3)));
+        when(conversationIndex.unread(5)).thenReturn(List.of(new UnreadCountDTO("direct",7,2)));
+        UnreadSummaryResponse response=messageServer.unread(5);
+        assertTrue(response.isResult());
+        assertEquals(5,response.getTotal());
+        assertEquals(2,response.getConversations().size());
+    }
+    //标记已读：活动聊天室在UnreadCounter清零，私信只在会话摘要清零
+    @Test
+    void markRead(){
+        messageServer.markActivityRead(5,23);
+        messageServer.markDirectRead(5,7);
+        verify(unreadCounter, times(1)).markRead(5,23);
+        verify(conversationIndex, times(1)).markRead(5,7);
+        verifyNoMoreInteractions(unreadCounter);
+    }
+    //--------------------inbox方法：私信收件箱-------------------------------------
+    //多取一条判断是否有下一页，游标为本页最后一个会话
+    @Test
+    void inbox_HasMore(){
+        LocalDateTime now=LocalDateTime.now();
+        List<ConversationDTO> found=new ArrayList<>();
+        for(int i=0;i<3;i++){
+            found.add(new ConversationDTO(10+i,"peer"+i,100-i,10+i,"hi",now.minusMinutes(i),i));
+        }
+        when(conversationIndex.inbox(5,null,3)).thenReturn(found);
+        InboxResponse response=messageServer.inbox(5,null,2);
+        assertTrue(response.isHasMore());
+        assertEquals(2,response.getConversations().size());
+        CursorUtil.Cursor cursor=CursorUtil.decode(response.getNextCursor());
+        assertEquals(99,cursor.getId());
+        assertEquals(now.minusMinutes(1),cursor.getTime());
+    }
+    //最后一页没有游标
+    @Test
+    void inbox_LastPage(){
+        when(conversationIndex.inbox(eq(5),any(CursorUtil.Cursor.class),eq(31))).thenReturn(new ArrayList<>());
+        InboxResponse response=messageServer.inbox(5,CursorUtil.encode(LocalDateTime.now(),3),null);
+        assertFalse(response.isHasMore());
+        assertNull(response.getNextCursor());
+        assertTrue(response.getConversations().isEmpty());
+    }
+    //--------------------chatDelta方法：聊天室增量同步-------------------------------------
+    //since为负数
+    @Test
+    void chatDelta_NegativeSince(){
+        assertThrows(IllegalArgumentException.class,()->messageServer.chatDelta(23,-1L,null));
+        verifyNoInteractions(chatDeltaStore);
+    }
+    //不传since从头开始，条数超过上限时截到500
+    @Test
+    void chatDelta_Defaults(){
+        messageServer.chatDelta(23,null,10000);
+        verify(chatDeltaStore, times(1)).delta(23,0L,500);
+        messageServer.chatDelta(23,42L,null);
+        verify(chatDeltaStore, times(1)).delta(23,42L,200);
     }
     //--------------------sendMessage方法：发送信息-------------------------------------
     //发送者不存在
@@ -88,24 +290,96 @@ public class MessageServerTest {
         when(userRepository.findById(12)).thenReturn(Optional.empty());
         String result=messageServer.sendMessage(messageSend);
         assertEquals("发送者不存在",result);
-        verify(messageRepository, never()).save(any(Message.class));
+        verifyNoInteractions(messageWriteBuffer);
+        verifyNoInteractions(chatRoomRegistry);
     }
     //发送成功
     @Test
+    @SuppressWarnings("unchecked")
     void sendMessage_OK(){
         MessageSendDTO messageSend=new MessageSendDTO("content",12,23);
         User user = new User();
         user.setId(12);
         user.setUserName("user");
         when(userRepository.findById(12)).thenReturn(Optional.of(user));
+        //分配id和序号后在房间锁内回调推送
+        when(messageWriteBuffer.append(any(Message.class), any())).thenAnswer(invocation -> {
+            Message message=invocation.getArgument(0);
+            message.setId(101);
+            message.setRoomSeq(7L);
+            ((Consumer<Message>) invocation.getArgument(1)).accept(message);
+            return message;
+        });
         String result=messageServer.sendMessage(messageSend);
         assertEquals("发送成功",result);
-        verify(messageRepository, times(1)).save(argThat(message ->
+        //交给写缓冲批量写库，不再逐条save
+        verify(messageWriteBuffer, times(1)).append(argThat(message ->
             message.getUser().getId().equals(12)&&
                     message.getReceiveId().equals(23)&&
                     message.getContent().equals("content")&&
                     message.getSendTime()!=null
-        ));
+        ), any());
+        verify(messageRepository, never()).save(any(Message.class));
+        verify(unreadCounter, times(1)).onRoomMessage(23,12);
+        //入队后推送给聊天室，带上分配的消息id
+        verify(chatRoomRegistry, times(1)).publish(eq(23), argThat(dto ->
+                dto.getMessageId().equals(101)&&dto.getSeq().equals(7L)&&dto.getSenderId().equals(12)&&dto.getSenderName().equals("user")&&dto.getContent().equals("content")));
+    }
+    //写缓冲已满：异常抛给控制层返回503，不推送
+    @Test
+    void sendMessage_QueueFull(){
+        MessageSendDTO messageSend=new MessageSendDTO("content",12,23);
+        User user = new User();
+        user.setId(12);
+        when(userRepository.findById(12)).thenReturn(Optional.of(user));
+        when(messageWriteBuffer.append(any(Message.class), any())).thenThrow(new MessageWriteBuffer.QueueFullException("消息发送繁忙，请稍后重试"));
+        assertThrows(MessageWriteBuffer.QueueFullException.class,()->messageServer.sendMessage(messageSend));
+        verifyNoInteractions(chatRoomRegistry);
+    }
+    //内容为空或超过255个字符：不入队、不推送
+    @Test
+    void sendMessage_InvalidContent(){
+        assertEquals("消息内容不能为空",messageServer.sendMessage(new MessageSendDTO(null,12,23)));
+        assertEquals("消息内容不能为空",messageServer.sendMessage(new MessageSendDTO("  ",12,23)));
+        assertEquals("消息内容不能超过255个字符",messageServer.sendMessage(new MessageSendDTO("a".repeat(256),12,23)));
+        assertEquals("消息内容不能超过255个字符",messageServer.sendDirectMessage(new MessageSendDTO("a".repeat(256),1,2)));
+        verifyNoInteractions(messageWriteBuffer,chatRoomRegistry,recentMessageCache,unreadCounter,directMessageStore);
+    }
+    //--------------------sendDirectMessage方法：发送私信-------------------------------------
+    //接收者不存在
+    @Test
+    void sendDirectMessage_ReceiverNotFound(){
+        User sender=new User();
+        sender.setId(1);
+        when(userRepository.findById(1)).thenReturn(Optional.of(sender));
+        when(userRepository.findById(2)).thenReturn(Optional.empty());
+        assertEquals("接收者不存在",messageServer.sendDirectMessage(new MessageSendDTO("hi",1,2)));
+        verifyNoInteractions(directMessageStore);
+    }
+    //发送成功：写入私信月表，不进活动聊天室
+    @Test
+    void sendDirectMessage_OK(){
+        User sender=new User();
+        sender.setId(1);
+        sender.setUserName("user");
+        User receiver=new User();
+        receiver.setId(2);
+        when(userRepository.findById(1)).thenReturn(Optional.of(sender));
+        when(userRepository.findById(2)).thenReturn(Optional.of(receiver));
+        assertEquals("发送成功",messageServer.sendDirectMessage(new MessageSendDTO("hi",1,2)));
+        verify(directMessageStore, times(1)).insert(eq(1),eq("user"),eq(2),eq("hi"),any(LocalDateTime.class));
+        verifyNoInteractions(messageWriteBuffer, chatRoomRegistry, recentMessageCache, unreadCounter);
+    }
+    //--------------------recallDirectMessageById方法：按id撤回私信-------------------------------------
+    //不是本人发送的私信
+    @Test
+    void recallDirectMessageById_NotOwner(){
+        MessageHistoryResponse direct=new MessageHistoryResponse(7,2,"user","content",LocalDateTime.now());
+        direct.setSenderId(1);
+        when(directMessageStore.findById(7)).thenReturn(direct);
+        assertEquals("无权撤回他人的消息",messageServer.recallDirectMessageById(7,2));
+        assertEquals("消息不存在",messageServer.recallDirectMessageById(8,1));
+        verify(directMessageStore, never()).delete(any());
     }
     //--------------------messageHistory方法：发送信息-------------------------------------
     //没有消息历史
@@ -119,6 +393,16 @@ public class MessageServerTest {
         assertNull(result.getMessageHistory());
         assertEquals(false,result.getResult());
     }
+    //写缓冲里有未入库的消息：先写库再查
+    @Test
+    void messageHistory_Buffered_FlushesFirst(){
+        MessageHistoryRequest request=new MessageHistoryRequest();
+        request.setReceiveId(1);
+        when(messageWriteBuffer.pendingCount()).thenReturn(2);
+        when(messageRepository.findByReceiveId(1)).thenReturn(new ArrayList<>());
+        messageServer.messageHistory(request);
+        verify(messageWriteBuffer, times(1)).flushNow();
+    }
     //有3条历史消息
     @Test
     void messageHistory_OK(){
@@ -145,4 +429,74 @@ public class MessageServerTest {
         assertEquals(1,result.getMessageHistory().get(0).getReceiveId());
         assertEquals("消息2",result.getMessageHistory().get(1).getContent());
     }
+    //--------------------messageHistoryPage方法：分页查看消息历史-------------------------------------
+    private MessageHistoryResponse history(int id, int minute) {
+        return new MessageHistoryResponse(id, 1, "user" + id, "消息" + id, LocalDateTime.of(2024, 11, 10, 12, minute));
+    }
+    //最新一页：多取一条判断还有更早消息，结果翻转成升序
+    @Test
+    void messageHistoryPage_Latest(){
+        List<MessageHistoryResponse> desc=new ArrayList<>(List.of(history(3,2),history(2,1),history(1,0)));
+        when(messageRepository.findLatestPage(eq(1),argThat((Pageable p)->p.getPageSize()==3))).thenReturn(desc);
+        CursorMessageHistoryResponse result=messageServer.messageHistoryPage(new MessagePageRequest(1,null,null,2));
+        assertTrue(result.isResult());
+        assertTrue(result.isHasMore());
+        assertEquals(2,result.getMessages().size());
+        assertEquals(2,result.getMessages().get(0).getMessageId());
+        assertEquals(3,result.getMessages().get(1).getMessageId());
+        CursorUtil.Cursor before=CursorUtil.decode(result.getBeforeCursor());
+        assertEquals(2,before.getId());
+        assertEquals(LocalDateTime.of(2024,11,10,12,1),before.getTime());
+        assertEquals(3,CursorUtil.decode(result.getAfterCursor()).getId());
+    }
+    //最近的消息在内存缓冲里：不查库
+    @Test
+    void messageHistoryPage_FromRecentCache(){
+        RecentMessageCache.Page page=mock(RecentMessageCache.Page.class);
+        when(page.getMessages()).thenReturn(List.of(history(2,1),history(3,2)));
+        when(page.isHasMore()).thenReturn(true);
+        when(recentMessageCache.page(1,null,null,2)).thenReturn(page);
+        CursorMessageHistoryResponse result=messageServer.messageHistoryPage(new MessagePageRequest(1,null,null,2));
+        assertTrue(result.isHasMore());
+        assertEquals(2,result.getMessages().get(0).getMessageId());
+        verifyNoInteractions(messageRepository);
+    }
+    //before游标：取更早的消息
+    @Test
+    void messageHistoryPage_Before(){
+        LocalDateTime time=LocalDateTime.of(2024,11,10,12,1);
+        when(messageRepository.findPageBefore(eq(1),eq(time),eq(2),any(Pageable.class)))
+                .thenReturn(new ArrayList<>(List.of(history(1,0))));
+        CursorMessageHistoryResponse result=messageServer.messageHistoryPage(
+                new MessagePageRequest(1,CursorUtil.encode(time,2),null,null));
+        assertFalse(result.isHasMore());
+        assertEquals(1,result.getMessages().size());
+        assertEquals("消息1",result.getMessages().get(0).getContent());
+    }
+    //after游标：取更新的消息，已是升序不翻转；没有新消息时游标为空
+    @Test
+    void messageHistoryPage_After(){
+        LocalDateTime time=LocalDateTime.of(2024,11,10,12,0);
+        when(messageRepository.findPageAfter(eq(1),eq(time),eq(1),any(Pageable.class)))
+                .thenReturn(new ArrayList<>(List.of(history(2,1),history(3,2))));
+        CursorMessageHistoryResponse result=messageServer.messageHistoryPage(
+                new MessagePageRequest(1,null,CursorUtil.encode(time,1),null));
+        assertEquals(2,result.getMessages().get(0).getMessageId());
+        assertEquals(3,result.getMessages().get(1).getMessageId());
+
+        when(messageRepository.findPageAfter(eq(1),eq(time),eq(3),any(Pageable.class))).thenReturn(new ArrayList<>());
+        CursorMessageHistoryResponse empty=messageServer.messageHistoryPage(
+                new MessagePageRequest(1,null,CursorUtil.encode(time,3),null));
+        assertTrue(empty.getMessages().isEmpty());
+        assertNull(empty.getAfterCursor());
+    }
+    //before和after同时传、游标无效
+    @Test
+    void messageHistoryPage_BadCursor(){
+        assertThrows(IllegalArgumentException.class,()->messageServer.messageHistoryPage(
+                new MessagePageRequest(1,"a","b",null)));
+        assertThrows(IllegalArgumentException.class,()->messageServer.messageHistoryPage(
+                new MessagePageRequest(1,"不是游标",null,null)));
+        verifyNoInteractions(messageRepository);
+    }
 }
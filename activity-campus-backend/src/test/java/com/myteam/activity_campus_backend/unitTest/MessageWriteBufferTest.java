@@ -0,0 +1,279 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.dto.ChatMessageDTO;
+import com.myteam.activity_campus_backend.entity.Message;
+import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.repository.MessageRepository;
+import com.myteam.activity_campus_backend.service.MessageDroppedEvent;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import com.myteam.activity_campus_backend.service.RoomSequencer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author sjy15
+ * @description: 消息写缓冲测试（批量写库、日志补写、队列满拒绝）
+ * @date 2026/10/17 21:20
+ */
+public class MessageWriteBufferTest {
+    @TempDir
+    Path journalDir;
+
+    private final List<MessageWriteBuffer> buffers = new ArrayList<>();
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    private MessageWriteBuffer buffer(JdbcTemplate jdbcTemplate, Integer maxId, int capacity) throws IOException {
+        MessageRepository messageRepository = mock(MessageRepository.class);
+        when(messageRepository.findMaxId()).thenReturn(maxId);
+        MessageWriteBuffer buffer = new MessageWriteBuffer();
+        ReflectionTestUtils.setField(buffer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(buffer, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(buffer, "messageRepository", messageRepository);
+        ReflectionTestUtils.setField(buffer, "roomSequencer", sequencer(0L));
+        ReflectionTestUtils.setField(buffer, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(buffer, "queueCapacity", capacity);
+        ReflectionTestUtils.setField(buffer, "offerTimeoutMillis", 10L);
+        ReflectionTestUtils.setField(buffer, "batchSize", 2);
+        //定时写库间隔设得很长，由测试调用flushNow控制写库时机
+        ReflectionTestUtils.setField(buffer, "flushIntervalMillis", 3600000L);
+        ReflectionTestUtils.setField(buffer, "journalDir", journalDir.toString());
+        buffer.start();
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    //房间序号从maxSeq开始
+    private RoomSequencer sequencer(Long maxSeq) {
+        JdbcTemplate seqJdbc = mock(JdbcTemplate.class);
+        when(seqJdbc.queryForObject(anyString(), eq(Long.class), any(), any())).thenReturn(maxSeq);
+        RoomSequencer sequencer = new RoomSequencer();
+        ReflectionTestUtils.setField(sequencer, "jdbcTemplate", seqJdbc);
+        return sequencer;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (MessageWriteBuffer buffer : buffers) {
+            buffer.stop();
+        }
+    }
+
+    private Message message(String content) {
+        return message(content, 3);
+    }
+
+    private Message message(String content, int receiveId) {
+        User user = new User();
+        user.setId(7);
+        Message message = new Message();
+        message.setUser(user);
+        message.setReceiveId(receiveId);
+        message.setContent(content);
+        message.setSendTime(LocalDateTime.of(2030, 1, 1, 10, 0));
+        return message;
+    }
+
+    //记录每次批量插入的条数
+    @SuppressWarnings("unchecked")
+    private List<Integer> recordBatches(JdbcTemplate jdbcTemplate) {
+        List<Integer> sizes = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    sizes.add(((Collection<?>) invocation.getArgument(1)).size());
+                    return new int[0][];
+                });
+        return sizes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JdbcTemplate unavailable() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("数据库不可用"));
+        return jdbcTemplate;
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".journal") && p.toFile().length() > 0).count();
+        }
+    }
+
+    //------------------------append方法：分配id并入队--------------------------
+    //id从库里最大id继续分配，写库按batchSize分批，成功后日志删除
+    @Test
+    void append_FlushesInBatches() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<Integer> sizes = recordBatches(jdbcTemplate);
+        MessageWriteBuffer buffer = buffer(jdbcTemplate, 40, 100);
+        assertEquals(41, buffer.append(message("a")).getId());
+        assertEquals(42, buffer.append(message("b")).getId());
+        assertEquals(43, buffer.append(message("c")).getId());
+        buffer.flushNow();
+        assertEquals(3, sizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(sizes.stream().allMatch(size -> size <= 2));
+        assertEquals(0, segments());
+        assertEquals(0, buffer.stats().get("pending"));
+    }
+    //数据库写不进去时积压到上限，再发送等待超时后拒绝
+    @Test
+    void append_QueueFull_Rejects() throws Exception {
+        MessageWriteBuffer buffer = buffer(unavailable(), null, 2);
+        buffer.append(message("a"));
+        buffer.append(message("b"));
+        assertThrows(MessageWriteBuffer.QueueFullException.class, () -> buffer.append(message("c")));
+        assertEquals(1L, buffer.stats().get("rejectedCount"));
+    }
+    //日志写入失败（内容为null）时回退id、归还名额，日志里不留半条记录，之后的消息正常写入
+    @Test
+    void append_JournalFailure_RollsBack() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<Integer> sizes = recordBatches(jdbcTemplate);
+        MessageWriteBuffer buffer = buffer(jdbcTemplate, 40, 1);
+        assertThrows(NullPointerException.class, () -> buffer.append(message(null)));
+        assertEquals(40, buffer.lastAssignedId());
+        assertEquals(0, buffer.pendingCount());
+        assertEquals(41, buffer.append(message("a")).getId());
+        buffer.flushNow();
+        assertEquals(List.of(1), sizes);
+    }
+    //每个房间的序号各自从库里的最大序号递增，写库时带上序号
+    @Test
+    @SuppressWarnings("unchecked")
+    void append_AssignsRoomSeq() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<Long> seqs = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    ParameterizedPreparedStatementSetter<Object> setter = invocation.getArgument(3);
+                    for (Object pending : (Collection<Object>) invocation.getArgument(1)) {
+                        PreparedStatement ps = mock(PreparedStatement.class);
+                        setter.setValues(ps, pending);
+                        ArgumentCaptor<Long> seq = ArgumentCaptor.forClass(Long.class);
+                        verify(ps).setLong(eq(2), seq.capture());
+                        seqs.add(seq.getValue());
+                    }
+                    return new int[0][];
+                });
+        MessageWriteBuffer buffer = buffer(jdbcTemplate, 40, 100);
+        ReflectionTestUtils.setField(buffer, "roomSequencer", sequencer(5L));
+        assertEquals(6L, buffer.append(message("a", 3)).getRoomSeq());
+        assertEquals(7L, buffer.append(message("b", 3)).getRoomSeq());
+        assertEquals(6L, buffer.append(message("c", 4)).getRoomSeq());
+        buffer.flushNow();
+        assertEquals(List.of(6L, 7L, 6L), seqs);
+    }
+    //并发发送同一房间：回调在房间锁内执行，调用顺序和序号顺序一致；回调抛异常不影响发送
+    @Test
+    void append_CallbackInSeqOrder() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        recordBatches(jdbcTemplate);
+        MessageWriteBuffer buffer = buffer(jdbcTemplate, 40, 1000);
+        List<Long> pushed = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 200; i++) {
+            pool.execute(() -> buffer.append(message("a"), appended -> pushed.add(appended.getRoomSeq())));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(LongStream.rangeClosed(1, 200).boxed().toList(), pushed);
+        Message message = buffer.append(message("b"), appended -> {
+            throw new IllegalStateException("推送失败");
+        });
+        assertEquals(201L, message.getRoomSeq());
+    }
+    //违反约束的消息逐条插入后丢弃：写入死信文件，发布丢弃事件（补撤回墓碑），其余消息正常写库
+    @Test
+    @SuppressWarnings("unchecked")
+    void append_Dropped_DeadLetterAndEvent() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("发送者已删除"));
+        when(jdbcTemplate.update(anyString(), eq(41), any(), any(), any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("发送者已删除"));
+        MessageWriteBuffer buffer = buffer(jdbcTemplate, 40, 100);
+        buffer.append(message("a"));
+        buffer.append(message("b"));
+        buffer.flushNow();
+        ArgumentCaptor<MessageDroppedEvent> event = ArgumentCaptor.forClass(MessageDroppedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(41, event.getValue().getMessageId());
+        assertEquals(3, event.getValue().getRoomId());
+        assertEquals(1L, event.getValue().getSeq());
+        assertEquals(1L, buffer.stats().get("droppedCount"));
+        assertTrue(Files.size(journalDir.resolve("dead-letter.journal")) > 0);
+        assertTrue(buffer.unflushed(3, 0, 2).isEmpty());
+    }
+    //------------------------unflushed方法：未入库的消息--------------------------
+    //只返回本房间序号在(since, upTo]之间的；写库失败时保留，写库成功后移除
+    @Test
+    void unflushed_UntilFlushed() throws Exception {
+        JdbcTemplate jdbcTemplate = unavailable();
+        MessageWriteBuffer buffer = buffer(jdbcTemplate, 40, 100);
+        buffer.append(message("a", 3));
+        buffer.append(message("b", 3));
+        buffer.append(message("c", 3));
+        buffer.append(message("x", 4));
+        assertEquals(List.of("b", "c"), buffer.unflushed(3, 1, 3).stream().map(ChatMessageDTO::getContent).toList());
+        assertEquals(List.of("b"), buffer.unflushed(3, 1, 2).stream().map(ChatMessageDTO::getContent).toList());
+        buffer.flushNow();
+        assertEquals(3, buffer.unflushed(3, 0, 3).size());
+
+        reset(jdbcTemplate);
+        recordBatches(jdbcTemplate);
+        buffer.flushNow();
+        assertTrue(buffer.unflushed(3, 0, 3).isEmpty());
+        assertTrue(buffer.unflushed(4, 0, 1).isEmpty());
+    }
+    //------------------------start方法：补写日志--------------------------
+    //数据库不可用时消息留在日志里，重启后只补写库里没有的消息，id继续递增
+    @Test
+    void start_ReplaysJournal() throws Exception {
+        MessageWriteBuffer first = buffer(unavailable(), 10, 100);
+        first.append(message("a"));
+        first.append(message("b"));
+        first.append(message("c"));
+        first.flushNow();
+        assertTrue((Long) first.stats().get("failedFlushCount") > 0);
+        first.stop();
+        buffers.remove(first);
+        assertTrue(segments() > 0);
+
+        JdbcTemplate up = mock(JdbcTemplate.class);
+        List<Integer> sizes = recordBatches(up);
+        //11号已经写进库里（提交后、删除日志前崩溃）
+        when(up.queryForList(anyString(), eq(Integer.class), eq(11), eq(13))).thenReturn(List.of(11));
+        MessageWriteBuffer second = buffer(up, 11, 100);
+        assertEquals(2, sizes.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(0, segments());
+        assertEquals(14, second.append(message("d")).getId());
+    }
+}
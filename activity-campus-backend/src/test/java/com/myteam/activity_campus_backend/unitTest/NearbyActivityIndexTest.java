@@ -0,0 +1,162 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.dto.NearbyActivityDTO;
+import com.myteam.activity_campus_backend.entity.Activity;
+import com.myteam.activity_campus_backend.entity.Location;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.repository.LocationRepository;
+import com.myteam.activity_campus_backend.service.NearbyActivityIndex;
+import com.myteam.activity_campus_backend.util.GeoUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author sjy15
+ * @description: 附近活动空间索引测试
+ * @date 2026/10/17 18:20
+ */
+@ExtendWith(MockitoExtension.class)
+public class NearbyActivityIndexTest {
+    @Mock
+    private LocationRepository locationRepository;
+    @Mock
+    private ActivityRepository activityRepository;
+    @InjectMocks
+    private NearbyActivityIndex nearbyActivityIndex;
+
+    private final LocalDateTime future = LocalDateTime.now().plusDays(1);
+
+    private Location createLocation(Integer id, double lat, double lng) {
+        Location location = new Location();
+        location.setId(id);
+        location.setRegionName("地点" + id);
+        location.setDetailAddress("地址" + id);
+        location.setCenterLatitude(BigDecimal.valueOf(lat).setScale(6, RoundingMode.HALF_UP));
+        location.setCenterLongitude(BigDecimal.valueOf(lng).setScale(6, RoundingMode.HALF_UP));
+        return location;
+    }
+
+    private void load(List<Location> locations, List<Object[]> activities) {
+        when(locationRepository.findByIsEnabledTrue()).thenReturn(locations);
+        when(activityRepository.findUpcomingForNearby(any())).thenReturn(activities);
+        nearbyActivityIndex.rebuild();
+    }
+
+    //------------------------search方法：查询附近活动--------------------------
+    //3000个地点随机分布，结果与逐个计算距离的暴力结果一致，且按距离升序
+    @Test
+    void search_SameAsBruteForce() {
+        Random random = new Random(7);
+        List<Location> locations = new ArrayList<>();
+        List<Object[]> activities = new ArrayList<>();
+        for (int i = 1; i <= 3000; i++) {
+            Location location = createLocation(i, 39.9 + (random.nextDouble() - 0.5) * 0.4, 116.4 + (random.nextDouble() - 0.5) * 0.5);
+            locations.add(location);
+            activities.add(new Object[]{i, 10000 + i, "活动" + i, future, future.plusHours(1)});
+        }
+        load(locations, activities);
+        double lat = 39.91;
+        double lng = 116.39;
+        double radius = 3000;
+        Set<Integer> expected = locations.stream()
+                .filter(l -> GeoUtil.distance(lat, lng, l.getCenterLatitude().doubleValue(), l.getCenterLongitude().doubleValue()) <= radius)
+                .map(l -> 10000 + l.getId())
+                .collect(Collectors.toSet());
+        List<NearbyActivityDTO> result = nearbyActivityIndex.search(lat, lng, radius, Integer.MAX_VALUE);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, result.stream().map(NearbyActivityDTO::getActivityId).collect(Collectors.toSet()));
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getDistance() <= result.get(i).getDistance());
+        }
+    }
+    //超过条数上限时只返回最近的
+    @Test
+    void search_Limit() {
+        load(List.of(createLocation(1, 39.9, 116.4), createLocation(2, 39.901, 116.4), createLocation(3, 39.902, 116.4)),
+                List.of(new Object[]{1, 11, "a", future, future.plusHours(1)},
+                        new Object[]{2, 12, "b", future, future.plusHours(1)},
+                        new Object[]{3, 13, "c", future, future.plusHours(1)}));
+        List<NearbyActivityDTO> result = nearbyActivityIndex.search(39.9, 116.4, 1000, 2);
+        assertEquals(List.of(11, 12), result.stream().map(NearbyActivityDTO::getActivityId).collect(Collectors.toList()));
+        assertEquals(0d, result.get(0).getDistance());
+    }
+    //已结束的活动不返回
+    @Test
+    void search_SkipsEnded() {
+        LocalDateTime past = LocalDateTime.now().minusDays(1);
+        load(List.of(createLocation(1, 39.9, 116.4)),
+                List.of(new Object[]{1, 11, "a", past, past.plusHours(1)}, new Object[]{1, 12, "b", future, future.plusHours(1)}));
+        List<NearbyActivityDTO> result = nearbyActivityIndex.search(39.9, 116.4, 100, 20);
+        assertEquals(1, result.size());
+        assertEquals(12, result.get(0).getActivityId());
+    }
+    //跨越180度经线也能查到
+    @Test
+    void search_AcrossAntimeridian() {
+        load(List.of(createLocation(1, 0, 179.999)), List.<Object[]>of(new Object[]{1, 11, "a", future, future.plusHours(1)}));
+        assertEquals(1, nearbyActivityIndex.search(0, -179.999, 1000, 20).size());
+    }
+    //------------------------addLocation/addActivity方法：增量写入--------------------------
+    //新地点和新活动写入后可查到，未启用的地点不写入
+    @Test
+    void add_Incremental() {
+        load(new ArrayList<>(), new ArrayList<>());
+        Location location = createLocation(5, 39.9, 116.4);
+        nearbyActivityIndex.addLocation(location);
+        Location disabled = createLocation(6, 39.9, 116.4);
+        disabled.setIsEnabled(false);
+        nearbyActivityIndex.addLocation(disabled);
+        for (Location l : List.of(location, disabled)) {
+            Activity activity = new Activity();
+            activity.setId(l.getId() * 10);
+            activity.setActivityName("新活动" + l.getId());
+            activity.setLocation(l);
+            activity.setStartTime(future);
+            activity.setEndTime(future.plusHours(1));
+            nearbyActivityIndex.addActivity(activity);
+        }
+        List<NearbyActivityDTO> result = nearbyActivityIndex.search(39.9, 116.4, 100, 20);
+        assertEquals(1, result.size());
+        assertEquals(50, result.get(0).getActivityId());
+        assertEquals("地点5", result.get(0).getRegionName());
+    }
+    //地点上挂着的活动数（包括已结束还没移除的）
+    private int indexedActivities(Integer locationId) {
+        Map<?, ?> venues = (Map<?, ?>) ReflectionTestUtils.getField(nearbyActivityIndex, "venues");
+        return ((List<?>) ReflectionTestUtils.getField(venues.get(locationId), "activities")).size();
+    }
+    //已结束的活动在查询到或同一地点加入新活动时移除，索引不会一直增长
+    @Test
+    void add_PrunesEnded() {
+        LocalDateTime past = LocalDateTime.now().minusDays(1);
+        load(List.of(createLocation(1, 39.9, 116.4), createLocation(2, 45, 120)),
+                List.of(new Object[]{1, 11, "a", past, past.plusHours(1)}, new Object[]{2, 21, "b", past, past.plusHours(1)}));
+        assertEquals(1, indexedActivities(1));
+        assertTrue(nearbyActivityIndex.search(39.9, 116.4, 100, 20).isEmpty());
+        assertEquals(0, indexedActivities(1));
+
+        Activity activity = new Activity();
+        activity.setId(22);
+        activity.setActivityName("新活动");
+        activity.setLocation(createLocation(2, 45, 120));
+        activity.setStartTime(future);
+        activity.setEndTime(future.plusHours(1));
+        nearbyActivityIndex.addActivity(activity);
+        assertEquals(1, indexedActivities(2));
+        assertEquals(22, nearbyActivityIndex.search(45, 120, 100, 20).get(0).getActivityId());
+    }
+}
@@ -40,7 +40,7 @@ public class ParticipateServerTest {
         Integer userId = 12345;
         UserPartActivity userPartActivity = new UserPartActivity();
         userPartActivity.setUserId(userId);
-        when(participateRepository.findByParticipant_IdOrActivity_Id(userId)).thenReturn(new ArrayList<>());
+        when(participateRepository.findByParticipantIdWithDetails(userId)).thenReturn(new ArrayList<>());
         UserPartActivityResponse response=participateServer.activityList(userPartActivity);
         assertNotNull(response);
         assertNotNull(response.getPartiList());
@@ -80,7 +80,7 @@ public class ParticipateServerTest {
         List<Participate> participates = new ArrayList<>();
         participates.add(participate);
         //结果
-        when(participateRepository.findByParticipant_IdOrActivity_Id(12345)).thenReturn(participates);
+        when(participateRepository.findByParticipantIdWithDetails(12345)).thenReturn(participates);
         UserPartActivityResponse response=participateServer.activityList(userPartActivity);
         assertNotNull(response);
         assertNotNull(response.getPartiList());
@@ -94,7 +94,7 @@ public class ParticipateServerTest {
     @Test
     void list_empty() {
         Integer activityId = 1;
-        when(participateRepository.findByParticipant_IdOrActivity_Id(activityId)).thenReturn(new ArrayList<>());
+        when(participateRepository.findByActivityIdWithDetails(activityId)).thenReturn(new ArrayList<>());
         List<PartiDTO> list = participateServer.list(activityId);
         assertNotNull(list);
         assertTrue(list.isEmpty());
@@ -143,7 +143,7 @@ public class ParticipateServerTest {
         participates.add(participate_one);
         participates.add(participate_two);
 
-        when(participateRepository.findByParticipant_IdOrActivity_Id(1)).thenReturn(participates);
+        when(participateRepository.findByActivityIdWithDetails(1)).thenReturn(participates);
         List<PartiDTO> list = participateServer.list(activity.getId());
 
         assertNotNull(list);
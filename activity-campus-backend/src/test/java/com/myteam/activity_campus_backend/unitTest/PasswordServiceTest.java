@@ -5,6 +5,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -90,4 +95,46 @@ public class PasswordServiceTest {
         assertTrue(passwordService.matches(rawPassword, encodedPassword));
         assertFalse(passwordService.matches(rawPassword + "extra", encodedPassword)); // 错误密码不匹配
     }
+
+    /**
+     * 测试线程池已满：1个线程、队列长度1，同时提交8个请求，多出来的请求立即被拒绝，已受理的请求正常完成
+     */
+    @Test
+    public void encrypt_QueueFull_RejectsFast() throws Exception {
+        PasswordService smallPool = new PasswordService(1, 1, 10000);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(callers.submit(() -> {
+                ready.await();
+                try {
+                    smallPool.encrypt("Password123");
+                    return "OK";
+                } catch (PasswordService.HashRejectedException e) {
+                    return e.getMessage();
+                }
+            }));
+        }
+        ready.countDown();
+        int ok = 0;
+        int busy = 0;
+        for (Future<String> future : futures) {
+            String result = future.get(30, TimeUnit.SECONDS);
+            if ("OK".equals(result)) {
+                ok++;
+            } else {
+                assertEquals("系统繁忙，请稍后重试", result);
+                busy++;
+            }
+        }
+        callers.shutdown();
+        smallPool.shutdown();
+        assertTrue(ok >= 1);
+        assertTrue(busy >= 1);
+        Map<String, Object> stats = smallPool.stats();
+        assertEquals((long) ok, stats.get("completedCount"));
+        assertEquals((long) busy, stats.get("rejectedCount"));
+        assertTrue((Double) stats.get("maxHashMillis") > 0);
+    }
 }
@@ -0,0 +1,126 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.service.PresenceTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 聊天室在线状态测试
+ * @date 2026/10/18 17:20
+ */
+public class PresenceTrackerTest {
+    private PresenceTracker presenceTracker;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        presenceTracker = new PresenceTracker();
+        ReflectionTestUtils.setField(presenceTracker, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(presenceTracker, "tickMillis", 1000L);
+        presenceTracker.start();
+        now = System.currentTimeMillis();
+    }
+
+    @AfterEach
+    void tearDown() {
+        presenceTracker.stop();
+    }
+
+    //------------------------heartbeat方法：上线和续期--------------------------
+    //首次心跳上线，重复心跳不重复加入，在线用户按id升序
+    @Test
+    void heartbeat_JoinsOnce() {
+        presenceTracker.heartbeat(1, 30, now);
+        presenceTracker.heartbeat(1, 10, now);
+        presenceTracker.heartbeat(1, 30, now + 1000);
+        presenceTracker.heartbeat(2, 10, now);
+        assertEquals(List.of(10, 30), presenceTracker.onlineMembers(1, now + 1000));
+        assertEquals(List.of(10), presenceTracker.onlineMembers(2, now + 1000));
+        assertTrue(presenceTracker.onlineMembers(3, now).isEmpty());
+        assertEquals(3L, presenceTracker.stats().get("joinCount"));
+        assertEquals(4L, presenceTracker.stats().get("heartbeatCount"));
+    }
+    //超过ttl没有心跳，时间轮推进后移除，空房间一起删除
+    @Test
+    void advance_ExpiresSilentMember() {
+        presenceTracker.heartbeat(1, 10, now);
+        presenceTracker.advance(now + 30000);
+        assertEquals(List.of(10), presenceTracker.onlineMembers(1, now + 30000));
+        presenceTracker.advance(now + 61000);
+        assertTrue(presenceTracker.onlineMembers(1, now + 61000).isEmpty());
+        assertEquals(0, presenceTracker.stats().get("rooms"));
+        assertEquals(1L, presenceTracker.stats().get("expiredCount"));
+    }
+    //到期前有心跳的成员挪到新的槽，按新的过期时间移除
+    @Test
+    void advance_ReschedulesExtendedMember() {
+        presenceTracker.heartbeat(1, 10, now);
+        presenceTracker.heartbeat(1, 10, now + 40000);
+        presenceTracker.advance(now + 70000);
+        presenceTracker.advance(now + 99000);
+        assertEquals(List.of(10), presenceTracker.onlineMembers(1, now + 99000));
+        assertEquals(0L, presenceTracker.stats().get("expiredCount"));
+        presenceTracker.advance(now + 101000);
+        assertTrue(presenceTracker.onlineMembers(1, now + 101000).isEmpty());
+        assertEquals(1L, presenceTracker.stats().get("expiredCount"));
+    }
+    //过期后再次心跳重新上线
+    @Test
+    void heartbeat_RejoinsAfterExpiry() {
+        presenceTracker.heartbeat(1, 10, now);
+        presenceTracker.advance(now + 61000);
+        presenceTracker.heartbeat(1, 10, now + 62000);
+        assertEquals(List.of(10), presenceTracker.onlineMembers(1, now + 62000));
+        assertEquals(2L, presenceTracker.stats().get("joinCount"));
+    }
+    //多线程同时心跳，每个用户只加入一次
+    @Test
+    void heartbeat_Concurrent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int base = t * 1000;
+            futures.add(pool.submit(() -> {
+                for (int round = 0; round < 3; round++) {
+                    for (int user = 0; user < 2000; user++) {
+                        presenceTracker.heartbeat(1, base + user, now + round);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        //线程之间的用户有一半重叠：共9000个不同用户
+        assertEquals(9000, presenceTracker.onlineMembers(1, now).size());
+        assertEquals(9000L, presenceTracker.stats().get("joinCount"));
+        assertEquals(48000L, presenceTracker.stats().get("heartbeatCount"));
+    }
+
+    //------------------------leave方法：主动离开--------------------------
+    //离开立即移除，时间轮到期时忽略已离开的记录
+    @Test
+    void leave_RemovesImmediately() {
+        presenceTracker.heartbeat(1, 10, now);
+        presenceTracker.heartbeat(1, 20, now);
+        presenceTracker.leave(1, 10);
+        presenceTracker.leave(1, 99);
+        assertEquals(List.of(20), presenceTracker.onlineMembers(1, now));
+        presenceTracker.advance(now + 61000);
+        assertEquals(1L, presenceTracker.stats().get("leaveCount"));
+        assertEquals(1L, presenceTracker.stats().get("expiredCount"));
+        assertEquals(0, presenceTracker.stats().get("rooms"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.config.RateLimitConfig;
+import com.myteam.activity_campus_backend.service.RateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author sjy15
+ * @description: 滑动窗口限流与限流过滤器测试
+ * @date 2026/10/18 18:00
+ */
+public class RateLimiterTest {
+    private RateLimiter rateLimiter;
+    private RateLimiter.Rule send;
+    //窗口起点对齐的时间，便于计算
+    private final long start = 1_000_000_000_000L;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new RateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "routes",
+                "POST /api/messages/send=4/10, POST /api/messages/recall/**=2/60, WS /ws/chat=3/10");
+        rateLimiter.init();
+        send = rateLimiter.match("POST", "/api/messages/send");
+    }
+
+    //------------------------match方法：规则匹配--------------------------
+    //按方法和路径匹配，/**匹配前缀本身和子路径
+    @Test
+    void match_MethodAndPath() {
+        assertEquals("POST /api/messages/send", send.getName());
+        assertNull(rateLimiter.match("GET", "/api/messages/send"));
+        assertNull(rateLimiter.match("POST", "/api/messages/send/1"));
+        assertEquals("POST /api/messages/recall/**", rateLimiter.match("POST", "/api/messages/recall").getName());
+        assertEquals("POST /api/messages/recall/**", rateLimiter.match("POST", "/api/messages/recall/12").getName());
+        assertNull(rateLimiter.match("POST", "/api/messages/recallAll"));
+        assertEquals("WS /ws/chat", rateLimiter.match("WS", "/ws/chat").getName());
+    }
+    //规则格式错误启动失败
+    @Test
+    void init_InvalidRule() {
+        RateLimiter invalid = new RateLimiter();
+        ReflectionTestUtils.setField(invalid, "routes", "POST /api/messages/send=4");
+        assertThrows(IllegalArgumentException.class, invalid::init);
+    }
+
+    //------------------------acquire方法：滑动窗口计数--------------------------
+    //窗口内超过次数被拒绝，重试时间为到下一窗口后估算值降到上限以下
+    @Test
+    void acquire_RejectsOverLimit() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, rateLimiter.acquire(send, 1, start + 1000));
+        }
+        //当前窗口已满：9秒后进入下一窗口，再等上一窗口权重降到3/4（2.5秒）
+        assertEquals(11500, rateLimiter.acquire(send, 1, start + 1000));
+        //其他用户互不影响
+        assertEquals(0, rateLimiter.acquire(send, 2, start + 1000));
+        Map<String, Object> route = route("POST /api/messages/send");
+        assertEquals(5L, route.get("allowedCount"));
+        assertEquals(1L, route.get("rejectedCount"));
+        assertEquals(2, route.get("trackedUsers"));
+        assertEquals(1L, rateLimiter.stats().get("rejectedCount"));
+    }
+    //上一窗口的请求按比例计入，随时间逐渐释放
+    @Test
+    void acquire_SlidesAcrossWindows() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, rateLimiter.acquire(send, 1, start + 9000));
+        }
+        //下一窗口开始1秒：上一窗口还占4*0.9=3.6，不能再放行
+        assertEquals(1500, rateLimiter.acquire(send, 1, start + 11000));
+        //过了2.5秒：4*0.75=3，可以放行一次
+        assertEquals(0, rateLimiter.acquire(send, 1, start + 12500));
+        assertTrue(rateLimiter.acquire(send, 1, start + 12500) > 0);
+        //隔了两个窗口以上，计数清零
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, rateLimiter.acquire(send, 1, start + 31000));
+        }
+    }
+    //大量用户分布到各分段，表扩容和淘汰过期用户后计数不丢
+    @Test
+    void acquire_ManyUsers() {
+        for (int user = 0; user < 5000; user++) {
+            assertEquals(0, rateLimiter.acquire(send, user, start));
+            assertEquals(0, rateLimiter.acquire(send, user, start));
+        }
+        assertEquals(5000, route("POST /api/messages/send").get("trackedUsers"));
+        for (int user = 0; user < 5000; user++) {
+            assertEquals(0, rateLimiter.acquire(send, user, start + 1));
+            assertEquals(0, rateLimiter.acquire(send, user, start + 1));
+            assertTrue(rateLimiter.acquire(send, user, start + 1) > 0);
+        }
+        //很久之后的新用户触发重建，旧用户被淘汰
+        for (int user = 5000; user < 10000; user++) {
+            assertEquals(0, rateLimiter.acquire(send, user, start + 100_000));
+        }
+        assertTrue((Integer) route("POST /api/messages/send").get("trackedUsers") < 10000);
+        assertEquals(0, rateLimiter.acquire(send, 0, start + 100_000));
+    }
+
+    //------------------------RateLimitFilter：429响应--------------------------
+    //超限返回429和Retry-After，不再进入后续处理；未登录和没有规则的请求不计数
+    @Test
+    void filter_TooManyRequests() throws Exception {
+        RateLimitConfig.RateLimitFilter filter = new RateLimitConfig.RateLimitFilter(rateLimiter);
+        for (int i = 0; i < 4; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            assertEquals(200, doFilter(filter, "POST", "/api/messages/send", 7, chain).getStatus());
+            assertNotNull(chain.getRequest());
+        }
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = doFilter(filter, "POST", "/api/messages/send", 7, chain);
+        assertEquals(429, response.getStatus());
+        assertNull(chain.getRequest());
+        long retryAfter = Long.parseLong(response.getHeader("Retry-After"));
+        assertTrue(retryAfter >= 1 && retryAfter <= 20);
+        assertTrue(response.getContentAsString().contains("\"code\":429"));
+
+        assertEquals(200, doFilter(filter, "GET", "/api/messages/send", 7, new MockFilterChain()).getStatus());
+        assertEquals(200, doFilter(filter, "POST", "/api/messages/send", null, new MockFilterChain()).getStatus());
+    }
+
+    private MockHttpServletResponse doFilter(RateLimitConfig.RateLimitFilter filter, String method, String uri,
+                                             Integer userId, MockFilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (userId != null) {
+            request.setAttribute("currentUserId", userId);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> route(String name) {
+        return ((Map<String, Map<String, Object>>) rateLimiter.stats().get("routes")).get(name);
+    }
+}
@@ -0,0 +1,123 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.dto.response.MessageHistoryResponse;
+import com.myteam.activity_campus_backend.repository.MessageRepository;
+import com.myteam.activity_campus_backend.service.MessageWriteBuffer;
+import com.myteam.activity_campus_backend.service.RecentMessageCache;
+import com.myteam.activity_campus_backend.util.CursorUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author sjy15
+ * @description: 聊天室最近消息缓存测试
+ * @date 2026/10/18 09:20
+ */
+public class RecentMessageCacheTest {
+    private static final int CAPACITY = 5;
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    private RecentMessageCache recentMessageCache;
+    private MessageRepository messageRepository;
+    private MessageWriteBuffer messageWriteBuffer;
+
+    @BeforeEach
+    void setUp() {
+        messageRepository = mock(MessageRepository.class);
+        messageWriteBuffer = mock(MessageWriteBuffer.class);
+        recentMessageCache = new RecentMessageCache();
+        ReflectionTestUtils.setField(recentMessageCache, "messageRepository", messageRepository);
+        ReflectionTestUtils.setField(recentMessageCache, "messageWriteBuffer", messageWriteBuffer);
+        ReflectionTestUtils.setField(recentMessageCache, "capacity", CAPACITY);
+        ReflectionTestUtils.setField(recentMessageCache, "maxRooms", 10L);
+        ReflectionTestUtils.setField(recentMessageCache, "idleMinutes", 30L);
+        recentMessageCache.init();
+    }
+
+    private MessageHistoryResponse message(int id) {
+        return new MessageHistoryResponse(id, 1, "user", "消息" + id, BASE.plusSeconds(id));
+    }
+
+    //库里最新的消息，倒序
+    private void database(int... ids) {
+        List<MessageHistoryResponse> desc = new ArrayList<>();
+        for (int i = ids.length - 1; i >= 0; i--) {
+            desc.add(message(ids[i]));
+        }
+        when(messageRepository.findLatestPage(eq(1), any(Pageable.class))).thenReturn(desc);
+    }
+
+    private List<Integer> ids(RecentMessageCache.Page page) {
+        return page.getMessages().stream().map(MessageHistoryResponse::getMessageId).collect(Collectors.toList());
+    }
+
+    private CursorUtil.Cursor cursor(int id) {
+        return new CursorUtil.Cursor(BASE.plusSeconds(id), id);
+    }
+
+    //------------------------page方法：从缓冲取页--------------------------
+    //第一次读时先写库再加载，之后不再查库
+    @Test
+    void page_LoadsOnceThenServesFromMemory() {
+        database(1, 2, 3);
+        RecentMessageCache.Page first = recentMessageCache.page(1, null, null, 2);
+        assertEquals(List.of(2, 3), ids(first));
+        assertTrue(first.isHasMore());
+        RecentMessageCache.Page all = recentMessageCache.page(1, null, null, 5);
+        //房间只有3条，全部在缓冲里
+        assertEquals(List.of(1, 2, 3), ids(all));
+        assertFalse(all.isHasMore());
+        verify(messageWriteBuffer, times(1)).flushNow();
+        verify(messageRepository, times(1)).findLatestPage(eq(1), any(Pageable.class));
+        assertEquals(2L, recentMessageCache.stats().get("hitCount"));
+    }
+    //发送的新消息追加到缓冲，满了丢掉最旧的；更早的分页回落到数据库
+    @Test
+    void add_OverflowFallsThroughForOlderPages() {
+        database(1, 2, 3);
+        recentMessageCache.page(1, null, null, 1);
+        for (int id = 4; id <= 7; id++) {
+            recentMessageCache.add(message(id));
+        }
+        assertEquals(List.of(5, 6, 7), ids(recentMessageCache.page(1, null, null, 3)));
+        assertEquals(List.of(3, 4), ids(recentMessageCache.page(1, cursor(5), null, 2)));
+        //游标5之前只剩3、4两条在缓冲里，不够一页且房间不完整
+        assertNull(recentMessageCache.page(1, cursor(5), null, 3));
+        //after：游标在缓冲范围内可以从内存返回，早于缓冲则回落
+        assertEquals(List.of(6, 7), ids(recentMessageCache.page(1, null, cursor(5), 10)));
+        assertNull(recentMessageCache.page(1, null, cursor(1), 10));
+        assertEquals(2L, recentMessageCache.stats().get("missCount"));
+    }
+    //未缓存的房间不追加，加载时与加载期间追加的消息去重
+    @Test
+    void add_NotCachedRoomIgnoredAndMergedOnLoad() {
+        recentMessageCache.add(message(9));
+        assertEquals(0L, recentMessageCache.stats().get("entries"));
+        database(1, 2);
+        assertEquals(List.of(1, 2), ids(recentMessageCache.page(1, null, null, 5)));
+        recentMessageCache.add(message(2));
+        recentMessageCache.add(message(3));
+        assertEquals(List.of(1, 2, 3), ids(recentMessageCache.page(1, null, null, 5)));
+    }
+    //------------------------remove方法：撤回--------------------------
+    @Test
+    void remove_Recalled() {
+        database(1, 2, 3);
+        recentMessageCache.page(1, null, null, 1);
+        recentMessageCache.remove(1, 2);
+        assertEquals(List.of(1, 3), ids(recentMessageCache.page(1, null, null, 5)));
+        assertTrue((Long) recentMessageCache.stats().get("estimatedBytes") > 0);
+    }
+}
@@ -1,20 +1,30 @@
 package com.myteam.activity_campus_backend.unitTest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.myteam.activity_campus_backend.dto.request.userLocationRequest;
-import com.myteam.activity_campus_backend.entity.User;
+import com.myteam.activity_campus_backend.dto.response.LocationBatchResponse;
 import com.myteam.activity_campus_backend.repository.UserRepository;
-import com.myteam.activity_campus_backend.repository.UserlocationRepository;
+import com.myteam.activity_campus_backend.service.GeofenceEngine;
+import com.myteam.activity_campus_backend.service.LiveLocationStore;
 import com.myteam.activity_campus_backend.service.UserLocationServer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.Optional;
+import java.util.List;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 
@@ -28,58 +38,166 @@ public class UserLocationServerTest {
     @Mock
     private UserRepository userRepository;
     @Mock
-    private UserlocationRepository userlocationRepository;
+    private LiveLocationStore liveLocationStore;
+    @Mock
+    private GeofenceEngine geofenceEngine;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
     @InjectMocks
     private UserLocationServer userLocationServer;
-    //用户不存在，不保存位置信息
-    @Test
-    void save_UserNotFound_NotSave(){
-        Integer userId = 12345;
+    private userLocationRequest request(Integer userId, long validTime) {
         userLocationRequest request=new userLocationRequest();
         request.setUserId(userId);
         request.setLatitude(new BigDecimal("30.12345"));
         request.setLongitude(new BigDecimal("120.54321"));
-        request.setValidTime(Instant.now().plusSeconds(3600).toEpochMilli());//1小时后过期
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
-        userLocationServer.save(request);
-        verify(userlocationRepository,never()).save(any());
+        request.setValidTime(validTime);
+        return request;
     }
-    //用户存在但位置过期
+    //用户不存在，不保存位置信息
+    @Test
+    void save_UserNotFound_NotSave(){
+        Integer userId = 12345;
+        when(liveLocationStore.contains(userId)).thenReturn(false);
+        when(userRepository.existsById(userId)).thenReturn(false);
+        userLocationServer.save(request(userId, Instant.now().plusSeconds(3600).toEpochMilli()), userId);//1小时后过期
+        verify(liveLocationStore,never()).update(anyInt(),any(),any(),anyLong());
+    }
+    //位置过期，不查用户也不保存
     @Test
     void save_TimeExpired_NotSave(){
         Integer userId = 12345;
-        User user = new User();
-        user.setId(userId);
-        userLocationRequest request=new userLocationRequest();
-        request.setUserId(userId);
-        request.setLatitude(new BigDecimal("30.12345"));
-        request.setLongitude(new BigDecimal("120.54321"));
         //过期时间设为当前小时的1小时前
-        request.setValidTime(Instant.now().minusSeconds(3600).toEpochMilli());
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        userLocationServer.save(request);
-        verify(userlocationRepository,never()).save(any());
+        userLocationServer.save(request(userId, Instant.now().minusSeconds(3600).toEpochMilli()), userId);
+        verifyNoInteractions(userRepository, liveLocationStore);
     }
-    //用户存在且信息未过期，保存
+    //第一次上报：确认用户存在后写入实时位置
     @Test
     void save_OK_Save(){
         Integer userId = 12345;
-        User user = new User();
-        user.setId(userId);
         long validTime = Instant.now().plusSeconds(3600).toEpochMilli();
-        userLocationRequest request=new userLocationRequest();
-        request.setUserId(userId);
-        request.setLatitude(new BigDecimal("30.12345"));
-        request.setLongitude(new BigDecimal("120.54321"));
-        request.setValidTime(validTime);
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        userLocationServer.save(request);
-        verify(userlocationRepository,times(1)).save(argThat(location -> {
-            // 检查保存的位置信息是否正确关联用户、经纬度和有效期
-            return location.getUser().getId().equals(userId)
-                    && location.getLatitude().equals(new BigDecimal("30.12345"))
-                    && location.getLongitude().equals(new BigDecimal("120.54321"))
-                    && location.getValidTime().equals(validTime);
-        }));
+        when(liveLocationStore.contains(userId)).thenReturn(false);
+        when(userRepository.existsById(userId)).thenReturn(true);
+        when(liveLocationStore.update(anyInt(),any(),any(),anyLong())).thenReturn(true);
+        userLocationServer.save(request(userId, validTime), userId);
+        verify(liveLocationStore,times(1)).update(userId,new BigDecimal("30.12345"),new BigDecimal("120.54321"),validTime);
+        verify(geofenceEngine,times(1)).onPing(eq(userId),eq(30.12345),eq(120.54321),anyLong());
+    }
+    //已有位置的用户再次上报：不查用户表
+    @Test
+    void save_KnownUser_NoUserLookup(){
+        Integer userId = 12345;
+        long validTime = Instant.now().plusSeconds(3600).toEpochMilli();
+        when(liveLocationStore.contains(userId)).thenReturn(true);
+        userLocationServer.save(request(userId, validTime), userId);
+        verify(liveLocationStore,times(1)).update(userId,new BigDecimal("30.12345"),new BigDecimal("120.54321"),validTime);
+        verifyNoInteractions(userRepository);
+    }
+    //比已有位置旧的点（乱序到达）不覆盖，也不触发围栏
+    @Test
+    void save_StalePing_NoGeofence(){
+        Integer userId = 12345;
+        when(liveLocationStore.contains(userId)).thenReturn(true);
+        when(liveLocationStore.update(anyInt(),any(),any(),anyLong())).thenReturn(false);
+        userLocationServer.save(request(userId, Instant.now().plusSeconds(3600).toEpochMilli()), userId);
+        verifyNoInteractions(geofenceEngine);
+    }
+    //上报其他用户的位置：拒绝，不写位置也不触发围栏（位置会生成到场记录）
+    @Test
+    void save_OtherUser_Rejected(){
+        assertThrows(IllegalArgumentException.class,
+                () -> userLocationServer.save(request(12345, Instant.now().plusSeconds(3600).toEpochMilli()), 1));
+        verifyNoInteractions(userRepository, liveLocationStore, geofenceEngine);
+    }
+    //网关用户可以上报其他用户；不传userId时按当前用户
+    @Test
+    void save_GatewayOrMissingUserId(){
+        ReflectionTestUtils.setField(userLocationServer, "gatewayUserIds", Set.of(100));
+        long validTime = Instant.now().plusSeconds(3600).toEpochMilli();
+        when(liveLocationStore.contains(anyInt())).thenReturn(true);
+        userLocationServer.save(request(12345, validTime), 100);
+        userLocationServer.save(request(null, validTime), 7);
+        verify(liveLocationStore,times(1)).update(12345,new BigDecimal("30.12345"),new BigDecimal("120.54321"),validTime);
+        verify(liveLocationStore,times(1)).update(7,new BigDecimal("30.12345"),new BigDecimal("120.54321"),validTime);
+    }
+    //经纬度超出范围：拒绝，不进入实时位置
+    @Test
+    void save_OutOfRange_Rejected(){
+        userLocationRequest request = request(12345, Instant.now().plusSeconds(3600).toEpochMilli());
+        request.setLatitude(new BigDecimal("95"));
+        assertThrows(IllegalArgumentException.class, () -> userLocationServer.save(request, 12345));
+        verifyNoInteractions(liveLocationStore, geofenceEngine);
+    }
+    //------------------------saveBatch方法：批量上报位置--------------------------
+    private InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+    //网关用户：所有点写历史，每个用户有效期最晚的一条更新实时位置；不合法、过期、用户不存在的丢弃；新用户一次查库
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveBatch_CollapsesPerUserAndRejectsInvalid() throws Exception {
+        ReflectionTestUtils.setField(userLocationServer, "maxBatchSize", 100);
+        ReflectionTestUtils.setField(userLocationServer, "gatewayUserIds", Set.of(100));
+        long valid = Instant.now().plusSeconds(3600).toEpochMilli();
+        long expired = Instant.now().minusSeconds(3600).toEpochMilli();
+        String json = "[" +
+                "{\"userId\":1,\"latitude\":30.1,\"longitude\":120.1,\"validTime\":" + valid + "}," +
+                "{\"userId\":1,\"latitude\":30.2,\"longitude\":120.2,\"validTime\":" + (valid + 1000) + ",\"extra\":{\"a\":[1]}}," +
+                "{\"userId\":2,\"latitude\":31,\"longitude\":121,\"validTime\":" + valid + "}," +
+                "{\"userId\":3,\"latitude\":95,\"longitude\":121,\"validTime\":" + valid + "}," +
+                "{\"userId\":3,\"latitude\":{},\"longitude\":121,\"validTime\":" + valid + "}," +
+                "{\"userId\":4,\"latitude\":31,\"longitude\":121,\"validTime\":" + expired + "}," +
+                "{\"userId\":9,\"latitude\":31,\"longitude\":121,\"validTime\":" + valid + "}]";
+        when(liveLocationStore.contains(1)).thenReturn(true);
+        when(liveLocationStore.contains(2)).thenReturn(false);
+        when(liveLocationStore.contains(9)).thenReturn(false);
+        when(userRepository.findExistingIds(argThat(ids -> ids.size() == 2 && ids.contains(2) && ids.contains(9)))).thenReturn(List.of(2));
+        when(liveLocationStore.updateWithoutHistory(anyInt(), any(), any(), anyLong())).thenReturn(true);
+
+        LocationBatchResponse response = userLocationServer.saveBatch(body(json), 100);
+
+        assertEquals(7, response.getReceived());
+        assertEquals(3, response.getAccepted());
+        assertEquals(4, response.getRejected());
+        assertEquals(2, response.getUsers());
+        ArgumentCaptor<List<userLocationRequest>> history = ArgumentCaptor.forClass(List.class);
+        verify(liveLocationStore, times(1)).appendHistory(history.capture());
+        assertEquals(List.of(1, 1, 2), history.getValue().stream().map(userLocationRequest::getUserId).toList());
+        verify(liveLocationStore, times(1)).updateWithoutHistory(1, new BigDecimal("30.2"), new BigDecimal("120.2"), valid + 1000);
+        verify(liveLocationStore, times(1)).updateWithoutHistory(2, new BigDecimal("31"), new BigDecimal("121"), valid);
+        verify(liveLocationStore, never()).updateWithoutHistory(eq(9), any(), any(), anyLong());
+        verify(geofenceEngine, times(2)).onPing(anyInt(), anyDouble(), anyDouble(), anyLong());
+        verify(userRepository, never()).existsById(any());
+    }
+    //普通用户只能上报自己的位置，其他用户的点丢弃
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveBatch_OtherUsersRejected() throws Exception {
+        ReflectionTestUtils.setField(userLocationServer, "maxBatchSize", 100);
+        long valid = Instant.now().plusSeconds(3600).toEpochMilli();
+        String json = "[" +
+                "{\"userId\":1,\"latitude\":30.1,\"longitude\":120.1,\"validTime\":" + valid + "}," +
+                "{\"userId\":2,\"latitude\":31,\"longitude\":121,\"validTime\":" + valid + "}]";
+        when(liveLocationStore.contains(1)).thenReturn(true);
+
+        LocationBatchResponse response = userLocationServer.saveBatch(body(json), 1);
+
+        assertEquals(1, response.getAccepted());
+        assertEquals(1, response.getRejected());
+        assertEquals(1, response.getUsers());
+        ArgumentCaptor<List<userLocationRequest>> history = ArgumentCaptor.forClass(List.class);
+        verify(liveLocationStore, times(1)).appendHistory(history.capture());
+        assertEquals(List.of(1), history.getValue().stream().map(userLocationRequest::getUserId).toList());
+        verify(liveLocationStore, never()).updateWithoutHistory(eq(2), any(), any(), anyLong());
+    }
+    //超过条数上限或格式错误
+    @Test
+    void saveBatch_TooLargeOrMalformed() {
+        ReflectionTestUtils.setField(userLocationServer, "maxBatchSize", 1);
+        long valid = Instant.now().plusSeconds(3600).toEpochMilli();
+        String ping = "{\"userId\":1,\"latitude\":30.1,\"longitude\":120.1,\"validTime\":" + valid + "}";
+        assertThrows(IllegalArgumentException.class, () -> userLocationServer.saveBatch(body("[" + ping + "," + ping + "]"), 1));
+        assertThrows(IllegalArgumentException.class, () -> userLocationServer.saveBatch(body(ping), 1));
+        assertThrows(IllegalArgumentException.class, () -> userLocationServer.saveBatch(body("[" + ping), 1));
+        verifyNoInteractions(liveLocationStore);
     }
 }
@@ -97,8 +97,10 @@ public class UserServerTest {
         // 需要确保 BCryptUtil.matches 返回 true
         UserRegisterResponse response=userService.registration(request);
         assertEquals("激活成功", response.getMessage());
-        assertEquals("ACTIVE",user.getUserStatus());
-        verify(userRepository).save(user);
+        //保存的是副本，查到的（缓存里共享的）实体不变
+        assertEquals("INACTIVE",user.getUserStatus());
+        verify(userRepository).save(argThat(saved -> userId.equals(saved.getId()) && "ACTIVE".equals(saved.getUserStatus())
+                && "password".equals(saved.getUserPassword())));
     }
     // ========== login方法测试 ==========
     @Test
@@ -217,6 +219,7 @@ public class UserServerTest {
         ChangePasswordResponse response=userService.changePassword(request);
         assertEquals("密码修改成功",response.getMessage());
         assertEquals(userId, response.getUserId());
-        verify(userRepository).save(user);
+        assertEquals("password",user.getUserPassword());
+        verify(userRepository).save(argThat(saved -> userId.equals(saved.getId()) && "encodedNewPassword".equals(saved.getUserPassword())));
     }
 }
@@ -0,0 +1,96 @@
+package com.myteam.activity_campus_backend.unitTest;
+
+import com.myteam.activity_campus_backend.dto.TimeSlotDTO;
+import com.myteam.activity_campus_backend.repository.ActivityRepository;
+import com.myteam.activity_campus_backend.service.VenueScheduleIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author sjy15
+ * @description: 场地时间区间索引测试
+ * @date 2026/10/17 16:30
+ */
+@ExtendWith(MockitoExtension.class)
+public class VenueScheduleIndexTest {
+    @Mock
+    private ActivityRepository activityRepository;
+    @InjectMocks
+    private VenueScheduleIndex venueScheduleIndex;
+
+    private final LocalDateTime day = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    //地点1：10-12点、14-16点；地点2：9-18点和10-11点（历史重叠数据）
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1, 11, day.plusHours(10), day.plusHours(12)});
+        rows.add(new Object[]{1, 12, day.plusHours(14), day.plusHours(16)});
+        rows.add(new Object[]{2, 21, day.plusHours(9), day.plusHours(18)});
+        rows.add(new Object[]{2, 22, day.plusHours(10), day.plusHours(11)});
+        when(activityRepository.findAllSchedules()).thenReturn(rows);
+        venueScheduleIndex.rebuild();
+    }
+
+    //------------------------isFree方法：时间段是否空闲--------------------------
+    //首尾相接不算冲突（左闭右开）
+    @Test
+    void isFree_Adjacent() {
+        assertTrue(venueScheduleIndex.isFree(1, day.plusHours(12), day.plusHours(14)));
+        assertTrue(venueScheduleIndex.isFree(1, day.plusHours(8), day.plusHours(10)));
+    }
+    //部分重叠、被包含、包含已有活动都算冲突
+    @Test
+    void isFree_Overlap() {
+        assertFalse(venueScheduleIndex.isFree(1, day.plusHours(11), day.plusHours(13)));
+        assertFalse(venueScheduleIndex.isFree(1, day.plusHours(9), day.plusHours(11)));
+        assertFalse(venueScheduleIndex.isFree(1, day.plusHours(10).plusMinutes(30), day.plusHours(11)));
+        assertFalse(venueScheduleIndex.isFree(1, day.plusHours(9), day.plusHours(17)));
+        assertFalse(venueScheduleIndex.isFree(2, day.plusHours(17), day.plusHours(20)));
+    }
+    //没有活动的地点全部空闲
+    @Test
+    void isFree_UnknownLocation() {
+        assertTrue(venueScheduleIndex.isFree(3, day, day.plusDays(1)));
+    }
+    //------------------------tryReserve/release方法：占用和释放--------------------------
+    @Test
+    void tryReserve_ThenConflict_ThenRelease() {
+        VenueScheduleIndex.Booking booking = venueScheduleIndex.tryReserve(1, day.plusHours(12), day.plusHours(14));
+        assertNotNull(booking);
+        assertNull(venueScheduleIndex.tryReserve(1, day.plusHours(13), day.plusHours(15)));
+        assertFalse(venueScheduleIndex.isFree(1, day.plusHours(12), day.plusHours(13)));
+        venueScheduleIndex.release(booking);
+        assertTrue(venueScheduleIndex.isFree(1, day.plusHours(12), day.plusHours(14)));
+    }
+    //------------------------freeSlots方法：空闲时段--------------------------
+    @Test
+    void freeSlots_Day() {
+        List<TimeSlotDTO> slots = venueScheduleIndex.freeSlots(1, day, day.plusDays(1));
+        assertEquals(3, slots.size());
+        assertEquals(day, slots.get(0).getStartTime());
+        assertEquals(day.plusHours(10), slots.get(0).getEndTime());
+        assertEquals(day.plusHours(12), slots.get(1).getStartTime());
+        assertEquals(day.plusHours(14), slots.get(1).getEndTime());
+        assertEquals(day.plusHours(16), slots.get(2).getStartTime());
+        assertEquals(day.plusDays(1), slots.get(2).getEndTime());
+    }
+    //窗口开始时已有活动在进行
+    @Test
+    void freeSlots_WindowStartsInsideBooking() {
+        List<TimeSlotDTO> slots = venueScheduleIndex.freeSlots(2, day.plusHours(12), day.plusHours(20));
+        assertEquals(1, slots.size());
+        assertEquals(day.plusHours(18), slots.get(0).getStartTime());
+    }
+}